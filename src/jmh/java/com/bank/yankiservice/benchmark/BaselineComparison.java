@@ -0,0 +1,81 @@
+package com.bank.yankiservice.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class BaselineComparison {
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison <result.json> <baseline.json> [max-regression-percent]"
+                    + " [require-baseline]");
+            System.exit(2);
+        }
+        Path result = Paths.get(args[0]);
+        Path baseline = Paths.get(args[1]);
+        double maxRegression = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        boolean requireBaseline = args.length > 3 && Boolean.parseBoolean(args[3]);
+        if (!Files.exists(result)) {
+            System.err.println("No benchmark results at " + result + ", nothing to compare.");
+            System.exit(2);
+        }
+        if (!Files.exists(baseline)) {
+            System.err.println("WARNING: no baseline at " + baseline + ". The benchmarks ran but were NOT checked"
+                    + " for regressions. To record a baseline, copy " + result + " to " + baseline
+                    + " from a run on the reference machine.");
+            if (requireBaseline) {
+                System.exit(1);
+            }
+            return;
+        }
+        Map<String, JsonNode> current = read(result);
+        Map<String, JsonNode> previous = read(baseline);
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = previous.get(entry.getKey());
+            JsonNode metric = entry.getValue().get("primaryMetric");
+            double score = metric.get("score").asDouble();
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %9s%n", entry.getKey(), "-", score, "new");
+                continue;
+            }
+            double baselineScore = before.get("primaryMetric").get("score").asDouble();
+            boolean higherIsBetter = "thrpt".equals(entry.getValue().get("mode").asText());
+            double change = (score - baselineScore) / baselineScore * 100;
+            double regression = higherIsBetter ? -change : change;
+            boolean regressed = regression > maxRegression;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), baselineScore, score, change,
+                    regressed ? "  REGRESSION" : "");
+        }
+        if (regressions > 0) {
+            System.err.printf("%d benchmark(s) regressed by more than %.1f%%%n", regressions, maxRegression);
+            System.exit(1);
+        }
+    }
+    private static Map<String, JsonNode> read(Path path) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode node : new ObjectMapper().readTree(path.toFile())) {
+            StringBuilder key = new StringBuilder(node.get("benchmark").asText());
+            JsonNode params = node.get("params");
+            if (params != null) {
+                params.fields().forEachRemaining(param -> key.append(' ')
+                        .append(param.getKey()).append('=').append(param.getValue().asText()));
+            }
+            results.put(key.toString(), node);
+        }
+        return results;
+    }
+}
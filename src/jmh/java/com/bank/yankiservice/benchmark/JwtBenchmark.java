@@ -0,0 +1,47 @@
+package com.bank.yankiservice.benchmark;
+
+import com.bank.yankiservice.security.JwtProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret";
+    private JwtProvider cachingProvider;
+    private JwtProvider nonCachingProvider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cachingProvider = new JwtProvider(SECRET, 3_600_000, 10_000, 300);
+        nonCachingProvider = new JwtProvider(SECRET, 3_600_000, 0, 300);
+        token = cachingProvider.generateToken("987654321");
+    }
+    @Benchmark
+    public String generateToken() {
+        return cachingProvider.generateToken("987654321");
+    }
+    @Benchmark
+    public String getUsernameFromTokenCached() {
+        return cachingProvider.getUsernameFromToken(token);
+    }
+    @Benchmark
+    public String getUsernameFromTokenVerified() {
+        return nonCachingProvider.getUsernameFromToken(token);
+    }
+}
@@ -0,0 +1,98 @@
+package com.bank.yankiservice.benchmark;
+
+import com.bank.yankiservice.dto.BaseResponse;
+import com.bank.yankiservice.dto.transaction.YankiTransactionEvent;
+import com.bank.yankiservice.dto.transaction.YankiTransactionProcessedEvent;
+import com.bank.yankiservice.model.YankiWallet;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+    private ObjectMapper objectMapper;
+    private YankiTransactionEvent transactionEvent;
+    private YankiTransactionProcessedEvent processedEvent;
+    private YankiWallet wallet;
+    private String transactionEventJson;
+    private String processedEventJson;
+    private String walletJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        transactionEvent = new YankiTransactionEvent("5f0c6a8e-4b1d-4f7e-9a41-0f2b7c1d9e11",
+                "987654321", "912345678", null, "4111111111111111", new BigDecimal("150.75"));
+        processedEvent = new YankiTransactionProcessedEvent("5f0c6a8e-4b1d-4f7e-9a41-0f2b7c1d9e11",
+                "987654321", "912345678", new BigDecimal("150.75"), "SUCCESS", null, Instant.now());
+        wallet = YankiWallet.builder()
+                .id("65f0c0ffee0000000000abcd")
+                .phoneNumber("987654321")
+                .documentNumber("12345678")
+                .imei("123456789012345")
+                .email("john.doe@example.com")
+                .balance(new BigDecimal("1500.00"))
+                .heldBalance(BigDecimal.ZERO)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        transactionEventJson = objectMapper.writeValueAsString(transactionEvent);
+        processedEventJson = objectMapper.writeValueAsString(processedEvent);
+        walletJson = objectMapper.writeValueAsString(wallet);
+    }
+    @Benchmark
+    public String serializeTransactionEvent() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(transactionEvent);
+    }
+    @Benchmark
+    public YankiTransactionEvent deserializeTransactionEvent() throws JsonProcessingException {
+        return objectMapper.readValue(transactionEventJson, YankiTransactionEvent.class);
+    }
+    @Benchmark
+    public String serializeProcessedEvent() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(processedEvent);
+    }
+    @Benchmark
+    public YankiTransactionProcessedEvent deserializeProcessedEvent() throws JsonProcessingException {
+        return objectMapper.readValue(processedEventJson, YankiTransactionProcessedEvent.class);
+    }
+    @Benchmark
+    public String serializeWallet() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(wallet);
+    }
+    @Benchmark
+    public YankiWallet deserializeWallet() throws JsonProcessingException {
+        return objectMapper.readValue(walletJson, YankiWallet.class);
+    }
+    @Benchmark
+    public BaseResponse<YankiWallet> buildBaseResponse() {
+        return new BaseResponse<>(200, "Wallet found", wallet);
+    }
+    @Benchmark
+    public String serializeBaseResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(new BaseResponse<>(200, "Wallet found", wallet));
+    }
+}
@@ -0,0 +1,91 @@
+package com.bank.yankiservice.benchmark;
+
+import com.bank.yankiservice.util.ValidationUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+    private String phoneNumber = "987654321";
+    private String documentNumber = "12345678";
+    private String imei = "123456789012345";
+    private String email = "john.doe@example.com";
+    private String invalidPhoneNumber = "98765x321";
+
+    private static void legacyValidate(String regex, String value, String message) {
+        if (value == null || !Pattern.matches(regex, value)) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    @Benchmark
+    public void validPhoneNumber() {
+        ValidationUtil.validatePhoneNumber(phoneNumber);
+    }
+    @Benchmark
+    public void validDocumentNumber() {
+        ValidationUtil.validateDocumentNumber(documentNumber);
+    }
+    @Benchmark
+    public void validImei() {
+        ValidationUtil.validateImei(imei);
+    }
+    @Benchmark
+    public void validEmail() {
+        ValidationUtil.validateEmail(email);
+    }
+    @Benchmark
+    public void validRegistration() {
+        ValidationUtil.validatePhoneNumber(phoneNumber);
+        ValidationUtil.validateDocumentNumber(documentNumber);
+        ValidationUtil.validateImei(imei);
+        ValidationUtil.validateEmail(email);
+    }
+    @Benchmark
+    public void invalidPhoneNumber(Blackhole blackhole) {
+        try {
+            ValidationUtil.validatePhoneNumber(invalidPhoneNumber);
+        } catch (IllegalArgumentException e) {
+            blackhole.consume(e);
+        }
+    }
+    @Benchmark
+    public boolean checkRegistration() {
+        return ValidationUtil.checkWallet(phoneNumber, documentNumber, imei, email).isValid();
+    }
+    @Benchmark
+    public String checkInvalidPhoneNumber() {
+        return ValidationUtil.checkPhoneNumber(invalidPhoneNumber).getMessage();
+    }
+    @Benchmark
+    public void legacyRegistration() {
+        legacyValidate("\\d{9,10}", phoneNumber, "Phone number must contain between 9 and 10 digits");
+        legacyValidate("\\d{8,12}", documentNumber, "Document number must contain between 8 and 12 digits");
+        legacyValidate("\\d{15}", imei, "IMEI must contain exactly 15 digits");
+        legacyValidate("^[\\w.%+-]+@[\\w.-]+\\.[a-zA-Z]{2,6}$", email, "Invalid email format");
+    }
+    @Benchmark
+    public void legacyInvalidPhoneNumber(Blackhole blackhole) {
+        try {
+            legacyValidate("\\d{9,10}", invalidPhoneNumber, "Phone number must contain between 9 and 10 digits");
+        } catch (IllegalArgumentException e) {
+            blackhole.consume(e);
+        }
+    }
+}
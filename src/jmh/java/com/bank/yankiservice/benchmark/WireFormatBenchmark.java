@@ -0,0 +1,96 @@
+package com.bank.yankiservice.benchmark;
+
+import com.bank.yankiservice.dto.transaction.YankiTransactionEvent;
+import com.bank.yankiservice.dto.transaction.YankiTransactionProcessedEvent;
+import com.bank.yankiservice.serialization.BinaryEventCodec;
+import com.bank.yankiservice.serialization.SchemaRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+// JSON bytes, as the Kafka serde produces them, against the binary event format for the two hottest topics.
+// Sizes are printed once per fork; BinaryEventCodecTest keeps the binary frame under half the JSON size.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+    private ObjectMapper objectMapper;
+    private BinaryEventCodec codec;
+    private YankiTransactionEvent transactionEvent;
+    private YankiTransactionProcessedEvent processedEvent;
+    private byte[] transactionEventJson;
+    private byte[] transactionEventBinary;
+    private byte[] processedEventJson;
+    private byte[] processedEventBinary;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        codec = new BinaryEventCodec(new SchemaRegistry());
+        transactionEvent = new YankiTransactionEvent("5f0c6a8e-4b1d-4f7e-9a41-0f2b7c1d9e11",
+                "987654321", "912345678", null, "4111111111111111", new BigDecimal("150.75"));
+        processedEvent = new YankiTransactionProcessedEvent("5f0c6a8e-4b1d-4f7e-9a41-0f2b7c1d9e11",
+                "987654321", "912345678", new BigDecimal("150.75"), "SUCCESS", null, Instant.now());
+        transactionEventJson = objectMapper.writeValueAsBytes(transactionEvent);
+        transactionEventBinary = codec.encode(transactionEvent);
+        processedEventJson = objectMapper.writeValueAsBytes(processedEvent);
+        processedEventBinary = codec.encode(processedEvent);
+        System.out.printf("%nYankiTransactionEvent: %d bytes JSON, %d bytes binary%n",
+                transactionEventJson.length, transactionEventBinary.length);
+        System.out.printf("YankiTransactionProcessedEvent: %d bytes JSON, %d bytes binary%n",
+                processedEventJson.length, processedEventBinary.length);
+    }
+    @Benchmark
+    public byte[] jsonSerializeTransactionEvent() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(transactionEvent);
+    }
+    @Benchmark
+    public byte[] binarySerializeTransactionEvent() {
+        return codec.encode(transactionEvent);
+    }
+    @Benchmark
+    public YankiTransactionEvent jsonDeserializeTransactionEvent() throws IOException {
+        return objectMapper.readValue(transactionEventJson, YankiTransactionEvent.class);
+    }
+    @Benchmark
+    public Object binaryDeserializeTransactionEvent() {
+        return codec.decode(transactionEventBinary);
+    }
+    @Benchmark
+    public byte[] jsonSerializeProcessedEvent() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(processedEvent);
+    }
+    @Benchmark
+    public byte[] binarySerializeProcessedEvent() {
+        return codec.encode(processedEvent);
+    }
+    @Benchmark
+    public YankiTransactionProcessedEvent jsonDeserializeProcessedEvent() throws IOException {
+        return objectMapper.readValue(processedEventJson, YankiTransactionProcessedEvent.class);
+    }
+    @Benchmark
+    public Object binaryDeserializeProcessedEvent() {
+        return codec.decode(processedEventBinary);
+    }
+}
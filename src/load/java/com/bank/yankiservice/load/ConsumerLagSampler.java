@@ -0,0 +1,70 @@
+package com.bank.yankiservice.load;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+public class ConsumerLagSampler implements AutoCloseable {
+    private final AdminClient adminClient;
+    private final String groupId;
+    private final String topic;
+    private long samples;
+    private long totalLag;
+    private long maxLag;
+    private long lastLag;
+
+    public ConsumerLagSampler(String bootstrapServers, String groupId, String topic) {
+        this.adminClient = AdminClient.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers));
+        this.groupId = groupId;
+        this.topic = topic;
+    }
+    public synchronized void sample() {
+        try {
+            Map<TopicPartition, OffsetAndMetadata> committed = adminClient.listConsumerGroupOffsets(groupId)
+                    .partitionsToOffsetAndMetadata().get(5, TimeUnit.SECONDS);
+            Map<TopicPartition, OffsetSpec> partitions = committed.keySet().stream()
+                    .filter(partition -> topic.equals(partition.topic()))
+                    .collect(Collectors.toMap(Function.identity(), partition -> OffsetSpec.latest()));
+            Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> latest = adminClient
+                    .listOffsets(partitions).all().get(5, TimeUnit.SECONDS);
+            long lag = latest.entrySet().stream()
+                    .mapToLong(entry -> entry.getValue().offset() - committed.get(entry.getKey()).offset())
+                    .sum();
+            samples++;
+            totalLag += lag;
+            maxLag = Math.max(maxLag, lag);
+            lastLag = lag;
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Failed to sample consumer lag of {}: {}", groupId, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    public synchronized Map<String, Object> summarize() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("groupId", groupId);
+        summary.put("topic", topic);
+        summary.put("samples", samples);
+        summary.put("avgLag", samples == 0 ? 0.0 : totalLag / (double) samples);
+        summary.put("maxLag", maxLag);
+        summary.put("finalLag", lastLag);
+        return summary;
+    }
+    @Override
+    public void close() {
+        adminClient.close();
+    }
+}
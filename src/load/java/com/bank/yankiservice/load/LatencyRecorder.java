@@ -0,0 +1,60 @@
+package com.bank.yankiservice.load;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LatencyRecorder {
+    private final String name;
+    private final AtomicLong errors = new AtomicLong();
+    private long[] samples = new long[1024];
+    private int size;
+    private volatile boolean recording;
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+    public void startRecording() {
+        recording = true;
+    }
+    public void stopRecording() {
+        recording = false;
+    }
+    public synchronized void record(long latencyNanos) {
+        if (!recording) {
+            return;
+        }
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = latencyNanos;
+    }
+    public void recordError() {
+        if (recording) {
+            errors.incrementAndGet();
+        }
+    }
+    public synchronized Map<String, Object> summarize(long elapsedNanos) {
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("name", name);
+        summary.put("count", size);
+        summary.put("errors", errors.get());
+        summary.put("tps", size / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1)));
+        summary.put("p50Ms", percentileMillis(sorted, 0.50));
+        summary.put("p95Ms", percentileMillis(sorted, 0.95));
+        summary.put("p99Ms", percentileMillis(sorted, 0.99));
+        summary.put("maxMs", sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1_000_000.0);
+        return summary;
+    }
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,133 @@
+package com.bank.yankiservice.load;
+
+import com.bank.yankiservice.YankiServiceApplication;
+import com.bank.yankiservice.cache.WalletCache;
+import com.bank.yankiservice.dto.yanki.YankiWalletRequest;
+import com.bank.yankiservice.repository.YankiWalletRepository;
+import com.bank.yankiservice.service.BalanceStreamService;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+public final class LoadHarness {
+    private static final String CONSUMER_GROUP = "yanki-service-group";
+    private static final BigDecimal SENDER_FUNDING = new BigDecimal("1000000000");
+    private static final String[] TOPICS = {
+        SettlementSimulator.REQUESTED_TOPIC, SettlementSimulator.PROCESSED_TOPIC,
+        "yanki.card.link.requested", "yanki.card.link.confirmed", "yanki.card.link.rejected",
+        "bank.account.balance.updated", "bootcoin.yanki.association", "bootcoin.transaction.yanki.requested"
+    };
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadProfile profile = LoadProfile.fromSystemProperties();
+        EmbeddedKafkaBroker broker = new EmbeddedKafkaBroker(1, false, profile.getPartitions(), TOPICS);
+        broker.afterPropertiesSet();
+        applicationProperties(broker.getBrokersAsString()).forEach(System::setProperty);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(YankiServiceApplication.class).run();
+        SettlementSimulator settlement = new SettlementSimulator(broker.getBrokersAsString(), profile);
+        Thread settlementThread = new Thread(settlement, "load-settlement");
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        List<String> violations;
+        try (ConsumerLagSampler lag = new ConsumerLagSampler(broker.getBrokersAsString(), CONSUMER_GROUP,
+                SettlementSimulator.PROCESSED_TOPIC)) {
+            settlementThread.start();
+            YankiClient client = new YankiClient("http://localhost:"
+                    + context.getEnvironment().getProperty("local.server.port"));
+            LoadReport report = new LoadReport();
+            List<VirtualUser> users = createUsers(profile, client, context, settlement, report);
+            AtomicBoolean stopped = new AtomicBoolean();
+            log.info("Running {} virtual users: {}s warm-up, {}s measured", users.size(),
+                    profile.getWarmupSeconds(), profile.getDurationSeconds());
+            Completable traffic = Flowable.fromIterable(users)
+                    .flatMapCompletable(user -> user.run(stopped::get), false, users.size())
+                    .cache();
+            traffic.subscribe(() -> { }, error -> log.error("Load traffic failed", error));
+            TimeUnit.SECONDS.sleep(profile.getWarmupSeconds());
+            report.start();
+            sampler.scheduleAtFixedRate(lag::sample, 0, 1, TimeUnit.SECONDS);
+            TimeUnit.SECONDS.sleep(profile.getDurationSeconds());
+            report.stop();
+            stopped.set(true);
+            sampler.shutdownNow();
+            traffic.blockingAwait(profile.getSettlementTimeoutMs() * 2, TimeUnit.MILLISECONDS);
+            log.info("Load report: {}", report.write(profile, lag.summarize()));
+            violations = report.violations(profile);
+        } finally {
+            sampler.shutdownNow();
+            settlement.stop();
+            settlementThread.join(TimeUnit.SECONDS.toMillis(10));
+            context.close();
+            broker.destroy();
+        }
+        violations.forEach(log::error);
+        System.exit(violations.isEmpty() ? 0 : 1);
+    }
+    private static Map<String, String> applicationProperties(String bootstrapServers) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.cloud.config.enabled", "false");
+        properties.put("eureka.client.enabled", "false");
+        properties.put("server.port", "0");
+        properties.put("spring.mongodb.embedded.version", System.getProperty("load.mongo.version", "4.0.21"));
+        properties.put("spring.data.mongodb.database", "yanki-load");
+        properties.put("spring.kafka.bootstrap-servers", bootstrapServers);
+        properties.put("spring.kafka.producer.key-serializer",
+                "org.apache.kafka.common.serialization.StringSerializer");
+        properties.put("spring.kafka.producer.value-serializer",
+                "org.springframework.kafka.support.serializer.JsonSerializer");
+        properties.put("spring.kafka.consumer.key-deserializer",
+                "org.apache.kafka.common.serialization.StringDeserializer");
+        properties.put("spring.kafka.consumer.value-deserializer",
+                "org.springframework.kafka.support.serializer.JsonDeserializer");
+        properties.put("spring.kafka.consumer.properties.spring.json.trusted.packages", "*");
+        properties.put("spring.kafka.consumer.auto-offset-reset", "earliest");
+        properties.put("jwt.secret", "load-harness-secret-load-harness-secret-0123456789");
+        properties.put("jwt.expiration", "3600000");
+        properties.put("logging.level.com.bank.yankiservice", "WARN");
+        properties.replaceAll((key, value) -> System.getProperty(key, value));
+        return properties;
+    }
+    private static List<VirtualUser> createUsers(LoadProfile profile, YankiClient client,
+                                                 ConfigurableApplicationContext context,
+                                                 SettlementSimulator settlement, LoadReport report) {
+        YankiWalletRepository repository = context.getBean(YankiWalletRepository.class);
+        WalletCache walletCache = context.getBean(WalletCache.class);
+        BalanceStreamService balanceStreamService = context.getBean(BalanceStreamService.class);
+        List<VirtualUser> users = new ArrayList<>(profile.getUsers());
+        for (int i = 0; i < profile.getUsers(); i++) {
+            YankiWalletRequest sender = client.nextIdentity();
+            YankiWalletRequest receiver = client.nextIdentity();
+            register(client, sender);
+            register(client, receiver);
+            repository.creditBalance(sender.getPhoneNumber(), SENDER_FUNDING)
+                    .flatMapCompletable(walletCache::evict)
+                    .blockingAwait();
+            String token = client.login(sender).blockingGet();
+            users.add(new VirtualUser(profile, client, balanceStreamService, settlement, report,
+                    sender, receiver.getPhoneNumber(), token, BigDecimal.ZERO));
+        }
+        return users;
+    }
+    private static void register(YankiClient client, YankiWalletRequest identity) {
+        int status = client.register(identity).blockingGet();
+        if (status != 201) {
+            throw new IllegalStateException("Failed to register " + identity.getPhoneNumber() + ": " + status);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.bank.yankiservice.load;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Getter
+public final class LoadProfile {
+    public enum Operation { REGISTER, LOGIN, TRANSFER }
+
+    private final int users;
+    private final long warmupSeconds;
+    private final long durationSeconds;
+    private final Map<Operation, Integer> mix;
+    private final int totalWeight;
+    private final BigDecimal transferAmount;
+    private final double settlementFailureRatio;
+    private final long settlementDelayMs;
+    private final long settlementTimeoutMs;
+    private final int partitions;
+    private final String report;
+    private final double minTps;
+    private final long maxP99Ms;
+
+    private LoadProfile() {
+        users = Integer.getInteger("load.users", 64);
+        warmupSeconds = Long.getLong("load.warmup-seconds", 10);
+        durationSeconds = Long.getLong("load.duration-seconds", 60);
+        mix = parseMix(System.getProperty("load.mix", "register=5,login=15,transfer=80"));
+        totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        transferAmount = new BigDecimal(System.getProperty("load.transfer-amount", "1.00"));
+        settlementFailureRatio = Double.parseDouble(System.getProperty("load.settlement.failure-ratio", "0.02"));
+        settlementDelayMs = Long.getLong("load.settlement.delay-ms", 0);
+        settlementTimeoutMs = Long.getLong("load.settlement.timeout-ms", 30000);
+        partitions = Integer.getInteger("load.partitions", 16);
+        report = System.getProperty("load.report", "target/load-report.json");
+        minTps = Double.parseDouble(System.getProperty("load.min-tps", "0"));
+        maxP99Ms = Long.getLong("load.max-p99-ms", 0);
+        if (users <= 0 || totalWeight <= 0) {
+            throw new IllegalArgumentException("load.users and the load.mix weights must be positive");
+        }
+    }
+    public static LoadProfile fromSystemProperties() {
+        return new LoadProfile();
+    }
+    public Operation nextOperation() {
+        int roll = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        return Operation.TRANSFER;
+    }
+    public boolean failNextSettlement() {
+        return ThreadLocalRandom.current().nextDouble() < settlementFailureRatio;
+    }
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            String[] entry = part.trim().split("=");
+            if (entry.length != 2) {
+                throw new IllegalArgumentException("Invalid load.mix entry: " + part);
+            }
+            weights.put(Operation.valueOf(entry[0].trim().toUpperCase()), Integer.parseInt(entry[1].trim()));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,83 @@
+package com.bank.yankiservice.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class LoadReport {
+    private final LatencyRecorder registrations = new LatencyRecorder("register");
+    private final LatencyRecorder logins = new LatencyRecorder("login");
+    private final LatencyRecorder acceptedTransfers = new LatencyRecorder("transfer.accepted");
+    private final LatencyRecorder settledTransfers = new LatencyRecorder("transfer.settled");
+    private final LatencyRecorder failedSettlements = new LatencyRecorder("transfer.settlement-failed");
+    private long startedAt;
+    private long stoppedAt;
+
+    public LatencyRecorder registrations() {
+        return registrations;
+    }
+    public LatencyRecorder logins() {
+        return logins;
+    }
+    public LatencyRecorder acceptedTransfers() {
+        return acceptedTransfers;
+    }
+    public LatencyRecorder settledTransfers() {
+        return settledTransfers;
+    }
+    public LatencyRecorder failedSettlements() {
+        return failedSettlements;
+    }
+    public void start() {
+        recorders().forEach(LatencyRecorder::startRecording);
+        startedAt = System.nanoTime();
+    }
+    public void stop() {
+        stoppedAt = System.nanoTime();
+        recorders().forEach(LatencyRecorder::stopRecording);
+    }
+    public Map<String, Object> write(LoadProfile profile, Map<String, Object> consumerLag) throws IOException {
+        long elapsed = stoppedAt - startedAt;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("users", profile.getUsers());
+        summary.put("durationSeconds", profile.getDurationSeconds());
+        summary.put("mix", profile.getMix());
+        summary.put("settlementFailureRatio", profile.getSettlementFailureRatio());
+        summary.put("operations", recorders().map(recorder -> recorder.summarize(elapsed))
+                .collect(Collectors.toList()));
+        summary.put("consumerLag", consumerLag);
+        Path path = Paths.get(profile.getReport());
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(path.toFile(), summary);
+        return summary;
+    }
+    public List<String> violations(LoadProfile profile) {
+        Map<String, Object> settled = settledTransfers.summarize(stoppedAt - startedAt);
+        List<String> violations = new ArrayList<>();
+        double tps = (double) settled.get("tps");
+        double p99 = (double) settled.get("p99Ms");
+        if (profile.getMinTps() > 0 && tps < profile.getMinTps()) {
+            violations.add(String.format("Settled TPS %.1f is below load.min-tps %.1f", tps, profile.getMinTps()));
+        }
+        if (profile.getMaxP99Ms() > 0 && p99 > profile.getMaxP99Ms()) {
+            violations.add(String.format("Settled p99 %.1f ms exceeds load.max-p99-ms %d", p99,
+                    profile.getMaxP99Ms()));
+        }
+        return violations;
+    }
+    private Stream<LatencyRecorder> recorders() {
+        return Stream.of(registrations, logins, acceptedTransfers, settledTransfers, failedSettlements);
+    }
+}
@@ -0,0 +1,124 @@
+package com.bank.yankiservice.load;
+
+import com.bank.yankiservice.dto.transaction.YankiTransactionEvent;
+import com.bank.yankiservice.dto.transaction.YankiTransactionProcessedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.Flowable;
+import io.reactivex.processors.BehaviorProcessor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+public class SettlementSimulator implements Runnable {
+    static final String REQUESTED_TOPIC = "yanki.transaction.requested";
+    static final String PROCESSED_TOPIC = "yanki.transaction.processed";
+
+    private final LoadProfile profile;
+    private final KafkaConsumer<String, String> consumer;
+    private final KafkaProducer<String, Object> producer;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, BehaviorProcessor<Long>> failuresBySender = new ConcurrentHashMap<>();
+    private final AtomicLong settled = new AtomicLong();
+    private volatile boolean running = true;
+
+    public SettlementSimulator(String bootstrapServers, LoadProfile profile) {
+        this.profile = profile;
+        this.consumer = new KafkaConsumer<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                ConsumerConfig.GROUP_ID_CONFIG, "load-settlement",
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
+                ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1000),
+                new StringDeserializer(), new StringDeserializer());
+        this.producer = new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                ProducerConfig.LINGER_MS_CONFIG, 1),
+                new StringSerializer(), new JsonSerializer<>());
+    }
+    public Flowable<Long> failures(String senderPhoneNumber) {
+        return failuresOf(senderPhoneNumber);
+    }
+    public long failureCount(String senderPhoneNumber) {
+        return failuresOf(senderPhoneNumber).getValue();
+    }
+    public long settledCount() {
+        return settled.get();
+    }
+    @Override
+    public void run() {
+        consumer.subscribe(Collections.singletonList(REQUESTED_TOPIC));
+        try {
+            while (running) {
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(100))) {
+                    settle(record);
+                }
+            }
+        } catch (WakeupException e) {
+            if (running) {
+                throw e;
+            }
+        } finally {
+            consumer.close();
+            producer.close();
+        }
+    }
+    public void stop() {
+        running = false;
+        consumer.wakeup();
+    }
+    private void settle(ConsumerRecord<String, String> requested) {
+        YankiTransactionEvent request;
+        try {
+            request = objectMapper.readValue(requested.value(), YankiTransactionEvent.class);
+        } catch (IOException e) {
+            log.warn("Skipping unreadable transaction request at offset {}: {}", requested.offset(), e.getMessage());
+            return;
+        }
+        if (profile.getSettlementDelayMs() > 0) {
+            try {
+                Thread.sleep(profile.getSettlementDelayMs());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        boolean failed = profile.failNextSettlement();
+        YankiTransactionProcessedEvent processed = new YankiTransactionProcessedEvent(request.getTransactionId(),
+                request.getSenderPhoneNumber(), request.getReceiverPhoneNumber(), request.getAmount(),
+                failed ? "FAILED" : "SUCCESS", failed ? "Simulated settlement failure" : null, Instant.now());
+        ProducerRecord<String, Object> record = new ProducerRecord<>(PROCESSED_TOPIC,
+                request.getSenderPhoneNumber(), processed);
+        requested.headers().forEach(header -> record.headers().add(header));
+        producer.send(record, (metadata, error) -> onPublished(request, failed, error));
+        settled.incrementAndGet();
+    }
+    private void onPublished(YankiTransactionEvent request, boolean failed, Exception error) {
+        if (error != null) {
+            log.warn("Failed to publish settlement of {}: {}", request.getTransactionId(), error.getMessage());
+        } else if (failed) {
+            BehaviorProcessor<Long> failures = failuresOf(request.getSenderPhoneNumber());
+            synchronized (failures) {
+                failures.onNext(failures.getValue() + 1);
+            }
+        }
+    }
+    private BehaviorProcessor<Long> failuresOf(String senderPhoneNumber) {
+        return failuresBySender.computeIfAbsent(senderPhoneNumber, key -> BehaviorProcessor.createDefault(0L));
+    }
+}
@@ -0,0 +1,122 @@
+package com.bank.yankiservice.load;
+
+import com.bank.yankiservice.dto.yanki.YankiWalletRequest;
+import com.bank.yankiservice.service.BalanceStreamService;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+@Slf4j
+public class VirtualUser {
+    private final LoadProfile profile;
+    private final YankiClient client;
+    private final BalanceStreamService balanceStreamService;
+    private final SettlementSimulator settlement;
+    private final LoadReport report;
+    private final YankiWalletRequest sender;
+    private final String receiverPhoneNumber;
+    private final String token;
+    private BigDecimal expectedReceiverBalance;
+
+    public VirtualUser(LoadProfile profile, YankiClient client, BalanceStreamService balanceStreamService,
+                       SettlementSimulator settlement, LoadReport report, YankiWalletRequest sender,
+                       String receiverPhoneNumber, String token, BigDecimal receiverBalance) {
+        this.profile = profile;
+        this.client = client;
+        this.balanceStreamService = balanceStreamService;
+        this.settlement = settlement;
+        this.report = report;
+        this.sender = sender;
+        this.receiverPhoneNumber = receiverPhoneNumber;
+        this.token = token;
+        this.expectedReceiverBalance = receiverBalance;
+    }
+    public Completable run(BooleanSupplier stopped) {
+        return Completable.defer(this::nextOperation).repeatUntil(stopped::getAsBoolean);
+    }
+    private Completable nextOperation() {
+        switch (profile.nextOperation()) {
+            case REGISTER:
+                return register();
+            case LOGIN:
+                return login();
+            default:
+                return transfer();
+        }
+    }
+    private Completable register() {
+        long start = System.nanoTime();
+        return client.register(client.nextIdentity())
+                .doOnSuccess(status -> {
+                    if (status == 201) {
+                        report.registrations().record(System.nanoTime() - start);
+                    } else {
+                        report.registrations().recordError();
+                    }
+                })
+                .ignoreElement()
+                .doOnError(error -> report.registrations().recordError())
+                .onErrorComplete();
+    }
+    private Completable login() {
+        long start = System.nanoTime();
+        return client.login(sender)
+                .doOnSuccess(ignored -> report.logins().record(System.nanoTime() - start))
+                .ignoreElement()
+                .doOnError(error -> report.logins().recordError())
+                .onErrorComplete();
+    }
+    private Completable transfer() {
+        long start = System.nanoTime();
+        long failuresBefore = settlement.failureCount(sender.getPhoneNumber());
+        BigDecimal target = expectedReceiverBalance.add(profile.getTransferAmount());
+        return client.transfer(token, sender.getPhoneNumber(), receiverPhoneNumber, profile.getTransferAmount())
+                .flatMapCompletable(status -> {
+                    if (status != 200) {
+                        report.acceptedTransfers().recordError();
+                        return Completable.complete();
+                    }
+                    report.acceptedTransfers().record(System.nanoTime() - start);
+                    return awaitSettlement(start, failuresBefore, target);
+                })
+                .doOnError(error -> report.acceptedTransfers().recordError())
+                .onErrorComplete();
+    }
+    private Completable awaitSettlement(long start, long failuresBefore, BigDecimal target) {
+        Maybe<Boolean> credited = balanceStreamService.streamBalance(receiverPhoneNumber)
+                .filter(balance -> balance.compareTo(target) >= 0)
+                .firstElement()
+                .map(balance -> true);
+        Maybe<Boolean> failed = settlement.failures(sender.getPhoneNumber())
+                .filter(failures -> failures > failuresBefore)
+                .firstElement()
+                .map(failures -> false);
+        return credited.ambWith(failed)
+                .timeout(profile.getSettlementTimeoutMs(), TimeUnit.MILLISECONDS)
+                .doOnSuccess(settled -> {
+                    long latency = System.nanoTime() - start;
+                    if (settled) {
+                        expectedReceiverBalance = target;
+                        report.settledTransfers().record(latency);
+                    } else {
+                        report.failedSettlements().record(latency);
+                    }
+                })
+                .doOnError(error -> {
+                    if (error instanceof TimeoutException) {
+                        // A late credit would otherwise satisfy the next transfer's target.
+                        expectedReceiverBalance = target;
+                    } else {
+                        log.warn("Balance stream of {} failed: {}", receiverPhoneNumber, error.getMessage());
+                    }
+                    report.settledTransfers().recordError();
+                })
+                .ignoreElement()
+                .onErrorComplete();
+    }
+}
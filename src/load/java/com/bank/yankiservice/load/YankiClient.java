@@ -0,0 +1,58 @@
+package com.bank.yankiservice.load;
+
+import com.bank.yankiservice.dto.BaseResponse;
+import com.bank.yankiservice.dto.login.LoginRequest;
+import com.bank.yankiservice.dto.transaction.YankiTransactionRequest;
+import com.bank.yankiservice.dto.yanki.YankiWalletRequest;
+import io.reactivex.Single;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class YankiClient {
+    private static final ParameterizedTypeReference<BaseResponse<String>> TOKEN_RESPONSE =
+            new ParameterizedTypeReference<BaseResponse<String>>() { };
+
+    private final WebClient webClient;
+    private final AtomicLong identities = new AtomicLong();
+
+    public YankiClient(String baseUrl) {
+        this.webClient = WebClient.builder().baseUrl(baseUrl + "/api/yanki").build();
+    }
+    public YankiWalletRequest nextIdentity() {
+        long sequence = identities.incrementAndGet();
+        YankiWalletRequest request = new YankiWalletRequest();
+        request.setPhoneNumber(String.format("9%08d", sequence));
+        request.setDocumentNumber(String.format("%08d", sequence));
+        request.setImei(String.format("%015d", sequence));
+        request.setEmail("load" + sequence + "@example.com");
+        return request;
+    }
+    public Single<Integer> register(YankiWalletRequest request) {
+        return status(webClient.post().uri("/register").bodyValue(request));
+    }
+    public Single<String> login(YankiWalletRequest identity) {
+        return Single.fromPublisher(webClient.post().uri("/login")
+                .bodyValue(new LoginRequest(identity.getPhoneNumber(), identity.getDocumentNumber()))
+                .exchangeToMono(response -> response.bodyToMono(TOKEN_RESPONSE)))
+                .map(response -> {
+                    if (response.getData() == null) {
+                        throw new IllegalStateException("Login failed: " + response.getMessage());
+                    }
+                    return response.getData();
+                });
+    }
+    public Single<Integer> transfer(String token, String senderPhoneNumber, String receiverPhoneNumber,
+                                    BigDecimal amount) {
+        return status(webClient.post().uri("/transaction")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .bodyValue(new YankiTransactionRequest(senderPhoneNumber, receiverPhoneNumber, amount)));
+    }
+    private static Single<Integer> status(WebClient.RequestHeadersSpec<?> request) {
+        return Single.fromPublisher(request.exchangeToMono(response -> response.releaseBody()
+                .thenReturn(response.rawStatusCode())));
+    }
+}
@@ -0,0 +1,78 @@
+package com.bank.yankiservice.cache;
+
+import com.bank.yankiservice.model.YankiWallet;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@ConditionalOnProperty(prefix = "yanki.cache.redis", name = "enabled", havingValue = "true")
+@Slf4j
+public class RedisWalletStore {
+    static final String INVALIDATION_CHANNEL = "yanki:wallet:invalidate";
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ReactiveRedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+
+    public RedisWalletStore(ReactiveStringRedisTemplate redisTemplate,
+                            ReactiveRedisMessageListenerContainer listenerContainer,
+                            ObjectMapper objectMapper,
+                            @Value("${yanki.cache.redis.ttl-seconds:300}") long ttlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+    }
+    public Maybe<YankiWallet> get(String key) {
+        return Flowable.fromPublisher(redisTemplate.opsForValue().get(key))
+                .singleElement()
+                .map(json -> objectMapper.readValue(json, YankiWallet.class))
+                .onErrorResumeNext(error -> {
+                    log.warn("Redis lookup failed for {}: {}", key, error.getMessage());
+                    return Maybe.empty();
+                });
+    }
+    public Completable put(List<String> keys, YankiWallet wallet) {
+        return Completable.defer(() -> {
+            String json = objectMapper.writeValueAsString(wallet);
+            return Flowable.fromIterable(keys)
+                    .flatMapCompletable(key -> Completable.fromPublisher(
+                            redisTemplate.opsForValue().set(key, json, ttl)));
+        }).onErrorComplete(error -> {
+            log.warn("Redis write failed for {}: {}", keys, error.getMessage());
+            return true;
+        });
+    }
+    public Completable evict(List<String> keys) {
+        return Completable.fromPublisher(redisTemplate.delete(Flowable.fromIterable(keys)))
+                .andThen(Completable.fromPublisher(
+                        redisTemplate.convertAndSend(INVALIDATION_CHANNEL, String.join(",", keys))))
+                .onErrorComplete(error -> {
+                    log.warn("Redis eviction failed for {}: {}", keys, error.getMessage());
+                    return true;
+                });
+    }
+    public Flowable<String> invalidations() {
+        return Flowable.fromPublisher(listenerContainer.receive(ChannelTopic.of(INVALIDATION_CHANNEL)))
+                .map(ReactiveSubscription.Message::getMessage)
+                .flatMapIterable(message -> Arrays.asList(message.split(",")))
+                .retryWhen(errors -> errors
+                        .doOnNext(error -> log.warn("Wallet invalidation channel dropped: {}", error.getMessage()))
+                        .delay(5, TimeUnit.SECONDS));
+    }
+}
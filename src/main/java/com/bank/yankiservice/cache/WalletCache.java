@@ -0,0 +1,13 @@
+package com.bank.yankiservice.cache;
+
+import com.bank.yankiservice.model.YankiWallet;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+
+public interface WalletCache {
+    Maybe<YankiWallet> findByPhoneNumber(String phoneNumber);
+    Maybe<YankiWallet> findByDocumentNumber(String documentNumber);
+    Maybe<YankiWallet> findByPhoneNumberAndDocumentNumber(String phoneNumber, String documentNumber);
+    Completable put(YankiWallet wallet);
+    Completable evict(YankiWallet wallet);
+}
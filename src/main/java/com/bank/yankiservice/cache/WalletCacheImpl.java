@@ -0,0 +1,141 @@
+package com.bank.yankiservice.cache;
+
+import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.repository.YankiWalletRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.disposables.Disposable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+@Component
+@Slf4j
+public class WalletCacheImpl implements WalletCache {
+    private static final String PHONE_KEY_PREFIX = "yanki:wallet:phone:";
+    private static final String DOCUMENT_KEY_PREFIX = "yanki:wallet:document:";
+    private final YankiWalletRepository repository;
+    private final RedisWalletStore redisStore;
+    private final Cache<String, YankiWallet> localCache;
+    private final AtomicLong evictions = new AtomicLong();
+    private Disposable invalidationSubscription;
+
+    public WalletCacheImpl(YankiWalletRepository repository,
+                           Optional<RedisWalletStore> redisStore,
+                           @Value("${yanki.cache.local.max-size:100000}") long maxSize,
+                           @Value("${yanki.cache.local.ttl-seconds:30}") long ttlSeconds) {
+        this.repository = repository;
+        this.redisStore = redisStore.orElse(null);
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+    @PostConstruct
+    public void subscribeToInvalidations() {
+        if (redisStore != null) {
+            invalidationSubscription = redisStore.invalidations()
+                    .subscribe(key -> {
+                        evictions.incrementAndGet();
+                        localCache.invalidate(key);
+                    },
+                        error -> log.error("Wallet invalidation listener stopped: {}", error.getMessage()));
+        }
+    }
+    @PreDestroy
+    public void stop() {
+        if (invalidationSubscription != null) {
+            invalidationSubscription.dispose();
+        }
+    }
+    @Override
+    public Maybe<YankiWallet> findByPhoneNumber(String phoneNumber) {
+        return lookup(PHONE_KEY_PREFIX + phoneNumber, () -> repository.findByPhoneNumber(phoneNumber));
+    }
+    @Override
+    public Maybe<YankiWallet> findByDocumentNumber(String documentNumber) {
+        return lookup(DOCUMENT_KEY_PREFIX + documentNumber, () -> repository.findByDocumentNumber(documentNumber));
+    }
+    @Override
+    public Maybe<YankiWallet> findByPhoneNumberAndDocumentNumber(String phoneNumber, String documentNumber) {
+        return findByPhoneNumber(phoneNumber)
+                .filter(wallet -> Objects.equals(documentNumber, wallet.getDocumentNumber()));
+    }
+    @Override
+    public Completable put(YankiWallet wallet) {
+        return Completable.defer(() -> {
+            List<String> keys = keysOf(wallet);
+            YankiWallet snapshot = copy(wallet);
+            keys.forEach(key -> localCache.put(key, snapshot));
+            return redisStore != null ? redisStore.put(keys, snapshot) : Completable.complete();
+        });
+    }
+    @Override
+    public Completable evict(YankiWallet wallet) {
+        return Completable.defer(() -> {
+            List<String> keys = keysOf(wallet);
+            evictions.incrementAndGet();
+            localCache.invalidateAll(keys);
+            return redisStore != null ? redisStore.evict(keys) : Completable.complete();
+        });
+    }
+    // A wallet read before an eviction may predate the write that evicted it, so a load that an eviction raced is
+    // returned but not cached. Evictions are counted rather than tracked per key: a load that sees any of them skips
+    // the fill, and one that lands between the check and the fill is undone right after it.
+    private Maybe<YankiWallet> lookup(String key, Supplier<Maybe<YankiWallet>> loader) {
+        return Maybe.defer(() -> {
+            YankiWallet cached = localCache.getIfPresent(key);
+            if (cached != null) {
+                return Maybe.just(copy(cached));
+            }
+            long generation = evictions.get();
+            Maybe<YankiWallet> remote = redisStore != null ? redisStore.get(key) : Maybe.empty();
+            return remote
+                    .doOnSuccess(wallet -> {
+                        if (evictions.get() == generation) {
+                            List<String> keys = keysOf(wallet);
+                            keys.forEach(k -> localCache.put(k, wallet));
+                            if (evictions.get() != generation) {
+                                localCache.invalidateAll(keys);
+                            }
+                        }
+                    })
+                    .switchIfEmpty(Maybe.defer(loader::get)
+                            .flatMap(wallet -> fill(wallet, generation).andThen(Maybe.just(wallet))))
+                    .map(WalletCacheImpl::copy);
+        });
+    }
+    private Completable fill(YankiWallet wallet, long generation) {
+        if (evictions.get() != generation) {
+            return Completable.complete();
+        }
+        return put(wallet).andThen(Completable.defer(() -> evictions.get() == generation
+                ? Completable.complete()
+                : evict(wallet)));
+    }
+    private static List<String> keysOf(YankiWallet wallet) {
+        List<String> keys = new ArrayList<>(2);
+        if (wallet.getPhoneNumber() != null) {
+            keys.add(PHONE_KEY_PREFIX + wallet.getPhoneNumber());
+        }
+        if (wallet.getDocumentNumber() != null) {
+            keys.add(DOCUMENT_KEY_PREFIX + wallet.getDocumentNumber());
+        }
+        return keys;
+    }
+    private static YankiWallet copy(YankiWallet wallet) {
+        return wallet.toBuilder().build();
+    }
+}
@@ -0,0 +1,156 @@
+package com.bank.yankiservice.config;
+
+import com.bank.yankiservice.model.OutboxEvent;
+import com.bank.yankiservice.model.ProcessedEvent;
+import com.bank.yankiservice.model.YankiTransaction;
+import com.bank.yankiservice.model.YankiWallet;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+@Component
+@Slf4j
+public class MongoIndexInitializer {
+    static final String MIGRATIONS_COLLECTION = "schemaMigrations";
+    static final String TRANSACTION_TIMESTAMPS_MIGRATION = "transaction-timestamps-to-dates";
+    private static final int MILLIS_TIMESTAMP_LENGTH = "yyyy-MM-ddTHH:mm:ss.SSS".length();
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final long processedEventRetentionDays;
+
+    public MongoIndexInitializer(
+            ReactiveMongoTemplate mongoTemplate,
+            @Value("${yanki.settlement.dedup.retention-days:7}") long processedEventRetentionDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.processedEventRetentionDays = processedEventRetentionDays;
+    }
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        Flux.concat(
+                migrateTransactionTimestamps(),
+                migrateWalletBalances(),
+                uniqueIndex("phoneNumber", YankiWallet.PHONE_NUMBER_INDEX),
+                uniqueIndex("documentNumber", YankiWallet.DOCUMENT_NUMBER_INDEX),
+                uniqueIndex("imei", YankiWallet.IMEI_INDEX),
+                mongoTemplate.indexOps(YankiWallet.class)
+                        .ensureIndex(new Index().on("holds.expiresAt", Sort.Direction.ASC)
+                                .named("holds_expiresAt")
+                                .sparse()),
+                mongoTemplate.indexOps(YankiWallet.class)
+                        .ensureIndex(new Index().on("balanceStripes", Sort.Direction.ASC)
+                                .named("balanceStripes")
+                                .sparse()),
+                mongoTemplate.indexOps(OutboxEvent.class)
+                        .ensureIndex(new Index()
+                                .on("status", Sort.Direction.ASC)
+                                .on("nextAttemptAt", Sort.Direction.ASC)
+                                .on("_id", Sort.Direction.ASC)
+                                .named("status_nextAttemptAt_id")),
+                historyIndex("senderPhoneNumber", "sender_timestamp_id"),
+                historyIndex("receiverPhoneNumber", "receiver_timestamp_id"),
+                mongoTemplate.indexOps(ProcessedEvent.class)
+                        .ensureIndex(new Index().on("processedAt", Sort.Direction.ASC)
+                                .named("processedAt_ttl")
+                                .expire(Duration.ofDays(processedEventRetentionDays))))
+                .subscribe(name -> log.info("Ensured index {}", name),
+                    error -> log.error("Failed to ensure index: {}", error.getMessage()));
+    }
+    // Transactions written before timestamps were mapped to dates store LocalDateTime.toString(): no zone and up
+    // to nanosecond fractions. Spring writes LocalDateTime in the JVM zone, so strings are read in that zone, cut
+    // to milliseconds, and left untouched if they still do not parse. Runs once per database.
+    private Mono<String> migrateTransactionTimestamps() {
+        String collectionName = mongoTemplate.getCollectionName(YankiTransaction.class);
+        Document millis = new Document("$cond", List.of(
+                new Document("$gt", List.of(new Document("$strLenCP", "$timestamp"), MILLIS_TIMESTAMP_LENGTH)),
+                new Document("$substrCP", List.of("$timestamp", 0, MILLIS_TIMESTAMP_LENGTH)),
+                "$timestamp"));
+        Document toDate = new Document("$dateFromString", new Document("dateString", millis)
+                .append("timezone", ZoneId.systemDefault().getId())
+                .append("onError", "$timestamp"));
+        Mono<Long> migration = mongoTemplate.getCollection(collectionName)
+                .flatMap(collection -> Mono.from(collection.updateMany(
+                        Filters.type("timestamp", BsonType.STRING),
+                        List.of(new Document("$set", new Document("timestamp", toDate)))))
+                        .doOnNext(result -> log.info("Converted {} transaction timestamps to dates",
+                                result.getModifiedCount()))
+                        .then(Mono.from(collection.countDocuments(Filters.type("timestamp", BsonType.STRING)))))
+                .doOnNext(remaining -> {
+                    if (remaining > 0) {
+                        log.warn("{} transaction timestamps could not be parsed and are still strings", remaining);
+                    }
+                });
+        return runOnce(TRANSACTION_TIMESTAMPS_MIGRATION, migration)
+                .onErrorResume(error -> {
+                    log.error("Failed to convert transaction timestamps: {}", error.getMessage());
+                    return Mono.empty();
+                });
+    }
+    // Applies a migration unless the migrations collection records it, and records it once it succeeds. A failed
+    // migration is retried on the next startup.
+    private Mono<String> runOnce(String id, Mono<?> migration) {
+        return mongoTemplate.getCollection(MIGRATIONS_COLLECTION)
+                .flatMap(migrations -> Mono.from(migrations.find(Filters.eq("_id", id)).first())
+                        .hasElement()
+                        .filter(applied -> !applied)
+                        .flatMap(pending -> migration.then(Mono.from(migrations.insertOne(new Document("_id", id)
+                                .append("appliedAt", new Date())))))
+                        .doOnNext(result -> log.info("Applied migration {}", id)))
+                .then(Mono.<String>empty());
+    }
+    // Wallets written before balances were mapped to Decimal128 store them as strings, which the numeric gte
+    // guards on debits and holds never match.
+    private Mono<String> migrateWalletBalances() {
+        String collectionName = mongoTemplate.getCollectionName(YankiWallet.class);
+        return mongoTemplate.getCollection(collectionName)
+                .flatMapMany(collection -> Flux.concat(
+                        convertToDecimal(collection, "balance"),
+                        convertToDecimal(collection, "heldBalance")))
+                .doOnNext(result -> {
+                    if (result.getModifiedCount() > 0) {
+                        log.info("Converted {} wallet amounts to decimals", result.getModifiedCount());
+                    }
+                })
+                .then(Mono.<String>empty())
+                .onErrorResume(error -> {
+                    log.error("Failed to convert wallet balances: {}", error.getMessage());
+                    return Mono.empty();
+                });
+    }
+    private static Mono<UpdateResult> convertToDecimal(MongoCollection<Document> collection, String field) {
+        return Mono.from(collection.updateMany(
+                Filters.type(field, BsonType.STRING),
+                List.of(new Document("$set", new Document(field, new Document("$toDecimal", "$" + field))))));
+    }
+    private Mono<String> historyIndex(String phoneField, String name) {
+        return mongoTemplate.indexOps(YankiTransaction.class)
+                .ensureIndex(new Index()
+                        .on(phoneField, Sort.Direction.ASC)
+                        .on("timestamp", Sort.Direction.DESC)
+                        .on("_id", Sort.Direction.DESC)
+                        .named(name));
+    }
+    private Mono<String> uniqueIndex(String field, String name) {
+        return mongoTemplate.indexOps(YankiWallet.class)
+                .ensureIndex(new Index().on(field, Sort.Direction.ASC).named(name).unique())
+                .onErrorResume(error -> {
+                    log.error("Failed to ensure index {}: {}", name, error.getMessage());
+                    return Mono.empty();
+                });
+    }
+}
@@ -0,0 +1,21 @@
+package com.bank.yankiservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    // The scheduled jobs block while they run (the outbox relay drains until a batch comes back short), so they
+    // get a thread each instead of queueing behind one another on a single-threaded scheduler.
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${yanki.scheduling.pool-size:4}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("yanki-scheduled-");
+        return scheduler;
+    }
+}
@@ -45,12 +45,11 @@ public class SecurityConfig {
     @Bean
     public ReactiveAuthenticationManager authenticationManager() {
         return authentication -> {
-            String token = authentication.getCredentials().toString();
-            if (jwtProvider.validateToken(token)) {
-                String username = jwtProvider.getUsernameFromToken(token);
-                return Mono.just(new UsernamePasswordAuthenticationToken(username, null, List.of()));
+            String username = jwtProvider.authenticate(authentication.getCredentials().toString());
+            if (username == null) {
+                return Mono.empty();
             }
-            return Mono.empty();
+            return Mono.just(new UsernamePasswordAuthenticationToken(username, null, List.of()));
         };
     }
     @Bean
@@ -3,29 +3,46 @@ package com.bank.yankiservice.controller;
 import com.bank.yankiservice.dto.BaseResponse;
 import com.bank.yankiservice.dto.cardlink.CardLinkRequestedEvent;
 import com.bank.yankiservice.dto.login.LoginRequest;
+import com.bank.yankiservice.dto.transaction.YankiBatchTransactionRequest;
+import com.bank.yankiservice.dto.transaction.YankiBatchTransactionResult;
+import com.bank.yankiservice.dto.transaction.YankiTransactionPage;
 import com.bank.yankiservice.dto.transaction.YankiTransactionRequest;
 import com.bank.yankiservice.dto.yanki.YankiWalletRequest;
+import com.bank.yankiservice.model.YankiTransaction;
 import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.resilience.DependencyUnavailableException;
 import com.bank.yankiservice.security.JwtProvider;
+import com.bank.yankiservice.service.BalanceStreamService;
+import com.bank.yankiservice.service.TransactionHistoryService;
 import com.bank.yankiservice.service.YankiService;
-import com.google.common.net.HttpHeaders;
+import com.bank.yankiservice.tracing.TraceHeaders;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/yanki")
 @RequiredArgsConstructor
 @Slf4j
 public class YankiController {
+    static final long BALANCE_HEARTBEAT_SECONDS = 15;
+    static final String DEPENDENCY_UNAVAILABLE_MESSAGE = "Service temporarily unavailable, please retry later";
     private final YankiService yankiService;
     private final JwtProvider jwtProvider;
+    private final TransactionHistoryService transactionHistoryService;
+    private final BalanceStreamService balanceStreamService;
 
     @PostMapping("/login")
     public Single<ResponseEntity<BaseResponse<String>>> login(@RequestBody LoginRequest request) {
@@ -42,14 +59,12 @@ public class YankiController {
     }
     @PostMapping("/associate-card")
     public Single<BaseResponse<CardLinkRequestedEvent>> associateCard(
-            @RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader,
+            @AuthenticationPrincipal String authenticatedPhoneNumber,
             @RequestBody CardLinkRequestedEvent request) {
 
-        if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
+        if (authenticatedPhoneNumber == null) {
             return Single.just(new BaseResponse<>(401, "Missing or invalid token", null));
         }
-        String token = authorizationHeader.substring(7);
-        String authenticatedPhoneNumber = jwtProvider.getUsernameFromToken(token);
         if (!authenticatedPhoneNumber.equals(request.getPhoneNumber())) {
             return Single.just(new BaseResponse<>(403, "You can " +
                 "only make the association from your registered phone number", null));
@@ -60,39 +75,102 @@ public class YankiController {
                 .andThen(Single.just(new BaseResponse<>(HttpStatus.OK.value(),
                     "Card link request successfully sent",
                     request)))
-                .onErrorReturn(e -> new BaseResponse<>(HttpStatus.BAD_REQUEST.value(),
-                    e.getMessage(), null));
+                .onErrorReturn(e -> new BaseResponse<>(statusFor(e).value(), messageFor(e), null));
     }
 
     @PostMapping("/transaction")
     public Single<ResponseEntity<BaseResponse<Object>>> processTransaction(
-            @RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader,
+            @AuthenticationPrincipal String authenticatedPhoneNumber,
+            @RequestHeader(value = TraceHeaders.CORRELATION_ID, required = false) String correlationId,
             @RequestBody YankiTransactionRequest request) {
-        if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
+        if (authenticatedPhoneNumber == null) {
             return Single.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(new BaseResponse<>(401, "Missing or invalid token", null)));
         }
-        String token = authorizationHeader.substring(7);
-        String authenticatedPhoneNumber = jwtProvider.getUsernameFromToken(token);
         if (!authenticatedPhoneNumber.equals(request.getSenderPhoneNumber())) {
             return Single.just(ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(new BaseResponse<>(403, "You can only " +
                         "make transactions from your registered phone number", null)));
         }
+        String traceId = TraceHeaders.orNew(correlationId);
         return yankiService.processYankiTransaction(
                 request.getSenderPhoneNumber(),
                 request.getReceiverPhoneNumber(),
-                request.getAmount()
+                request.getAmount(),
+                traceId
         ).toSingleDefault(
-                ResponseEntity.ok(new BaseResponse<>(HttpStatus.OK.value(), "Transaction processed successfully", null))
+                ResponseEntity.ok()
+                        .header(TraceHeaders.CORRELATION_ID, traceId)
+                        .body(new BaseResponse<>(HttpStatus.OK.value(), "Transaction processed successfully", null))
         ).onErrorReturn(error -> {
-            log.error("Error processing transaction: {}", error.getMessage());
+            log.error("Error processing transaction {}: {}", traceId, error.getMessage());
             BaseResponse<Object> errorResponse = new BaseResponse<>(
-                HttpStatus.BAD_REQUEST.value(),
-                error.getMessage(), null);
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+                statusFor(error).value(),
+                messageFor(error), null);
+            return ResponseEntity.status(statusFor(error))
+                    .header(TraceHeaders.CORRELATION_ID, traceId)
+                    .body(errorResponse);
         });
     }
+    @PostMapping("/transactions/batch")
+    public Single<ResponseEntity<BaseResponse<YankiBatchTransactionResult>>> processTransactionBatch(
+            @AuthenticationPrincipal String authenticatedPhoneNumber,
+            @RequestHeader(value = TraceHeaders.CORRELATION_ID, required = false) String correlationId,
+            @RequestBody YankiBatchTransactionRequest request) {
+        if (authenticatedPhoneNumber == null) {
+            return Single.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new BaseResponse<>(401, "Missing or invalid token", null)));
+        }
+        if (!authenticatedPhoneNumber.equals(request.getSenderPhoneNumber())) {
+            return Single.just(ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(new BaseResponse<>(403, "You can only " +
+                        "make transactions from your registered phone number", null)));
+        }
+        String traceId = TraceHeaders.orNew(correlationId);
+        return yankiService.processYankiTransactionBatch(request.getSenderPhoneNumber(), request.getTransfers(),
+                        traceId)
+                .map(result -> ResponseEntity.ok()
+                        .header(TraceHeaders.CORRELATION_ID, traceId)
+                        .body(new BaseResponse<>(HttpStatus.OK.value(), "Batch processed successfully", result)))
+                .onErrorReturn(error -> {
+                    log.error("Error processing transaction batch {}: {}", traceId, error.getMessage());
+                    return ResponseEntity.status(statusFor(error))
+                            .header(TraceHeaders.CORRELATION_ID, traceId)
+                            .body(new BaseResponse<>(statusFor(error).value(), messageFor(error), null));
+                });
+    }
+    @GetMapping(value = "/{phoneNumber}/transactions", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Single<ResponseEntity<BaseResponse<YankiTransactionPage>>> getTransactionHistory(
+            @AuthenticationPrincipal String authenticatedPhoneNumber,
+            @PathVariable String phoneNumber,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        if (authenticatedPhoneNumber == null) {
+            return Single.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new BaseResponse<>(401, "Missing or invalid token", null)));
+        }
+        if (!authenticatedPhoneNumber.equals(phoneNumber)) {
+            return Single.just(ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(new BaseResponse<>(403, "You can only view your own transactions", null)));
+        }
+        return transactionHistoryService.getHistory(phoneNumber, cursor, limit)
+                .map(page -> ResponseEntity.ok(new BaseResponse<>(HttpStatus.OK.value(), "Transactions found", page)))
+                .onErrorReturn(error -> ResponseEntity.status(statusFor(error))
+                        .body(new BaseResponse<>(statusFor(error).value(), messageFor(error), null)));
+    }
+    @GetMapping(value = "/{phoneNumber}/transactions", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flowable<YankiTransaction>> streamTransactionHistory(
+            @AuthenticationPrincipal String authenticatedPhoneNumber,
+            @PathVariable String phoneNumber,
+            @RequestParam(required = false) String cursor) {
+        if (authenticatedPhoneNumber == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!authenticatedPhoneNumber.equals(phoneNumber)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(transactionHistoryService.streamHistory(phoneNumber, cursor));
+    }
     @PostMapping("/register")
     public Single<ResponseEntity<BaseResponse<YankiWallet>>> registerWallet(
             @Valid @RequestBody YankiWalletRequest request) {
@@ -102,9 +180,9 @@ public class YankiController {
                         body(response))
                 .onErrorReturn(error -> {
                     BaseResponse<YankiWallet> errorResponse = new BaseResponse<>(
-                        HttpStatus.BAD_REQUEST.value(),
-                        error.getMessage(), null);
-                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+                        statusFor(error).value(),
+                        messageFor(error), null);
+                    return ResponseEntity.status(statusFor(error)).body(errorResponse);
                 });
     }
     @GetMapping("/{id}")
@@ -115,13 +193,11 @@ public class YankiController {
     }
     @GetMapping("/phone/{phoneNumber}")
     public Single<BaseResponse<YankiWallet>> getWalletByPhoneNumber(
-            @RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader,
+            @AuthenticationPrincipal String authenticatedPhoneNumber,
             @PathVariable String phoneNumber) {
-        if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
+        if (authenticatedPhoneNumber == null) {
             return Single.just(new BaseResponse<>(401, "Missing or invalid token", null));
         }
-        String token = authorizationHeader.substring(7);
-        String authenticatedPhoneNumber = jwtProvider.getUsernameFromToken(token);
         if (!authenticatedPhoneNumber.equals(phoneNumber)) {
             return Single.just(new BaseResponse<>(403, "You can only view your own wallet", null));
         }
@@ -129,6 +205,28 @@ public class YankiController {
                 .map(wallet -> new BaseResponse<>(HttpStatus.OK.value(), "Wallet found", wallet))
                 .switchIfEmpty(Single.just(new BaseResponse<>(HttpStatus.NOT_FOUND.value(), "Wallet not found", null)));
     }
+    @GetMapping(value = "/phone/{phoneNumber}/balance/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flowable<ServerSentEvent<BigDecimal>>> streamBalance(
+            @AuthenticationPrincipal String authenticatedPhoneNumber,
+            @PathVariable String phoneNumber) {
+        if (authenticatedPhoneNumber == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!authenticatedPhoneNumber.equals(phoneNumber)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        Flowable<ServerSentEvent<BigDecimal>> balances = balanceStreamService.streamBalance(phoneNumber)
+                .map(balance -> ServerSentEvent.builder(balance).event("balance").build());
+        Flowable<ServerSentEvent<BigDecimal>> heartbeats = Flowable
+                .interval(BALANCE_HEARTBEAT_SECONDS, TimeUnit.SECONDS)
+                .onBackpressureDrop()
+                .map(tick -> ServerSentEvent.<BigDecimal>builder().comment("keep-alive").build());
+        return ResponseEntity.ok(Flowable.merge(balances, heartbeats)
+                .onErrorReturn(error -> ServerSentEvent.<BigDecimal>builder()
+                        .event("error")
+                        .comment(error.getMessage())
+                        .build()));
+    }
     @GetMapping("/document/{documentNumber}")
     public Single<BaseResponse<YankiWallet>> getWalletByDocument(@PathVariable String documentNumber) {
         return yankiService.getWalletByDocument(documentNumber)
@@ -137,17 +235,14 @@ public class YankiController {
     }
     @PutMapping("/{id}")
     public Single<BaseResponse<YankiWallet>> updateWallet(
-            @RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader,
+            @AuthenticationPrincipal String authenticatedPhoneNumber,
             @PathVariable String id,
             @RequestBody YankiWalletRequest request) {
 
-        if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
+        if (authenticatedPhoneNumber == null) {
             return Single.just(new BaseResponse<YankiWallet>(401, "Missing or invalid token", null));
         }
 
-        String token = authorizationHeader.substring(7);
-        String authenticatedPhoneNumber = jwtProvider.getUsernameFromToken(token);
-
         return yankiService.getWalletById(id)
                 .flatMap(wallet -> {
                     if (!wallet.getPhoneNumber().equals(authenticatedPhoneNumber)) {
@@ -172,13 +267,11 @@ public class YankiController {
     }
     @DeleteMapping("/{id}")
     public Single<BaseResponse<Object>> deleteWallet(
-            @RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader,
+            @AuthenticationPrincipal String authenticatedPhoneNumber,
             @PathVariable String id) {
-        if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
+        if (authenticatedPhoneNumber == null) {
             return Single.just(new BaseResponse<>(401, "Missing or invalid token", null));
         }
-        String token = authorizationHeader.substring(7);
-        String authenticatedPhoneNumber = jwtProvider.getUsernameFromToken(token);
 
         return yankiService.getWalletById(id)
                 .flatMap(wallet -> {
@@ -196,5 +289,19 @@ public class YankiController {
                 .switchIfEmpty(Maybe.just(new BaseResponse<>(HttpStatus.NOT_FOUND.value(), "Wallet not found", null)))
                 .toSingle();
     }
+    @ExceptionHandler(DependencyUnavailableException.class)
+    public ResponseEntity<BaseResponse<Object>> dependencyUnavailable(DependencyUnavailableException error) {
+        log.warn("Failing fast, {}", error.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new BaseResponse<>(HttpStatus.SERVICE_UNAVAILABLE.value(), DEPENDENCY_UNAVAILABLE_MESSAGE, null));
+    }
+    private static HttpStatus statusFor(Throwable error) {
+        return error instanceof DependencyUnavailableException
+                ? HttpStatus.SERVICE_UNAVAILABLE
+                : HttpStatus.BAD_REQUEST;
+    }
+    private static String messageFor(Throwable error) {
+        return error instanceof DependencyUnavailableException ? DEPENDENCY_UNAVAILABLE_MESSAGE : error.getMessage();
+    }
 
 }
@@ -0,0 +1,15 @@
+package com.bank.yankiservice.dto.transaction;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class YankiBatchTransactionRequest {
+    private String senderPhoneNumber;
+    private List<YankiBatchTransferItem> transfers;
+}
@@ -0,0 +1,19 @@
+package com.bank.yankiservice.dto.transaction;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class YankiBatchTransactionResult {
+    private String senderPhoneNumber;
+    private int accepted;
+    private int rejected;
+    private BigDecimal acceptedAmount;
+    private List<YankiBatchTransferResult> results;
+}
@@ -0,0 +1,15 @@
+package com.bank.yankiservice.dto.transaction;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class YankiBatchTransferItem {
+    private String receiverPhoneNumber;
+    private BigDecimal amount;
+}
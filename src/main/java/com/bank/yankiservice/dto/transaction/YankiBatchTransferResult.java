@@ -0,0 +1,21 @@
+package com.bank.yankiservice.dto.transaction;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class YankiBatchTransferResult {
+    public static final String ACCEPTED = "ACCEPTED";
+    public static final String REJECTED = "REJECTED";
+    private int index;
+    private String receiverPhoneNumber;
+    private BigDecimal amount;
+    private String transactionId;
+    private String status;
+    private String reason;
+}
@@ -0,0 +1,16 @@
+package com.bank.yankiservice.dto.transaction;
+
+import com.bank.yankiservice.model.YankiTransaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class YankiTransactionPage {
+    private List<YankiTransaction> transactions;
+    private String nextCursor;
+}
@@ -1,33 +1,107 @@
 package com.bank.yankiservice.event;
 
+import com.bank.yankiservice.cache.WalletCache;
+import com.bank.yankiservice.config.KafkaConsumerConfig;
 import com.bank.yankiservice.dto.balance.BalanceUpdatedEvent;
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.model.YankiWallet;
 import com.bank.yankiservice.repository.YankiWalletRepository;
-import lombok.RequiredArgsConstructor;
+import com.bank.yankiservice.service.BalanceEngine;
+import com.bank.yankiservice.service.BalanceStreamService;
+import com.bank.yankiservice.tracing.TraceHeaders;
+import io.reactivex.Completable;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.listener.adapter.ConsumerRecordMetadata;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
-import java.time.LocalDateTime;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Map;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
-public class BalanceForLinkedWalletConsumer {
+public class BalanceForLinkedWalletConsumer implements ConsumerSeekAware {
+    static final String LISTENER_ID = "bank-account-balance-updated";
     private final YankiWalletRepository yankiWalletRepository;
-    @KafkaListener(topics = "bank.account.balance.updated", groupId = "yanki-service-group")
-    public void handleBalanceUpdatedEvent(BalanceUpdatedEvent event) {
-        log.info("Received balance update event for card: {}", event.getCardNumber());
-        yankiWalletRepository.findByLinkedCard(event.getCardNumber())
-                .flatMapCompletable(wallet -> {
-                    log.info("Updating balance for YankiWallet of customer: {}", wallet.getDocumentNumber());
-                    BigDecimal newBalance = event.getNewBalance();
-                    wallet.setBalance(newBalance);
-                    wallet.setUpdatedAt(LocalDateTime.now());
-                    return yankiWalletRepository.update(wallet);
-                })
-                .doOnComplete(() -> log.info("Balance update completed successfully for event: {}", event))
-                .doOnError(error -> log.error("Error updating YankiWallet balance: {}", error.getMessage()))
-                .subscribe();
-    }
-}
\ No newline at end of file
+    private final WalletCache walletCache;
+    private final BalanceStreamService balanceStreamService;
+    private final BalanceEngine balanceEngine;
+    private final BoundedRecordProcessor<BalanceUpdatedEvent> processor;
+
+    public BalanceForLinkedWalletConsumer(YankiWalletRepository yankiWalletRepository,
+                                          WalletCache walletCache,
+                                          BalanceStreamService balanceStreamService,
+                                          BalanceEngine balanceEngine,
+                                          YankiMetrics metrics,
+                                          KafkaListenerEndpointRegistry registry,
+                                          @Value("${yanki.kafka.dispatch.lanes:16}") int laneCount,
+                                          @Value("${yanki.kafka.dispatch.max-in-flight:256}") int maxInFlight) {
+        this.yankiWalletRepository = yankiWalletRepository;
+        this.walletCache = walletCache;
+        this.balanceStreamService = balanceStreamService;
+        this.balanceEngine = balanceEngine;
+        YankiMetrics.Timing timing = metrics.listener("bank.account.balance.updated");
+        this.processor = new BoundedRecordProcessor<>(LISTENER_ID, registry, metrics, laneCount, maxInFlight,
+                BalanceUpdatedEvent::getCardNumber, event -> updateBalance(event).compose(timing.completable()));
+    }
+    @PostConstruct
+    public void start() {
+        processor.start();
+    }
+    @PreDestroy
+    public void stop() {
+        processor.stop();
+    }
+    @Override
+    public void registerSeekCallback(ConsumerSeekCallback callback) {
+        processor.registerSeekCallback(callback);
+    }
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        processor.onPartitionsAssigned(assignments, callback);
+    }
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        processor.onPartitionsRevoked(partitions);
+    }
+    @Override
+    public void unregisterSeekCallback() {
+        processor.unregisterSeekCallback();
+    }
+    @KafkaListener(id = LISTENER_ID, topics = "bank.account.balance.updated", groupId = "yanki-service-group",
+            concurrency = "${yanki.kafka.listener.concurrency:1}",
+            containerFactory = KafkaConsumerConfig.MANUAL_ACK_FACTORY)
+    public void handleBalanceUpdatedEvent(BalanceUpdatedEvent event,
+            @Header(name = TraceHeaders.KAFKA_CORRELATION_ID, required = false) String correlationId,
+            ConsumerRecordMetadata metadata,
+            Acknowledgment acknowledgment) {
+        try (MDC.MDCCloseable ignored = TraceHeaders.bind(TraceHeaders.orNew(correlationId))) {
+            log.info("Received balance update event for card: {}", event.getCardNumber());
+            processor.submit(event, metadata, acknowledgment);
+        }
+    }
+    // Replacing the balance runs on the shard that owns the wallet's phone number, as linking the card and every
+    // other balance mutation of the wallet do.
+    private Completable updateBalance(BalanceUpdatedEvent event) {
+        return yankiWalletRepository.findByLinkedCard(event.getCardNumber())
+                .map(YankiWallet::getPhoneNumber)
+                .toSingle(event.getCardNumber())
+                .flatMapCompletable(owner -> balanceEngine.execute(owner, () -> yankiWalletRepository
+                        .updateBalanceByLinkedCard(event.getCardNumber(), event.getNewBalance())
+                        .flatMapCompletable(wallet -> {
+                            log.info("Updated balance for YankiWallet of customer: {}", wallet.getDocumentNumber());
+                            balanceStreamService.publish(wallet);
+                            return walletCache.evict(wallet);
+                        })))
+                .doOnComplete(() -> log.info("Balance update completed successfully for event: {}", event));
+    }
+}
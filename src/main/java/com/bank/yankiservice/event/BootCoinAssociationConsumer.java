@@ -1,34 +1,110 @@
 package com.bank.yankiservice.event;
 
+import com.bank.yankiservice.cache.WalletCache;
+import com.bank.yankiservice.config.KafkaConsumerConfig;
 import com.bank.yankiservice.dto.bootcoin.KafkaValidationRequest;
 import com.bank.yankiservice.dto.bootcoin.KafkaValidationResponse;
-import com.bank.yankiservice.repository.YankiWalletRepository;
-import lombok.RequiredArgsConstructor;
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.tracing.TraceHeaders;
+import io.reactivex.Completable;
+import io.reactivex.Single;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.util.Pair;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.listener.adapter.ConsumerRecordMetadata;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Map;
+
 @Component
-@RequiredArgsConstructor
 @Slf4j
-public class BootCoinAssociationConsumer {
-    private final KafkaTemplate<String, Object> kafkaTemplate;
-    private final YankiWalletRepository yankiWalletRepository;
-    @KafkaListener(topics = "bootcoin.yanki.association", groupId = "yanki-service-group")
-    public void validateYankiAssociation(KafkaValidationRequest request) {
-        boolean isValid = validateYanki(request.getDocumentNumber(), request.getPhoneNumber());
-        KafkaValidationResponse response = new KafkaValidationResponse(
-                request.getEventId(),
-                isValid,
-                isValid ? null : "Yanki validation failed"
-        );
-        kafkaTemplate.send("bootcoin.validation.response", request.getEventId(), response);
-    }
-    public boolean validateYanki(String documentNumber, String phoneNumber) {
-        return yankiWalletRepository.findByPhoneNumberAndDocumentNumber(phoneNumber, documentNumber)
+public class BootCoinAssociationConsumer implements ConsumerSeekAware {
+    static final String LISTENER_ID = "bootcoin-yanki-association";
+    private final KafkaPublisher publisher;
+    private final WalletCache walletCache;
+    private final BoundedRecordProcessor<Pair<KafkaValidationRequest, String>> processor;
+
+    public BootCoinAssociationConsumer(KafkaPublisher publisher,
+                                       WalletCache walletCache,
+                                       YankiMetrics metrics,
+                                       KafkaListenerEndpointRegistry registry,
+                                       @Value("${yanki.bootcoin.validation.lanes:16}") int laneCount,
+                                       @Value("${yanki.bootcoin.validation.max-in-flight:256}") int maxInFlight) {
+        this.publisher = publisher;
+        this.walletCache = walletCache;
+        YankiMetrics.Timing timing = metrics.listener("bootcoin.yanki.association");
+        this.processor = new BoundedRecordProcessor<>(LISTENER_ID, registry, metrics, laneCount, maxInFlight,
+                item -> item.getFirst().getEventId(),
+                item -> respond(item.getFirst(), item.getSecond()).compose(timing.completable()));
+    }
+    @PostConstruct
+    public void start() {
+        processor.start();
+    }
+    @PreDestroy
+    public void stop() {
+        processor.stop();
+    }
+    @Override
+    public void registerSeekCallback(ConsumerSeekCallback callback) {
+        processor.registerSeekCallback(callback);
+    }
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        processor.onPartitionsAssigned(assignments, callback);
+    }
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        processor.onPartitionsRevoked(partitions);
+    }
+    @Override
+    public void unregisterSeekCallback() {
+        processor.unregisterSeekCallback();
+    }
+    // The record is acknowledged only once the response has been sent, so a crash before that redelivers it.
+    @KafkaListener(id = LISTENER_ID, topics = "bootcoin.yanki.association", groupId = "yanki-service-group",
+            concurrency = "${yanki.kafka.listener.concurrency:1}",
+            containerFactory = KafkaConsumerConfig.MANUAL_ACK_FACTORY)
+    public void validateYankiAssociation(KafkaValidationRequest request,
+            @Header(name = TraceHeaders.KAFKA_CORRELATION_ID, required = false) String correlationId,
+            ConsumerRecordMetadata metadata,
+            Acknowledgment acknowledgment) {
+        String traceId = TraceHeaders.orNew(correlationId);
+        try (MDC.MDCCloseable ignored = TraceHeaders.bind(traceId)) {
+            log.debug("Validating Yanki association {}", request.getEventId());
+            processor.submit(Pair.of(request, traceId), metadata, acknowledgment);
+        }
+    }
+    public Single<Boolean> validateYanki(String documentNumber, String phoneNumber) {
+        return walletCache.findByPhoneNumberAndDocumentNumber(phoneNumber, documentNumber)
             .map(wallet -> true)
             .defaultIfEmpty(false)
-            .blockingGet();
+            .toSingle();
+    }
+    private Completable respond(KafkaValidationRequest request, String correlationId) {
+        return validateYanki(request.getDocumentNumber(), request.getPhoneNumber())
+                .onErrorReturn(error -> {
+                    log.error("Error validating Yanki association {}: {}", request.getEventId(), error.getMessage());
+                    return false;
+                })
+                .flatMapCompletable(isValid -> {
+                    KafkaValidationResponse response = new KafkaValidationResponse(
+                            request.getEventId(),
+                            isValid,
+                            isValid ? null : "Yanki validation failed"
+                    );
+                    return publisher.publish(TraceHeaders.record("bootcoin.validation.response",
+                            request.getEventId(), response, correlationId));
+                });
     }
 }
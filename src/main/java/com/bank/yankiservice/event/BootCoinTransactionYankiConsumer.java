@@ -1,45 +1,133 @@
 package com.bank.yankiservice.event;
 
+import com.bank.yankiservice.config.KafkaConsumerConfig;
 import com.bank.yankiservice.dto.transactionbootcoin.TransactionResponse;
 import com.bank.yankiservice.dto.transactionbootcoin.YankiEvent;
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.model.ProcessedEvent;
 import com.bank.yankiservice.service.YankiService;
-import lombok.RequiredArgsConstructor;
+import com.bank.yankiservice.tracing.TraceHeaders;
+import io.reactivex.Completable;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.util.Pair;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.listener.adapter.ConsumerRecordMetadata;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
 @Component
-@RequiredArgsConstructor
 @Slf4j
-public class BootCoinTransactionYankiConsumer {
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+public class BootCoinTransactionYankiConsumer implements ConsumerSeekAware {
+    static final String LISTENER_ID = "bootcoin-transaction-yanki-requested";
+    private final KafkaPublisher publisher;
     private final YankiService yankiService;
-    @KafkaListener(topics = "bootcoin.transaction.yanki.requested", groupId = "yanki-service-group")
-    public void processYankiEvent(YankiEvent event) {
-        log.info("Processing Yanki transaction for purchaseId: {}", event.getPurchaseId());
-        yankiService.processYankiTransaction(
-                        event.getBuyerPhoneNumber(),
-                        event.getSellerPhoneNumber(),
-                        event.getTotalAmountInPEN())
-                .subscribe(() -> {
+    private final SettlementDeduplicator deduplicator;
+    private final BoundedRecordProcessor<Pair<YankiEvent, String>> processor;
+
+    public BootCoinTransactionYankiConsumer(KafkaPublisher publisher,
+                                            YankiService yankiService,
+                                            SettlementDeduplicator deduplicator,
+                                            YankiMetrics metrics,
+                                            KafkaListenerEndpointRegistry registry,
+                                            @Value("${yanki.kafka.dispatch.lanes:16}") int laneCount,
+                                            @Value("${yanki.kafka.dispatch.max-in-flight:256}") int maxInFlight) {
+        this.publisher = publisher;
+        this.yankiService = yankiService;
+        this.deduplicator = deduplicator;
+        YankiMetrics.Timing timing = metrics.listener("bootcoin.transaction.yanki.requested");
+        this.processor = new BoundedRecordProcessor<>(LISTENER_ID, registry, metrics, laneCount, maxInFlight,
+                item -> item.getFirst().getBuyerPhoneNumber(),
+                item -> process(item.getFirst(), item.getSecond()).compose(timing.completable()));
+    }
+    @PostConstruct
+    public void start() {
+        processor.start();
+    }
+    @PreDestroy
+    public void stop() {
+        processor.stop();
+    }
+    @Override
+    public void registerSeekCallback(ConsumerSeekCallback callback) {
+        processor.registerSeekCallback(callback);
+    }
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        processor.onPartitionsAssigned(assignments, callback);
+    }
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        processor.onPartitionsRevoked(partitions);
+    }
+    @Override
+    public void unregisterSeekCallback() {
+        processor.unregisterSeekCallback();
+    }
+    @KafkaListener(id = LISTENER_ID, topics = "bootcoin.transaction.yanki.requested", groupId = "yanki-service-group",
+            containerFactory = KafkaConsumerConfig.MANUAL_ACK_FACTORY)
+    public void processYankiEvent(YankiEvent event,
+            @Header(name = TraceHeaders.KAFKA_CORRELATION_ID, required = false) String correlationId,
+            ConsumerRecordMetadata metadata,
+            Acknowledgment acknowledgment) {
+        String traceId = TraceHeaders.orNew(correlationId);
+        try (MDC.MDCCloseable ignored = TraceHeaders.bind(traceId)) {
+            log.info("Processing Yanki transaction for purchaseId: {}", event.getPurchaseId());
+            processor.submit(Pair.of(event, traceId), metadata, acknowledgment);
+        }
+    }
+    // A redelivered purchase must not start a second transfer, since each one places its own hold under a new
+    // transaction id. The purchase id marks the request, so a retry after a failed publish only republishes.
+    private Completable process(YankiEvent event, String correlationId) {
+        String purchaseId = event.getPurchaseId();
+        return deduplicator.acquire(purchaseId)
+                .doOnComplete(() -> log.info("Skipping already processed purchaseId {}", purchaseId))
+                .flatMapCompletable(landed -> respond(event, correlationId, landed)
+                        .onErrorResumeNext(error -> deduplicator
+                                .release(Collections.singletonMap(purchaseId, landed))
+                                .onErrorComplete()
+                                .andThen(Completable.error(error)))
+                        .andThen(Completable.defer(() -> deduplicator
+                                .complete(Collections.singletonList(purchaseId)))));
+    }
+    private Completable respond(YankiEvent event, String correlationId, Set<String> landed) {
+        return deduplicator.step(event.getPurchaseId(), landed, ProcessedEvent.REQUESTED, () -> yankiService
+                        .processYankiTransaction(
+                                event.getBuyerPhoneNumber(),
+                                event.getSellerPhoneNumber(),
+                                event.getTotalAmountInPEN(),
+                                correlationId))
+                .toSingle(() -> {
                     log.info("Yanki transaction completed for purchaseId: {}", event.getPurchaseId());
-                    TransactionResponse response = TransactionResponse.builder()
+                    return TransactionResponse.builder()
                             .transactionId(event.getPurchaseId())
                             .success(true)
                             .message("Transaction successful")
                             .build();
-                    kafkaTemplate.send("bootcoin.transaction.processed", response);
-                }, error -> {
-                        log.error("Yanki transaction failed for purchaseId {}: {}",
+                })
+                .onErrorReturn(error -> {
+                    log.error("Yanki transaction failed for purchaseId {}: {}",
                             event.getPurchaseId(),
                             error.getMessage());
-                        TransactionResponse response = TransactionResponse.builder()
+                    return TransactionResponse.builder()
                             .transactionId(event.getPurchaseId())
                             .success(false)
                             .message(error.getMessage())
                             .build();
-                        kafkaTemplate.send("bootcoin.transaction.processed", response);
-                    });
+                })
+                .flatMapCompletable(response -> publisher.publish(TraceHeaders.record(
+                        "bootcoin.transaction.processed", event.getBuyerPhoneNumber(), response, correlationId)));
     }
 }
@@ -0,0 +1,135 @@
+package com.bank.yankiservice.event;
+
+import com.bank.yankiservice.metrics.YankiMetrics;
+import io.reactivex.Completable;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.AbstractConsumerSeekAware;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.listener.adapter.ConsumerRecordMetadata;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Runs a listener's records on keyed lanes without holding the consumer thread. Offsets are acknowledged only
+// once the work behind them completes, and the container is paused while maxInFlight records are outstanding
+// so a lag spike turns into paused partitions instead of unbounded Mongo operations. The container keeps
+// polling while paused, which keeps the group membership alive and flushes acknowledgements.
+// A failed record is never acknowledged: its partition is rewound to it through the seek callback, so it and the
+// records after it are delivered again, up to MAX_DELIVERY_ATTEMPTS times before it is logged and skipped.
+// Listeners implement ConsumerSeekAware by delegating here, which also drops the offsets of revoked partitions.
+@Slf4j
+public class BoundedRecordProcessor<T> extends AbstractConsumerSeekAware {
+    static final int MAX_DELIVERY_ATTEMPTS = 10;
+    private final String listenerId;
+    private final KafkaListenerEndpointRegistry registry;
+    private final KeyedDispatcher<T> dispatcher;
+    private final int maxInFlight;
+    private final int resumeBelow;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<TopicPartition, PartitionOffsets> offsets = new ConcurrentHashMap<>();
+    private boolean paused;
+
+    public BoundedRecordProcessor(String listenerId, KafkaListenerEndpointRegistry registry, YankiMetrics metrics,
+                                  int laneCount, int maxInFlight,
+                                  Function<T, String> keyExtractor, Function<T, Completable> handler) {
+        this.listenerId = listenerId;
+        this.registry = registry;
+        this.maxInFlight = maxInFlight;
+        this.resumeBelow = Math.max(1, maxInFlight / 2);
+        this.dispatcher = new KeyedDispatcher<>(listenerId, laneCount, Integer.MAX_VALUE, keyExtractor, handler);
+        metrics.registerInFlight(listenerId, inFlight);
+    }
+    public void start() {
+        dispatcher.start();
+    }
+    public void stop() {
+        dispatcher.stop();
+    }
+    public void submit(T item, ConsumerRecordMetadata metadata, Acknowledgment acknowledgment) {
+        TopicPartition topicPartition = new TopicPartition(metadata.topic(), metadata.partition());
+        PartitionOffsets partition = offsets.computeIfAbsent(topicPartition, ignored -> new PartitionOffsets());
+        long offset = metadata.offset();
+        if (!partition.begin(offset, acknowledgment)) {
+            log.debug("Skipping {} record {}@{} until the partition is rewound", listenerId, topicPartition, offset);
+            return;
+        }
+        inFlight.incrementAndGet();
+        updatePause();
+        dispatcher.submit(item, () -> {
+            partition.complete(offset, acknowledgment);
+            finished();
+        }, error -> {
+            retry(topicPartition, partition, offset, acknowledgment);
+            finished();
+        });
+    }
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        super.onPartitionsAssigned(assignments, callback);
+        assignments.keySet().forEach(this::forget);
+    }
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        partitions.forEach(this::forget);
+        super.onPartitionsRevoked(partitions);
+    }
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    private void retry(TopicPartition topicPartition, PartitionOffsets partition, long offset,
+                       Acknowledgment acknowledgment) {
+        int attempts = partition.recordFailure(offset);
+        if (attempts >= MAX_DELIVERY_ATTEMPTS) {
+            log.error("Skipping {} record {}@{} after {} failed attempts",
+                    listenerId, topicPartition, offset, attempts);
+            partition.complete(offset, acknowledgment);
+            return;
+        }
+        ConsumerSeekCallback callback = getSeekCallbackFor(topicPartition);
+        if (callback == null) {
+            log.error("No seek callback for {} partition {}; {} stays unacknowledged until the next rebalance",
+                    listenerId, topicPartition, offset);
+            return;
+        }
+        if (partition.rewind(offset, acknowledgment)) {
+            log.warn("Rewinding {} to {}@{} after failed attempt {}", listenerId, topicPartition, offset, attempts);
+            callback.seek(topicPartition.topic(), topicPartition.partition(), offset);
+        }
+    }
+    private void forget(TopicPartition topicPartition) {
+        PartitionOffsets partition = offsets.remove(topicPartition);
+        if (partition != null) {
+            partition.revoke();
+        }
+    }
+    private void finished() {
+        inFlight.decrementAndGet();
+        updatePause();
+    }
+    private synchronized void updatePause() {
+        int current = inFlight.get();
+        if (!paused && current >= maxInFlight) {
+            paused = true;
+            log.warn("Pausing {} with {} records in flight", listenerId, current);
+            withContainer(MessageListenerContainer::pause);
+        } else if (paused && current < resumeBelow) {
+            paused = false;
+            log.info("Resuming {} with {} records in flight", listenerId, current);
+            withContainer(MessageListenerContainer::resume);
+        }
+    }
+    private void withContainer(Consumer<MessageListenerContainer> action) {
+        MessageListenerContainer container = registry.getListenerContainer(listenerId);
+        if (container != null) {
+            action.accept(container);
+        }
+    }
+}
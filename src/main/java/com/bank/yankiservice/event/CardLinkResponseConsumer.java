@@ -1,35 +1,118 @@
 package com.bank.yankiservice.event;
+
+import com.bank.yankiservice.cache.WalletCache;
+import com.bank.yankiservice.config.KafkaConsumerConfig;
 import com.bank.yankiservice.dto.cardlink.CardLinkConfirmedEvent;
 import com.bank.yankiservice.dto.cardlink.CardLinkRejectedEvent;
+import com.bank.yankiservice.metrics.YankiMetrics;
 import com.bank.yankiservice.repository.YankiWalletRepository;
-import lombok.RequiredArgsConstructor;
+import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.service.BalanceEngine;
+import com.bank.yankiservice.service.BalanceStreamService;
+import com.bank.yankiservice.service.StripedBalanceService;
+import com.bank.yankiservice.tracing.TraceHeaders;
+import io.reactivex.Completable;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.listener.adapter.ConsumerRecordMetadata;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Map;
+
 @Component
-@RequiredArgsConstructor
 @Slf4j
-public class CardLinkResponseConsumer {
+public class CardLinkResponseConsumer implements ConsumerSeekAware {
+    static final String LISTENER_ID = "yanki-card-link-confirmed";
     private final YankiWalletRepository yankiWalletRepository;
+    private final WalletCache walletCache;
+    private final BalanceStreamService balanceStreamService;
+    private final BalanceEngine balanceEngine;
+    private final StripedBalanceService stripedBalances;
+    private final BoundedRecordProcessor<CardLinkConfirmedEvent> processor;
 
-    @KafkaListener(topics = "yanki.card.link.confirmed", groupId = "yanki-service-group")
-    public void processCardLinkConfirmed(CardLinkConfirmedEvent event) {
-        log.info("Card successfully linked: {}", event);
-        yankiWalletRepository.findByDocumentNumber(event.getDocumentNumber())
-            .flatMap(wallet -> {
-                wallet.setLinkedCard(event.getCardNumber());
-                wallet.setBalance(event.getUpdateBalance());
-                return yankiWalletRepository.save(wallet).toMaybe();
-            })
-            .subscribe(
-                result -> log.info("Wallet updated successfully: {}", result),
-                error -> log.error("Error updating wallet: {}", error)
-            );
+    public CardLinkResponseConsumer(YankiWalletRepository yankiWalletRepository,
+                                    WalletCache walletCache,
+                                    BalanceStreamService balanceStreamService,
+                                    BalanceEngine balanceEngine,
+                                    StripedBalanceService stripedBalances,
+                                    YankiMetrics metrics,
+                                    KafkaListenerEndpointRegistry registry,
+                                    @Value("${yanki.kafka.dispatch.lanes:16}") int laneCount,
+                                    @Value("${yanki.kafka.dispatch.max-in-flight:256}") int maxInFlight) {
+        this.yankiWalletRepository = yankiWalletRepository;
+        this.walletCache = walletCache;
+        this.balanceStreamService = balanceStreamService;
+        this.balanceEngine = balanceEngine;
+        this.stripedBalances = stripedBalances;
+        YankiMetrics.Timing timing = metrics.listener("yanki.card.link.confirmed");
+        this.processor = new BoundedRecordProcessor<>(LISTENER_ID, registry, metrics, laneCount, maxInFlight,
+                CardLinkConfirmedEvent::getDocumentNumber, event -> linkCard(event).compose(timing.completable()));
+    }
+    @PostConstruct
+    public void start() {
+        processor.start();
+    }
+    @PreDestroy
+    public void stop() {
+        processor.stop();
+    }
+    @Override
+    public void registerSeekCallback(ConsumerSeekCallback callback) {
+        processor.registerSeekCallback(callback);
+    }
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        processor.onPartitionsAssigned(assignments, callback);
+    }
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        processor.onPartitionsRevoked(partitions);
+    }
+    @Override
+    public void unregisterSeekCallback() {
+        processor.unregisterSeekCallback();
+    }
+    @KafkaListener(id = LISTENER_ID, topics = "yanki.card.link.confirmed", groupId = "yanki-service-group",
+            concurrency = "${yanki.kafka.listener.concurrency:1}",
+            containerFactory = KafkaConsumerConfig.MANUAL_ACK_FACTORY)
+    public void processCardLinkConfirmed(CardLinkConfirmedEvent event,
+            @Header(name = TraceHeaders.KAFKA_CORRELATION_ID, required = false) String correlationId,
+            ConsumerRecordMetadata metadata,
+            Acknowledgment acknowledgment) {
+        try (MDC.MDCCloseable ignored = TraceHeaders.bind(TraceHeaders.orNew(correlationId))) {
+            log.info("Card successfully linked: {}", event);
+            processor.submit(event, metadata, acknowledgment);
+        }
     }
 
     @KafkaListener(topics = "yanki.card.link.rejected", groupId = "yanki-service-group")
-    public void porcessCardLinkRejected(CardLinkRejectedEvent event) {
-        log.warn("Card association declined: {}", event.getReason());
+    public void porcessCardLinkRejected(CardLinkRejectedEvent event,
+            @Header(name = TraceHeaders.KAFKA_CORRELATION_ID, required = false) String correlationId) {
+        try (MDC.MDCCloseable ignored = TraceHeaders.bind(TraceHeaders.orNew(correlationId))) {
+            log.warn("Card association declined: {}", event.getReason());
+        }
+    }
+    // Linking replaces the balance, so it runs on the shard that owns the wallet's phone number. A linked wallet is
+    // no longer read as striped, so its stripes are swept into the balance first instead of being left behind.
+    private Completable linkCard(CardLinkConfirmedEvent event) {
+        return walletCache.findByDocumentNumber(event.getDocumentNumber())
+                .map(YankiWallet::getPhoneNumber)
+                .toSingle(event.getDocumentNumber())
+                .flatMapCompletable(owner -> balanceEngine.execute(owner, () -> stripedBalances.sweep(owner)
+                        .flatMapMaybe(swept -> yankiWalletRepository.linkCard(event.getDocumentNumber(),
+                                event.getCardNumber(), event.getUpdateBalance()))
+                        .doOnSuccess(balanceStreamService::publish)
+                        .flatMapCompletable(wallet -> walletCache.evict(wallet)
+                                .doOnComplete(() -> log.info("Wallet updated successfully: {}", wallet)))));
     }
-}
\ No newline at end of file
+}
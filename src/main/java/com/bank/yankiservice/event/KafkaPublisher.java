@@ -0,0 +1,67 @@
+package com.bank.yankiservice.event;
+
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.resilience.DependencyGuard;
+import com.bank.yankiservice.resilience.DependencyGuards;
+import io.reactivex.Completable;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// KafkaTemplate.send blocks for up to max.block.ms while metadata is refreshed or the producer buffer is full.
+// Every send is handed to one dedicated thread through a bounded queue, so that wait never lands on an event
+// loop, Mongo driver or listener thread; when the queue is full the send fails immediately instead.
+@Component
+@Slf4j
+public class KafkaPublisher {
+    static final String THREAD_NAME = "yanki-kafka-publisher";
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final YankiMetrics metrics;
+    private final DependencyGuard kafkaGuard;
+    private final ThreadPoolExecutor executor;
+
+    public KafkaPublisher(KafkaTemplate<String, Object> kafkaTemplate,
+                          YankiMetrics metrics,
+                          DependencyGuards guards,
+                          @Value("${yanki.kafka.publisher.queue-capacity:10000}") int queueCapacity) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.metrics = metrics;
+        this.kafkaGuard = guards.kafka();
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        metrics.registerQueueDepth(THREAD_NAME, executor.getQueue());
+    }
+    public Completable publish(ProducerRecord<String, Object> record) {
+        return Completable.create(emitter -> executor.execute(() -> {
+                    if (emitter.isDisposed()) {
+                        return;
+                    }
+                    try {
+                        kafkaTemplate.send(record).addCallback(result -> emitter.onComplete(), emitter::onError);
+                    } catch (RuntimeException e) {
+                        emitter.onError(e);
+                    }
+                }))
+                .compose(kafkaGuard.completable())
+                .compose(metrics.send(record.topic()).completable());
+    }
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Dropping {} queued Kafka sends on shutdown", executor.getQueue().size());
+            executor.shutdownNow();
+        }
+    }
+}
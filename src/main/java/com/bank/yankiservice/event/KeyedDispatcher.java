@@ -0,0 +1,73 @@
+package com.bank.yankiservice.event;
+
+import io.reactivex.Completable;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.PublishProcessor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+@Slf4j
+public class KeyedDispatcher<T> {
+    private final String name;
+    private final Function<T, String> keyExtractor;
+    private final Function<T, Completable> handler;
+    private final List<FlowableProcessor<Task<T>>> lanes = new ArrayList<>();
+    private final Semaphore inFlight;
+    private final CompositeDisposable subscriptions = new CompositeDisposable();
+
+    public KeyedDispatcher(String name, int laneCount, int maxInFlight,
+                           Function<T, String> keyExtractor, Function<T, Completable> handler) {
+        this.name = name;
+        this.keyExtractor = keyExtractor;
+        this.handler = handler;
+        this.inFlight = new Semaphore(maxInFlight);
+        for (int i = 0; i < laneCount; i++) {
+            lanes.add(PublishProcessor.<Task<T>>create().toSerialized());
+        }
+    }
+    public void start() {
+        lanes.forEach(lane -> subscriptions.add(lane.onBackpressureBuffer()
+                .concatMapCompletable(task -> Completable.defer(() -> handler.apply(task.item))
+                        .doOnComplete(task.onSuccess)
+                        .onErrorComplete(error -> {
+                            log.error("Error handling {} event for key {}: {}",
+                                    name, keyExtractor.apply(task.item), error.getMessage());
+                            task.onFailure.accept(error);
+                            return true;
+                        }))
+                .subscribe()));
+    }
+    public void stop() {
+        subscriptions.dispose();
+    }
+    public void dispatch(T item) throws InterruptedException {
+        inFlight.acquire();
+        submit(item, inFlight::release, error -> inFlight.release());
+    }
+    // Does not wait for the in-flight limit; the caller bounds concurrency and learns of the outcome through
+    // onSuccess or onFailure, exactly one of which is called.
+    public void submit(T item, Action onSuccess, Consumer<Throwable> onFailure) {
+        lanes.get(Math.floorMod(Objects.hashCode(keyExtractor.apply(item)), lanes.size()))
+                .onNext(new Task<>(item, onSuccess, onFailure));
+    }
+
+    private static final class Task<T> {
+        private final T item;
+        private final Action onSuccess;
+        private final Consumer<Throwable> onFailure;
+
+        private Task(T item, Action onSuccess, Consumer<Throwable> onFailure) {
+            this.item = item;
+            this.onSuccess = onSuccess;
+            this.onFailure = onFailure;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.bank.yankiservice.event;
+
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Records of one partition finish out of order once they fan out over lanes; acknowledging a record commits
+// everything before it, so only the end of the completed prefix is ever acknowledged. A failed record is not
+// acknowledged: it and everything after it are dropped and the partition is rewound to it, and records that
+// arrive ahead of the rewind are turned away until the failed one is delivered again. Each delivery has its own
+// Acknowledgment, which tells a completion of a dropped delivery from one of its redelivery.
+class PartitionOffsets {
+    private final TreeMap<Long, Acknowledgment> pending = new TreeMap<>();
+    private final Set<Long> completed = new HashSet<>();
+    private final Map<Long, Integer> failures = new HashMap<>();
+    private Long rewindTo;
+    private boolean revoked;
+
+    synchronized boolean begin(long offset, Acknowledgment acknowledgment) {
+        if (revoked || (rewindTo != null && offset > rewindTo)) {
+            return false;
+        }
+        rewindTo = null;
+        pending.put(offset, acknowledgment);
+        completed.remove(offset);
+        return true;
+    }
+    void complete(long offset, Acknowledgment acknowledgment) {
+        Acknowledgment commit = null;
+        synchronized (this) {
+            if (pending.get(offset) != acknowledgment) {
+                return;
+            }
+            failures.remove(offset);
+            completed.add(offset);
+            while (!pending.isEmpty() && completed.remove(pending.firstKey())) {
+                commit = pending.pollFirstEntry().getValue();
+            }
+        }
+        if (commit != null) {
+            commit.acknowledge();
+        }
+    }
+    synchronized int recordFailure(long offset) {
+        return failures.merge(offset, 1, Integer::sum);
+    }
+    // Returns false when the delivery was already dropped by an earlier rewind, which covers this offset too.
+    synchronized boolean rewind(long offset, Acknowledgment acknowledgment) {
+        if (pending.get(offset) != acknowledgment) {
+            return false;
+        }
+        pending.tailMap(offset, true).clear();
+        completed.removeIf(done -> done >= offset);
+        rewindTo = offset;
+        return true;
+    }
+    // The partition now belongs to another consumer, which resumes from the last committed offset.
+    synchronized void revoke() {
+        revoked = true;
+        pending.clear();
+        completed.clear();
+        failures.clear();
+    }
+}
@@ -0,0 +1,124 @@
+package com.bank.yankiservice.event;
+
+import com.bank.yankiservice.repository.ProcessedEventRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Component
+@Slf4j
+public class SettlementDeduplicator {
+    private final ProcessedEventRepository processedEventRepository;
+    private final Cache<String, Boolean> recentIds;
+    private final Duration lease;
+
+    public SettlementDeduplicator(ProcessedEventRepository processedEventRepository,
+                                  @Value("${yanki.settlement.dedup.recent-size:100000}") long recentSize,
+                                  @Value("${yanki.settlement.dedup.lease-seconds:300}") long leaseSeconds) {
+        this.processedEventRepository = processedEventRepository;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.recentIds = Caffeine.newBuilder()
+                .maximumSize(recentSize)
+                .build();
+    }
+    // Empty when another delivery holds the transaction or it already settled. Otherwise emits the steps an earlier
+    // attempt landed, as a set the settlement adds its own steps to.
+    public Maybe<Set<String>> acquire(String transactionId) {
+        if (transactionId == null) {
+            return Maybe.just(ConcurrentHashMap.newKeySet());
+        }
+        return acquire(Set.of(transactionId)).flatMapMaybe(acquired -> acquired.containsKey(transactionId)
+                ? Maybe.just(acquired.get(transactionId))
+                : Maybe.empty());
+    }
+    // Claims the ids with a PENDING marker. A redelivery after a crash between claim and complete finds a marker
+    // older than the lease and runs the settlement again instead of skipping it, minus the steps it recorded.
+    public Single<Map<String, Set<String>>> acquire(Collection<String> transactionIds) {
+        Set<String> candidates = transactionIds.stream()
+                .filter(Objects::nonNull)
+                .filter(id -> recentIds.getIfPresent(id) == null)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (candidates.isEmpty()) {
+            return Single.just(Map.of());
+        }
+        return processedEventRepository.claim(candidates, lease)
+                .doOnSuccess(acquired -> candidates.forEach(id -> recentIds.put(id, Boolean.TRUE)))
+                .map(acquired -> {
+                    Map<String, Set<String>> landed = new LinkedHashMap<>();
+                    acquired.forEach((id, steps) -> {
+                        Set<String> copy = ConcurrentHashMap.newKeySet();
+                        copy.addAll(steps);
+                        landed.put(id, copy);
+                    });
+                    return landed;
+                });
+    }
+    // Runs a settlement step unless an earlier attempt landed it. A step that lands goes into the landed set before
+    // it is recorded on the marker, so a release still carries it when recording fails.
+    public Completable step(String transactionId, Set<String> landed, String step, Supplier<Completable> write) {
+        return Completable.defer(() -> landed.contains(step)
+                ? Completable.complete()
+                : write.get().doOnComplete(() -> landed.add(step))
+                    .andThen(recordStep(Collections.singleton(transactionId), step)));
+    }
+    // Recording steps only shortens the work of a retry after a crash; a failed release or complete carries the
+    // landed set anyway, so a failure here is logged rather than failing the settlement.
+    public Completable recordStep(Collection<String> transactionIds, String step) {
+        List<String> ids = transactionIds.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return processedEventRepository.addStep(ids, step)
+                .onErrorComplete(error -> {
+                    log.warn("Failed to record step {} of processed events {}: {}", step, ids, error.getMessage());
+                    return true;
+                });
+    }
+    // Called once the balance writes have landed. A marker that stays PENDING only matters to a redelivery that
+    // arrives after the lease, so a failure here is logged rather than failing the settled record.
+    public Completable complete(Collection<String> transactionIds) {
+        List<String> ids = transactionIds.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return processedEventRepository.markDone(ids)
+                .onErrorComplete(error -> {
+                    log.warn("Failed to mark processed events {} as done: {}", ids, error.getMessage());
+                    return true;
+                });
+    }
+    public Completable release(Collection<String> transactionIds) {
+        Map<String, Set<String>> nothingLanded = new LinkedHashMap<>();
+        transactionIds.forEach(id -> nothingLanded.put(id, Set.of()));
+        return release(nothingLanded);
+    }
+    // Hands the settlement to a redelivery. A marker without landed steps is dropped; one with landed steps keeps
+    // them, so the redelivery skips them instead of debiting or crediting the same transaction twice.
+    public Completable release(Map<String, Set<String>> landedSteps) {
+        return Flowable.fromIterable(landedSteps.entrySet())
+                .filter(entry -> entry.getKey() != null)
+                .doOnNext(entry -> recentIds.invalidate(entry.getKey()))
+                .concatMapCompletable(entry -> entry.getValue().isEmpty()
+                        ? processedEventRepository.deleteById(entry.getKey())
+                        : processedEventRepository.reopen(entry.getKey(), Set.copyOf(entry.getValue())))
+                .doOnError(error -> log.error("Failed to release processed events {}: {}",
+                        landedSteps.keySet(), error.getMessage()));
+    }
+}
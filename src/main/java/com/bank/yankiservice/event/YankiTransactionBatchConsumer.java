@@ -0,0 +1,288 @@
+package com.bank.yankiservice.event;
+
+import com.bank.yankiservice.cache.WalletCache;
+import com.bank.yankiservice.dto.transaction.YankiTransactionProcessedEvent;
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.model.ProcessedEvent;
+import com.bank.yankiservice.model.YankiTransaction;
+import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.repository.YankiTransactionRepository;
+import com.bank.yankiservice.repository.YankiWalletRepository;
+import com.bank.yankiservice.service.BalanceEngine;
+import com.bank.yankiservice.service.BalanceStreamService;
+import com.bank.yankiservice.service.FundsHoldService;
+import com.bank.yankiservice.service.StripedBalanceService;
+import com.bank.yankiservice.tracing.TransactionTrace;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "yanki.kafka.batch.enabled", havingValue = "true")
+public class YankiTransactionBatchConsumer {
+    private final YankiWalletRepository walletRepository;
+    private final YankiTransactionRepository yankiTransactionRepository;
+    private final WalletCache walletCache;
+    private final SettlementDeduplicator deduplicator;
+    private final FundsHoldService fundsHoldService;
+    private final BalanceStreamService balanceStreamService;
+    private final StripedBalanceService stripedBalances;
+    private final BalanceEngine balanceEngine;
+    private final YankiMetrics metrics;
+    @KafkaListener(topics = "yanki.transaction.processed",
+            groupId = "yanki-service-group",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            properties = "max.poll.records:${yanki.kafka.batch.max-records:500}")
+    public void processYankiTransactionBatch(List<YankiTransactionProcessedEvent> events,
+            @Header(name = KafkaHeaders.BATCH_CONVERTED_HEADERS, required = false) List<Map<String, Object>> headers,
+            @Header(name = KafkaHeaders.RECEIVED_TIMESTAMP, required = false) List<Long> producedAt) {
+        log.info("Processing batch of {} Yanki transaction processed events", events.size());
+        metrics.recordBatchSize("yanki.transaction.processed", events.size());
+        Map<String, TransactionTrace> traces = new HashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            TransactionTrace trace = TransactionTrace.of(
+                    headers == null || i >= headers.size() ? null : headers.get(i),
+                    producedAt == null || i >= producedAt.size() ? null : producedAt.get(i));
+            metrics.recordReceived(trace);
+            if (events.get(i).getTransactionId() != null) {
+                traces.put(events.get(i).getTransactionId(), trace);
+            }
+        }
+        settle(events, traces)
+                .compose(metrics.listener("yanki.transaction.processed").completable())
+                .doOnComplete(() -> {
+                    Instant settledAt = Instant.now();
+                    traces.values().forEach(trace -> metrics.recordSettled(trace, settledAt));
+                })
+                .blockingAwait();
+    }
+    // Hold releases and commits change the sender's available balance, so they run on the sender's shard of the
+    // balance engine like the debits.
+    Completable settle(List<YankiTransactionProcessedEvent> events, Map<String, TransactionTrace> traces) {
+        List<YankiTransactionProcessedEvent> successful = events.stream()
+                .filter(event -> "SUCCESS".equals(event.getStatus()))
+                .collect(Collectors.toList());
+        Completable releases = Flowable.fromIterable(events)
+                .filter(event -> !"SUCCESS".equals(event.getStatus()) && event.getTransactionId() != null)
+                .flatMapCompletable(event -> balanceEngine.execute(event.getSenderPhoneNumber(), () -> fundsHoldService
+                        .releaseHold(event.getSenderPhoneNumber(), event.getTransactionId(), event.getAmount())
+                        .ignoreElement()));
+        if (successful.isEmpty()) {
+            return releases;
+        }
+        Set<String> transactionIds = successful.stream()
+                .map(YankiTransactionProcessedEvent::getTransactionId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        return releases.andThen(deduplicator.acquire(transactionIds))
+                .flatMapCompletable(acquired -> {
+                    Set<String> seen = new HashSet<>();
+                    List<YankiTransactionProcessedEvent> fresh = successful.stream()
+                            .filter(event -> event.getTransactionId() == null
+                                    || acquired.containsKey(event.getTransactionId())
+                                        && seen.add(event.getTransactionId()))
+                            .collect(Collectors.toList());
+                    if (fresh.size() < successful.size()) {
+                        log.info("Skipping {} already settled Yanki transactions", successful.size() - fresh.size());
+                    }
+                    if (fresh.isEmpty()) {
+                        return Completable.complete();
+                    }
+                    List<YankiTransactionProcessedEvent> rejected = new ArrayList<>();
+                    return apply(fresh, acquired, traces, rejected)
+                            .onErrorResumeNext(error -> deduplicator.release(acquired)
+                                    .onErrorComplete()
+                                    .andThen(Completable.error(error)))
+                            .andThen(Completable.defer(() -> rejected.isEmpty()
+                                    ? deduplicator.complete(acquired.keySet())
+                                    : reject(acquired.keySet(), rejected)));
+                });
+    }
+    // A transfer the sender cannot cover fails like it does on the per-record listener: the rest of the batch is
+    // marked settled, the rejected transfers are handed back and the batch fails, so the container redelivers it and
+    // the rejected transfers are tried again until its retries run out.
+    private Completable reject(Set<String> acquired, List<YankiTransactionProcessedEvent> rejected) {
+        Set<String> rejectedIds = rejected.stream()
+                .map(YankiTransactionProcessedEvent::getTransactionId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<String> settled = acquired.stream()
+                .filter(id -> !rejectedIds.contains(id))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        return deduplicator.complete(settled)
+                .andThen(deduplicator.release(rejectedIds))
+                .andThen(Completable.error(new IllegalStateException("Insufficient funds in sender wallets for "
+                        + rejected.size() + " Yanki transactions " + rejectedIds)));
+    }
+    private Completable apply(List<YankiTransactionProcessedEvent> successful, Map<String, Set<String>> acquired,
+                              Map<String, TransactionTrace> traces, List<YankiTransactionProcessedEvent> rejected) {
+        Set<String> phoneNumbers = new HashSet<>();
+        Map<YankiTransactionProcessedEvent, Set<String>> landed = new IdentityHashMap<>();
+        successful.forEach(event -> {
+            phoneNumbers.add(event.getSenderPhoneNumber());
+            phoneNumbers.add(event.getReceiverPhoneNumber());
+            landed.put(event, event.getTransactionId() == null
+                    ? ConcurrentHashMap.newKeySet()
+                    : acquired.get(event.getTransactionId()));
+        });
+        return walletRepository.findByPhoneNumberIn(phoneNumbers)
+                .toMap(YankiWallet::getPhoneNumber)
+                .flatMapCompletable(wallets -> settle(successful, wallets, landed, traces, rejected));
+    }
+    // Every step is skipped for events whose earlier attempt landed it, and errors are delayed until the writes in
+    // flight have finished, so the landed steps a release hands to the redelivery are complete.
+    private Completable settle(List<YankiTransactionProcessedEvent> events, Map<String, YankiWallet> wallets,
+                               Map<YankiTransactionProcessedEvent, Set<String>> landed,
+                               Map<String, TransactionTrace> traces, List<YankiTransactionProcessedEvent> rejected) {
+        List<YankiTransactionProcessedEvent> resolved = new ArrayList<>();
+        for (YankiTransactionProcessedEvent event : events) {
+            if (!wallets.containsKey(event.getSenderPhoneNumber())
+                    || !wallets.containsKey(event.getReceiverPhoneNumber())) {
+                log.error("Skipping transaction {}: wallet not found", event.getTransactionId());
+                continue;
+            }
+            resolved.add(event);
+        }
+        return Flowable.fromIterable(resolved)
+                .filter(event -> event.getTransactionId() != null
+                        && wallets.get(event.getSenderPhoneNumber()).getLinkedCard() == null
+                        && !landed.get(event).contains(ProcessedEvent.DEBITED))
+                .flatMapCompletable(event -> balanceEngine.execute(event.getSenderPhoneNumber(), () -> fundsHoldService
+                        .commitHold(event.getSenderPhoneNumber(), event.getTransactionId(), event.getAmount())
+                        .doOnSuccess(committed -> {
+                            if (committed) {
+                                landed.get(event).add(ProcessedEvent.DEBITED);
+                            }
+                        })
+                        .ignoreElement()), true, Integer.MAX_VALUE)
+                .andThen(debit(resolved, wallets, landed))
+                .andThen(record(resolved, landed, ProcessedEvent.DEBITED))
+                .andThen(Completable.defer(() -> settleCredits(resolved, wallets, landed, traces, rejected)));
+    }
+    // Debits run one event at a time in offset order per sender, as the per-record listener applies them, so a
+    // transfer the sender cannot cover does not take down the earlier ones it can. Debits and credits go through the
+    // balance engine on the shard of the wallet's phone number, like those of the per-record listener.
+    private Completable debit(List<YankiTransactionProcessedEvent> resolved, Map<String, YankiWallet> wallets,
+                              Map<YankiTransactionProcessedEvent, Set<String>> landed) {
+        return Flowable.fromIterable(resolved)
+                .filter(event -> wallets.get(event.getSenderPhoneNumber()).getLinkedCard() == null
+                        && !landed.get(event).contains(ProcessedEvent.DEBITED))
+                .groupBy(YankiTransactionProcessedEvent::getSenderPhoneNumber)
+                .flatMapCompletable(sender -> sender.concatMapCompletable(event -> balanceEngine
+                        .execute(event.getSenderPhoneNumber(), () -> stripedBalances
+                                .debit(event.getSenderPhoneNumber(), event.getAmount())
+                                .doOnSuccess(wallet -> landed.get(event).add(ProcessedEvent.DEBITED))
+                                .ignoreElement())), true, Integer.MAX_VALUE);
+    }
+    // Senders are evicted for every landed debit, not just this attempt's, since a failed earlier attempt never got
+    // that far.
+    private Completable settleCredits(List<YankiTransactionProcessedEvent> resolved, Map<String, YankiWallet> wallets,
+                                      Map<YankiTransactionProcessedEvent, Set<String>> landed,
+                                      Map<String, TransactionTrace> traces,
+                                      List<YankiTransactionProcessedEvent> rejected) {
+        Map<String, List<YankiTransactionProcessedEvent>> credits = new LinkedHashMap<>();
+        Set<String> debitedSenders = new LinkedHashSet<>();
+        Set<String> mutated = new LinkedHashSet<>();
+        List<YankiTransactionProcessedEvent> unrecorded = new ArrayList<>();
+        for (YankiTransactionProcessedEvent event : resolved) {
+            Set<String> steps = landed.get(event);
+            YankiWallet sender = wallets.get(event.getSenderPhoneNumber());
+            YankiWallet receiver = wallets.get(event.getReceiverPhoneNumber());
+            if (sender.getLinkedCard() == null && !steps.contains(ProcessedEvent.DEBITED)) {
+                log.error("Rejecting transaction {}: insufficient funds in sender wallet {}",
+                        event.getTransactionId(), sender.getPhoneNumber());
+                rejected.add(event);
+                continue;
+            }
+            if (sender.getLinkedCard() == null) {
+                debitedSenders.add(sender.getPhoneNumber());
+                mutated.add(sender.getPhoneNumber());
+            }
+            if (receiver.getLinkedCard() == null && !steps.contains(ProcessedEvent.CREDITED)) {
+                credits.computeIfAbsent(receiver.getPhoneNumber(), key -> new ArrayList<>()).add(event);
+                mutated.add(receiver.getPhoneNumber());
+            }
+            if (!steps.contains(ProcessedEvent.RECORDED)) {
+                unrecorded.add(event);
+            }
+        }
+        return credit(credits, wallets, landed)
+                .andThen(record(resolved, landed, ProcessedEvent.CREDITED))
+                .andThen(Flowable.fromIterable(debitedSenders).map(wallets::get)
+                        .flatMapCompletable(walletCache::evict))
+                .andThen(balanceStreamService.refresh(mutated))
+                .andThen(unrecorded.isEmpty()
+                        ? Completable.complete()
+                        : Completable.defer(() -> yankiTransactionRepository.saveAll(unrecorded.stream()
+                                        .map(event -> toTransaction(event, traces.get(event.getTransactionId())))
+                                        .collect(Collectors.toList()))
+                                .ignoreElements()
+                                .doOnComplete(() -> unrecorded.forEach(event ->
+                                        landed.get(event).add(ProcessedEvent.RECORDED)))
+                                .andThen(record(unrecorded, landed, ProcessedEvent.RECORDED))));
+    }
+    // The engine coalesces credits per receiver and evicts the cached wallet itself.
+    private Completable credit(Map<String, List<YankiTransactionProcessedEvent>> credits,
+                               Map<String, YankiWallet> wallets,
+                               Map<YankiTransactionProcessedEvent, Set<String>> landed) {
+        return Flowable.fromIterable(credits.entrySet())
+                .flatMapMaybe(credit -> {
+                    BigDecimal total = credit.getValue().stream()
+                            .map(YankiTransactionProcessedEvent::getAmount)
+                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+                    return balanceEngine.credit(wallets.get(credit.getKey()), total)
+                            .doOnSuccess(wallet -> credit.getValue().forEach(event ->
+                                    landed.get(event).add(ProcessedEvent.CREDITED)));
+                }, true, Integer.MAX_VALUE)
+                .count()
+                .doOnSuccess(matched -> {
+                    if (matched < credits.size()) {
+                        log.warn("Credited {} of {} receiver wallets", matched, credits.size());
+                    }
+                })
+                .ignoreElement();
+    }
+    // Notes a step on the markers of the events that have landed it, in case the instance dies before the batch
+    // completes.
+    private Completable record(List<YankiTransactionProcessedEvent> events,
+                               Map<YankiTransactionProcessedEvent, Set<String>> landed, String step) {
+        return Completable.defer(() -> deduplicator.recordStep(events.stream()
+                .filter(event -> landed.get(event).contains(step))
+                .map(YankiTransactionProcessedEvent::getTransactionId)
+                .collect(Collectors.toList()), step));
+    }
+    private static YankiTransaction toTransaction(YankiTransactionProcessedEvent event, TransactionTrace trace) {
+        YankiTransaction transaction = new YankiTransaction();
+        transaction.setSenderPhoneNumber(event.getSenderPhoneNumber());
+        transaction.setReceiverPhoneNumber(event.getReceiverPhoneNumber());
+        transaction.setAmount(event.getAmount());
+        transaction.setStatus("SUCCESS");
+        transaction.setTimestamp(LocalDateTime.now());
+        transaction.setCorrelationId(trace == null ? null : trace.getCorrelationId());
+        return transaction;
+    }
+}
@@ -1,67 +1,202 @@
 package com.bank.yankiservice.event;
 
+import com.bank.yankiservice.cache.WalletCache;
+import com.bank.yankiservice.config.KafkaConsumerConfig;
 import com.bank.yankiservice.dto.transaction.YankiTransactionProcessedEvent;
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.model.ProcessedEvent;
 import com.bank.yankiservice.model.YankiTransaction;
 import com.bank.yankiservice.model.YankiWallet;
 import com.bank.yankiservice.repository.YankiTransactionRepository;
-import com.bank.yankiservice.repository.YankiWalletRepository;
+import com.bank.yankiservice.service.BalanceEngine;
+import com.bank.yankiservice.service.BalanceStreamService;
+import com.bank.yankiservice.service.FundsHoldService;
+import com.bank.yankiservice.service.StripedBalanceService;
+import com.bank.yankiservice.tracing.TraceHeaders;
+import com.bank.yankiservice.tracing.TransactionTrace;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
-import lombok.RequiredArgsConstructor;
+import io.reactivex.Single;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.util.Pair;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.listener.adapter.ConsumerRecordMetadata;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Headers;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
-public class YankiTransactionConsumer {
-    private final YankiWalletRepository walletRepository;
+@ConditionalOnProperty(name = "yanki.kafka.batch.enabled", havingValue = "false", matchIfMissing = true)
+public class YankiTransactionConsumer implements ConsumerSeekAware {
+    static final String LISTENER_ID = "yanki-transaction-processed";
     private final YankiTransactionRepository yankiTransactionRepository;
-    @KafkaListener(topics = "yanki.transaction.processed", groupId = "yanki-service-group")
-    public void processYankiTransactionProcessed(YankiTransactionProcessedEvent event) {
-        log.info("Processing Yanki transaction processed event: {}", event);
+    private final WalletCache walletCache;
+    private final SettlementDeduplicator deduplicator;
+    private final FundsHoldService fundsHoldService;
+    private final BalanceStreamService balanceStreamService;
+    private final StripedBalanceService stripedBalances;
+    private final BalanceEngine balanceEngine;
+    private final YankiMetrics metrics;
+    private final BoundedRecordProcessor<Pair<YankiTransactionProcessedEvent, TransactionTrace>> processor;
+
+    public YankiTransactionConsumer(YankiTransactionRepository yankiTransactionRepository,
+                                    WalletCache walletCache,
+                                    SettlementDeduplicator deduplicator,
+                                    FundsHoldService fundsHoldService,
+                                    BalanceStreamService balanceStreamService,
+                                    StripedBalanceService stripedBalances,
+                                    BalanceEngine balanceEngine,
+                                    YankiMetrics metrics,
+                                    KafkaListenerEndpointRegistry registry,
+                                    @Value("${yanki.kafka.dispatch.lanes:16}") int laneCount,
+                                    @Value("${yanki.kafka.dispatch.max-in-flight:256}") int maxInFlight) {
+        this.yankiTransactionRepository = yankiTransactionRepository;
+        this.walletCache = walletCache;
+        this.deduplicator = deduplicator;
+        this.fundsHoldService = fundsHoldService;
+        this.balanceStreamService = balanceStreamService;
+        this.stripedBalances = stripedBalances;
+        this.balanceEngine = balanceEngine;
+        this.metrics = metrics;
+        YankiMetrics.Timing timing = metrics.listener("yanki.transaction.processed");
+        this.processor = new BoundedRecordProcessor<>(LISTENER_ID, registry, metrics, laneCount, maxInFlight,
+                item -> item.getFirst().getSenderPhoneNumber(), item -> handle(item.getFirst(), item.getSecond())
+                    .compose(timing.completable()));
+    }
+    @PostConstruct
+    public void start() {
+        processor.start();
+    }
+    @PreDestroy
+    public void stop() {
+        processor.stop();
+    }
+    @Override
+    public void registerSeekCallback(ConsumerSeekCallback callback) {
+        processor.registerSeekCallback(callback);
+    }
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        processor.onPartitionsAssigned(assignments, callback);
+    }
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        processor.onPartitionsRevoked(partitions);
+    }
+    @Override
+    public void unregisterSeekCallback() {
+        processor.unregisterSeekCallback();
+    }
+    @KafkaListener(id = LISTENER_ID, topics = "yanki.transaction.processed", groupId = "yanki-service-group",
+            concurrency = "${yanki.kafka.listener.concurrency:1}",
+            containerFactory = KafkaConsumerConfig.MANUAL_ACK_FACTORY)
+    public void processYankiTransactionProcessed(YankiTransactionProcessedEvent event,
+            @Headers Map<String, Object> headers,
+            @Header(name = KafkaHeaders.RECEIVED_TIMESTAMP, required = false) Long producedAt,
+            ConsumerRecordMetadata metadata,
+            Acknowledgment acknowledgment) {
+        TransactionTrace trace = TransactionTrace.of(headers, producedAt);
+        try (MDC.MDCCloseable ignored = TraceHeaders.bind(trace.getCorrelationId())) {
+            log.info("Processing Yanki transaction processed event: {}", event);
+            metrics.recordReceived(trace);
+            processor.submit(Pair.of(event, trace), metadata, acknowledgment);
+        }
+    }
+    private Completable handle(YankiTransactionProcessedEvent event, TransactionTrace trace) {
+        return process(event, trace)
+                .doOnComplete(() -> metrics.recordSettled(trace, Instant.now()));
+    }
+    private Completable process(YankiTransactionProcessedEvent event, TransactionTrace trace) {
         if ("SUCCESS".equals(event.getStatus())) {
-            Maybe<YankiWallet> senderWalletMaybe = walletRepository.findByPhoneNumber(event.getSenderPhoneNumber());
-            Maybe<YankiWallet> receiverWalletMaybe = walletRepository.findByPhoneNumber(event.getReceiverPhoneNumber());
-            senderWalletMaybe.zipWith(receiverWalletMaybe, Pair::of)
-                    .flatMapCompletable(pair -> {
-                        YankiWallet senderWallet = pair.getFirst();
-                        YankiWallet receiverWallet = pair.getSecond();
-                        boolean senderHasDebitCard = senderWallet.getLinkedCard() != null;
-                        boolean receiverHasDebitCard = receiverWallet.getLinkedCard() != null;
-                        Completable updateCompletable;
-                        if (!senderHasDebitCard && !receiverHasDebitCard) {
-                            senderWallet.setBalance(senderWallet.getBalance().subtract(event.getAmount()));
-                            senderWallet.setUpdatedAt(LocalDateTime.now());
-                            receiverWallet.setBalance(receiverWallet.getBalance().add(event.getAmount()));
-                            receiverWallet.setUpdatedAt(LocalDateTime.now());
-                            updateCompletable = walletRepository.update(senderWallet)
-                                    .andThen(walletRepository.update(receiverWallet));
-                        } else if (senderHasDebitCard && !receiverHasDebitCard) {
-                            receiverWallet.setBalance(receiverWallet.getBalance().add(event.getAmount()));
-                            receiverWallet.setUpdatedAt(LocalDateTime.now());
-                            updateCompletable = walletRepository.update(receiverWallet);
-                        } else if (!senderHasDebitCard && receiverHasDebitCard) {
-                            senderWallet.setBalance(senderWallet.getBalance().subtract(event.getAmount()));
-                            senderWallet.setUpdatedAt(LocalDateTime.now());
-                            updateCompletable = walletRepository.update(senderWallet);
-                        } else {
-                            updateCompletable = Completable.complete();
-                        }
-                        YankiTransaction transaction = new YankiTransaction();
-                        transaction.setSenderPhoneNumber(event.getSenderPhoneNumber());
-                        transaction.setReceiverPhoneNumber(event.getReceiverPhoneNumber());
-                        transaction.setAmount(event.getAmount());
-                        transaction.setStatus("SUCCESS");
-                        transaction.setTimestamp(LocalDateTime.now().toString());
-                        return updateCompletable.andThen(yankiTransactionRepository.save(transaction).ignoreElement());
-                    })
-                    .doOnError(error -> log.error("Error processing Yanki transaction: {}", error.getMessage()))
-                    .subscribe();
+            return deduplicator.acquire(event.getTransactionId())
+                    .doOnComplete(() -> log.info("Skipping already settled Yanki transaction {}",
+                            event.getTransactionId()))
+                    .flatMapCompletable(landed -> settle(event, trace, landed)
+                            .onErrorResumeNext(error -> deduplicator
+                                    .release(Collections.singletonMap(event.getTransactionId(), landed))
+                                    .onErrorComplete()
+                                    .andThen(Completable.error(error)))
+                            .andThen(Completable.defer(() -> deduplicator
+                                    .complete(Collections.singletonList(event.getTransactionId())))));
+        }
+        if (event.getTransactionId() == null) {
+            return Completable.complete();
         }
+        return balanceEngine.execute(event.getSenderPhoneNumber(), () -> fundsHoldService
+                .releaseHold(event.getSenderPhoneNumber(), event.getTransactionId(), event.getAmount())
+                .doOnSuccess(released -> {
+                    if (released) {
+                        log.info("Released funds hold of failed Yanki transaction {}", event.getTransactionId());
+                    }
+                })
+                .ignoreElement());
+    }
+    private Single<Boolean> commitHold(YankiTransactionProcessedEvent event) {
+        if (event.getTransactionId() == null) {
+            return Single.just(false);
+        }
+        return fundsHoldService.commitHold(event.getSenderPhoneNumber(), event.getTransactionId(), event.getAmount());
+    }
+    private Completable debit(String phoneNumber, YankiTransactionProcessedEvent event) {
+        return stripedBalances.debit(phoneNumber, event.getAmount())
+                .switchIfEmpty(Maybe.error(new IllegalStateException(
+                        "Insufficient funds in sender wallet " + phoneNumber)))
+                .doOnSuccess(balanceStreamService::publish)
+                .flatMapCompletable(walletCache::evict);
+    }
+    // Each step is skipped when an earlier attempt of the same transaction landed it, so a retry after a failed
+    // credit or save does not debit the sender again through the fallback once the hold is gone.
+    private Completable settle(YankiTransactionProcessedEvent event, TransactionTrace trace, Set<String> landed) {
+        String transactionId = event.getTransactionId();
+        Maybe<YankiWallet> senderWalletMaybe = walletCache.findByPhoneNumber(event.getSenderPhoneNumber());
+        Maybe<YankiWallet> receiverWalletMaybe = walletCache.findByPhoneNumber(event.getReceiverPhoneNumber());
+        return senderWalletMaybe.zipWith(receiverWalletMaybe, Pair::of)
+                .flatMapCompletable(pair -> {
+                    YankiWallet senderWallet = pair.getFirst();
+                    YankiWallet receiverWallet = pair.getSecond();
+                    Completable debit = senderWallet.getLinkedCard() != null
+                            ? Completable.complete()
+                            : deduplicator.step(transactionId, landed, ProcessedEvent.DEBITED, () -> balanceEngine
+                                .execute(senderWallet.getPhoneNumber(), () -> commitHold(event)
+                                    .flatMapCompletable(committed -> committed
+                                        ? Completable.complete()
+                                        : debit(senderWallet.getPhoneNumber(), event))));
+                    Completable credit = receiverWallet.getLinkedCard() != null
+                            ? Completable.complete()
+                            : deduplicator.step(transactionId, landed, ProcessedEvent.CREDITED, () -> balanceEngine
+                                .credit(receiverWallet, event.getAmount())
+                                    .doOnSuccess(balanceStreamService::publish)
+                                    .ignoreElement());
+                    YankiTransaction transaction = new YankiTransaction();
+                    transaction.setSenderPhoneNumber(event.getSenderPhoneNumber());
+                    transaction.setReceiverPhoneNumber(event.getReceiverPhoneNumber());
+                    transaction.setAmount(event.getAmount());
+                    transaction.setStatus("SUCCESS");
+                    transaction.setTimestamp(LocalDateTime.now());
+                    transaction.setCorrelationId(trace.getCorrelationId());
+                    Completable record = deduplicator.step(transactionId, landed, ProcessedEvent.RECORDED,
+                            () -> yankiTransactionRepository.save(transaction).ignoreElement());
+                    return debit
+                            .andThen(credit)
+                            .andThen(record);
+                });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,159 @@
+package com.bank.yankiservice.metrics;
+
+import com.bank.yankiservice.tracing.TransactionTrace;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.reactivex.Completable;
+import io.reactivex.CompletableTransformer;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.Maybe;
+import io.reactivex.MaybeTransformer;
+import io.reactivex.Single;
+import io.reactivex.SingleTransformer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+@RequiredArgsConstructor
+public class YankiMetrics {
+    public static final String SERVICE_CALLS = "yanki.service.calls";
+    public static final String LISTENER_PROCESSING = "yanki.kafka.listener.processing";
+    public static final String LISTENER_BATCH_SIZE = "yanki.kafka.listener.batch.size";
+    public static final String LISTENER_IN_FLIGHT = "yanki.kafka.listener.in.flight";
+    public static final String KAFKA_SEND = "yanki.kafka.send";
+    public static final String QUEUE_DEPTH = "yanki.queue.depth";
+    public static final String TRANSACTION_STAGE = "yanki.transaction.stage";
+    public static final String RATE_LIMITED = "yanki.ratelimit.rejected";
+    public static final String STAGE_OUTBOX = "outbox";
+    public static final String STAGE_EXTERNAL = "external";
+    public static final String STAGE_DELIVERY = "delivery";
+    public static final String STAGE_SETTLEMENT = "settlement";
+    public static final String STAGE_TOTAL = "total";
+    public static final String SUCCESS = "success";
+    public static final String EMPTY = "empty";
+    public static final String ERROR = "error";
+    public static final String CANCELLED = "cancelled";
+    private final MeterRegistry registry;
+
+    public Timing service(String method) {
+        return timing(SERVICE_CALLS, "method", method);
+    }
+    public Timing listener(String topic) {
+        return timing(LISTENER_PROCESSING, "topic", topic);
+    }
+    public Timing send(String topic) {
+        return timing(KAFKA_SEND, "topic", topic);
+    }
+    public Timing timing(String name, String... tags) {
+        return new Timing(name, Tags.of(tags));
+    }
+    public void recordBatchSize(String topic, int size) {
+        DistributionSummary.builder(LISTENER_BATCH_SIZE)
+                .tag("topic", topic)
+                .register(registry)
+                .record(size);
+    }
+    public void registerInFlight(String listener, AtomicInteger inFlight) {
+        Gauge.builder(LISTENER_IN_FLIGHT, inFlight, AtomicInteger::get)
+                .tag("listener", listener)
+                .register(registry);
+    }
+    public void registerQueueDepth(String queue, Collection<?> items) {
+        Gauge.builder(QUEUE_DEPTH, items, Collection::size)
+                .tag("queue", queue)
+                .register(registry);
+    }
+    public void recordRateLimited(String scope) {
+        Counter.builder(RATE_LIMITED)
+                .tag("scope", scope)
+                .register(registry)
+                .increment();
+    }
+    public void recordStage(String stage, Instant from, Instant to) {
+        // Stages spanning other services compare their clocks with ours; skew can make them negative.
+        if (from == null || to == null || to.isBefore(from)) {
+            return;
+        }
+        Timer.builder(TRANSACTION_STAGE)
+                .tag("stage", stage)
+                .register(registry)
+                .record(Duration.between(from, to));
+    }
+    public void recordReceived(TransactionTrace trace) {
+        recordStage(STAGE_EXTERNAL, trace.getPublishedAt(), trace.getProducedAt());
+        recordStage(STAGE_DELIVERY, trace.getProducedAt(), trace.getReceivedAt());
+    }
+    public void recordSettled(TransactionTrace trace, Instant settledAt) {
+        recordStage(STAGE_SETTLEMENT, trace.getReceivedAt(), settledAt);
+        recordStage(STAGE_TOTAL, trace.getRequestedAt(), settledAt);
+    }
+
+    public final class Timing {
+        private final String name;
+        private final Tags tags;
+
+        private Timing(String name, Tags tags) {
+            this.name = name;
+            this.tags = tags;
+        }
+        public <T> SingleTransformer<T, T> single() {
+            return upstream -> Single.defer(() -> {
+                Recording recording = new Recording();
+                return upstream.doOnSuccess(value -> recording.stop(SUCCESS, null))
+                        .doOnError(error -> recording.stop(ERROR, error))
+                        .doOnDispose(() -> recording.stop(CANCELLED, null));
+            });
+        }
+        public <T> MaybeTransformer<T, T> maybe() {
+            return upstream -> Maybe.defer(() -> {
+                Recording recording = new Recording();
+                return upstream.doOnSuccess(value -> recording.stop(SUCCESS, null))
+                        .doOnComplete(() -> recording.stop(EMPTY, null))
+                        .doOnError(error -> recording.stop(ERROR, error))
+                        .doOnDispose(() -> recording.stop(CANCELLED, null));
+            });
+        }
+        public CompletableTransformer completable() {
+            return upstream -> Completable.defer(() -> {
+                Recording recording = new Recording();
+                return upstream.doOnComplete(() -> recording.stop(SUCCESS, null))
+                        .doOnError(error -> recording.stop(ERROR, error))
+                        .doOnDispose(() -> recording.stop(CANCELLED, null));
+            });
+        }
+        public <T> FlowableTransformer<T, T> flowable() {
+            return upstream -> Flowable.defer(() -> {
+                Recording recording = new Recording();
+                return upstream.doOnComplete(() -> recording.stop(SUCCESS, null))
+                        .doOnError(error -> recording.stop(ERROR, error))
+                        .doOnCancel(() -> recording.stop(CANCELLED, null));
+            });
+        }
+
+        private final class Recording {
+            private final Timer.Sample sample = Timer.start(registry);
+            private final AtomicBoolean stopped = new AtomicBoolean();
+
+            private void stop(String outcome, Throwable error) {
+                if (stopped.compareAndSet(false, true)) {
+                    sample.stop(Timer.builder(name)
+                            .tags(tags)
+                            .tag("outcome", outcome)
+                            .tag("exception", error == null ? "none" : error.getClass().getSimpleName())
+                            .register(registry));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.bank.yankiservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FundsHold {
+    private String transactionId;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal amount;
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+}
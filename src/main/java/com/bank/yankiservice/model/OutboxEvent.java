@@ -0,0 +1,31 @@
+package com.bank.yankiservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "yanki_outbox")
+public class OutboxEvent {
+    public static final String PENDING = "PENDING";
+    public static final String FAILED = "FAILED";
+    @Id
+    private String id;
+    private String topic;
+    private String messageKey;
+    private Object payload;
+    private String correlationId;
+    private String status;
+    private int attempts;
+    private LocalDateTime createdAt;
+    private LocalDateTime nextAttemptAt;
+    private String lastError;
+}
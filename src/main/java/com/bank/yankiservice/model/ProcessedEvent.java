@@ -0,0 +1,32 @@
+package com.bank.yankiservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+// PENDING while a settlement is being applied and DONE once its balance writes have landed. Markers written
+// before the status existed have none and count as DONE. Steps lists the parts of a PENDING settlement that have
+// landed, so a retry resumes after them instead of applying them twice. BootCoin purchases are marked by purchase id
+// with the one step REQUESTED.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "yanki_processed_events")
+public class ProcessedEvent {
+    public static final String PENDING = "PENDING";
+    public static final String DONE = "DONE";
+    public static final String DEBITED = "DEBITED";
+    public static final String CREDITED = "CREDITED";
+    public static final String RECORDED = "RECORDED";
+    public static final String REQUESTED = "REQUESTED";
+    @Id
+    private String transactionId;
+    private String status;
+    private Set<String> steps;
+    private LocalDateTime processedAt;
+}
@@ -0,0 +1,20 @@
+package com.bank.yankiservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StripeWatermark {
+    private int slot;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal swept;
+}
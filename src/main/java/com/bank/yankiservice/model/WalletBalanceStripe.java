@@ -0,0 +1,34 @@
+package com.bank.yankiservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Running total of the credits a striped wallet received through one slot. It only ever grows; the wallet
+// document records how much of it has already been swept into its balance.
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "yanki_wallet_stripes")
+public class WalletBalanceStripe {
+    @Id
+    private String id;
+    private String walletId;
+    private int slot;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal credited;
+    private LocalDateTime updatedAt;
+
+    public static String idOf(String walletId, int slot) {
+        return walletId + ":" + slot;
+    }
+}
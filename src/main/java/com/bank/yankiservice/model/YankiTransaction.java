@@ -7,6 +7,7 @@ import nonapi.io.github.classgraph.json.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Data
 @AllArgsConstructor
@@ -19,5 +20,6 @@ public class YankiTransaction {
     private String receiverPhoneNumber;
     private BigDecimal amount;
     private String status;
-    private String timestamp;
+    private LocalDateTime timestamp;
+    private String correlationId;
 }
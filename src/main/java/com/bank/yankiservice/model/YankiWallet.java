@@ -1,20 +1,28 @@
 package com.bank.yankiservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 import nonapi.io.github.classgraph.json.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
 @Setter
-@Builder
+@Builder(toBuilder = true)
 @Document(collection = "yanki_wallets")
 public class YankiWallet {
+    public static final String PHONE_NUMBER_INDEX = "phoneNumber_unique";
+    public static final String DOCUMENT_NUMBER_INDEX = "documentNumber_unique";
+    public static final String IMEI_INDEX = "imei_unique";
     @Id
     private String id;
     private String phoneNumber;
@@ -22,7 +30,17 @@ public class YankiWallet {
     private String imei;
     private String email;
     private String linkedCard;
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal balance;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal heldBalance;
+    @JsonIgnore
+    private List<FundsHold> holds;
+    // Serialized (unlike holds) so wallets cached in Redis still know to merge their stripes on read.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer balanceStripes;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<StripeWatermark> stripeWatermarks;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
\ No newline at end of file
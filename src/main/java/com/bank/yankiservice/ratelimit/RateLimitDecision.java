@@ -0,0 +1,22 @@
+package com.bank.yankiservice.ratelimit;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+@AllArgsConstructor
+public class RateLimitDecision {
+    private final boolean allowed;
+    private final long limit;
+    private final long remaining;
+    private final Duration retryAfter;
+
+    public static RateLimitDecision allow(long limit, long remaining) {
+        return new RateLimitDecision(true, limit, remaining, Duration.ZERO);
+    }
+    public static RateLimitDecision deny(long limit, Duration retryAfter) {
+        return new RateLimitDecision(false, limit, 0, retryAfter);
+    }
+}
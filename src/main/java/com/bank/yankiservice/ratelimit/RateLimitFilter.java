@@ -0,0 +1,118 @@
+package com.bank.yankiservice.ratelimit;
+
+import com.bank.yankiservice.dto.BaseResponse;
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.Single;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.security.Principal;
+import java.util.List;
+import java.util.Optional;
+
+// Ordered after the Spring Security chain (-100) so the JWT principal is already resolved.
+@Component
+@Order(0)
+@Slf4j
+public class RateLimitFilter implements WebFilter {
+    static final String LIMIT_HEADER = "X-RateLimit-Limit";
+    static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    private static final String UNKNOWN_CLIENT = "unknown";
+    private final RateLimiter rateLimiter;
+    private final YankiMetrics metrics;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final List<String> paths;
+    private final boolean trustForwardedFor;
+
+    public RateLimitFilter(RateLimiter rateLimiter,
+                           YankiMetrics metrics,
+                           ObjectMapper objectMapper,
+                           @Value("${yanki.rate-limit.enabled:true}") boolean enabled,
+                           @Value("${yanki.rate-limit.paths:/api/yanki/login,/api/yanki/register,"
+                               + "/api/yanki/transaction,/api/yanki/transactions/batch}") List<String> paths,
+                           @Value("${yanki.rate-limit.trust-forwarded-for:false}") boolean trustForwardedFor) {
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.paths = paths;
+        this.trustForwardedFor = trustForwardedFor;
+    }
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled || !paths.contains(exchange.getRequest().getPath().pathWithinApplication().value())) {
+            return chain.filter(exchange);
+        }
+        Single<Optional<RateLimitDecision>> rejection = rateLimiter.tryAcquireForIp(clientIp(exchange))
+                .flatMap(ipDecision -> {
+                    if (!ipDecision.isAllowed()) {
+                        metrics.recordRateLimited("ip");
+                        return Single.just(Optional.of(ipDecision));
+                    }
+                    return Single.fromPublisher(exchange.getPrincipal()
+                                    .map(Principal::getName)
+                                    .map(Optional::of)
+                                    .defaultIfEmpty(Optional.empty()))
+                            .flatMap(user -> user.isEmpty()
+                                    ? Single.just(Optional.<RateLimitDecision>empty())
+                                    : rateLimiter.tryAcquireForUser(user.get())
+                                        .map(userDecision -> {
+                                            if (userDecision.isAllowed()) {
+                                                return Optional.<RateLimitDecision>empty();
+                                            }
+                                            metrics.recordRateLimited("user");
+                                            return Optional.of(userDecision);
+                                        }));
+                });
+        return Mono.from(rejection.toFlowable())
+                .flatMap(denied -> denied.isPresent() ? reject(exchange, denied.get()) : chain.filter(exchange));
+    }
+    private String clientIp(ServerWebExchange exchange) {
+        if (trustForwardedFor) {
+            String forwardedFor = exchange.getRequest().getHeaders().getFirst("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.isBlank()) {
+                int comma = forwardedFor.indexOf(',');
+                return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+            }
+        }
+        InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+        if (remoteAddress == null) {
+            return UNKNOWN_CLIENT;
+        }
+        return remoteAddress.getAddress() != null
+                ? remoteAddress.getAddress().getHostAddress()
+                : remoteAddress.getHostString();
+    }
+    private Mono<Void> reject(ServerWebExchange exchange, RateLimitDecision decision) {
+        long retryAfterSeconds = Math.max(1, (decision.getRetryAfter().toMillis() + 999) / 1000);
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.getHeaders().set(LIMIT_HEADER, Long.toString(decision.getLimit()));
+        response.getHeaders().set(REMAINING_HEADER, Long.toString(decision.getRemaining()));
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(new BaseResponse<>(HttpStatus.TOO_MANY_REQUESTS.value(),
+                    "Too many requests, retry in " + retryAfterSeconds + " seconds", null));
+        } catch (JsonProcessingException e) {
+            log.error("Error writing rate limit response: {}", e.getMessage());
+            return response.setComplete();
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+}
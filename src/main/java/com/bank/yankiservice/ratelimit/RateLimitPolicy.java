@@ -0,0 +1,27 @@
+package com.bank.yankiservice.ratelimit;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+public class RateLimitPolicy {
+    private final String name;
+    private final long capacity;
+    private final double refillPerSecond;
+
+    public RateLimitPolicy(String name, long capacity, double refillPerSecond) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate limit " + name + " needs a positive capacity and refill rate");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.refillPerSecond = refillPerSecond;
+    }
+    public TokenBucket newBucket(long nowNanos) {
+        return new TokenBucket(capacity, refillPerSecond, nowNanos);
+    }
+    public Duration timeToFill() {
+        return Duration.ofMillis((long) Math.ceil(capacity * 1000 / refillPerSecond));
+    }
+}
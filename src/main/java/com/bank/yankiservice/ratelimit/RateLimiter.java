@@ -0,0 +1,60 @@
+package com.bank.yankiservice.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.reactivex.Single;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+@Component
+@Slf4j
+public class RateLimiter {
+    private final RateLimitPolicy ipPolicy;
+    private final RateLimitPolicy userPolicy;
+    private final RedisRateLimitStore redisStore;
+    private final Cache<String, TokenBucket> localBuckets;
+
+    public RateLimiter(Optional<RedisRateLimitStore> redisStore,
+                       @Value("${yanki.rate-limit.ip.capacity:100}") long ipCapacity,
+                       @Value("${yanki.rate-limit.ip.refill-per-second:20}") double ipRefillPerSecond,
+                       @Value("${yanki.rate-limit.user.capacity:20}") long userCapacity,
+                       @Value("${yanki.rate-limit.user.refill-per-second:5}") double userRefillPerSecond,
+                       @Value("${yanki.rate-limit.local.max-size:100000}") long maxSize) {
+        this.ipPolicy = new RateLimitPolicy("ip", ipCapacity, ipRefillPerSecond);
+        this.userPolicy = new RateLimitPolicy("user", userCapacity, userRefillPerSecond);
+        this.redisStore = redisStore.orElse(null);
+        this.localBuckets = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ipPolicy.timeToFill().compareTo(userPolicy.timeToFill()) > 0
+                        ? ipPolicy.timeToFill()
+                        : userPolicy.timeToFill())
+                .build();
+    }
+    public Single<RateLimitDecision> tryAcquireForIp(String clientIp) {
+        return tryAcquire(ipPolicy, clientIp);
+    }
+    public Single<RateLimitDecision> tryAcquireForUser(String phoneNumber) {
+        return tryAcquire(userPolicy, phoneNumber);
+    }
+    // The local bucket only sees this replica's share of the traffic, so when it refuses, the shared bucket
+    // would refuse too; only requests it lets through pay for the Redis round trip.
+    private Single<RateLimitDecision> tryAcquire(RateLimitPolicy policy, String key) {
+        return Single.defer(() -> {
+            long now = System.nanoTime();
+            RateLimitDecision local = localBuckets.get(policy.getName() + ":" + key, ignored -> policy.newBucket(now))
+                    .tryConsume(now);
+            if (!local.isAllowed() || redisStore == null) {
+                return Single.just(local);
+            }
+            return redisStore.tryConsume(key, policy)
+                    .onErrorReturn(error -> {
+                        log.warn("Redis rate limit check failed for {} {}: {}", policy.getName(), key,
+                                error.getMessage());
+                        return local;
+                    });
+        });
+    }
+}
@@ -0,0 +1,62 @@
+package com.bank.yankiservice.ratelimit;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(prefix = "yanki.cache.redis", name = "enabled", havingValue = "true")
+public class RedisRateLimitStore {
+    static final String KEY_PREFIX = "yanki:ratelimit:";
+    // Refills and takes one token atomically; the bucket expires once it would be full again anyway.
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> TOKEN_BUCKET = RedisScript.of(
+            "local capacity = tonumber(ARGV[1])\n"
+            + "local refill_per_ms = tonumber(ARGV[2])\n"
+            + "local now = tonumber(ARGV[3])\n"
+            + "local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')\n"
+            + "local tokens = tonumber(bucket[1]) or capacity\n"
+            + "local ts = tonumber(bucket[2]) or now\n"
+            + "tokens = math.min(capacity, tokens + math.max(0, now - ts) * refill_per_ms)\n"
+            + "local allowed = 0\n"
+            + "local retry = 0\n"
+            + "if tokens >= 1 then\n"
+            + "  tokens = tokens - 1\n"
+            + "  allowed = 1\n"
+            + "else\n"
+            + "  retry = math.ceil((1 - tokens) / refill_per_ms)\n"
+            + "end\n"
+            + "redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(math.max(now, ts)))\n"
+            + "redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / refill_per_ms))\n"
+            + "return {allowed, math.floor(tokens), retry}\n",
+            List.class);
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    public RedisRateLimitStore(ReactiveStringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+    public Single<RateLimitDecision> tryConsume(String key, RateLimitPolicy policy) {
+        List<String> args = List.of(
+                Long.toString(policy.getCapacity()),
+                Double.toString(policy.getRefillPerSecond() / 1000),
+                Long.toString(System.currentTimeMillis()));
+        return Flowable.fromPublisher(redisTemplate.execute(TOKEN_BUCKET,
+                        Collections.singletonList(KEY_PREFIX + policy.getName() + ":" + key), args))
+                .firstOrError()
+                .map(result -> toDecision(result, policy));
+    }
+    @SuppressWarnings("rawtypes")
+    private static RateLimitDecision toDecision(List result, RateLimitPolicy policy) {
+        long allowed = ((Number) result.get(0)).longValue();
+        return allowed == 1
+                ? RateLimitDecision.allow(policy.getCapacity(), ((Number) result.get(1)).longValue())
+                : RateLimitDecision.deny(policy.getCapacity(), Duration.ofMillis(((Number) result.get(2)).longValue()));
+    }
+}
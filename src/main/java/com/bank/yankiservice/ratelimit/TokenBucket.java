@@ -0,0 +1,28 @@
+package com.bank.yankiservice.ratelimit;
+
+import java.time.Duration;
+
+public class TokenBucket {
+    private final long capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(long capacity, double refillPerSecond, long nowNanos) {
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+    public synchronized RateLimitDecision tryConsume(long nowNanos) {
+        if (nowNanos > lastRefillNanos) {
+            tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+        if (tokens >= 1) {
+            tokens -= 1;
+            return RateLimitDecision.allow(capacity, (long) tokens);
+        }
+        return RateLimitDecision.deny(capacity, Duration.ofNanos((long) Math.ceil((1 - tokens) / tokensPerNano)));
+    }
+}
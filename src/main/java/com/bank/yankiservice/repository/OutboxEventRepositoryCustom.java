@@ -0,0 +1,18 @@
+package com.bank.yankiservice.repository;
+
+import com.bank.yankiservice.model.OutboxEvent;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface OutboxEventRepositoryCustom {
+    Flowable<OutboxEvent> findPending(LocalDateTime now, Collection<String> blockedKeys, int limit);
+    Flowable<String> findBlockedKeys(LocalDateTime now);
+    Completable deleteSent(Collection<String> ids);
+    Completable recordFailure(OutboxEvent event);
+    Single<Boolean> acquireLease(String name, String owner, Duration duration);
+}
@@ -0,0 +1,79 @@
+package com.bank.yankiservice.repository;
+
+import com.bank.yankiservice.model.OutboxEvent;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Date;
+
+@RequiredArgsConstructor
+public class OutboxEventRepositoryCustomImpl implements OutboxEventRepositoryCustom {
+    static final String LEASE_COLLECTION = "yanki_outbox_lease";
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Flowable<OutboxEvent> findPending(LocalDateTime now, Collection<String> blockedKeys, int limit) {
+        Criteria criteria = Criteria.where("status").is(OutboxEvent.PENDING).and("nextAttemptAt").lte(now);
+        if (!blockedKeys.isEmpty()) {
+            criteria = criteria.and("messageKey").nin(blockedKeys);
+        }
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(limit);
+        return Flowable.fromPublisher(mongoTemplate.find(query, OutboxEvent.class));
+    }
+    // Keys with an event that is backing off or was given up on; their later events must wait behind it.
+    @Override
+    public Flowable<String> findBlockedKeys(LocalDateTime now) {
+        Query query = Query.query(new Criteria().orOperator(
+                Criteria.where("status").is(OutboxEvent.FAILED),
+                Criteria.where("status").is(OutboxEvent.PENDING).and("nextAttemptAt").gt(now)));
+        return Flowable.fromPublisher(mongoTemplate.findDistinct(query, "messageKey", OutboxEvent.class,
+                String.class));
+    }
+    @Override
+    public Completable deleteSent(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return Completable.complete();
+        }
+        return Completable.fromPublisher(mongoTemplate.remove(
+                Query.query(Criteria.where("_id").in(ids)), OutboxEvent.class));
+    }
+    @Override
+    public Completable recordFailure(OutboxEvent event) {
+        return Completable.fromPublisher(mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(event.getId())),
+                new Update()
+                        .set("status", event.getStatus())
+                        .set("attempts", event.getAttempts())
+                        .set("nextAttemptAt", event.getNextAttemptAt())
+                        .set("lastError", event.getLastError()),
+                OutboxEvent.class));
+    }
+    @Override
+    public Single<Boolean> acquireLease(String name, String owner, Duration duration) {
+        Date now = new Date();
+        Query query = Query.query(Criteria.where("_id").is(name)
+                .orOperator(Criteria.where("lockedUntil").lt(now), Criteria.where("owner").is(owner)));
+        Update update = new Update()
+                .set("owner", owner)
+                .set("lockedUntil", new Date(now.getTime() + duration.toMillis()));
+        return Flowable.fromPublisher(mongoTemplate.upsert(query, update, LEASE_COLLECTION))
+                .map(result -> true)
+                .single(false)
+                .onErrorResumeNext(error -> error instanceof DuplicateKeyException
+                        ? Single.just(false)
+                        : Single.error(error));
+    }
+}
@@ -0,0 +1,10 @@
+package com.bank.yankiservice.repository;
+
+import com.bank.yankiservice.model.ProcessedEvent;
+import org.springframework.data.repository.reactive.RxJava2CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProcessedEventRepository extends RxJava2CrudRepository<ProcessedEvent, String>,
+        ProcessedEventRepositoryCustom {
+}
@@ -0,0 +1,20 @@
+package com.bank.yankiservice.repository;
+
+import com.bank.yankiservice.resilience.NotTimeLimited;
+import io.reactivex.Completable;
+import io.reactivex.Single;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+public interface ProcessedEventRepositoryCustom {
+    // A claim that timed out after inserting its markers would leave them PENDING, and the redelivery would
+    // skip the settlement until the lease expired. Maps each claimed id to the steps that already landed.
+    @NotTimeLimited
+    Single<Map<String, Set<String>>> claim(Collection<String> transactionIds, Duration lease);
+    Completable markDone(Collection<String> transactionIds);
+    Completable addStep(Collection<String> transactionIds, String step);
+    Completable reopen(String transactionId, Collection<String> steps);
+}
@@ -0,0 +1,117 @@
+package com.bank.yankiservice.repository;
+
+import com.bank.yankiservice.model.ProcessedEvent;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.InsertManyOptions;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class ProcessedEventRepositoryCustomImpl implements ProcessedEventRepositoryCustom {
+    private static final int DUPLICATE_KEY = 11000;
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    // Inserts a PENDING marker per id. An id that already has one is claimed only when its marker is still
+    // PENDING and older than the lease, which means the settlement that wrote it never finished.
+    @Override
+    public Single<Map<String, Set<String>>> claim(Collection<String> transactionIds, Duration lease) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(transactionIds));
+        if (ids.isEmpty()) {
+            return Single.just(Map.of());
+        }
+        Date now = new Date();
+        List<Document> documents = ids.stream()
+                .map(id -> new Document("_id", id)
+                        .append("status", ProcessedEvent.PENDING)
+                        .append("processedAt", now))
+                .collect(Collectors.toList());
+        String collectionName = mongoTemplate.getCollectionName(ProcessedEvent.class);
+        return Flowable.fromPublisher(mongoTemplate.getCollection(collectionName))
+                .concatMap(collection -> collection.insertMany(documents, new InsertManyOptions().ordered(false)))
+                .ignoreElements()
+                .toSingle(() -> noStepsLanded(ids))
+                .onErrorResumeNext(error -> {
+                    if (!(error instanceof MongoBulkWriteException)) {
+                        return Single.error(error);
+                    }
+                    MongoBulkWriteException bulkError = (MongoBulkWriteException) error;
+                    if (bulkError.getWriteErrors().stream().anyMatch(e -> e.getCode() != DUPLICATE_KEY)) {
+                        return Single.error(error);
+                    }
+                    List<String> existing = bulkError.getWriteErrors().stream()
+                            .map(e -> ids.get(e.getIndex()))
+                            .collect(Collectors.toList());
+                    Map<String, Set<String>> claimed = noStepsLanded(ids);
+                    claimed.keySet().removeAll(existing);
+                    return Flowable.fromIterable(existing)
+                            .concatMapMaybe(id -> takeOver(id, now, lease))
+                            .collect(() -> claimed, (map, marker) -> map.put(marker.getTransactionId(),
+                                    marker.getSteps() == null ? new LinkedHashSet<>() : marker.getSteps()));
+                });
+    }
+    @Override
+    public Completable markDone(Collection<String> transactionIds) {
+        if (transactionIds.isEmpty()) {
+            return Completable.complete();
+        }
+        Query query = Query.query(Criteria.where("_id").in(transactionIds));
+        Update update = new Update()
+                .set("status", ProcessedEvent.DONE)
+                .set("processedAt", new Date());
+        return Flowable.fromPublisher(mongoTemplate.updateMulti(query, update, ProcessedEvent.class))
+                .ignoreElements();
+    }
+    @Override
+    public Completable addStep(Collection<String> transactionIds, String step) {
+        if (transactionIds.isEmpty()) {
+            return Completable.complete();
+        }
+        Query query = Query.query(Criteria.where("_id").in(transactionIds));
+        return Flowable.fromPublisher(mongoTemplate.updateMulti(query, new Update().addToSet("steps", step),
+                        ProcessedEvent.class))
+                .ignoreElements();
+    }
+    // Keeps the marker and its landed steps but expires its lease, so the redelivery claims it straight away.
+    @Override
+    public Completable reopen(String transactionId, Collection<String> steps) {
+        Query query = Query.query(Criteria.where("_id").is(transactionId).and("status").is(ProcessedEvent.PENDING));
+        Update update = new Update()
+                .set("processedAt", new Date(0))
+                .addToSet("steps").each(steps.toArray());
+        return Flowable.fromPublisher(mongoTemplate.updateFirst(query, update, ProcessedEvent.class))
+                .ignoreElements();
+    }
+    private Maybe<ProcessedEvent> takeOver(String transactionId, Date now, Duration lease) {
+        Query query = Query.query(Criteria.where("_id").is(transactionId)
+                .and("status").is(ProcessedEvent.PENDING)
+                .and("processedAt").lt(new Date(now.getTime() - lease.toMillis())));
+        return Flowable.fromPublisher(mongoTemplate.findAndModify(query, Update.update("processedAt", now),
+                        FindAndModifyOptions.options().returnNew(true), ProcessedEvent.class))
+                .singleElement();
+    }
+    private static Map<String, Set<String>> noStepsLanded(List<String> ids) {
+        Map<String, Set<String>> claimed = new LinkedHashMap<>();
+        ids.forEach(id -> claimed.put(id, new LinkedHashSet<>()));
+        return claimed;
+    }
+}
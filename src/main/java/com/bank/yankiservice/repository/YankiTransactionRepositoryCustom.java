@@ -0,0 +1,11 @@
+package com.bank.yankiservice.repository;
+
+import com.bank.yankiservice.model.YankiTransaction;
+import io.reactivex.Flowable;
+
+import java.time.LocalDateTime;
+
+public interface YankiTransactionRepositoryCustom {
+    Flowable<YankiTransaction> findHistory(String phoneNumber, LocalDateTime beforeTimestamp, String beforeId,
+                                           int limit);
+}
@@ -0,0 +1,40 @@
+package com.bank.yankiservice.repository;
+
+import com.bank.yankiservice.model.YankiTransaction;
+import io.reactivex.Flowable;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+
+@RequiredArgsConstructor
+public class YankiTransactionRepositoryCustomImpl implements YankiTransactionRepositoryCustom {
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Flowable<YankiTransaction> findHistory(String phoneNumber, LocalDateTime beforeTimestamp, String beforeId,
+                                                  int limit) {
+        Query query = Query.query(new Criteria().orOperator(
+                        keyset(Criteria.where("senderPhoneNumber").is(phoneNumber), beforeTimestamp, beforeId),
+                        keyset(Criteria.where("receiverPhoneNumber").is(phoneNumber), beforeTimestamp, beforeId)))
+                .with(Sort.by(Sort.Direction.DESC, "timestamp", "_id"));
+        if (limit > 0) {
+            query.limit(limit);
+        }
+        return Flowable.fromPublisher(mongoTemplate.find(query, YankiTransaction.class));
+    }
+    private static Criteria keyset(Criteria criteria, LocalDateTime beforeTimestamp, String beforeId) {
+        if (beforeTimestamp == null) {
+            return criteria;
+        }
+        return criteria.and("timestamp").lte(beforeTimestamp)
+                .norOperator(Criteria.where("timestamp").is(beforeTimestamp).and("_id").gte(toObjectId(beforeId)));
+    }
+    private static Object toObjectId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+}
@@ -0,0 +1,36 @@
+package com.bank.yankiservice.repository;
+
+import com.bank.yankiservice.model.FundsHold;
+import com.bank.yankiservice.model.WalletBalanceStripe;
+import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.resilience.NotTimeLimited;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface YankiWalletRepositoryCustom {
+    @NotTimeLimited
+    Maybe<YankiWallet> creditBalance(String phoneNumber, BigDecimal amount);
+    @NotTimeLimited
+    Maybe<YankiWallet> debitBalance(String phoneNumber, BigDecimal amount);
+    Maybe<YankiWallet> updateBalanceByLinkedCard(String linkedCard, BigDecimal balance);
+    Maybe<YankiWallet> linkCard(String documentNumber, String cardNumber, BigDecimal balance);
+    Maybe<YankiWallet> updateProfile(String id, String phoneNumber, String documentNumber, String imei, String email);
+    @NotTimeLimited
+    Maybe<YankiWallet> placeHold(String phoneNumber, FundsHold hold);
+    @NotTimeLimited
+    Maybe<YankiWallet> placeHolds(String phoneNumber, List<FundsHold> holds);
+    @NotTimeLimited
+    Maybe<YankiWallet> commitHold(String phoneNumber, String transactionId, BigDecimal amount);
+    @NotTimeLimited
+    Maybe<YankiWallet> releaseHold(String phoneNumber, String transactionId, BigDecimal amount);
+    Maybe<YankiWallet> enableStriping(String phoneNumber, int stripes);
+    @NotTimeLimited
+    Completable creditStripe(String walletId, int slot, BigDecimal amount);
+    Flowable<WalletBalanceStripe> findStripes(String walletId, int stripes);
+    @NotTimeLimited
+    Maybe<YankiWallet> sweepStripe(String walletId, int slot, BigDecimal swept, BigDecimal credited);
+}
@@ -0,0 +1,155 @@
+package com.bank.yankiservice.repository;
+
+import com.bank.yankiservice.model.FundsHold;
+import com.bank.yankiservice.model.WalletBalanceStripe;
+import com.bank.yankiservice.model.YankiWallet;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@RequiredArgsConstructor
+public class YankiWalletRepositoryCustomImpl implements YankiWalletRepositoryCustom {
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Maybe<YankiWallet> creditBalance(String phoneNumber, BigDecimal amount) {
+        Query query = Query.query(Criteria.where("phoneNumber").is(phoneNumber));
+        return findAndModify(query, new Update()
+                .inc("balance", new Decimal128(amount))
+                .set("updatedAt", LocalDateTime.now()));
+    }
+    @Override
+    public Maybe<YankiWallet> debitBalance(String phoneNumber, BigDecimal amount) {
+        Query query = Query.query(Criteria.where("phoneNumber").is(phoneNumber)
+                .and("balance").gte(new Decimal128(amount)));
+        return findAndModify(query, new Update()
+                .inc("balance", new Decimal128(amount.negate()))
+                .set("updatedAt", LocalDateTime.now()));
+    }
+    @Override
+    public Maybe<YankiWallet> updateBalanceByLinkedCard(String linkedCard, BigDecimal balance) {
+        Query query = Query.query(Criteria.where("linkedCard").is(linkedCard));
+        return findAndModify(query, new Update()
+                .set("balance", new Decimal128(balance))
+                .set("updatedAt", LocalDateTime.now()));
+    }
+    @Override
+    public Maybe<YankiWallet> linkCard(String documentNumber, String cardNumber, BigDecimal balance) {
+        Query query = Query.query(Criteria.where("documentNumber").is(documentNumber));
+        return findAndModify(query, new Update()
+                .set("linkedCard", cardNumber)
+                .set("balance", new Decimal128(balance))
+                .set("updatedAt", LocalDateTime.now()));
+    }
+    // Sets only the profile fields, so balance and hold updates that land while the request is handled survive.
+    @Override
+    public Maybe<YankiWallet> updateProfile(String id, String phoneNumber, String documentNumber, String imei,
+                                            String email) {
+        return findAndModify(Query.query(Criteria.where("id").is(id)), new Update()
+                .set("phoneNumber", phoneNumber)
+                .set("documentNumber", documentNumber)
+                .set("imei", imei)
+                .set("email", email)
+                .set("updatedAt", LocalDateTime.now()));
+    }
+    @Override
+    public Maybe<YankiWallet> placeHold(String phoneNumber, FundsHold hold) {
+        return placeHolds(phoneNumber, Collections.singletonList(hold));
+    }
+    @Override
+    public Maybe<YankiWallet> placeHolds(String phoneNumber, List<FundsHold> holds) {
+        BigDecimal total = holds.stream().map(FundsHold::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        Query query = Query.query(Criteria.where("phoneNumber").is(phoneNumber)
+                .and("balance").gte(new Decimal128(total)));
+        Update update = new Update()
+                .inc("balance", new Decimal128(total.negate()))
+                .inc("heldBalance", new Decimal128(total))
+                .set("updatedAt", LocalDateTime.now());
+        update.push("holds").each(holds.toArray());
+        return findAndModify(query, update);
+    }
+    @Override
+    public Maybe<YankiWallet> commitHold(String phoneNumber, String transactionId, BigDecimal amount) {
+        return findAndModify(holdQuery(phoneNumber, transactionId, amount), new Update()
+                .inc("heldBalance", new Decimal128(amount.negate()))
+                .pull("holds", Query.query(Criteria.where("transactionId").is(transactionId)))
+                .set("updatedAt", LocalDateTime.now()));
+    }
+    @Override
+    public Maybe<YankiWallet> releaseHold(String phoneNumber, String transactionId, BigDecimal amount) {
+        return findAndModify(holdQuery(phoneNumber, transactionId, amount), new Update()
+                .inc("balance", new Decimal128(amount))
+                .inc("heldBalance", new Decimal128(amount.negate()))
+                .pull("holds", Query.query(Criteria.where("transactionId").is(transactionId)))
+                .set("updatedAt", LocalDateTime.now()));
+    }
+    @Override
+    public Maybe<YankiWallet> enableStriping(String phoneNumber, int stripes) {
+        Query query = Query.query(Criteria.where("phoneNumber").is(phoneNumber)
+                .and("linkedCard").is(null)
+                .and("balanceStripes").exists(false));
+        List<Document> watermarks = IntStream.range(0, stripes)
+                .mapToObj(slot -> new Document("slot", slot).append("swept", new Decimal128(BigDecimal.ZERO)))
+                .collect(Collectors.toList());
+        return findAndModify(query, new Update()
+                .set("balanceStripes", stripes)
+                .set("stripeWatermarks", watermarks)
+                .set("updatedAt", LocalDateTime.now()));
+    }
+    @Override
+    public Completable creditStripe(String walletId, int slot, BigDecimal amount) {
+        Query query = Query.query(Criteria.where("id").is(WalletBalanceStripe.idOf(walletId, slot)));
+        Update update = new Update()
+                .inc("credited", new Decimal128(amount))
+                .set("updatedAt", LocalDateTime.now())
+                .setOnInsert("walletId", walletId)
+                .setOnInsert("slot", slot);
+        return Flowable.fromPublisher(mongoTemplate.upsert(query, update, WalletBalanceStripe.class))
+                .ignoreElements();
+    }
+    @Override
+    public Flowable<WalletBalanceStripe> findStripes(String walletId, int stripes) {
+        List<String> ids = IntStream.range(0, stripes)
+                .mapToObj(slot -> WalletBalanceStripe.idOf(walletId, slot))
+                .collect(Collectors.toList());
+        return Flowable.fromPublisher(mongoTemplate.find(Query.query(Criteria.where("id").in(ids)),
+                WalletBalanceStripe.class));
+    }
+    // Moves what a stripe gained since the last sweep into the balance. The watermark doubles as the precondition,
+    // so a sweep that lost a race with another instance matches nothing instead of adding the same credits twice.
+    @Override
+    public Maybe<YankiWallet> sweepStripe(String walletId, int slot, BigDecimal swept, BigDecimal credited) {
+        Query query = Query.query(Criteria.where("id").is(walletId)
+                .and("stripeWatermarks").elemMatch(Criteria.where("slot").is(slot)
+                        .and("swept").is(new Decimal128(swept))));
+        return findAndModify(query, new Update()
+                .inc("balance", new Decimal128(credited.subtract(swept)))
+                .set("stripeWatermarks.$.swept", new Decimal128(credited))
+                .set("updatedAt", LocalDateTime.now()));
+    }
+    private static Query holdQuery(String phoneNumber, String transactionId, BigDecimal amount) {
+        return Query.query(Criteria.where("phoneNumber").is(phoneNumber)
+                .and("holds").elemMatch(Criteria.where("transactionId").is(transactionId)
+                        .and("amount").is(new Decimal128(amount))));
+    }
+    private Maybe<YankiWallet> findAndModify(Query query, Update update) {
+        return Flowable.fromPublisher(mongoTemplate.findAndModify(query, update,
+                        FindAndModifyOptions.options().returnNew(true), YankiWallet.class))
+                .singleElement();
+    }
+}
@@ -0,0 +1,150 @@
+package com.bank.yankiservice.resilience;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.reactivex.Completable;
+import io.reactivex.CompletableTransformer;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.Maybe;
+import io.reactivex.MaybeTransformer;
+import io.reactivex.Single;
+import io.reactivex.SingleTransformer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Bulkhead permits are taken with tryAcquirePermission and must be configured with max-wait-duration 0,
+// otherwise a full bulkhead would park the event loop thread instead of failing fast.
+public class DependencyGuard {
+    private final String name;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final TimeLimiter timeLimiter;
+    private final long timeoutNanos;
+    private final boolean timed;
+    private final DependencyGuard untimed;
+
+    public DependencyGuard(CircuitBreaker circuitBreaker, Bulkhead bulkhead, TimeLimiter timeLimiter) {
+        this.name = circuitBreaker.getName();
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.timeLimiter = timeLimiter;
+        this.timeoutNanos = timeLimiter.getTimeLimiterConfig().getTimeoutDuration().toNanos();
+        this.timed = true;
+        this.untimed = new DependencyGuard(this);
+    }
+    private DependencyGuard(DependencyGuard source) {
+        this.name = source.name;
+        this.circuitBreaker = source.circuitBreaker;
+        this.bulkhead = source.bulkhead;
+        this.timeLimiter = source.timeLimiter;
+        this.timeoutNanos = source.timeoutNanos;
+        this.timed = false;
+        this.untimed = this;
+    }
+    public String getName() {
+        return name;
+    }
+    public CircuitBreaker.State getState() {
+        return circuitBreaker.getState();
+    }
+    // Same circuit breaker and bulkhead, without the timeout; for writes that must not be abandoned mid-flight.
+    public DependencyGuard untimed() {
+        return untimed;
+    }
+    public <T> SingleTransformer<T, T> single() {
+        return upstream -> Single.defer(() -> {
+            Call call = acquire();
+            return (timed ? upstream.timeout(timeoutNanos, TimeUnit.NANOSECONDS) : upstream)
+                    .doOnSuccess(value -> call.success())
+                    .doOnError(call::failure)
+                    .doOnDispose(call::cancel)
+                    .onErrorResumeNext(error -> Single.error(translate(error)));
+        });
+    }
+    public <T> MaybeTransformer<T, T> maybe() {
+        return upstream -> Maybe.defer(() -> {
+            Call call = acquire();
+            return (timed ? upstream.timeout(timeoutNanos, TimeUnit.NANOSECONDS) : upstream)
+                    .doOnSuccess(value -> call.success())
+                    .doOnComplete(call::success)
+                    .doOnError(call::failure)
+                    .doOnDispose(call::cancel)
+                    .onErrorResumeNext((Throwable error) -> Maybe.error(translate(error)));
+        });
+    }
+    public CompletableTransformer completable() {
+        return upstream -> Completable.defer(() -> {
+            Call call = acquire();
+            return (timed ? upstream.timeout(timeoutNanos, TimeUnit.NANOSECONDS) : upstream)
+                    .doOnComplete(call::success)
+                    .doOnError(call::failure)
+                    .doOnDispose(call::cancel)
+                    .onErrorResumeNext(error -> Completable.error(translate(error)));
+        });
+    }
+    // Only the first element is timed: once a query is streaming, gaps between items reflect the
+    // subscriber's demand rather than the health of the dependency.
+    public <T> FlowableTransformer<T, T> flowable() {
+        return upstream -> Flowable.defer(() -> {
+            Call call = acquire();
+            Flowable<T> limited = timed
+                    ? upstream.timeout(Flowable.timer(timeoutNanos, TimeUnit.NANOSECONDS), item -> Flowable.never())
+                    : upstream;
+            return limited
+                    .doOnComplete(call::success)
+                    .doOnError(call::failure)
+                    .doOnCancel(call::cancel)
+                    .onErrorResumeNext((Throwable error) -> Flowable.error(translate(error)));
+        });
+    }
+    private Call acquire() {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new DependencyUnavailableException(name,
+                    CallNotPermittedException.createCallNotPermittedException(circuitBreaker));
+        }
+        if (!bulkhead.tryAcquirePermission()) {
+            circuitBreaker.releasePermission();
+            throw new DependencyUnavailableException(name, BulkheadFullException.createBulkheadFullException(bulkhead));
+        }
+        return new Call();
+    }
+    private Throwable translate(Throwable error) {
+        return error instanceof TimeoutException ? new DependencyUnavailableException(name, error) : error;
+    }
+
+    private final class Call {
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private void success() {
+            if (finish()) {
+                circuitBreaker.onSuccess(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                timeLimiter.onSuccess();
+            }
+        }
+        private void failure(Throwable error) {
+            if (finish()) {
+                circuitBreaker.onError(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS, error);
+                timeLimiter.onError(error);
+            }
+        }
+        private void cancel() {
+            if (finish()) {
+                circuitBreaker.releasePermission();
+            }
+        }
+        private boolean finish() {
+            if (finished.compareAndSet(false, true)) {
+                bulkhead.onComplete();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.bank.yankiservice.resilience;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.springframework.stereotype.Component;
+
+// Instances come from the resilience4j registries, so their settings live under resilience4j.* and their
+// state is exported through the resilience4j Micrometer binders.
+@Component
+public class DependencyGuards {
+    public static final String MONGO = "mongo";
+    public static final String KAFKA = "kafka";
+    private final DependencyGuard mongo;
+    private final DependencyGuard kafka;
+
+    public DependencyGuards(CircuitBreakerRegistry circuitBreakers,
+                            BulkheadRegistry bulkheads,
+                            TimeLimiterRegistry timeLimiters) {
+        this.mongo = guard(MONGO, circuitBreakers, bulkheads, timeLimiters);
+        this.kafka = guard(KAFKA, circuitBreakers, bulkheads, timeLimiters);
+    }
+    public DependencyGuard mongo() {
+        return mongo;
+    }
+    public DependencyGuard kafka() {
+        return kafka;
+    }
+    private static DependencyGuard guard(String name,
+                                         CircuitBreakerRegistry circuitBreakers,
+                                         BulkheadRegistry bulkheads,
+                                         TimeLimiterRegistry timeLimiters) {
+        return new DependencyGuard(circuitBreakers.circuitBreaker(name), bulkheads.bulkhead(name),
+                timeLimiters.timeLimiter(name));
+    }
+}
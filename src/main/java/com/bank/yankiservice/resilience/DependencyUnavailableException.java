@@ -0,0 +1,19 @@
+package com.bank.yankiservice.resilience;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import lombok.Getter;
+
+@Getter
+public class DependencyUnavailableException extends RuntimeException {
+    private final String dependency;
+
+    public DependencyUnavailableException(String dependency, Throwable cause) {
+        super(dependency + " is unavailable: " + cause.getMessage(), cause);
+        this.dependency = dependency;
+    }
+    // True when the call never reached the dependency because the circuit was open or the bulkhead full.
+    public boolean isRejected() {
+        return getCause() instanceof CallNotPermittedException || getCause() instanceof BulkheadFullException;
+    }
+}
@@ -0,0 +1,75 @@
+package com.bank.yankiservice.resilience;
+
+import com.bank.yankiservice.repository.OutboxEventRepository;
+import com.bank.yankiservice.repository.ProcessedEventRepository;
+import com.bank.yankiservice.repository.YankiTransactionRepository;
+import com.bank.yankiservice.repository.YankiWalletRepository;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+
+// Wraps the Mongo repositories so every caller (services, cache loaders, listeners) goes through the Mongo
+// guard; methods marked @NotTimeLimited and the save and insert methods go through its untimed view. The guards
+// are resolved lazily: fetching them here would initialise the resilience4j registries and the MeterRegistry
+// before the other post-processors are in place.
+@Component
+public class GuardedRepositoryPostProcessor implements BeanPostProcessor {
+    private final ObjectProvider<DependencyGuards> guards;
+
+    public GuardedRepositoryPostProcessor(ObjectProvider<DependencyGuards> guards) {
+        this.guards = guards;
+    }
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!isGuarded(bean)) {
+            return bean;
+        }
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.addAdvice((MethodInterceptor) this::guard);
+        return proxyFactory.getProxy();
+    }
+    private static boolean isGuarded(Object bean) {
+        return bean instanceof YankiWalletRepository
+                || bean instanceof YankiTransactionRepository
+                || bean instanceof ProcessedEventRepository
+                || bean instanceof OutboxEventRepository;
+    }
+    // The save and insert methods inherited from the Spring Data interfaces cannot carry @NotTimeLimited, and a save
+    // of a new document is no more idempotent than the custom writes: the retry after a timeout inserts it twice.
+    private static boolean isTimeLimited(Method method) {
+        return !AnnotatedElementUtils.hasAnnotation(method, NotTimeLimited.class)
+                && !method.getName().startsWith("save")
+                && !method.getName().startsWith("insert");
+    }
+    @SuppressWarnings("unchecked")
+    private Object guard(MethodInvocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        DependencyGuard mongo = guards.getObject().mongo();
+        if (!isTimeLimited(invocation.getMethod())) {
+            mongo = mongo.untimed();
+        }
+        if (result instanceof Single) {
+            return ((Single<Object>) result).compose(mongo.single());
+        }
+        if (result instanceof Maybe) {
+            return ((Maybe<Object>) result).compose(mongo.maybe());
+        }
+        if (result instanceof Completable) {
+            return ((Completable) result).compose(mongo.completable());
+        }
+        if (result instanceof Flowable) {
+            return ((Flowable<Object>) result).compose(mongo.flowable());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,16 @@
+package com.bank.yankiservice.resilience;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Marks a guarded repository write that is not idempotent. A timeout does not stop Mongo from applying it, so
+// failing the call early would get it applied a second time once the caller or a redelivery retries it; these
+// calls keep the circuit breaker and bulkhead but run without the time limiter.
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface NotTimeLimited {
+}
@@ -1,5 +1,7 @@
 package com.bank.yankiservice.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
@@ -8,15 +10,29 @@ import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.Date;
 @Component
 @Slf4j
 public class JwtProvider {
     private final Key key;
     private final long expiration;
-    public JwtProvider(@Value("${jwt.secret}") String secret, @Value("${jwt.expiration}") long expiration) {
+    private final JwtParser parser;
+    private final Cache<String, VerifiedToken> verifiedTokens;
+    public JwtProvider(@Value("${jwt.secret}") String secret,
+                       @Value("${jwt.expiration}") long expiration,
+                       @Value("${jwt.cache.max-size:10000}") long cacheMaxSize,
+                       @Value("${jwt.cache.ttl-seconds:300}") long cacheTtlSeconds) {
         this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
         this.expiration = expiration;
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .build();
     }
     public String generateToken(String username) {
         return Jwts.builder()
@@ -26,21 +42,46 @@ public class JwtProvider {
                 .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
-    public boolean validateToken(String token) {
+    public String authenticate(String token) {
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            if (cached.getExpiresAt() > System.currentTimeMillis()) {
+                return cached.getSubject();
+            }
+            verifiedTokens.invalidate(digest);
+        }
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
-            return true;
-        } catch (JwtException e) {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+            verifiedTokens.put(digest, new VerifiedToken(claims.getSubject(), expiresAt));
+            return claims.getSubject();
+        } catch (JwtException | IllegalArgumentException e) {
             log.error("Invalid Token: {}", e.getMessage());
-            return false;
+            return null;
         }
     }
+    public boolean validateToken(String token) {
+        return authenticate(token) != null;
+    }
     public String getUsernameFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        String username = authenticate(token);
+        if (username == null) {
+            throw new JwtException("Invalid Token");
+        }
+        return username;
+    }
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    @lombok.Value
+    private static class VerifiedToken {
+        String subject;
+        long expiresAt;
     }
 }
@@ -0,0 +1,85 @@
+package com.bank.yankiservice.serialization;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
+public class BinaryDecoder {
+    private final byte[] data;
+    private int position;
+
+    public BinaryDecoder(byte[] data, int offset) {
+        this.data = data;
+        this.position = offset;
+    }
+    public int readByte() {
+        require(1);
+        return data[position++] & 0xFF;
+    }
+    public int readFixedInt() {
+        require(4);
+        int value = (data[position] & 0xFF) << 24 | (data[position + 1] & 0xFF) << 16
+                | (data[position + 2] & 0xFF) << 8 | data[position + 3] & 0xFF;
+        position += 4;
+        return value;
+    }
+    public long readLong() {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new SerializationException("Malformed varint at offset " + position);
+    }
+    public byte[] readBytes() {
+        int length = readLength();
+        byte[] value = Arrays.copyOfRange(data, position, position + length);
+        position += length;
+        return value;
+    }
+    public String readString() {
+        if (readNull()) {
+            return null;
+        }
+        int length = readLength();
+        String value = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+    public BigDecimal readDecimal() {
+        if (readNull()) {
+            return null;
+        }
+        int scale = (int) readLong();
+        return new BigDecimal(new BigInteger(readBytes()), scale);
+    }
+    public Instant readTimestamp() {
+        if (readNull()) {
+            return null;
+        }
+        long seconds = readLong();
+        return Instant.ofEpochSecond(seconds, readLong());
+    }
+    private boolean readNull() {
+        return readByte() == 0;
+    }
+    private int readLength() {
+        long length = readLong();
+        if (length < 0 || length > data.length - position) {
+            throw new SerializationException("Invalid length " + length + " at offset " + position);
+        }
+        return (int) length;
+    }
+    private void require(int bytes) {
+        if (position + bytes > data.length) {
+            throw new SerializationException("Unexpected end of payload at offset " + position);
+        }
+    }
+}
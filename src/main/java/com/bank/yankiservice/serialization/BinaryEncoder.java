@@ -0,0 +1,72 @@
+package com.bank.yankiservice.serialization;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
+// Avro-style binary encoding: zig-zag varints, length-prefixed bytes, and a one-byte branch for nullable values.
+public class BinaryEncoder {
+    private byte[] buffer;
+    private int position;
+
+    public BinaryEncoder(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+    public void writeByte(int value) {
+        ensure(1);
+        buffer[position++] = (byte) value;
+    }
+    public void writeFixedInt(int value) {
+        ensure(4);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+    public void writeLong(long value) {
+        ensure(10);
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        buffer[position++] = (byte) zigZag;
+    }
+    public void writeBytes(byte[] value) {
+        writeLong(value.length);
+        ensure(value.length);
+        System.arraycopy(value, 0, buffer, position, value.length);
+        position += value.length;
+    }
+    public void writeString(String value) {
+        if (writeNull(value)) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    // Scale and unscaled two's-complement bytes, so 150.75 takes four bytes instead of the six characters of "150.75".
+    public void writeDecimal(BigDecimal value) {
+        if (writeNull(value)) {
+            writeLong(value.scale());
+            writeBytes(value.unscaledValue().toByteArray());
+        }
+    }
+    public void writeTimestamp(Instant value) {
+        if (writeNull(value)) {
+            writeLong(value.getEpochSecond());
+            writeLong(value.getNano());
+        }
+    }
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+    private boolean writeNull(Object value) {
+        writeByte(value == null ? 0 : 1);
+        return value != null;
+    }
+    private void ensure(int bytes) {
+        if (position + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.bank.yankiservice.serialization;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.springframework.stereotype.Component;
+
+// Frame: magic byte 0, the writer schema id as a big-endian int, then the fields in schema order. JSON payloads
+// always start with '{' or whitespace, so the magic byte alone tells the two formats apart during a migration.
+@Component
+public class BinaryEventCodec {
+    public static final byte MAGIC_BYTE = 0;
+    private static final int HEADER_LENGTH = 5;
+    private static final int INITIAL_CAPACITY = 128;
+    private final SchemaRegistry registry;
+
+    public BinaryEventCodec(SchemaRegistry registry) {
+        this.registry = registry;
+    }
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length >= HEADER_LENGTH && data[0] == MAGIC_BYTE;
+    }
+    public boolean supports(Object value) {
+        return value != null && registry.latest(value.getClass()) != null;
+    }
+    public byte[] encode(Object value) {
+        EventSchema<?> schema = registry.latest(value.getClass());
+        if (schema == null) {
+            throw new SerializationException("No schema registered for " + value.getClass().getName());
+        }
+        BinaryEncoder encoder = new BinaryEncoder(INITIAL_CAPACITY);
+        encoder.writeByte(MAGIC_BYTE);
+        encoder.writeFixedInt(schema.getId());
+        write(schema, value, encoder);
+        return encoder.toByteArray();
+    }
+    public Object decode(byte[] data) {
+        if (!isBinary(data)) {
+            throw new SerializationException("Payload is not in the binary event format");
+        }
+        BinaryDecoder decoder = new BinaryDecoder(data, 1);
+        int schemaId = decoder.readFixedInt();
+        EventSchema<?> writer = registry.byId(schemaId);
+        if (writer == null) {
+            throw new SerializationException("Unknown schema id " + schemaId);
+        }
+        return registry.latest(writer.getType()).read(writer, decoder);
+    }
+    private static <T> void write(EventSchema<T> schema, Object value, BinaryEncoder encoder) {
+        schema.write(schema.getType().cast(value), encoder);
+    }
+}
@@ -0,0 +1,28 @@
+package com.bank.yankiservice.serialization;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+// Writes registered events in the binary format and hands everything else (replies owned by other services,
+// unregistered payloads) to the configured JSON serializer. The delegate is configured by whoever builds this.
+public class BinaryEventSerializer implements Serializer<Object> {
+    private final BinaryEventCodec codec;
+    private final Serializer<Object> json;
+
+    public BinaryEventSerializer(BinaryEventCodec codec, Serializer<Object> json) {
+        this.codec = codec;
+        this.json = json;
+    }
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return codec.supports(data) ? codec.encode(data) : json.serialize(topic, data);
+    }
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        return codec.supports(data) ? codec.encode(data) : json.serialize(topic, headers, data);
+    }
+    @Override
+    public void close() {
+        json.close();
+    }
+}
@@ -0,0 +1,27 @@
+package com.bank.yankiservice.serialization;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+// Reads both wire formats so consumers can be rolled out before any producer switches to binary.
+public class DualFormatDeserializer implements Deserializer<Object> {
+    private final BinaryEventCodec codec;
+    private final Deserializer<Object> json;
+
+    public DualFormatDeserializer(BinaryEventCodec codec, Deserializer<Object> json) {
+        this.codec = codec;
+        this.json = json;
+    }
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return BinaryEventCodec.isBinary(data) ? codec.decode(data) : json.deserialize(topic, data);
+    }
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        return BinaryEventCodec.isBinary(data) ? codec.decode(data) : json.deserialize(topic, headers, data);
+    }
+    @Override
+    public void close() {
+        json.close();
+    }
+}
@@ -0,0 +1,106 @@
+package com.bank.yankiservice.serialization;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// One version of an event's field layout. Payloads carry the id of the schema they were written with, and a reader
+// resolves writer fields by name the way Avro does: fields the reader no longer has are skipped, fields the writer
+// did not have yet stay null.
+@Getter
+public class EventSchema<T> {
+    private final int id;
+    private final Class<T> type;
+    private final int version;
+    private final List<Field<T>> fields;
+    private final Map<String, Field<T>> fieldsByName;
+    private final Supplier<T> factory;
+
+    private EventSchema(int id, Class<T> type, int version, List<Field<T>> fields, Supplier<T> factory) {
+        this.id = id;
+        this.type = type;
+        this.version = version;
+        this.fields = Collections.unmodifiableList(fields);
+        this.factory = factory;
+        Map<String, Field<T>> byName = new HashMap<>();
+        fields.forEach(field -> byName.put(field.getName(), field));
+        this.fieldsByName = Collections.unmodifiableMap(byName);
+    }
+    public static <T> Builder<T> builder(int id, Class<T> type, int version, Supplier<T> factory) {
+        return new Builder<>(id, type, version, factory);
+    }
+    public void write(T value, BinaryEncoder encoder) {
+        for (Field<T> field : fields) {
+            field.getType().write(encoder, field.getter.apply(value));
+        }
+    }
+    public T read(EventSchema<?> writer, BinaryDecoder decoder) {
+        T value = factory.get();
+        for (Field<?> written : writer.getFields()) {
+            Object fieldValue = written.getType().read(decoder);
+            Field<T> field = fieldsByName.get(written.getName());
+            if (field != null && field.getType() == written.getType()) {
+                field.setter.accept(value, fieldValue);
+            }
+        }
+        return value;
+    }
+
+    @Getter
+    public static final class Field<T> {
+        private final String name;
+        private final FieldType type;
+        private final Function<T, Object> getter;
+        private final BiConsumer<T, Object> setter;
+
+        private Field(String name, FieldType type, Function<T, Object> getter, BiConsumer<T, Object> setter) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    public static final class Builder<T> {
+        private final int id;
+        private final Class<T> type;
+        private final int version;
+        private final Supplier<T> factory;
+        private final List<Field<T>> fields = new ArrayList<>();
+
+        private Builder(int id, Class<T> type, int version, Supplier<T> factory) {
+            this.id = id;
+            this.type = type;
+            this.version = version;
+            this.factory = factory;
+        }
+        public Builder<T> string(String name, Function<T, String> getter, BiConsumer<T, String> setter) {
+            return field(name, FieldType.STRING, getter::apply, (value, field) -> setter.accept(value, (String) field));
+        }
+        public Builder<T> decimal(String name, Function<T, BigDecimal> getter, BiConsumer<T, BigDecimal> setter) {
+            return field(name, FieldType.DECIMAL, getter::apply,
+                    (value, field) -> setter.accept(value, (BigDecimal) field));
+        }
+        public Builder<T> timestamp(String name, Function<T, Instant> getter, BiConsumer<T, Instant> setter) {
+            return field(name, FieldType.TIMESTAMP, getter::apply,
+                    (value, field) -> setter.accept(value, (Instant) field));
+        }
+        public EventSchema<T> build() {
+            return new EventSchema<>(id, type, version, new ArrayList<>(fields), factory);
+        }
+        private Builder<T> field(String name, FieldType fieldType, Function<T, Object> getter,
+                                 BiConsumer<T, Object> setter) {
+            fields.add(new Field<>(name, fieldType, getter, setter));
+            return this;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.bank.yankiservice.serialization;
+
+import com.bank.yankiservice.dto.balance.BalanceUpdatedEvent;
+import com.bank.yankiservice.dto.bootcoin.KafkaValidationRequest;
+import com.bank.yankiservice.dto.cardlink.CardLinkRequestedEvent;
+import com.bank.yankiservice.dto.transaction.YankiTransactionEvent;
+import com.bank.yankiservice.dto.transaction.YankiTransactionProcessedEvent;
+import com.bank.yankiservice.dto.transactionbootcoin.YankiEvent;
+
+import java.util.List;
+
+// Schema ids are part of the wire format: never reuse or renumber one. Evolve an event by registering a new version
+// under a fresh id and appending or dropping fields; renaming a field or changing its type is rejected.
+public final class EventSchemas {
+    public static final EventSchema<YankiTransactionEvent> TRANSACTION_REQUESTED = EventSchema
+            .builder(1, YankiTransactionEvent.class, 1, YankiTransactionEvent::new)
+            .string("transactionId", YankiTransactionEvent::getTransactionId, YankiTransactionEvent::setTransactionId)
+            .string("senderPhoneNumber", YankiTransactionEvent::getSenderPhoneNumber,
+                    YankiTransactionEvent::setSenderPhoneNumber)
+            .string("receiverPhoneNumber", YankiTransactionEvent::getReceiverPhoneNumber,
+                    YankiTransactionEvent::setReceiverPhoneNumber)
+            .string("senderCard", YankiTransactionEvent::getSenderCard, YankiTransactionEvent::setSenderCard)
+            .string("receiverCard", YankiTransactionEvent::getReceiverCard, YankiTransactionEvent::setReceiverCard)
+            .decimal("amount", YankiTransactionEvent::getAmount, YankiTransactionEvent::setAmount)
+            .build();
+    public static final EventSchema<YankiTransactionProcessedEvent> TRANSACTION_PROCESSED = EventSchema
+            .builder(2, YankiTransactionProcessedEvent.class, 1, YankiTransactionProcessedEvent::new)
+            .string("transactionId", YankiTransactionProcessedEvent::getTransactionId,
+                    YankiTransactionProcessedEvent::setTransactionId)
+            .string("senderPhoneNumber", YankiTransactionProcessedEvent::getSenderPhoneNumber,
+                    YankiTransactionProcessedEvent::setSenderPhoneNumber)
+            .string("receiverPhoneNumber", YankiTransactionProcessedEvent::getReceiverPhoneNumber,
+                    YankiTransactionProcessedEvent::setReceiverPhoneNumber)
+            .decimal("amount", YankiTransactionProcessedEvent::getAmount, YankiTransactionProcessedEvent::setAmount)
+            .string("status", YankiTransactionProcessedEvent::getStatus, YankiTransactionProcessedEvent::setStatus)
+            .string("reason", YankiTransactionProcessedEvent::getReason, YankiTransactionProcessedEvent::setReason)
+            .timestamp("processedAt", YankiTransactionProcessedEvent::getProcessedAt,
+                    YankiTransactionProcessedEvent::setProcessedAt)
+            .build();
+    public static final EventSchema<BalanceUpdatedEvent> BALANCE_UPDATED = EventSchema
+            .builder(3, BalanceUpdatedEvent.class, 1, BalanceUpdatedEvent::new)
+            .string("accountId", BalanceUpdatedEvent::getAccountId, BalanceUpdatedEvent::setAccountId)
+            .decimal("newBalance", BalanceUpdatedEvent::getNewBalance, BalanceUpdatedEvent::setNewBalance)
+            .string("cardNumber", BalanceUpdatedEvent::getCardNumber, BalanceUpdatedEvent::setCardNumber)
+            .build();
+    public static final EventSchema<CardLinkRequestedEvent> CARD_LINK_REQUESTED = EventSchema
+            .builder(4, CardLinkRequestedEvent.class, 1, CardLinkRequestedEvent::new)
+            .string("phoneNumber", CardLinkRequestedEvent::getPhoneNumber, CardLinkRequestedEvent::setPhoneNumber)
+            .string("cardNumber", CardLinkRequestedEvent::getCardNumber, CardLinkRequestedEvent::setCardNumber)
+            .string("documentNumber", CardLinkRequestedEvent::getDocumentNumber,
+                    CardLinkRequestedEvent::setDocumentNumber)
+            .decimal("currentBalance", CardLinkRequestedEvent::getCurrentBalance,
+                    CardLinkRequestedEvent::setCurrentBalance)
+            .build();
+    public static final EventSchema<YankiEvent> BOOTCOIN_TRANSACTION = EventSchema
+            .builder(5, YankiEvent.class, 1, YankiEvent::new)
+            .string("purchaseId", YankiEvent::getPurchaseId, YankiEvent::setPurchaseId)
+            .string("buyerDocumentNumber", YankiEvent::getBuyerDocumentNumber, YankiEvent::setBuyerDocumentNumber)
+            .string("sellerDocumentNumber", YankiEvent::getSellerDocumentNumber, YankiEvent::setSellerDocumentNumber)
+            .decimal("amount", YankiEvent::getAmount, YankiEvent::setAmount)
+            .decimal("totalAmountInPEN", YankiEvent::getTotalAmountInPEN, YankiEvent::setTotalAmountInPEN)
+            .string("sellerPhoneNumber", YankiEvent::getSellerPhoneNumber, YankiEvent::setSellerPhoneNumber)
+            .string("buyerPhoneNumber", YankiEvent::getBuyerPhoneNumber, YankiEvent::setBuyerPhoneNumber)
+            .string("transactionType", YankiEvent::getTransactionType, YankiEvent::setTransactionType)
+            .build();
+    public static final EventSchema<KafkaValidationRequest> BOOTCOIN_VALIDATION = EventSchema
+            .builder(6, KafkaValidationRequest.class, 1, KafkaValidationRequest::new)
+            .string("eventId", KafkaValidationRequest::getEventId, KafkaValidationRequest::setEventId)
+            .string("documentNumber", KafkaValidationRequest::getDocumentNumber,
+                    KafkaValidationRequest::setDocumentNumber)
+            .string("phoneNumber", KafkaValidationRequest::getPhoneNumber, KafkaValidationRequest::setPhoneNumber)
+            .string("bankAccountId", KafkaValidationRequest::getBankAccountId,
+                    KafkaValidationRequest::setBankAccountId)
+            .build();
+
+    private EventSchemas() {
+    }
+
+    public static List<EventSchema<?>> all() {
+        return List.of(TRANSACTION_REQUESTED, TRANSACTION_PROCESSED, BALANCE_UPDATED, CARD_LINK_REQUESTED,
+                BOOTCOIN_TRANSACTION, BOOTCOIN_VALIDATION);
+    }
+}
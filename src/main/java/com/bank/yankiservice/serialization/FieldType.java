@@ -0,0 +1,40 @@
+package com.bank.yankiservice.serialization;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public enum FieldType {
+    STRING {
+        @Override
+        void write(BinaryEncoder encoder, Object value) {
+            encoder.writeString((String) value);
+        }
+        @Override
+        Object read(BinaryDecoder decoder) {
+            return decoder.readString();
+        }
+    },
+    DECIMAL {
+        @Override
+        void write(BinaryEncoder encoder, Object value) {
+            encoder.writeDecimal((BigDecimal) value);
+        }
+        @Override
+        Object read(BinaryDecoder decoder) {
+            return decoder.readDecimal();
+        }
+    },
+    TIMESTAMP {
+        @Override
+        void write(BinaryEncoder encoder, Object value) {
+            encoder.writeTimestamp((Instant) value);
+        }
+        @Override
+        Object read(BinaryDecoder decoder) {
+            return decoder.readTimestamp();
+        }
+    };
+
+    abstract void write(BinaryEncoder encoder, Object value);
+    abstract Object read(BinaryDecoder decoder);
+}
@@ -0,0 +1,49 @@
+package com.bank.yankiservice.serialization;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-process stand-in for a schema registry: every version ever written stays resolvable by id, and each event type
+// is written with its latest version.
+@Component
+public class SchemaRegistry {
+    private final Map<Integer, EventSchema<?>> byId = new ConcurrentHashMap<>();
+    private final Map<Class<?>, EventSchema<?>> latest = new ConcurrentHashMap<>();
+
+    public SchemaRegistry() {
+        EventSchemas.all().forEach(this::register);
+    }
+    public synchronized void register(EventSchema<?> schema) {
+        if (byId.containsKey(schema.getId())) {
+            throw new IllegalArgumentException("Schema id " + schema.getId() + " is already registered");
+        }
+        byId.values().stream()
+                .filter(existing -> existing.getType() == schema.getType())
+                .forEach(existing -> checkCompatible(existing, schema));
+        byId.put(schema.getId(), schema);
+        latest.merge(schema.getType(), schema,
+                (current, candidate) -> candidate.getVersion() > current.getVersion() ? candidate : current);
+    }
+    public EventSchema<?> byId(int id) {
+        return byId.get(id);
+    }
+    @SuppressWarnings("unchecked")
+    public <T> EventSchema<T> latest(Class<T> type) {
+        return (EventSchema<T>) latest.get(type);
+    }
+    private static void checkCompatible(EventSchema<?> existing, EventSchema<?> candidate) {
+        if (existing.getVersion() == candidate.getVersion()) {
+            throw new IllegalArgumentException(candidate.getType().getSimpleName() + " version "
+                    + candidate.getVersion() + " is already registered");
+        }
+        for (EventSchema.Field<?> field : candidate.getFields()) {
+            EventSchema.Field<?> previous = existing.getFieldsByName().get(field.getName());
+            if (previous != null && previous.getType() != field.getType()) {
+                throw new IllegalArgumentException(candidate.getType().getSimpleName() + "." + field.getName()
+                        + " changes type from " + previous.getType() + " to " + field.getType());
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.model.YankiWallet;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+
+import java.math.BigDecimal;
+import java.util.function.Supplier;
+
+public interface BalanceEngine {
+    Maybe<YankiWallet> credit(YankiWallet receiver, BigDecimal amount);
+    Completable execute(String key, Supplier<Completable> mutation);
+}
@@ -0,0 +1,189 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.model.YankiWallet;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.MaybeEmitter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+// Routes balance mutations onto a fixed set of shards by wallet key. A shard drains its queue on its own thread
+// and applies one batch at a time, so within this instance every wallet has a single writer no matter which
+// listener the mutation came from. Credits to the same wallet that queue up behind a batch are coalesced into one
+// update, and credits to different wallets in a batch run concurrently. Other mutations keep their queue order.
+// Instances still share wallets, so the conditional Mongo updates behind each mutation remain the source of truth.
+@Service
+@Slf4j
+public class BalanceEngineImpl implements BalanceEngine {
+    static final String THREAD_PREFIX = "yanki-balance-shard-";
+    private final StripedBalanceService stripedBalances;
+    private final int maxBatch;
+    private final List<Shard> shards = new ArrayList<>();
+
+    public BalanceEngineImpl(StripedBalanceService stripedBalances,
+                             YankiMetrics metrics,
+                             @Value("${yanki.balance.engine.shards:0}") int shardCount,
+                             @Value("${yanki.balance.engine.max-batch:64}") int maxBatch,
+                             @Value("${yanki.balance.engine.queue-capacity:10000}") int queueCapacity) {
+        this.stripedBalances = stripedBalances;
+        this.maxBatch = maxBatch;
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < count; i++) {
+            Shard shard = new Shard(THREAD_PREFIX + i, queueCapacity);
+            metrics.registerQueueDepth(shard.name, shard.queue);
+            shards.add(shard);
+        }
+    }
+    @Override
+    public Maybe<YankiWallet> credit(YankiWallet receiver, BigDecimal amount) {
+        return Maybe.create(emitter -> shardOf(receiver.getPhoneNumber())
+                .submit(new Command(receiver, amount, null, emitter)));
+    }
+    @Override
+    public Completable execute(String key, Supplier<Completable> mutation) {
+        return Maybe.<YankiWallet>create(emitter -> shardOf(key).submit(new Command(null, null, mutation, emitter)))
+                .ignoreElement();
+    }
+    @PreDestroy
+    public void stop() {
+        shards.forEach(Shard::stop);
+    }
+    private Shard shardOf(String key) {
+        return shards.get(Math.floorMod(Objects.hashCode(key), shards.size()));
+    }
+    // Credits collected so far are flushed before any other mutation, so a debit never overtakes a credit to the
+    // same wallet that was queued ahead of it.
+    private Completable apply(List<Command> batch) {
+        List<Completable> steps = new ArrayList<>();
+        Map<String, List<Command>> credits = new LinkedHashMap<>();
+        for (Command command : batch) {
+            if (command.emitter.isDisposed()) {
+                continue;
+            }
+            if (command.receiver != null) {
+                credits.computeIfAbsent(command.receiver.getPhoneNumber(), key -> new ArrayList<>()).add(command);
+                continue;
+            }
+            steps.add(credit(credits));
+            credits = new LinkedHashMap<>();
+            steps.add(run(command));
+        }
+        steps.add(credit(credits));
+        return Completable.concat(steps);
+    }
+    private Completable credit(Map<String, List<Command>> creditsByPhoneNumber) {
+        List<Completable> credits = new ArrayList<>();
+        creditsByPhoneNumber.values().forEach(commands -> {
+            BigDecimal total = commands.stream()
+                    .map(command -> command.amount)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            credits.add(Maybe.defer(() -> stripedBalances.credit(commands.get(0).receiver, total))
+                    .doOnSuccess(wallet -> commands.forEach(command -> command.emitter.onSuccess(wallet)))
+                    .doOnComplete(() -> commands.forEach(command -> command.emitter.onComplete()))
+                    .doOnError(error -> commands.forEach(command -> command.emitter.tryOnError(error)))
+                    .ignoreElement()
+                    .onErrorComplete());
+        });
+        return Completable.merge(credits);
+    }
+    private static Completable run(Command command) {
+        return Completable.defer(command.mutation::get)
+                .doOnComplete(command.emitter::onComplete)
+                .doOnError(command.emitter::tryOnError)
+                .onErrorComplete();
+    }
+
+    private final class Shard {
+        private final String name;
+        private final ArrayBlockingQueue<Command> queue;
+        private final ExecutorService executor;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Shard(String name, int queueCapacity) {
+            this.name = name;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        private void submit(Command command) {
+            if (!queue.offer(command)) {
+                command.emitter.onError(new RejectedExecutionException(name + " queue is full"));
+                return;
+            }
+            schedule();
+        }
+        private void schedule() {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                fail(new IllegalStateException(name + " is stopped"));
+            }
+        }
+        // Runs on the shard thread. The next batch is drained only once this one has been applied.
+        private void drain() {
+            List<Command> batch = new ArrayList<>();
+            queue.drainTo(batch, maxBatch);
+            if (batch.isEmpty()) {
+                draining.set(false);
+                if (!queue.isEmpty()) {
+                    schedule();
+                }
+                return;
+            }
+            apply(batch).subscribe(() -> {
+                draining.set(false);
+                schedule();
+            });
+        }
+        private void stop() {
+            executor.shutdown();
+            fail(new IllegalStateException(name + " is stopped"));
+        }
+        private void fail(Throwable error) {
+            List<Command> pending = new ArrayList<>();
+            queue.drainTo(pending);
+            if (!pending.isEmpty()) {
+                log.warn("Failing {} queued balance mutations on {}", pending.size(), name);
+            }
+            pending.forEach(command -> command.emitter.tryOnError(error));
+        }
+    }
+
+    private static final class Command {
+        private final YankiWallet receiver;
+        private final BigDecimal amount;
+        private final Supplier<Completable> mutation;
+        private final MaybeEmitter<YankiWallet> emitter;
+
+        private Command(YankiWallet receiver, BigDecimal amount, Supplier<Completable> mutation,
+                        MaybeEmitter<YankiWallet> emitter) {
+            this.receiver = receiver;
+            this.amount = amount;
+            this.mutation = mutation;
+            this.emitter = emitter;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.model.YankiWallet;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+public interface BalanceStreamService {
+    void publish(YankiWallet wallet);
+    Completable refresh(Collection<String> phoneNumbers);
+    Flowable<BigDecimal> streamBalance(String phoneNumber);
+}
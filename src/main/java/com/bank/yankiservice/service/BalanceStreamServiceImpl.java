@@ -0,0 +1,90 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.cache.WalletCache;
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.repository.YankiWalletRepository;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.PublishProcessor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceStreamServiceImpl implements BalanceStreamService {
+    private final YankiWalletRepository repository;
+    private final WalletCache walletCache;
+    private final StripedBalanceService stripedBalances;
+    private final YankiMetrics metrics;
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+
+    @Override
+    public void publish(YankiWallet wallet) {
+        if (wallet == null || wallet.getBalance() == null) {
+            return;
+        }
+        Topic topic = topics.get(wallet.getPhoneNumber());
+        if (topic != null) {
+            topic.processor.onNext(wallet.getBalance());
+        }
+    }
+    @Override
+    public Completable refresh(Collection<String> phoneNumbers) {
+        List<String> watched = phoneNumbers.stream()
+                .filter(topics::containsKey)
+                .collect(Collectors.toList());
+        if (watched.isEmpty()) {
+            return Completable.complete();
+        }
+        return repository.findByPhoneNumberIn(watched)
+                .concatMapSingle(stripedBalances::merge)
+                .doOnNext(this::publish)
+                .ignoreElements()
+                .compose(metrics.service("refreshBalances").completable())
+                .onErrorComplete(error -> {
+                    log.warn("Could not refresh streamed balances of {}: {}", watched, error.getMessage());
+                    return true;
+                });
+    }
+    @Override
+    public Flowable<BigDecimal> streamBalance(String phoneNumber) {
+        return Flowable.defer(() -> {
+            Topic topic = topics.compute(phoneNumber, (key, current) -> {
+                Topic subscribed = current == null ? new Topic() : current;
+                subscribed.subscribers++;
+                return subscribed;
+            });
+            AtomicBoolean updated = new AtomicBoolean();
+            Flowable<BigDecimal> updates = topic.processor.doOnNext(balance -> updated.set(true));
+            Flowable<BigDecimal> initial = walletCache.findByPhoneNumber(phoneNumber)
+                    .switchIfEmpty(Maybe.error(new IllegalArgumentException("Wallet not found")))
+                    .flatMapSingleElement(stripedBalances::merge)
+                    .map(YankiWallet::getBalance)
+                    .filter(balance -> !updated.get())
+                    .toFlowable();
+            return Flowable.merge(updates, initial)
+                    .onBackpressureLatest()
+                    .distinctUntilChanged((previous, current) -> previous.compareTo(current) == 0)
+                    .doFinally(() -> topics.computeIfPresent(phoneNumber,
+                        (key, current) -> --current.subscribers == 0 ? null : current));
+        });
+    }
+
+    private static final class Topic {
+        private final FlowableProcessor<BigDecimal> processor = PublishProcessor.<BigDecimal>create().toSerialized();
+        private int subscribers;
+    }
+}
@@ -0,0 +1,15 @@
+package com.bank.yankiservice.service;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+public interface FundsHoldService {
+    Completable placeHold(String phoneNumber, String transactionId, BigDecimal amount);
+    Completable placeHolds(String phoneNumber, Map<String, BigDecimal> amountsByTransactionId);
+    Single<Boolean> commitHold(String phoneNumber, String transactionId, BigDecimal amount);
+    Single<Boolean> releaseHold(String phoneNumber, String transactionId, BigDecimal amount);
+    Single<Integer> releaseExpiredHolds();
+}
@@ -0,0 +1,118 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.cache.WalletCache;
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.model.FundsHold;
+import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.repository.YankiWalletRepository;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class FundsHoldServiceImpl implements FundsHoldService {
+    private final YankiWalletRepository repository;
+    private final WalletCache walletCache;
+    private final BalanceStreamService balanceStreamService;
+    private final StripedBalanceService stripedBalances;
+    private final YankiMetrics metrics;
+    private final Duration holdTtl;
+
+    public FundsHoldServiceImpl(YankiWalletRepository repository,
+                                WalletCache walletCache,
+                                BalanceStreamService balanceStreamService,
+                                StripedBalanceService stripedBalances,
+                                YankiMetrics metrics,
+                                @Value("${yanki.holds.ttl-seconds:900}") long holdTtlSeconds) {
+        this.repository = repository;
+        this.walletCache = walletCache;
+        this.balanceStreamService = balanceStreamService;
+        this.stripedBalances = stripedBalances;
+        this.metrics = metrics;
+        this.holdTtl = Duration.ofSeconds(holdTtlSeconds);
+    }
+    @Override
+    public Completable placeHold(String phoneNumber, String transactionId, BigDecimal amount) {
+        return hold(phoneNumber, Collections.singletonMap(transactionId, amount))
+                .compose(metrics.service("placeHold").completable());
+    }
+    @Override
+    public Completable placeHolds(String phoneNumber, Map<String, BigDecimal> amountsByTransactionId) {
+        return hold(phoneNumber, amountsByTransactionId)
+                .compose(metrics.service("placeHolds").completable());
+    }
+    // Credits still sitting in balance stripes cannot be held, so a hold that does not fit sweeps them in and retries.
+    private Completable hold(String phoneNumber, Map<String, BigDecimal> amountsByTransactionId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<FundsHold> holds = amountsByTransactionId.entrySet().stream()
+                .map(entry -> FundsHold.builder()
+                        .transactionId(entry.getKey())
+                        .amount(entry.getValue())
+                        .createdAt(now)
+                        .expiresAt(now.plus(holdTtl))
+                        .build())
+                .collect(Collectors.toList());
+        Maybe<YankiWallet> placed = Maybe.defer(() -> repository.placeHolds(phoneNumber, holds));
+        return placed
+                .switchIfEmpty(stripedBalances.sweep(phoneNumber)
+                        .flatMapMaybe(swept -> swept > 0 ? placed : Maybe.<YankiWallet>empty()))
+                .switchIfEmpty(Maybe.error(new IllegalStateException("Insufficient funds for transaction")))
+                .flatMapSingleElement(stripedBalances::merge)
+                .doOnSuccess(balanceStreamService::publish)
+                .flatMapCompletable(walletCache::evict);
+    }
+    @Override
+    public Single<Boolean> commitHold(String phoneNumber, String transactionId, BigDecimal amount) {
+        return evictIfPresent(repository.commitHold(phoneNumber, transactionId, amount))
+                .compose(metrics.service("commitHold").single());
+    }
+    @Override
+    public Single<Boolean> releaseHold(String phoneNumber, String transactionId, BigDecimal amount) {
+        return evictIfPresent(repository.releaseHold(phoneNumber, transactionId, amount))
+                .compose(metrics.service("releaseHold").single());
+    }
+    @Override
+    public Single<Integer> releaseExpiredHolds() {
+        LocalDateTime now = LocalDateTime.now();
+        return repository.findByHoldsExpiresAtBefore(now)
+                .concatMap(wallet -> Flowable.fromIterable(
+                                wallet.getHolds() == null ? Collections.<FundsHold>emptyList() : wallet.getHolds())
+                        .filter(hold -> hold.getExpiresAt().isBefore(now))
+                        .concatMapSingle(hold -> releaseHold(wallet.getPhoneNumber(),
+                                hold.getTransactionId(), hold.getAmount())))
+                .filter(Boolean::booleanValue)
+                .count()
+                .map(Long::intValue)
+                .compose(metrics.service("releaseExpiredHolds").single());
+    }
+    @Scheduled(fixedDelayString = "${yanki.holds.sweep-interval-ms:60000}")
+    public void sweepExpiredHolds() {
+        releaseExpiredHolds()
+                .subscribe(released -> {
+                    if (released > 0) {
+                        log.info("Released {} expired funds holds", released);
+                    }
+                }, error -> log.error("Error releasing expired funds holds: {}", error.getMessage()));
+    }
+    private Single<Boolean> evictIfPresent(Maybe<YankiWallet> wallet) {
+        return wallet
+                .flatMapSingleElement(stripedBalances::merge)
+                .doOnSuccess(balanceStreamService::publish)
+                .flatMapSingleElement(updated -> walletCache.evict(updated).toSingleDefault(true))
+                .toSingle(false);
+    }
+}
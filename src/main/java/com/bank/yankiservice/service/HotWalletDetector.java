@@ -0,0 +1,28 @@
+package com.bank.yankiservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Counts credits per receiver in fixed windows that start with a wallet's first credit. Counts are per instance,
+// so the threshold is the write rate one instance has to see before it promotes the wallet.
+class HotWalletDetector {
+    private final int threshold;
+    private final Cache<String, AtomicInteger> counts;
+
+    HotWalletDetector(int threshold, Duration window, long maxTracked, Ticker ticker) {
+        this.threshold = threshold;
+        this.counts = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(maxTracked)
+                .ticker(ticker)
+                .build();
+    }
+    // True exactly once per window: for the credit that reaches the threshold.
+    boolean recordCredit(String phoneNumber) {
+        return counts.get(phoneNumber, key -> new AtomicInteger()).incrementAndGet() == threshold;
+    }
+}
@@ -0,0 +1,14 @@
+package com.bank.yankiservice.service;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+
+import java.util.List;
+import java.util.function.Function;
+
+public interface OutboxService {
+    Completable enqueue(String topic, String key, Object payload, String correlationId);
+    <T> Completable enqueueAll(String topic, List<T> payloads, Function<T, String> keyExtractor,
+                               String correlationId);
+    Single<Integer> relay();
+}
@@ -0,0 +1,179 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.event.KafkaPublisher;
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.model.OutboxEvent;
+import com.bank.yankiservice.repository.OutboxEventRepository;
+import com.bank.yankiservice.resilience.DependencyUnavailableException;
+import com.bank.yankiservice.tracing.TraceHeaders;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class OutboxServiceImpl implements OutboxService {
+    static final String RELAY_LEASE = "outbox-relay";
+    private final OutboxEventRepository repository;
+    private final KafkaPublisher publisher;
+    private final YankiMetrics metrics;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration maxRetryBackoff;
+    private final Duration leaseDuration;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    public OutboxServiceImpl(OutboxEventRepository repository,
+                             KafkaPublisher publisher,
+                             YankiMetrics metrics,
+                             @Value("${yanki.outbox.batch-size:500}") int batchSize,
+                             @Value("${yanki.outbox.max-attempts:10}") int maxAttempts,
+                             @Value("${yanki.outbox.retry-backoff-ms:1000}") long retryBackoffMs,
+                             @Value("${yanki.outbox.max-retry-backoff-ms:60000}") long maxRetryBackoffMs,
+                             @Value("${yanki.outbox.lease-ms:30000}") long leaseMs) {
+        this.repository = repository;
+        this.publisher = publisher;
+        this.metrics = metrics;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = Duration.ofMillis(retryBackoffMs);
+        this.maxRetryBackoff = Duration.ofMillis(maxRetryBackoffMs);
+        this.leaseDuration = Duration.ofMillis(leaseMs);
+    }
+    @Override
+    public Completable enqueue(String topic, String key, Object payload, String correlationId) {
+        return save(topic, Collections.singletonList(payload), ignored -> key, correlationId)
+                .compose(metrics.service("enqueue").completable());
+    }
+    @Override
+    public <T> Completable enqueueAll(String topic, List<T> payloads, Function<T, String> keyExtractor,
+                                      String correlationId) {
+        return save(topic, payloads, keyExtractor, correlationId)
+                .compose(metrics.service("enqueueAll").completable());
+    }
+    private <T> Completable save(String topic, List<T> payloads, Function<T, String> keyExtractor,
+                                 String correlationId) {
+        if (payloads.isEmpty()) {
+            return Completable.complete();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> events = payloads.stream()
+                .map(payload -> OutboxEvent.builder()
+                        .topic(topic)
+                        .messageKey(keyExtractor.apply(payload))
+                        .payload(payload)
+                        .correlationId(correlationId)
+                        .status(OutboxEvent.PENDING)
+                        .createdAt(now)
+                        .nextAttemptAt(now)
+                        .build())
+                .collect(Collectors.toList());
+        return repository.saveAll(events).ignoreElements();
+    }
+    @Override
+    public Single<Integer> relay() {
+        return repository.acquireLease(RELAY_LEASE, instanceId, leaseDuration)
+                .flatMap(acquired -> acquired ? relayDue(LocalDateTime.now()) : Single.just(0))
+                .compose(metrics.service("relay").single());
+    }
+    // Events of a key go out in _id order, so keys with an event that is backing off or was given up on are left
+    // out. A key stuck behind a FAILED event stays held back until that event is resolved.
+    private Single<Integer> relayDue(LocalDateTime now) {
+        return repository.findBlockedKeys(now).toList()
+                .flatMap(blocked -> repository.findPending(now, blocked, batchSize).toList())
+                .flatMap(this::relay);
+    }
+    @Scheduled(fixedDelayString = "${yanki.outbox.relay-interval-ms:100}")
+    public void relayPending() {
+        try {
+            int relayed;
+            do {
+                relayed = relay().blockingGet();
+                if (relayed > 0) {
+                    log.debug("Relayed {} outbox events", relayed);
+                }
+            } while (relayed >= batchSize);
+        } catch (RuntimeException e) {
+            log.error("Error relaying outbox events: {}", e.getMessage());
+        }
+    }
+    private Single<Integer> relay(List<OutboxEvent> pending) {
+        Map<String, List<OutboxEvent>> byKey = new LinkedHashMap<>();
+        pending.forEach(event -> byKey.computeIfAbsent(String.valueOf(event.getMessageKey()),
+                ignored -> new ArrayList<>()).add(event));
+        return Flowable.fromIterable(byKey.values())
+                .flatMapSingle(this::sendInOrder)
+                .collect(ArrayList<String>::new, List::addAll)
+                .flatMap(sent -> repository.deleteSent(sent).toSingleDefault(sent.size()));
+    }
+    private Single<List<String>> sendInOrder(List<OutboxEvent> events) {
+        return Single.defer(() -> {
+            List<String> sent = new ArrayList<>();
+            return Flowable.fromIterable(events)
+                    .concatMapCompletable(event -> send(event)
+                            .doOnComplete(() -> sent.add(event.getId()))
+                            .onErrorResumeNext(error -> isRejected(error)
+                                    ? Completable.error(error)
+                                    : recordFailure(event, error).andThen(Completable.error(error))))
+                    .onErrorComplete()
+                    .toSingle(() -> sent);
+        });
+    }
+    private Completable send(OutboxEvent event) {
+        return Completable.defer(() -> publisher.publish(toRecord(event)));
+    }
+    // A send refused by the open circuit or a full bulkhead never reached Kafka, so it does not use up an attempt.
+    private static boolean isRejected(Throwable error) {
+        return error instanceof DependencyUnavailableException && ((DependencyUnavailableException) error).isRejected();
+    }
+    private ProducerRecord<String, Object> toRecord(OutboxEvent event) {
+        ProducerRecord<String, Object> record = TraceHeaders.record(event.getTopic(), event.getMessageKey(),
+                event.getPayload(), event.getCorrelationId());
+        if (event.getCorrelationId() != null) {
+            Instant requestedAt = event.getCreatedAt() == null
+                    ? null
+                    : event.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant();
+            Instant publishedAt = Instant.now();
+            TraceHeaders.addTimestamp(record.headers(), TraceHeaders.KAFKA_REQUESTED_AT, requestedAt);
+            TraceHeaders.addTimestamp(record.headers(), TraceHeaders.KAFKA_PUBLISHED_AT, publishedAt);
+            metrics.recordStage(YankiMetrics.STAGE_OUTBOX, requestedAt, publishedAt);
+        }
+        return record;
+    }
+    private Completable recordFailure(OutboxEvent event, Throwable error) {
+        int attempts = event.getAttempts() + 1;
+        event.setAttempts(attempts);
+        event.setLastError(error.getMessage());
+        if (attempts >= maxAttempts) {
+            log.error("Giving up on outbox event {} for {} after {} attempts, holding back its later events: {}",
+                    event.getId(), event.getMessageKey(), attempts, error.getMessage());
+            event.setStatus(OutboxEvent.FAILED);
+        } else {
+            log.warn("Outbox event {} for {} failed, attempt {}: {}",
+                    event.getId(), event.getMessageKey(), attempts, error.getMessage());
+            long backoff = retryBackoff.toMillis() << Math.min(attempts - 1, 20);
+            event.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(
+                    Math.min(backoff, maxRetryBackoff.toMillis()))));
+        }
+        return repository.recordFailure(event).onErrorComplete();
+    }
+}
@@ -0,0 +1,15 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.model.YankiWallet;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+
+import java.math.BigDecimal;
+
+public interface StripedBalanceService {
+    Maybe<YankiWallet> credit(YankiWallet receiver, BigDecimal amount);
+    Maybe<YankiWallet> debit(String phoneNumber, BigDecimal amount);
+    Single<YankiWallet> merge(YankiWallet wallet);
+    Single<Integer> sweep(String phoneNumber);
+    Single<Integer> sweepAll();
+}
@@ -0,0 +1,161 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.cache.WalletCache;
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.model.StripeWatermark;
+import com.bank.yankiservice.model.WalletBalanceStripe;
+import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.repository.YankiWalletRepository;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// A striped wallet keeps its balance in the wallet document plus N append-only stripe documents that credits are
+// spread over, so a hot receiver no longer serialises every credit on one document. Readers add the stripe credits
+// that have not been swept yet; the sweeper folds them into the balance so debits and holds can use them.
+@Service
+@Slf4j
+public class StripedBalanceServiceImpl implements StripedBalanceService {
+    private static final Duration PROMOTION_WINDOW = Duration.ofMinutes(1);
+    private static final long MAX_TRACKED_WALLETS = 100_000;
+    private final YankiWalletRepository repository;
+    private final WalletCache walletCache;
+    private final YankiMetrics metrics;
+    private final boolean enabled;
+    private final int stripes;
+    private final HotWalletDetector detector;
+
+    public StripedBalanceServiceImpl(YankiWalletRepository repository,
+                                     WalletCache walletCache,
+                                     YankiMetrics metrics,
+                                     @Value("${yanki.wallet.striping.enabled:false}") boolean enabled,
+                                     @Value("${yanki.wallet.striping.stripes:8}") int stripes,
+                                     @Value("${yanki.wallet.striping.promote-credits-per-minute:600}")
+                                     int promoteCreditsPerMinute) {
+        this.repository = repository;
+        this.walletCache = walletCache;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.stripes = stripes;
+        this.detector = new HotWalletDetector(promoteCreditsPerMinute, PROMOTION_WINDOW, MAX_TRACKED_WALLETS,
+                Ticker.systemTicker());
+    }
+    static boolean isStriped(YankiWallet wallet) {
+        return wallet.getBalanceStripes() != null && wallet.getStripeWatermarks() != null
+                && !wallet.getStripeWatermarks().isEmpty() && wallet.getLinkedCard() == null;
+    }
+    @Override
+    public Maybe<YankiWallet> credit(YankiWallet receiver, BigDecimal amount) {
+        return Maybe.defer(() -> {
+            if (enabled && isStriped(receiver)) {
+                List<StripeWatermark> watermarks = receiver.getStripeWatermarks();
+                int slot = watermarks.get(ThreadLocalRandom.current().nextInt(watermarks.size())).getSlot();
+                return repository.creditStripe(receiver.getId(), slot, amount)
+                        .andThen(merge(receiver))
+                        .toMaybe();
+            }
+            Maybe<YankiWallet> credited = repository.creditBalance(receiver.getPhoneNumber(), amount)
+                    .flatMap(wallet -> walletCache.evict(wallet).andThen(merge(wallet)).toMaybe());
+            return enabled && detector.recordCredit(receiver.getPhoneNumber())
+                    ? credited.flatMap(wallet -> promote(wallet).andThen(Maybe.just(wallet)))
+                    : credited;
+        }).compose(metrics.service("creditBalance").maybe());
+    }
+    // Credits still sitting in balance stripes cannot be debited, so a debit that does not fit sweeps them in and
+    // retries. Empty when the balance does not cover the amount even then.
+    @Override
+    public Maybe<YankiWallet> debit(String phoneNumber, BigDecimal amount) {
+        Maybe<YankiWallet> debited = Maybe.defer(() -> repository.debitBalance(phoneNumber, amount));
+        return debited
+                .switchIfEmpty(Maybe.defer(() -> sweep(phoneNumber)
+                        .flatMapMaybe(swept -> swept > 0 ? debited : Maybe.<YankiWallet>empty())))
+                .flatMapSingleElement(this::merge)
+                .compose(metrics.service("debitBalance").maybe());
+    }
+    // Read the wallet before its stripes: a sweep in between then moves credits we already count in the stripe
+    // totals, never ones we would miss.
+    @Override
+    public Single<YankiWallet> merge(YankiWallet wallet) {
+        if (!isStriped(wallet)) {
+            return Single.just(wallet);
+        }
+        return repository.findStripes(wallet.getId(), wallet.getBalanceStripes())
+                .toMap(WalletBalanceStripe::getSlot, WalletBalanceStripe::getCredited)
+                .map(credited -> {
+                    BigDecimal pending = BigDecimal.ZERO;
+                    for (StripeWatermark watermark : wallet.getStripeWatermarks()) {
+                        BigDecimal total = credited.get(watermark.getSlot());
+                        if (total != null && total.compareTo(watermark.getSwept()) > 0) {
+                            pending = pending.add(total.subtract(watermark.getSwept()));
+                        }
+                    }
+                    return wallet.toBuilder().balance(wallet.getBalance().add(pending)).build();
+                })
+                .compose(metrics.service("mergeStripes").single());
+    }
+    @Override
+    public Single<Integer> sweep(String phoneNumber) {
+        return repository.findByPhoneNumber(phoneNumber)
+                .flatMapSingleElement(this::sweep)
+                .toSingle(0);
+    }
+    @Override
+    public Single<Integer> sweepAll() {
+        return repository.findByBalanceStripesNotNull()
+                .concatMapSingle(this::sweep)
+                .reduce(0, Integer::sum)
+                .compose(metrics.service("sweepStripes").single());
+    }
+    @Scheduled(fixedDelayString = "${yanki.wallet.striping.sweep-interval-ms:5000}")
+    public void sweepStripedWallets() {
+        sweepAll()
+                .subscribe(swept -> {
+                    if (swept > 0) {
+                        log.debug("Swept {} balance stripes", swept);
+                    }
+                }, error -> log.error("Error sweeping balance stripes: {}", error.getMessage()));
+    }
+    private Single<Integer> sweep(YankiWallet wallet) {
+        if (!isStriped(wallet)) {
+            return Single.just(0);
+        }
+        Map<Integer, BigDecimal> swept = new HashMap<>();
+        wallet.getStripeWatermarks().forEach(watermark -> swept.put(watermark.getSlot(), watermark.getSwept()));
+        return repository.findStripes(wallet.getId(), wallet.getBalanceStripes())
+                .concatMapMaybe(stripe -> {
+                    BigDecimal done = swept.get(stripe.getSlot());
+                    return done == null || stripe.getCredited().compareTo(done) <= 0
+                            ? Maybe.<YankiWallet>empty()
+                            : repository.sweepStripe(wallet.getId(), stripe.getSlot(), done, stripe.getCredited());
+                })
+                .toList()
+                .flatMap(updated -> updated.isEmpty()
+                        ? Single.just(0)
+                        : walletCache.evict(updated.get(updated.size() - 1)).toSingleDefault(updated.size()));
+    }
+    private Completable promote(YankiWallet wallet) {
+        if (isStriped(wallet) || wallet.getLinkedCard() != null) {
+            return Completable.complete();
+        }
+        return repository.enableStriping(wallet.getPhoneNumber(), stripes)
+                .doOnSuccess(promoted -> log.info("Striping balance of hot wallet {} across {} slots",
+                        promoted.getPhoneNumber(), stripes))
+                .flatMapCompletable(walletCache::evict)
+                .onErrorComplete(error -> {
+                    log.warn("Could not stripe balance of wallet {}: {}", wallet.getPhoneNumber(), error.getMessage());
+                    return true;
+                });
+    }
+}
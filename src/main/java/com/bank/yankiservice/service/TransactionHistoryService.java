@@ -0,0 +1,11 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.dto.transaction.YankiTransactionPage;
+import com.bank.yankiservice.model.YankiTransaction;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+
+public interface TransactionHistoryService {
+    Single<YankiTransactionPage> getHistory(String phoneNumber, String cursor, int limit);
+    Flowable<YankiTransaction> streamHistory(String phoneNumber, String cursor);
+}
@@ -0,0 +1,50 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.dto.transaction.YankiTransactionPage;
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.model.YankiTransaction;
+import com.bank.yankiservice.repository.YankiTransactionRepository;
+import com.bank.yankiservice.util.TransactionCursor;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class TransactionHistoryServiceImpl implements TransactionHistoryService {
+    static final int MAX_PAGE_SIZE = 100;
+    private final YankiTransactionRepository transactionRepository;
+    private final YankiMetrics metrics;
+
+    @Override
+    public Single<YankiTransactionPage> getHistory(String phoneNumber, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return find(phoneNumber, cursor, pageSize + 1)
+                .toList()
+                .map(transactions -> {
+                    if (transactions.size() <= pageSize) {
+                        return new YankiTransactionPage(transactions, null);
+                    }
+                    List<YankiTransaction> page = transactions.subList(0, pageSize);
+                    return new YankiTransactionPage(page, TransactionCursor.of(page.get(pageSize - 1)).encode());
+                })
+                .compose(metrics.service("getHistory").single());
+    }
+    @Override
+    public Flowable<YankiTransaction> streamHistory(String phoneNumber, String cursor) {
+        return find(phoneNumber, cursor, 0)
+                .compose(metrics.service("streamHistory").flowable());
+    }
+    private Flowable<YankiTransaction> find(String phoneNumber, String cursor, int limit) {
+        return Flowable.defer(() -> {
+            TransactionCursor position = cursor == null || cursor.isEmpty() ? null : TransactionCursor.decode(cursor);
+            return transactionRepository.findHistory(phoneNumber,
+                    position == null ? null : position.getTimestamp(),
+                    position == null ? null : position.getId(),
+                    limit);
+        });
+    }
+}
@@ -2,6 +2,8 @@ package com.bank.yankiservice.service;
 
 
 import com.bank.yankiservice.dto.BaseResponse;
+import com.bank.yankiservice.dto.transaction.YankiBatchTransactionResult;
+import com.bank.yankiservice.dto.transaction.YankiBatchTransferItem;
 import com.bank.yankiservice.dto.yanki.YankiWalletRequest;
 import com.bank.yankiservice.model.YankiWallet;
 import io.reactivex.Completable;
@@ -9,10 +11,15 @@ import io.reactivex.Maybe;
 import io.reactivex.Single;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 public interface YankiService {
     Completable associateCard(String phoneNumber, String cardNumber, String documentNumber);
-    Completable processYankiTransaction(String senderPhoneNumber, String receiverPhoneNumber, BigDecimal amount);
+    Completable processYankiTransaction(String senderPhoneNumber, String receiverPhoneNumber, BigDecimal amount,
+                                        String correlationId);
+    Single<YankiBatchTransactionResult> processYankiTransactionBatch(String senderPhoneNumber,
+                                                                     List<YankiBatchTransferItem> transfers,
+                                                                     String correlationId);
     Single<BaseResponse<YankiWallet>> registerWallet(YankiWalletRequest request);
     Maybe<YankiWallet> getWalletById(String id);
     Maybe<YankiWallet> getWalletByPhoneNumber(String phoneNumber);
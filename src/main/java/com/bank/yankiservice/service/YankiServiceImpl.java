@@ -1,38 +1,60 @@
 package com.bank.yankiservice.service;
 
+import com.bank.yankiservice.cache.WalletCache;
 import com.bank.yankiservice.dto.BaseResponse;
 import com.bank.yankiservice.dto.cardlink.CardLinkRequestedEvent;
+import com.bank.yankiservice.dto.transaction.YankiBatchTransactionResult;
+import com.bank.yankiservice.dto.transaction.YankiBatchTransferItem;
+import com.bank.yankiservice.dto.transaction.YankiBatchTransferResult;
 import com.bank.yankiservice.dto.transaction.YankiTransactionEvent;
 import com.bank.yankiservice.dto.yanki.YankiWalletRequest;
+import com.bank.yankiservice.metrics.YankiMetrics;
 import com.bank.yankiservice.model.YankiWallet;
 import com.bank.yankiservice.repository.YankiWalletRepository;
+import com.bank.yankiservice.resilience.DependencyUnavailableException;
+import com.bank.yankiservice.util.ValidationResult;
 import com.bank.yankiservice.util.ValidationUtil;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.tuple.Triple;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.util.Pair;
 import org.springframework.http.HttpStatus;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class YankiServiceImpl implements YankiService {
+    private static final int MAX_BATCH_TRANSFERS = 5000;
+    private static final String TRANSACTION_REQUESTED_TOPIC = "yanki.transaction.requested";
     private final YankiWalletRepository repository;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final WalletCache walletCache;
+    private final FundsHoldService fundsHoldService;
+    private final StripedBalanceService stripedBalances;
+    private final OutboxService outboxService;
+    private final YankiMetrics metrics;
 
     @Override
     public Completable associateCard(String phoneNumber,
                                      String cardNumber,
                                      String documentNumber) {
-        return repository.findByDocumentNumber(documentNumber)
+        return walletCache.findByDocumentNumber(documentNumber)
             .flatMapCompletable(yankiWallet -> {
                 if (yankiWallet == null) {
                     return Completable.error(new RuntimeException("Wallet not found"));
@@ -41,21 +63,31 @@ public class YankiServiceImpl implements YankiService {
                     cardNumber,
                     documentNumber,
                     yankiWallet.getBalance());
-                kafkaTemplate.send("yanki.card.link.requested", event);
-                log.info("Card association event sent: {}", event);
-                return Completable.complete();
-            });
+                return outboxService.enqueue("yanki.card.link.requested", phoneNumber, event, null)
+                        .doOnComplete(() -> log.info("Card association event queued: {}", event));
+            })
+            .compose(metrics.service("associateCard").completable());
     }
     public Single<Boolean> validateUser(String phoneNumber, String documentNumber) {
-        return repository.findByPhoneNumberAndDocumentNumber(phoneNumber, documentNumber)
-                .map(wallet -> true)
-                .switchIfEmpty(Single.just(false));
+        Single<Boolean> valid = !ValidationUtil.checkPhoneNumber(phoneNumber).isValid()
+                || !ValidationUtil.checkDocumentNumber(documentNumber).isValid()
+                ? Single.just(false)
+                : walletCache.findByPhoneNumberAndDocumentNumber(phoneNumber, documentNumber)
+                    .map(wallet -> true)
+                    .switchIfEmpty(Single.just(false));
+        return valid.compose(metrics.service("validateUser").single());
     }
     @Override
     public Completable processYankiTransaction(String senderPhoneNumber,
                                                String receiverPhoneNumber,
-                                               BigDecimal amount) {
-        log.info("Processing Yanki transaction");
+                                               BigDecimal amount,
+                                               String correlationId) {
+        return transfer(senderPhoneNumber, receiverPhoneNumber, amount, correlationId)
+                .compose(metrics.service("processYankiTransaction").completable());
+    }
+    private Completable transfer(String senderPhoneNumber, String receiverPhoneNumber, BigDecimal amount,
+                                 String correlationId) {
+        log.info("Processing Yanki transaction {}", correlationId);
         if (senderPhoneNumber.equals(receiverPhoneNumber)) {
             log.error("Sender and receiver phone numbers cannot be the same");
             return Completable.error(new IllegalStateException("Sender and receiver phone numbers must be different"));
@@ -76,41 +108,155 @@ public class YankiServiceImpl implements YankiService {
                         return Completable.error(new IllegalStateException("Insufficient funds for transaction"));
                     }
                     YankiTransactionEvent event = new YankiTransactionEvent(
-                            null,
+                            UUID.randomUUID().toString(),
                             sender.getPhoneNumber(),
                             receiver.getPhoneNumber(),
                             sender.getLinkedCard(),
                             receiver.getLinkedCard(),
                             amount
                     );
-                    kafkaTemplate.send("yanki.transaction.requested", event);
-                    log.info("Event sent to Transaction-Service: {}", event);
-                    return Completable.complete();
+                    Completable send = Completable.defer(() -> outboxService
+                                    .enqueue(TRANSACTION_REQUESTED_TOPIC, event.getSenderPhoneNumber(), event,
+                                        correlationId))
+                            .doOnComplete(() -> log.info("Event queued for Transaction-Service: {}", event));
+                    if (sender.getLinkedCard() != null) {
+                        return send;
+                    }
+                    return fundsHoldService.placeHold(sender.getPhoneNumber(), event.getTransactionId(), amount)
+                            .andThen(send.onErrorResumeNext(error -> fundsHoldService
+                                    .releaseHold(sender.getPhoneNumber(), event.getTransactionId(), amount)
+                                    .ignoreElement()
+                                    .onErrorComplete()
+                                    .andThen(Completable.error(error))));
                 });
     }
     @Override
-    public Single<BaseResponse<YankiWallet>> registerWallet(YankiWalletRequest request) {
-        return Single.zip(
-                repository.findByPhoneNumber(request.getPhoneNumber()).count().map(count -> count == 0),
-                repository.findByDocumentNumber(request.getDocumentNumber()).count().map(count -> count == 0),
-                repository.findByImei(request.getImei()).count().map(count -> count == 0),
-                Triple::of
-        ).flatMap(result -> {
-            boolean isPhoneUnique = result.getLeft();
-            boolean isDocumentUnique = result.getMiddle();
-            boolean isImeiUnique = result.getRight();
-            ValidationUtil.validatePhoneNumber(request.getPhoneNumber());
-            ValidationUtil.validateDocumentNumber(request.getDocumentNumber());
-            ValidationUtil.validateImei(request.getImei());
-            ValidationUtil.validateEmail(request.getEmail());
-            if (!isPhoneUnique) {
-                return Single.error(new IllegalArgumentException("Phone number is already registered"));
+    public Single<YankiBatchTransactionResult> processYankiTransactionBatch(String senderPhoneNumber,
+                                                                            List<YankiBatchTransferItem> transfers,
+                                                                            String correlationId) {
+        return transferBatch(senderPhoneNumber, transfers, correlationId)
+                .compose(metrics.service("processYankiTransactionBatch").single());
+    }
+    private Single<YankiBatchTransactionResult> transferBatch(String senderPhoneNumber,
+                                                              List<YankiBatchTransferItem> transfers,
+                                                              String correlationId) {
+        if (transfers == null || transfers.isEmpty()) {
+            return Single.error(new IllegalArgumentException("Batch must contain at least one transfer"));
+        }
+        if (transfers.size() > MAX_BATCH_TRANSFERS) {
+            return Single.error(new IllegalArgumentException(
+                "Batch cannot contain more than " + MAX_BATCH_TRANSFERS + " transfers"));
+        }
+        log.info("Processing batch {} of {} Yanki transactions from {}", correlationId, transfers.size(),
+                senderPhoneNumber);
+        List<YankiBatchTransferResult> results = new ArrayList<>(transfers.size());
+        Set<String> receiverPhoneNumbers = new HashSet<>();
+        List<ValidationResult> receiverValidations = ValidationUtil.checkPhoneNumbers(transfers.stream()
+                .map(YankiBatchTransferItem::getReceiverPhoneNumber)
+                .collect(Collectors.toList()));
+        for (int i = 0; i < transfers.size(); i++) {
+            YankiBatchTransferItem transfer = transfers.get(i);
+            YankiBatchTransferResult result = new YankiBatchTransferResult(i, transfer.getReceiverPhoneNumber(),
+                    transfer.getAmount(), null, null, null);
+            ValidationResult receiverValidation = receiverValidations.get(i);
+            if (transfer.getAmount() == null || transfer.getAmount().signum() <= 0) {
+                reject(result, "Amount must be greater than zero");
+            } else if (!receiverValidation.isValid()) {
+                reject(result, receiverValidation.getMessage());
+            } else if (senderPhoneNumber.equals(transfer.getReceiverPhoneNumber())) {
+                reject(result, "Sender and receiver phone numbers must be different");
+            } else {
+                receiverPhoneNumbers.add(transfer.getReceiverPhoneNumber());
             }
-            if (!isDocumentUnique) {
-                return Single.error(new IllegalArgumentException("Document number is already registered"));
+            results.add(result);
+        }
+        Single<Map<String, YankiWallet>> receivers = receiverPhoneNumbers.isEmpty()
+                ? Single.just(Collections.emptyMap())
+                : repository.findByPhoneNumberIn(receiverPhoneNumbers).toMap(YankiWallet::getPhoneNumber);
+        return getWalletByPhoneNumber(senderPhoneNumber)
+                .switchIfEmpty(Single.error(new IllegalStateException("Sender wallet not found")))
+                .zipWith(receivers, Pair::of)
+                .flatMap(pair -> {
+                    YankiWallet sender = pair.getFirst();
+                    Map<String, YankiWallet> receiverWallets = pair.getSecond();
+                    List<Pair<YankiBatchTransferResult, YankiTransactionEvent>> pending = new ArrayList<>();
+                    Map<String, BigDecimal> amountsByTransactionId = new LinkedHashMap<>();
+                    for (YankiBatchTransferResult result : results) {
+                        if (result.getStatus() != null) {
+                            continue;
+                        }
+                        YankiWallet receiver = receiverWallets.get(result.getReceiverPhoneNumber());
+                        if (receiver == null) {
+                            reject(result, "Receiver wallet not found");
+                            continue;
+                        }
+                        result.setTransactionId(UUID.randomUUID().toString());
+                        pending.add(Pair.of(result, new YankiTransactionEvent(
+                                result.getTransactionId(),
+                                sender.getPhoneNumber(),
+                                receiver.getPhoneNumber(),
+                                sender.getLinkedCard(),
+                                receiver.getLinkedCard(),
+                                result.getAmount()
+                        )));
+                        amountsByTransactionId.put(result.getTransactionId(), result.getAmount());
+                    }
+                    BigDecimal total = amountsByTransactionId.values().stream()
+                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+                    if (sender.getBalance().compareTo(total) < 0) {
+                        log.error("Insufficient funds in sender wallet {} for batch of {}", sender.getId(), total);
+                        return Single.error(new IllegalStateException("Insufficient funds for transaction"));
+                    }
+                    Completable hold = pending.isEmpty() || sender.getLinkedCard() != null
+                            ? Completable.complete()
+                            : fundsHoldService.placeHolds(sender.getPhoneNumber(), amountsByTransactionId);
+                    List<YankiTransactionEvent> events = pending.stream()
+                            .map(Pair::getSecond)
+                            .collect(Collectors.toList());
+                    return hold.andThen(outboxService.enqueueAll(TRANSACTION_REQUESTED_TOPIC, events,
+                                    YankiTransactionEvent::getSenderPhoneNumber, correlationId)
+                            .doOnComplete(() -> pending.forEach(item ->
+                                    item.getFirst().setStatus(YankiBatchTransferResult.ACCEPTED)))
+                            .onErrorResumeNext(error -> {
+                                log.error("Error queueing batch of {} transactions from {}: {}",
+                                    events.size(), senderPhoneNumber, error.getMessage());
+                                pending.forEach(item -> reject(item.getFirst(), "Failed to publish transaction"));
+                                return sender.getLinkedCard() != null
+                                        ? Completable.complete()
+                                        : Flowable.fromIterable(events)
+                                            .flatMapSingle(event -> fundsHoldService
+                                                .releaseHold(sender.getPhoneNumber(), event.getTransactionId(),
+                                                    event.getAmount())
+                                                .onErrorReturnItem(false))
+                                            .ignoreElements();
+                            }))
+                            .toSingle(() -> summarize(senderPhoneNumber, results));
+                });
+    }
+    private static void reject(YankiBatchTransferResult result, String reason) {
+        result.setStatus(YankiBatchTransferResult.REJECTED);
+        result.setReason(reason);
+    }
+    private static YankiBatchTransactionResult summarize(String senderPhoneNumber,
+                                                         List<YankiBatchTransferResult> results) {
+        int accepted = 0;
+        BigDecimal acceptedAmount = BigDecimal.ZERO;
+        for (YankiBatchTransferResult result : results) {
+            if (YankiBatchTransferResult.ACCEPTED.equals(result.getStatus())) {
+                accepted++;
+                acceptedAmount = acceptedAmount.add(result.getAmount());
             }
-            if (!isImeiUnique) {
-                return Single.error(new IllegalArgumentException("IMEI is already registered"));
+        }
+        return new YankiBatchTransactionResult(senderPhoneNumber, accepted, results.size() - accepted,
+                acceptedAmount, results);
+    }
+    @Override
+    public Single<BaseResponse<YankiWallet>> registerWallet(YankiWalletRequest request) {
+        return Single.defer(() -> {
+            ValidationResult validation = ValidationUtil.checkWallet(request.getPhoneNumber(),
+                    request.getDocumentNumber(), request.getImei(), request.getEmail());
+            if (!validation.isValid()) {
+                return Single.error(validation.toException());
             }
             YankiWallet wallet = YankiWallet.builder()
                     .phoneNumber(request.getPhoneNumber())
@@ -118,50 +264,78 @@ public class YankiServiceImpl implements YankiService {
                     .imei(request.getImei())
                     .email(request.getEmail())
                     .balance(BigDecimal.ZERO)
+                    .heldBalance(BigDecimal.ZERO)
                     .createdAt(LocalDateTime.now())
                     .updatedAt(LocalDateTime.now())
                     .build();
+            // The wallet has no id yet, so save is an insert and cannot overwrite concurrent balance updates.
             return repository.save(wallet)
-                    .map(savedWallet -> new BaseResponse<>(
-                            HttpStatus.CREATED.value(),
-                            "Wallet created successfully",
-                            savedWallet
-                    ));
-        }).onErrorResumeNext(throwable -> Single.just(new BaseResponse<>(
-                HttpStatus.BAD_REQUEST.value(),
-                throwable.getMessage(),
-                null
-        )));
+                    .onErrorResumeNext(error -> Single.error(error instanceof DuplicateKeyException
+                            ? toAlreadyRegistered((DuplicateKeyException) error)
+                            : error))
+                    .flatMap(savedWallet -> walletCache.put(savedWallet)
+                            .onErrorComplete()
+                            .toSingleDefault(new BaseResponse<>(
+                                    HttpStatus.CREATED.value(),
+                                    "Wallet created successfully",
+                                    savedWallet
+                            )));
+        }).onErrorResumeNext(throwable -> throwable instanceof DependencyUnavailableException
+                ? Single.error(throwable)
+                : Single.just(new BaseResponse<>(
+                        HttpStatus.BAD_REQUEST.value(),
+                        throwable.getMessage(),
+                        null
+                ))).compose(metrics.service("registerWallet").single());
+    }
+    private static IllegalArgumentException toAlreadyRegistered(DuplicateKeyException error) {
+        String message = String.valueOf(error.getMessage());
+        if (message.contains(YankiWallet.PHONE_NUMBER_INDEX)) {
+            return new IllegalArgumentException("Phone number is already registered");
+        }
+        if (message.contains(YankiWallet.DOCUMENT_NUMBER_INDEX)) {
+            return new IllegalArgumentException("Document number is already registered");
+        }
+        if (message.contains(YankiWallet.IMEI_INDEX)) {
+            return new IllegalArgumentException("IMEI is already registered");
+        }
+        return new IllegalArgumentException("Wallet is already registered");
     }
     @Override
     public Maybe<YankiWallet> getWalletById(String id) {
-        return repository.findById(id);
+        return repository.findById(id)
+                .compose(metrics.service("getWalletById").maybe());
     }
     @Override
     public Maybe<YankiWallet> getWalletByPhoneNumber(String phoneNumber) {
-        return repository.findByPhoneNumber(phoneNumber);
+        return walletCache.findByPhoneNumber(phoneNumber)
+                .flatMapSingleElement(stripedBalances::merge)
+                .compose(metrics.service("getWalletByPhoneNumber").maybe());
     }
     @Override
     public Maybe<YankiWallet> getWalletByDocument(String documentNumber) {
-        return repository.findByDocumentNumber(documentNumber);
+        return walletCache.findByDocumentNumber(documentNumber)
+                .flatMapSingleElement(stripedBalances::merge)
+                .compose(metrics.service("getWalletByDocument").maybe());
     }
     @Override
     public Single<YankiWallet> updateWallet(String id, YankiWalletRequest request) {
         return repository.findById(id)
                 .switchIfEmpty(Single.error(new RuntimeException("Wallet not found")))
-                .flatMap(existingWallet -> {
-                    existingWallet.setPhoneNumber(request.getPhoneNumber());
-                    existingWallet.setDocumentNumber(request.getDocumentNumber());
-                    existingWallet.setImei(request.getImei());
-                    existingWallet.setEmail(request.getEmail());
-                    existingWallet.setUpdatedAt(LocalDateTime.now());
-                    return repository.save(existingWallet);
-                });
+                .flatMap(previousWallet -> repository.updateProfile(id, request.getPhoneNumber(),
+                                request.getDocumentNumber(), request.getImei(), request.getEmail())
+                        .switchIfEmpty(Single.error(new RuntimeException("Wallet not found")))
+                        .flatMap(savedWallet -> walletCache.evict(previousWallet)
+                                .andThen(walletCache.put(savedWallet))
+                                .toSingleDefault(savedWallet)))
+                .compose(metrics.service("updateWallet").single());
     }
     @Override
     public Completable deleteWallet(String id) {
         return repository.findById(id)
                 .switchIfEmpty(Maybe.error(new RuntimeException("Wallet not found")))
-                .flatMapCompletable(repository::delete);
+                .flatMapCompletable(wallet -> repository.delete(wallet)
+                        .andThen(walletCache.evict(wallet)))
+                .compose(metrics.service("deleteWallet").completable());
     }
 }
@@ -0,0 +1,78 @@
+package com.bank.yankiservice.tracing;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.slf4j.MDC;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+
+public final class TraceHeaders {
+    public static final String CORRELATION_ID = "X-Correlation-Id";
+    public static final String KAFKA_CORRELATION_ID = "yanki-correlation-id";
+    public static final String KAFKA_REQUESTED_AT = "yanki-requested-at";
+    public static final String KAFKA_PUBLISHED_AT = "yanki-published-at";
+    public static final String MDC_KEY = "correlationId";
+    private static final int MAX_LENGTH = 64;
+
+    private TraceHeaders() {
+    }
+
+    public static String newCorrelationId() {
+        return UUID.randomUUID().toString();
+    }
+    public static String orNew(String correlationId) {
+        return isValid(correlationId) ? correlationId : newCorrelationId();
+    }
+    // Same language as [A-Za-z0-9._-]{1,64}; the ID is echoed into logs and headers, so nothing else gets through.
+    public static boolean isValid(String correlationId) {
+        if (correlationId == null || correlationId.isEmpty() || correlationId.length() > MAX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < correlationId.length(); i++) {
+            char c = correlationId.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                    || c == '.' || c == '_' || c == '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+    public static MDC.MDCCloseable bind(String correlationId) {
+        return MDC.putCloseable(MDC_KEY, correlationId);
+    }
+    public static <K, V> ProducerRecord<K, V> record(String topic, K key, V value, String correlationId) {
+        ProducerRecord<K, V> record = new ProducerRecord<>(topic, key, value);
+        if (correlationId != null) {
+            record.headers().add(KAFKA_CORRELATION_ID, encode(correlationId));
+        }
+        return record;
+    }
+    public static void addTimestamp(Headers headers, String name, Instant value) {
+        if (value != null) {
+            headers.remove(name);
+            headers.add(name, encode(Long.toString(value.toEpochMilli())));
+        }
+    }
+    public static String decode(Object value) {
+        if (value instanceof byte[]) {
+            return new String((byte[]) value, StandardCharsets.UTF_8);
+        }
+        return value == null ? null : value.toString();
+    }
+    public static Instant decodeInstant(Object value) {
+        String text = decode(value);
+        if (text == null) {
+            return null;
+        }
+        try {
+            return Instant.ofEpochMilli(Long.parseLong(text.trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    private static byte[] encode(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
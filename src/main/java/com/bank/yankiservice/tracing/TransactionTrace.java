@@ -0,0 +1,29 @@
+package com.bank.yankiservice.tracing;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class TransactionTrace {
+    private final String correlationId;
+    private final Instant requestedAt;
+    private final Instant publishedAt;
+    private final Instant producedAt;
+    private final Instant receivedAt;
+
+    public static TransactionTrace of(Map<String, Object> headers, Long producedAt) {
+        Map<String, Object> values = headers == null ? Collections.emptyMap() : headers;
+        return new TransactionTrace(
+                TraceHeaders.orNew(TraceHeaders.decode(values.get(TraceHeaders.KAFKA_CORRELATION_ID))),
+                TraceHeaders.decodeInstant(values.get(TraceHeaders.KAFKA_REQUESTED_AT)),
+                TraceHeaders.decodeInstant(values.get(TraceHeaders.KAFKA_PUBLISHED_AT)),
+                producedAt == null ? null : Instant.ofEpochMilli(producedAt),
+                Instant.now());
+    }
+}
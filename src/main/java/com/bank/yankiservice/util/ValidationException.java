@@ -0,0 +1,12 @@
+package com.bank.yankiservice.util;
+
+public class ValidationException extends IllegalArgumentException {
+    public ValidationException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -1,33 +1,126 @@
 package com.bank.yankiservice.util;
 
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ValidationUtil {
+    private static final ValidationResult INVALID_PHONE_NUMBER =
+            ValidationResult.invalid("Phone number must contain between 9 and 10 digits");
+    private static final ValidationResult INVALID_DOCUMENT_NUMBER =
+            ValidationResult.invalid("Document number must contain between 8 and 12 digits");
+    private static final ValidationResult INVALID_IMEI =
+            ValidationResult.invalid("IMEI must contain exactly 15 digits");
+    private static final ValidationResult INVALID_EMAIL =
+            ValidationResult.invalid("Invalid email format");
 
     private ValidationUtil() {
     }
 
     public static void validatePhoneNumber(String phoneNumber) {
-        if (phoneNumber == null || !Pattern.matches("\\d{9,10}", phoneNumber)) {
-            throw new IllegalArgumentException("Phone number must contain between 9 and 10 digits");
-        }
+        checkPhoneNumber(phoneNumber).throwIfInvalid();
     }
 
     public static void validateDocumentNumber(String documentNumber) {
-        if (documentNumber == null || !Pattern.matches("\\d{8,12}", documentNumber)) {
-            throw new IllegalArgumentException("Document number must contain between 8 and 12 digits");
-        }
+        checkDocumentNumber(documentNumber).throwIfInvalid();
     }
 
     public static void validateImei(String imei) {
-        if (imei == null || !Pattern.matches("\\d{15}", imei)) {
-            throw new IllegalArgumentException("IMEI must contain exactly 15 digits");
-        }
+        checkImei(imei).throwIfInvalid();
     }
 
     public static void validateEmail(String email) {
-        if (email == null || !Pattern.matches("^[\\w.%+-]+@[\\w.-]+\\.[a-zA-Z]{2,6}$", email)) {
-            throw new IllegalArgumentException("Invalid email format");
+        checkEmail(email).throwIfInvalid();
+    }
+
+    public static ValidationResult checkPhoneNumber(String phoneNumber) {
+        return isDigits(phoneNumber, 9, 10) ? ValidationResult.valid() : INVALID_PHONE_NUMBER;
+    }
+
+    public static ValidationResult checkDocumentNumber(String documentNumber) {
+        return isDigits(documentNumber, 8, 12) ? ValidationResult.valid() : INVALID_DOCUMENT_NUMBER;
+    }
+
+    public static ValidationResult checkImei(String imei) {
+        return isDigits(imei, 15, 15) ? ValidationResult.valid() : INVALID_IMEI;
+    }
+
+    public static ValidationResult checkEmail(String email) {
+        return isEmail(email) ? ValidationResult.valid() : INVALID_EMAIL;
+    }
+
+    // One result per number, in order, so a bulk request rejects its invalid items and keeps the rest. Invalid
+    // results are the shared constants, so a large batch allocates nothing beyond the list.
+    public static List<ValidationResult> checkPhoneNumbers(List<String> phoneNumbers) {
+        List<ValidationResult> results = new ArrayList<>(phoneNumbers.size());
+        for (String phoneNumber : phoneNumbers) {
+            results.add(checkPhoneNumber(phoneNumber));
+        }
+        return results;
+    }
+
+    public static ValidationResult checkWallet(String phoneNumber, String documentNumber, String imei, String email) {
+        ValidationResult result = checkPhoneNumber(phoneNumber);
+        if (result.isValid()) {
+            result = checkDocumentNumber(documentNumber);
         }
+        if (result.isValid()) {
+            result = checkImei(imei);
+        }
+        if (result.isValid()) {
+            result = checkEmail(email);
+        }
+        return result;
+    }
+
+    private static boolean isDigits(String value, int minLength, int maxLength) {
+        if (value == null || value.length() < minLength || value.length() > maxLength) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same language as ^[\w.%+-]+@[\w.-]+\.[a-zA-Z]{2,6}$ without the regex engine.
+    private static boolean isEmail(String email) {
+        if (email == null) {
+            return false;
+        }
+        int at = email.indexOf('@');
+        if (at < 1) {
+            return false;
+        }
+        for (int i = 0; i < at; i++) {
+            char c = email.charAt(i);
+            if (!isWordChar(c) && c != '.' && c != '%' && c != '+' && c != '-') {
+                return false;
+            }
+        }
+        int lastDot = email.lastIndexOf('.');
+        int tldLength = email.length() - lastDot - 1;
+        if (lastDot < at + 2 || tldLength < 2 || tldLength > 6) {
+            return false;
+        }
+        for (int i = at + 1; i < lastDot; i++) {
+            char c = email.charAt(i);
+            if (!isWordChar(c) && c != '.' && c != '-') {
+                return false;
+            }
+        }
+        for (int i = lastDot + 1; i < email.length(); i++) {
+            char c = email.charAt(i);
+            if ((c < 'a' || c > 'z') && (c < 'A' || c > 'Z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
     }
-}
\ No newline at end of file
+}
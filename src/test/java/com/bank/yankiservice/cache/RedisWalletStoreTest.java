@@ -0,0 +1,90 @@
+package com.bank.yankiservice.cache;
+
+import com.bank.yankiservice.model.YankiWallet;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactivestreams.Publisher;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class RedisWalletStoreTest {
+    @Mock
+    private ReactiveStringRedisTemplate redisTemplate;
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+    @Mock
+    private ReactiveRedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private RedisWalletStore store;
+    private YankiWallet wallet;
+    @BeforeEach
+    void setUp() {
+        store = new RedisWalletStore(redisTemplate, listenerContainer, objectMapper, 120);
+        wallet = YankiWallet.builder()
+                .id("wallet-1")
+                .phoneNumber("987654321")
+                .documentNumber("12345678")
+                .balance(new BigDecimal("15.50"))
+                .createdAt(LocalDateTime.of(2024, 1, 1, 10, 0))
+                .build();
+    }
+    @Test
+    void get_shouldDeserializeStoredWallet() throws Exception {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("key")).thenReturn(Mono.just(objectMapper.writeValueAsString(wallet)));
+        store.get("key").test().assertValue(wallet);
+    }
+    @Test
+    void get_shouldReturnEmpty_whenRedisFails() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("key")).thenReturn(Mono.error(new IllegalStateException("connection refused")));
+        store.get("key").test().assertNoValues().assertComplete();
+    }
+    @Test
+    void put_shouldWriteEveryKeyWithTtl() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.set(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+        store.put(List.of("a", "b"), wallet).test().assertComplete();
+        verify(valueOperations).set(eq("a"), anyString(), eq(Duration.ofSeconds(120)));
+        verify(valueOperations).set(eq("b"), anyString(), eq(Duration.ofSeconds(120)));
+    }
+    @Test
+    void evict_shouldDeleteAndPublishInvalidation() {
+        when(redisTemplate.delete(ArgumentMatchers.<Publisher<String>>any())).thenReturn(Mono.just(2L));
+        when(redisTemplate.convertAndSend(RedisWalletStore.INVALIDATION_CHANNEL, "a,b")).thenReturn(Mono.just(1L));
+        store.evict(List.of("a", "b")).test().assertComplete();
+        verify(redisTemplate).convertAndSend(RedisWalletStore.INVALIDATION_CHANNEL, "a,b");
+    }
+    @Test
+    void evict_shouldComplete_whenRedisFails() {
+        when(redisTemplate.delete(ArgumentMatchers.<Publisher<String>>any()))
+                .thenReturn(Mono.error(new IllegalStateException("connection refused")));
+        when(redisTemplate.convertAndSend(anyString(), anyString())).thenReturn(Mono.just(0L));
+        store.evict(List.of("a")).test().assertComplete();
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void invalidations_shouldSplitPublishedKeys() {
+        ReactiveSubscription.Message<String, String> message = mock(ReactiveSubscription.Message.class);
+        when(message.getMessage()).thenReturn("a,b");
+        when(listenerContainer.receive(any(ChannelTopic.class))).thenReturn(Flux.just(message));
+        store.invalidations().test().assertValues("a", "b");
+    }
+}
@@ -0,0 +1,176 @@
+package com.bank.yankiservice.cache;
+
+import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.repository.YankiWalletRepository;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.subjects.MaybeSubject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class WalletCacheImplTest {
+    @Mock
+    private YankiWalletRepository repository;
+    @Mock
+    private RedisWalletStore redisStore;
+    private YankiWallet wallet;
+    @BeforeEach
+    void setUp() {
+        wallet = YankiWallet.builder()
+                .id("wallet-1")
+                .phoneNumber("987654321")
+                .documentNumber("12345678")
+                .balance(new BigDecimal("100.00"))
+                .build();
+    }
+    private WalletCacheImpl localOnlyCache() {
+        return new WalletCacheImpl(repository, Optional.empty(), 100, 60);
+    }
+    @Test
+    void findByPhoneNumber_shouldHitRepositoryOnce_whenLookedUpTwice() {
+        WalletCacheImpl cache = localOnlyCache();
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.just(wallet));
+        cache.findByPhoneNumber("987654321").test().assertValue(w -> w.getId().equals("wallet-1"));
+        cache.findByPhoneNumber("987654321").test().assertValue(w -> w.getId().equals("wallet-1"));
+        verify(repository, times(1)).findByPhoneNumber("987654321");
+    }
+    @Test
+    void findByDocumentNumber_shouldBeServedFromCache_afterPhoneLookup() {
+        WalletCacheImpl cache = localOnlyCache();
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.just(wallet));
+        cache.findByPhoneNumber("987654321").test().assertComplete();
+        cache.findByDocumentNumber("12345678").test().assertValue(w -> w.getPhoneNumber().equals("987654321"));
+        verify(repository, never()).findByDocumentNumber(anyString());
+    }
+    @Test
+    void findByPhoneNumber_shouldReturnDefensiveCopies() {
+        WalletCacheImpl cache = localOnlyCache();
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.just(wallet));
+        cache.findByPhoneNumber("987654321").blockingGet().setBalance(BigDecimal.ZERO);
+        cache.findByPhoneNumber("987654321").test()
+                .assertValue(w -> w.getBalance().compareTo(new BigDecimal("100.00")) == 0);
+    }
+    @Test
+    void findByPhoneNumberAndDocumentNumber_shouldReturnEmpty_whenDocumentDoesNotMatch() {
+        WalletCacheImpl cache = localOnlyCache();
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.just(wallet));
+        cache.findByPhoneNumberAndDocumentNumber("987654321", "87654321").test()
+                .assertNoValues()
+                .assertComplete();
+        cache.findByPhoneNumberAndDocumentNumber("987654321", "12345678").test()
+                .assertValueCount(1);
+    }
+    @Test
+    void findByPhoneNumber_shouldNotCache_whenWalletDoesNotExist() {
+        WalletCacheImpl cache = localOnlyCache();
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.empty());
+        cache.findByPhoneNumber("987654321").test().assertNoValues().assertComplete();
+        cache.findByPhoneNumber("987654321").test().assertNoValues().assertComplete();
+        verify(repository, times(2)).findByPhoneNumber("987654321");
+    }
+    @Test
+    void evict_shouldForceReload() {
+        WalletCacheImpl cache = localOnlyCache();
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.just(wallet));
+        cache.findByPhoneNumber("987654321").test().assertComplete();
+        cache.evict(wallet).test().assertComplete();
+        cache.findByPhoneNumber("987654321").test().assertComplete();
+        verify(repository, times(2)).findByPhoneNumber("987654321");
+    }
+    @Test
+    void findByPhoneNumber_shouldUseRedis_beforeRepository() {
+        WalletCacheImpl cache = new WalletCacheImpl(repository, Optional.of(redisStore), 100, 60);
+        when(redisStore.get("yanki:wallet:phone:987654321")).thenReturn(Maybe.just(wallet));
+        cache.findByPhoneNumber("987654321").test().assertValue(w -> w.getId().equals("wallet-1"));
+        cache.findByDocumentNumber("12345678").test().assertValue(w -> w.getId().equals("wallet-1"));
+        verifyNoInteractions(repository);
+        verify(redisStore, times(1)).get(anyString());
+    }
+    @Test
+    void findByPhoneNumber_shouldWriteThroughToRedis_onRepositoryHit() {
+        WalletCacheImpl cache = new WalletCacheImpl(repository, Optional.of(redisStore), 100, 60);
+        when(redisStore.get("yanki:wallet:phone:987654321")).thenReturn(Maybe.empty());
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.just(wallet));
+        when(redisStore.put(anyList(), any(YankiWallet.class))).thenReturn(Completable.complete());
+        cache.findByPhoneNumber("987654321").test().assertValueCount(1);
+        verify(redisStore).put(eq(List.of("yanki:wallet:phone:987654321", "yanki:wallet:document:12345678")),
+                any(YankiWallet.class));
+    }
+    @Test
+    void evict_shouldPropagateToRedis() {
+        WalletCacheImpl cache = new WalletCacheImpl(repository, Optional.of(redisStore), 100, 60);
+        when(redisStore.evict(anyList())).thenReturn(Completable.complete());
+        cache.evict(wallet).test().assertComplete();
+        verify(redisStore).evict(List.of("yanki:wallet:phone:987654321", "yanki:wallet:document:12345678"));
+    }
+    @Test
+    void findByPhoneNumber_shouldNotCacheRepositoryLoad_thatRacedAnEviction() {
+        WalletCacheImpl cache = new WalletCacheImpl(repository, Optional.of(redisStore), 100, 60);
+        MaybeSubject<YankiWallet> load = MaybeSubject.create();
+        YankiWallet debited = wallet.toBuilder().balance(new BigDecimal("40.00")).build();
+        when(redisStore.get("yanki:wallet:phone:987654321")).thenReturn(Maybe.empty());
+        when(redisStore.evict(anyList())).thenReturn(Completable.complete());
+        when(repository.findByPhoneNumber("987654321")).thenReturn(load, Maybe.just(debited));
+        TestObserver<YankiWallet> stale = cache.findByPhoneNumber("987654321").test();
+        cache.evict(wallet).test().assertComplete();
+        load.onSuccess(wallet);
+        stale.assertValue(w -> w.getBalance().compareTo(new BigDecimal("100.00")) == 0);
+        verify(redisStore, never()).put(anyList(), any(YankiWallet.class));
+        when(redisStore.put(anyList(), any(YankiWallet.class))).thenReturn(Completable.complete());
+        cache.findByPhoneNumber("987654321").test()
+                .assertValue(w -> w.getBalance().compareTo(new BigDecimal("40.00")) == 0);
+        verify(repository, times(2)).findByPhoneNumber("987654321");
+    }
+    @Test
+    void findByPhoneNumber_shouldNotCacheRedisRead_thatRacedAnInvalidation() {
+        PublishProcessor<String> invalidations = PublishProcessor.create();
+        MaybeSubject<YankiWallet> read = MaybeSubject.create();
+        when(redisStore.invalidations()).thenReturn(invalidations);
+        when(redisStore.get("yanki:wallet:phone:987654321")).thenReturn(read, Maybe.empty());
+        when(redisStore.put(anyList(), any(YankiWallet.class))).thenReturn(Completable.complete());
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.just(wallet));
+        WalletCacheImpl cache = new WalletCacheImpl(repository, Optional.of(redisStore), 100, 60);
+        cache.subscribeToInvalidations();
+        TestObserver<YankiWallet> stale = cache.findByPhoneNumber("987654321").test();
+        invalidations.onNext("yanki:wallet:phone:987654321");
+        read.onSuccess(wallet);
+        stale.assertValueCount(1);
+        cache.findByPhoneNumber("987654321").test().assertValueCount(1);
+        verify(repository).findByPhoneNumber("987654321");
+        cache.stop();
+    }
+    @Test
+    void invalidationMessage_shouldEvictLocalEntry() {
+        PublishProcessor<String> invalidations = PublishProcessor.create();
+        when(redisStore.invalidations()).thenReturn(invalidations);
+        when(redisStore.get(anyString())).thenReturn(Maybe.empty());
+        when(redisStore.put(anyList(), any(YankiWallet.class))).thenReturn(Completable.complete());
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.just(wallet));
+        WalletCacheImpl cache = new WalletCacheImpl(repository, Optional.of(redisStore), 100, 60);
+        cache.subscribeToInvalidations();
+        cache.findByPhoneNumber("987654321").test().assertComplete();
+        invalidations.onNext("yanki:wallet:phone:987654321");
+        cache.findByPhoneNumber("987654321").test().assertComplete();
+        verify(repository, times(2)).findByPhoneNumber("987654321");
+        cache.stop();
+        assertFalse(invalidations.hasSubscribers());
+    }
+    @Test
+    void subscribeToInvalidations_shouldBeNoop_withoutRedis() {
+        WalletCacheImpl cache = localOnlyCache();
+        cache.subscribeToInvalidations();
+        cache.stop();
+        verifyNoInteractions(redisStore);
+    }
+}
@@ -1,17 +1,28 @@
 package com.bank.yankiservice.controller;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 import com.bank.yankiservice.dto.BaseResponse;
 import com.bank.yankiservice.dto.cardlink.CardLinkRequestedEvent;
 import com.bank.yankiservice.dto.login.LoginRequest;
+import com.bank.yankiservice.dto.transaction.YankiBatchTransactionRequest;
+import com.bank.yankiservice.dto.transaction.YankiBatchTransactionResult;
+import com.bank.yankiservice.dto.transaction.YankiBatchTransferItem;
+import com.bank.yankiservice.dto.transaction.YankiTransactionPage;
 import com.bank.yankiservice.dto.transaction.YankiTransactionRequest;
 import com.bank.yankiservice.dto.yanki.YankiWalletRequest;
+import com.bank.yankiservice.model.YankiTransaction;
 import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.resilience.DependencyUnavailableException;
 import com.bank.yankiservice.security.JwtProvider;
+import com.bank.yankiservice.service.BalanceStreamService;
+import com.bank.yankiservice.service.TransactionHistoryService;
 import com.bank.yankiservice.service.YankiService;
+import com.bank.yankiservice.tracing.TraceHeaders;
 import io.reactivex.Single;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -20,14 +31,21 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import java.util.concurrent.TimeoutException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 class YankiControllerTest {
     @Mock
     private YankiService yankiService;
     @Mock
     private JwtProvider jwtProvider;
+    @Mock
+    private TransactionHistoryService transactionHistoryService;
+    @Mock
+    private BalanceStreamService balanceStreamService;
     @InjectMocks
     private YankiController yankiController;
     @BeforeEach
@@ -59,18 +77,16 @@ class YankiControllerTest {
     }
     @Test
     void testAssociateCard_Success() {
-        String token = "Bearer mocked-token";
+        String principal = "987654321";
         CardLinkRequestedEvent request = new CardLinkRequestedEvent("987654321",
             "1234567890123456",
             "12345678",
             new BigDecimal("0"));
-        when(jwtProvider.getUsernameFromToken("mocked-token"))
-            .thenReturn("987654321");
         when(yankiService.associateCard(request.getPhoneNumber(),
             request.getCardNumber(),
             request.getDocumentNumber()))
                 .thenReturn(Completable.complete());
-        Single<BaseResponse<CardLinkRequestedEvent>> response = yankiController.associateCard(token, request);
+        Single<BaseResponse<CardLinkRequestedEvent>> response = yankiController.associateCard(principal, request);
         response.test()
                 .assertValue(res ->
                     res.getStatus() == HttpStatus.OK.value());
@@ -88,18 +104,20 @@ class YankiControllerTest {
     }
     @Test
     void testProcessTransaction_Success() {
-        String token = "Bearer mocked-token";
+        String principal = "987654321";
         YankiTransactionRequest request = new YankiTransactionRequest("987654321",
             "987123456",
             BigDecimal.valueOf(100));
-        when(jwtProvider.getUsernameFromToken("mocked-token")).thenReturn("987654321");
         when(yankiService.processYankiTransaction(request.getSenderPhoneNumber(),
             request.getReceiverPhoneNumber(),
-            request.getAmount()))
+            request.getAmount(),
+            "corr-1"))
                 .thenReturn(Completable.complete());
-        Single<ResponseEntity<BaseResponse<Object>>> response = yankiController.processTransaction(token, request);
+        Single<ResponseEntity<BaseResponse<Object>>> response =
+            yankiController.processTransaction(principal, "corr-1", request);
         response.test()
-                .assertValue(res -> res.getStatusCode() == HttpStatus.OK);
+                .assertValue(res -> res.getStatusCode() == HttpStatus.OK
+                    && "corr-1".equals(res.getHeaders().getFirst(TraceHeaders.CORRELATION_ID)));
     }
     @Test
     void testProcessTransaction_InvalidToken() {
@@ -107,7 +125,7 @@ class YankiControllerTest {
             "987123456",
             BigDecimal.valueOf(100));
         Single<ResponseEntity<BaseResponse<Object>>> response =
-            yankiController.processTransaction(null, request);
+            yankiController.processTransaction(null, null, request);
         response.test()
                 .assertValue(res -> res.getStatusCode() == HttpStatus.UNAUTHORIZED);
     }
@@ -121,6 +139,10 @@ class YankiControllerTest {
             "eo@de.com",
             null,
             new BigDecimal("0"),
+            BigDecimal.ZERO,
+            null,
+            null,
+            null,
             LocalDateTime.now(),
             LocalDateTime.now());
         when(yankiService.getWalletById(id)).thenReturn(Maybe.just(wallet));
@@ -138,7 +160,7 @@ class YankiControllerTest {
     }
     @Test
     void testDeleteWallet_Success() {
-        String token = "Bearer mocked-token";
+        String principal = "987654321";
         String id = "wallet-123";
         YankiWallet wallet = new YankiWallet(id,
             "987654321",
@@ -147,28 +169,31 @@ class YankiControllerTest {
             "eo@de.com",
             null,
             new BigDecimal("0"),
+            BigDecimal.ZERO,
+            null,
+            null,
+            null,
             LocalDateTime.now(),
             LocalDateTime.now());
-        when(jwtProvider.getUsernameFromToken("mocked-token")).thenReturn("987654321");
         when(yankiService.getWalletById(id)).thenReturn(Maybe.just(wallet));
         when(yankiService.deleteWallet(id)).thenReturn(Completable.complete());
-        Single<BaseResponse<Object>> response = yankiController.deleteWallet(token, id);
+        Single<BaseResponse<Object>> response = yankiController.deleteWallet(principal, id);
         response.test()
                 .assertValue(res -> res.getStatus() == HttpStatus.OK.value());
     }
     @Test
     void testDeleteWallet_NotFound() {
-        String token = "Bearer mocked-token";
+        String principal = "987654321";
         String id = "wallet-123";
         when(yankiService.getWalletById(id)).thenReturn(Maybe.empty());
-        Single<BaseResponse<Object>> response = yankiController.deleteWallet(token, id);
+        Single<BaseResponse<Object>> response = yankiController.deleteWallet(principal, id);
         response.test()
                 .assertValue(res -> res.getStatus() == HttpStatus.NOT_FOUND.value());
     }
     @Test
     void testGetWalletByPhoneNumber_Success() {
-        String token = "Bearer mocked-token";
         String phoneNumber = "987654321";
+        String principal = phoneNumber;
         YankiWallet wallet = new YankiWallet("wallet-123",
             phoneNumber,
             "12345678",
@@ -176,13 +201,16 @@ class YankiControllerTest {
             "user@email.com",
             null,
             BigDecimal.ZERO,
+            BigDecimal.ZERO,
+            null,
+            null,
+            null,
             LocalDateTime.now(),
             LocalDateTime.now());
 
-        when(jwtProvider.getUsernameFromToken("mocked-token")).thenReturn(phoneNumber);
         when(yankiService.getWalletByPhoneNumber(phoneNumber)).thenReturn(Maybe.just(wallet));
 
-        Single<BaseResponse<YankiWallet>> response = yankiController.getWalletByPhoneNumber(token, phoneNumber);
+        Single<BaseResponse<YankiWallet>> response = yankiController.getWalletByPhoneNumber(principal, phoneNumber);
         response.test()
                 .assertValue(res -> res.getStatus() == HttpStatus.OK.value() && res.getData().equals(wallet));
     }
@@ -198,24 +226,22 @@ class YankiControllerTest {
 
     @Test
     void testGetWalletByPhoneNumber_Forbidden() {
-        String token = "Bearer mocked-token";
+        String principal = "123456789";
         String phoneNumber = "987654321";
-        when(jwtProvider.getUsernameFromToken("mocked-token")).thenReturn("123456789"); // Diferente phoneNumber
 
-        Single<BaseResponse<YankiWallet>> response = yankiController.getWalletByPhoneNumber(token, phoneNumber);
+        Single<BaseResponse<YankiWallet>> response = yankiController.getWalletByPhoneNumber(principal, phoneNumber);
         response.test()
                 .assertValue(res -> res.getStatus() == HttpStatus.FORBIDDEN.value());
     }
 
     @Test
     void testGetWalletByPhoneNumber_NotFound() {
-        String token = "Bearer mocked-token";
         String phoneNumber = "987654321";
+        String principal = phoneNumber;
 
-        when(jwtProvider.getUsernameFromToken("mocked-token")).thenReturn(phoneNumber);
         when(yankiService.getWalletByPhoneNumber(phoneNumber)).thenReturn(Maybe.empty());
 
-        Single<BaseResponse<YankiWallet>> response = yankiController.getWalletByPhoneNumber(token, phoneNumber);
+        Single<BaseResponse<YankiWallet>> response = yankiController.getWalletByPhoneNumber(principal, phoneNumber);
         response.test()
                 .assertValue(res -> res.getStatus() == HttpStatus.NOT_FOUND.value());
     }
@@ -229,6 +255,10 @@ class YankiControllerTest {
             "user@email.com",
             null,
             BigDecimal.ZERO,
+            BigDecimal.ZERO,
+            null,
+            null,
+            null,
             LocalDateTime.now(),
             LocalDateTime.now());
 
@@ -251,7 +281,7 @@ class YankiControllerTest {
     }
     @Test
     void testUpdateWallet_Success() {
-        String token = "Bearer mocked-token";
+        String principal = "987654321";
         String id = "wallet-123";
         YankiWalletRequest request = new YankiWalletRequest("987654321",
             "12345678",
@@ -264,6 +294,10 @@ class YankiControllerTest {
             "old@email.com",
             null,
             BigDecimal.ZERO,
+            BigDecimal.ZERO,
+            null,
+            null,
+            null,
             LocalDateTime.now(),
             LocalDateTime.now());
         YankiWallet updatedWallet = new YankiWallet(id,
@@ -273,14 +307,17 @@ class YankiControllerTest {
             "new-email@email.com",
             null,
             BigDecimal.valueOf(100),
+            BigDecimal.ZERO,
+            null,
+            null,
+            null,
             LocalDateTime.now(),
             LocalDateTime.now());
 
-        when(jwtProvider.getUsernameFromToken("mocked-token")).thenReturn("987654321");
         when(yankiService.getWalletById(id)).thenReturn(Maybe.just(existingWallet));
         when(yankiService.updateWallet(id, request)).thenReturn(Single.just(updatedWallet));
 
-        Single<BaseResponse<YankiWallet>> response = yankiController.updateWallet(token, id, request);
+        Single<BaseResponse<YankiWallet>> response = yankiController.updateWallet(principal, id, request);
         response.test()
                 .assertValue(res -> res.getStatus() == HttpStatus.OK.value() && res.getData().equals(updatedWallet));
     }
@@ -300,7 +337,7 @@ class YankiControllerTest {
 
     @Test
     void testUpdateWallet_Forbidden() {
-        String token = "Bearer mocked-token";
+        String principal = "987654321";
         String id = "wallet-123";
         YankiWalletRequest request = new YankiWalletRequest("987654321",
             "12345678",
@@ -312,20 +349,23 @@ class YankiControllerTest {
             "old@email.com",
             null,
             BigDecimal.ZERO,
+            BigDecimal.ZERO,
+            null,
+            null,
+            null,
             LocalDateTime.now(),
             LocalDateTime.now());
 
-        when(jwtProvider.getUsernameFromToken("mocked-token")).thenReturn("987654321");
         when(yankiService.getWalletById(id)).thenReturn(Maybe.just(existingWallet));
 
-        Single<BaseResponse<YankiWallet>> response = yankiController.updateWallet(token, id, request);
+        Single<BaseResponse<YankiWallet>> response = yankiController.updateWallet(principal, id, request);
         response.test()
                 .assertValue(res -> res.getStatus() == HttpStatus.FORBIDDEN.value());
     }
 
     @Test
     void testUpdateWallet_NotFound() {
-        String token = "Bearer mocked-token";
+        String principal = "987654321";
         String id = "wallet-123";
         YankiWalletRequest request = new YankiWalletRequest("987654321",
             "12345678",
@@ -334,7 +374,7 @@ class YankiControllerTest {
 
         when(yankiService.getWalletById(id)).thenReturn(Maybe.empty());
 
-        Single<BaseResponse<YankiWallet>> response = yankiController.updateWallet(token, id, request);
+        Single<BaseResponse<YankiWallet>> response = yankiController.updateWallet(principal, id, request);
         response.test()
                 .assertValue(res -> res.getStatus() == HttpStatus.NOT_FOUND.value());
     }
@@ -354,6 +394,10 @@ class YankiControllerTest {
             "user@email.com",
             null,
             BigDecimal.ZERO,
+            BigDecimal.ZERO,
+            null,
+            null,
+            null,
             LocalDateTime.now(),
             LocalDateTime.now()));
         when(yankiService.registerWallet(request)).thenReturn(Single.just(serviceResponse));
@@ -381,12 +425,12 @@ class YankiControllerTest {
     }
     @Test
     void testProcessTransaction_PhoneNumberMismatch() {
-        String token = "Bearer mocked-token";
+        String principal = "123456789";
         YankiTransactionRequest request = new YankiTransactionRequest("987654321",
             "987123456",
             BigDecimal.valueOf(100));
-        when(jwtProvider.getUsernameFromToken("mocked-token")).thenReturn("123456789"); // Different phone number
-        Single<ResponseEntity<BaseResponse<Object>>> response = yankiController.processTransaction(token, request);
+        Single<ResponseEntity<BaseResponse<Object>>> response =
+            yankiController.processTransaction(principal, null, request);
         response.test()
                 .assertValue(res ->
                         res.getStatusCode() == HttpStatus.FORBIDDEN &&
@@ -396,30 +440,31 @@ class YankiControllerTest {
     }
     @Test
     void testProcessTransaction_ServiceError() {
-        String token = "Bearer mocked-token";
+        String principal = "987654321";
         YankiTransactionRequest request = new YankiTransactionRequest("987654321",
             "987123456",
             BigDecimal.valueOf(100));
-        when(jwtProvider.getUsernameFromToken("mocked-token")).thenReturn("987654321");
-        when(yankiService.processYankiTransaction(request.getSenderPhoneNumber(),
-            request.getReceiverPhoneNumber(),
-            request.getAmount()))
+        when(yankiService.processYankiTransaction(eq(request.getSenderPhoneNumber()),
+            eq(request.getReceiverPhoneNumber()),
+            eq(request.getAmount()),
+            anyString()))
                 .thenReturn(Completable.error(new RuntimeException("Insufficient funds")));
-        Single<ResponseEntity<BaseResponse<Object>>> response = yankiController.processTransaction(token, request);
+        Single<ResponseEntity<BaseResponse<Object>>> response =
+            yankiController.processTransaction(principal, "bad id!", request);
         response.test()
                 .assertValue(res ->
                         res.getStatusCode() == HttpStatus.BAD_REQUEST &&
-                                "Insufficient funds".equals(res.getBody().getMessage()));
+                                "Insufficient funds".equals(res.getBody().getMessage()) &&
+                                TraceHeaders.isValid(res.getHeaders().getFirst(TraceHeaders.CORRELATION_ID)));
     }
     @Test
     void testAssociateCard_PhoneNumberMismatch() {
-        String token = "Bearer mocked-token";
+        String principal = "123456789";
         CardLinkRequestedEvent request = new CardLinkRequestedEvent("987654321",
             "1234567890123456",
             "12345678",
             new BigDecimal("0"));
-        when(jwtProvider.getUsernameFromToken("mocked-token")).thenReturn("123456789"); // Different phone number
-        Single<BaseResponse<CardLinkRequestedEvent>> response = yankiController.associateCard(token, request);
+        Single<BaseResponse<CardLinkRequestedEvent>> response = yankiController.associateCard(principal, request);
         response.test()
                 .assertValue(res ->
                         res.getStatus() == 403 &&
@@ -428,28 +473,25 @@ class YankiControllerTest {
     }
     @Test
     void testAssociateCard_ServiceError() {
-        String token = "Bearer mocked-token";
+        String principal = "987654321";
         CardLinkRequestedEvent request = new CardLinkRequestedEvent("987654321",
             "1234567890123456",
             "12345678",
             new BigDecimal("0"));
-        when(jwtProvider.getUsernameFromToken("mocked-token"))
-            .thenReturn("987654321");
         when(yankiService.associateCard(request.getPhoneNumber(),
             request.getCardNumber(),
             request.getDocumentNumber()))
                 .thenReturn(Completable.error(new RuntimeException("Invalid card number")));
-        Single<BaseResponse<CardLinkRequestedEvent>> response = yankiController.associateCard(token, request);
+        Single<BaseResponse<CardLinkRequestedEvent>> response = yankiController.associateCard(principal, request);
         response.test()
                 .assertValue(res ->
                         res.getStatus() == HttpStatus.BAD_REQUEST.value() &&
                                 "Invalid card number".equals(res.getMessage()));
     }
     @Test
-    void testDeleteWallet_MissingBearerPrefix() {
-        String token = "mocked-token";
+    void testDeleteWallet_Unauthenticated() {
         String id = "wallet-123";
-        Single<BaseResponse<Object>> response = yankiController.deleteWallet(token, id);
+        Single<BaseResponse<Object>> response = yankiController.deleteWallet(null, id);
         response.test()
                 .assertValue(res ->
                         res.getStatus() == 401 &&
@@ -457,7 +499,7 @@ class YankiControllerTest {
     }
     @Test
     void testDeleteWallet_DifferentUser() {
-        String token = "Bearer mocked-token";
+        String principal = "987654321";
         String id = "wallet-123";
         YankiWallet wallet = new YankiWallet(id,
             "123456789",
@@ -466,15 +508,126 @@ class YankiControllerTest {
             "user@email.com",
             null,
             BigDecimal.ZERO,
+            BigDecimal.ZERO,
+            null,
+            null,
+            null,
             LocalDateTime.now(),
             LocalDateTime.now());
-        when(jwtProvider.getUsernameFromToken("mocked-token"))
-            .thenReturn("987654321");
         when(yankiService.getWalletById(id)).thenReturn(Maybe.just(wallet));
-        Single<BaseResponse<Object>> response = yankiController.deleteWallet(token, id);
+        Single<BaseResponse<Object>> response = yankiController.deleteWallet(principal, id);
         response.test()
                 .assertValue(res ->
                         res.getStatus() == 403 &&
                                 "You can only delete your own wallet".equals(res.getMessage()));
     }
-}
\ No newline at end of file
+    @Test
+    void testProcessTransactionBatch_Success() {
+        YankiBatchTransactionRequest request = new YankiBatchTransactionRequest("987654321",
+            List.of(new YankiBatchTransferItem("987123456", BigDecimal.TEN)));
+        YankiBatchTransactionResult result = new YankiBatchTransactionResult("987654321", 1, 0,
+            BigDecimal.TEN, List.of());
+        when(yankiService.processYankiTransactionBatch("987654321", request.getTransfers(), "corr-1"))
+                .thenReturn(Single.just(result));
+        yankiController.processTransactionBatch("987654321", "corr-1", request).test()
+                .assertValue(res -> res.getStatusCode() == HttpStatus.OK
+                    && res.getBody().getData() == result);
+    }
+    @Test
+    void testProcessTransactionBatch_Unauthorized() {
+        YankiBatchTransactionRequest request = new YankiBatchTransactionRequest("987654321", List.of());
+        yankiController.processTransactionBatch(null, null, request).test()
+                .assertValue(res -> res.getStatusCode() == HttpStatus.UNAUTHORIZED);
+        yankiController.processTransactionBatch("123456789", null, request).test()
+                .assertValue(res -> res.getStatusCode() == HttpStatus.FORBIDDEN);
+        verifyNoInteractions(yankiService);
+    }
+    @Test
+    void testProcessTransactionBatch_ServiceError() {
+        YankiBatchTransactionRequest request = new YankiBatchTransactionRequest("987654321", List.of());
+        when(yankiService.processYankiTransactionBatch(eq("987654321"), eq(List.of()), anyString()))
+                .thenReturn(Single.error(new IllegalArgumentException("Batch must contain at least one transfer")));
+        yankiController.processTransactionBatch("987654321", null, request).test()
+                .assertValue(res -> res.getStatusCode() == HttpStatus.BAD_REQUEST
+                    && "Batch must contain at least one transfer".equals(res.getBody().getMessage()));
+    }
+    @Test
+    void testProcessTransactionBatch_DependencyUnavailable() {
+        YankiBatchTransactionRequest request = new YankiBatchTransactionRequest("987654321", List.of());
+        when(yankiService.processYankiTransactionBatch(eq("987654321"), eq(List.of()), anyString()))
+                .thenReturn(Single.error(new DependencyUnavailableException("mongo", new TimeoutException())));
+        yankiController.processTransactionBatch("987654321", null, request).test()
+                .assertValue(res -> res.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE
+                    && res.getBody().getStatus() == 503
+                    && YankiController.DEPENDENCY_UNAVAILABLE_MESSAGE.equals(res.getBody().getMessage()));
+    }
+    @Test
+    void testDependencyUnavailableHandler() {
+        ResponseEntity<BaseResponse<Object>> response = yankiController.dependencyUnavailable(
+                new DependencyUnavailableException("kafka", new TimeoutException()));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals(YankiController.DEPENDENCY_UNAVAILABLE_MESSAGE, response.getBody().getMessage());
+    }
+    @Test
+    void testGetTransactionHistory_Success() {
+        YankiTransactionPage page = new YankiTransactionPage(List.of(), null);
+        when(transactionHistoryService.getHistory("987654321", null, 20)).thenReturn(Single.just(page));
+        yankiController.getTransactionHistory("987654321", "987654321", null, 20).test()
+                .assertValue(res -> res.getStatusCode() == HttpStatus.OK && res.getBody().getData() == page);
+    }
+    @Test
+    void testGetTransactionHistory_Forbidden() {
+        yankiController.getTransactionHistory(null, "987654321", null, 20).test()
+                .assertValue(res -> res.getStatusCode() == HttpStatus.UNAUTHORIZED);
+        yankiController.getTransactionHistory("123456789", "987654321", null, 20).test()
+                .assertValue(res -> res.getStatusCode() == HttpStatus.FORBIDDEN);
+        verifyNoInteractions(transactionHistoryService);
+    }
+    @Test
+    void testGetTransactionHistory_InvalidCursor() {
+        when(transactionHistoryService.getHistory("987654321", "bad", 20))
+                .thenReturn(Single.error(new IllegalArgumentException("Invalid cursor")));
+        yankiController.getTransactionHistory("987654321", "987654321", "bad", 20).test()
+                .assertValue(res -> res.getStatusCode() == HttpStatus.BAD_REQUEST
+                    && "Invalid cursor".equals(res.getBody().getMessage()));
+    }
+    @Test
+    void testStreamTransactionHistory() {
+        YankiTransaction transaction = new YankiTransaction();
+        when(transactionHistoryService.streamHistory("987654321", null)).thenReturn(Flowable.just(transaction));
+        ResponseEntity<Flowable<YankiTransaction>> response =
+            yankiController.streamTransactionHistory("987654321", "987654321", null);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        response.getBody().test().assertValue(transaction);
+        assertEquals(HttpStatus.UNAUTHORIZED,
+            yankiController.streamTransactionHistory(null, "987654321", null).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN,
+            yankiController.streamTransactionHistory("123456789", "987654321", null).getStatusCode());
+    }
+    @Test
+    void testStreamBalance() {
+        when(balanceStreamService.streamBalance("987654321"))
+                .thenReturn(Flowable.just(new BigDecimal("100.00"), new BigDecimal("80.00")));
+        ResponseEntity<Flowable<ServerSentEvent<BigDecimal>>> response =
+            yankiController.streamBalance("987654321", "987654321");
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        response.getBody().take(2).test()
+                .assertValueAt(0, event -> "balance".equals(event.event())
+                    && new BigDecimal("100.00").equals(event.data()))
+                .assertValueAt(1, event -> new BigDecimal("80.00").equals(event.data()));
+    }
+    @Test
+    void testStreamBalance_WalletNotFound() {
+        when(balanceStreamService.streamBalance("987654321"))
+                .thenReturn(Flowable.error(new IllegalArgumentException("Wallet not found")));
+        yankiController.streamBalance("987654321", "987654321").getBody().test()
+                .assertValue(event -> "error".equals(event.event()) && "Wallet not found".equals(event.comment()))
+                .assertComplete();
+    }
+    @Test
+    void testStreamBalance_Unauthorized() {
+        assertEquals(HttpStatus.UNAUTHORIZED, yankiController.streamBalance(null, "987654321").getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, yankiController.streamBalance("123456789", "987654321").getStatusCode());
+        verifyNoInteractions(balanceStreamService);
+    }
+}
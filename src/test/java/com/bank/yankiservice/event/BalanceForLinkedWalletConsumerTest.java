@@ -1,68 +1,116 @@
 package com.bank.yankiservice.event;
 
+import com.bank.yankiservice.metrics.YankiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.bank.yankiservice.cache.WalletCache;
 import com.bank.yankiservice.dto.balance.BalanceUpdatedEvent;
 import com.bank.yankiservice.model.YankiWallet;
 import com.bank.yankiservice.repository.YankiWalletRepository;
+import com.bank.yankiservice.service.BalanceEngine;
+import com.bank.yankiservice.service.BalanceStreamService;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.kafka.support.Acknowledgment;
 import java.math.BigDecimal;
+import java.util.Map;
+import java.util.function.Supplier;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class BalanceForLinkedWalletConsumerTest {
-    @InjectMocks
+    private static final String TOPIC = "bank.account.balance.updated";
     private BalanceForLinkedWalletConsumer consumer;
     @Mock
     private YankiWalletRepository yankiWalletRepository;
+    @Mock
+    private WalletCache walletCache;
+    @Mock
+    private BalanceStreamService balanceStreamService;
+    @Mock
+    private BalanceEngine balanceEngine;
+    @Mock
+    private KafkaListenerEndpointRegistry listenerRegistry;
+    @Mock
+    private Acknowledgment acknowledgment;
     private BalanceUpdatedEvent balanceUpdatedEvent;
+    private YankiWallet wallet;
     @BeforeEach
     void setUp() {
+        consumer = new BalanceForLinkedWalletConsumer(yankiWalletRepository, walletCache, balanceStreamService,
+                balanceEngine, new YankiMetrics(new SimpleMeterRegistry()), listenerRegistry, 4, 16);
+        lenient().when(balanceEngine.execute(anyString(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<Completable>>getArgument(1).get());
+        consumer.start();
         balanceUpdatedEvent = new BalanceUpdatedEvent("acc-123", new BigDecimal("100.50"), "card-9876");
-    }
-    @Test
-    void shouldUpdateWalletBalanceSuccessfully() {
-        YankiWallet wallet = new YankiWallet();
+        wallet = new YankiWallet();
         wallet.setId("wallet-1");
         wallet.setPhoneNumber("999999999");
         wallet.setDocumentNumber("12345678");
         wallet.setLinkedCard("card-9876");
-        wallet.setBalance(new BigDecimal("50.00"));
-        when(yankiWalletRepository.findByLinkedCard("card-9876"))
+        wallet.setBalance(new BigDecimal("100.50"));
+        lenient().when(yankiWalletRepository.findByLinkedCard("card-9876")).thenReturn(Maybe.just(wallet));
+    }
+    @AfterEach
+    void tearDown() {
+        consumer.stop();
+    }
+    @Test
+    void shouldUpdateWalletBalanceSuccessfully() throws InterruptedException {
+        when(yankiWalletRepository.updateBalanceByLinkedCard("card-9876", new BigDecimal("100.50")))
                 .thenReturn(Maybe.just(wallet));
-        when(yankiWalletRepository.update(any(YankiWallet.class)))
-                .thenReturn(Completable.complete());
-        consumer.handleBalanceUpdatedEvent(balanceUpdatedEvent);
-        verify(yankiWalletRepository, times(1)).findByLinkedCard("card-9876");
-        verify(yankiWalletRepository, times(1)).update(any(YankiWallet.class));
+        when(walletCache.evict(wallet)).thenReturn(Completable.complete());
+        consumer.handleBalanceUpdatedEvent(balanceUpdatedEvent, null,
+                KafkaRecords.metadata("bank.account.balance.updated"), acknowledgment);
+        verify(balanceEngine).execute(eq("999999999"), any());
+        verify(yankiWalletRepository, times(1)).updateBalanceByLinkedCard("card-9876", new BigDecimal("100.50"));
+        verify(balanceStreamService).publish(wallet);
+        verify(walletCache, times(1)).evict(wallet);
     }
     @Test
-    void shouldNotUpdateWhenWalletNotFound() {
-        when(yankiWalletRepository.findByLinkedCard("card-9876"))
+    void shouldNotUpdateWhenWalletNotFound() throws InterruptedException {
+        when(yankiWalletRepository.findByLinkedCard("card-9876")).thenReturn(Maybe.empty());
+        when(yankiWalletRepository.updateBalanceByLinkedCard("card-9876", new BigDecimal("100.50")))
                 .thenReturn(Maybe.empty());
-        consumer.handleBalanceUpdatedEvent(balanceUpdatedEvent);
-        verify(yankiWalletRepository, times(1)).findByLinkedCard("card-9876");
-        verify(yankiWalletRepository, never()).update(any(YankiWallet.class));
+        consumer.handleBalanceUpdatedEvent(balanceUpdatedEvent, null,
+                KafkaRecords.metadata("bank.account.balance.updated"), acknowledgment);
+        verify(yankiWalletRepository, times(1)).updateBalanceByLinkedCard("card-9876", new BigDecimal("100.50"));
+        verify(walletCache, never()).evict(any(YankiWallet.class));
     }
     @Test
-    void shouldHandleErrorWhenUpdatingBalanceFails() {
-        YankiWallet wallet = new YankiWallet();
-        wallet.setId("wallet-1");
-        wallet.setPhoneNumber("999999999");
-        wallet.setDocumentNumber("12345678");
-        wallet.setLinkedCard("card-9876");
-        wallet.setBalance(new BigDecimal("50.00"));
-        when(yankiWalletRepository.findByLinkedCard("card-9876"))
-                .thenReturn(Maybe.just(wallet));
-        when(yankiWalletRepository.update(any(YankiWallet.class)))
-                .thenReturn(Completable.error(new RuntimeException("Database error")));
-        consumer.handleBalanceUpdatedEvent(balanceUpdatedEvent);
-        verify(yankiWalletRepository, times(1)).findByLinkedCard("card-9876");
-        verify(yankiWalletRepository, times(1)).update(any(YankiWallet.class));
+    void shouldHandleErrorWhenUpdatingBalanceFails() throws InterruptedException {
+        when(yankiWalletRepository.updateBalanceByLinkedCard("card-9876", new BigDecimal("100.50")))
+                .thenReturn(Maybe.error(new RuntimeException("Database error")));
+        consumer.handleBalanceUpdatedEvent(balanceUpdatedEvent, null,
+                KafkaRecords.metadata("bank.account.balance.updated"), acknowledgment);
+        verify(yankiWalletRepository, times(1)).updateBalanceByLinkedCard("card-9876", new BigDecimal("100.50"));
+        verify(walletCache, never()).evict(any(YankiWallet.class));
+    }
+    @Test
+    void shouldRedeliverBalanceUpdate_whenUpdatingBalanceFails() {
+        ConsumerSeekCallback callback = mock(ConsumerSeekCallback.class);
+        consumer.registerSeekCallback(callback);
+        consumer.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 3L), callback);
+        when(yankiWalletRepository.updateBalanceByLinkedCard("card-9876", new BigDecimal("100.50")))
+                .thenReturn(Maybe.error(new RuntimeException("Database error")), Maybe.just(wallet));
+        when(walletCache.evict(wallet)).thenReturn(Completable.complete());
+        Acknowledgment firstDelivery = mock(Acknowledgment.class);
+        consumer.handleBalanceUpdatedEvent(balanceUpdatedEvent, null, KafkaRecords.metadata(TOPIC, 0, 3),
+                firstDelivery);
+        verify(callback).seek(TOPIC, 0, 3);
+        consumer.handleBalanceUpdatedEvent(balanceUpdatedEvent, null, KafkaRecords.metadata(TOPIC, 0, 3),
+                acknowledgment);
+        verify(yankiWalletRepository, times(2)).updateBalanceByLinkedCard("card-9876", new BigDecimal("100.50"));
+        verify(walletCache, times(1)).evict(wallet);
+        verify(firstDelivery, never()).acknowledge();
+        verify(acknowledgment).acknowledge();
     }
-}
\ No newline at end of file
+}
@@ -1,32 +1,49 @@
 package com.bank.yankiservice.event;
 
+import com.bank.yankiservice.metrics.YankiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import static org.mockito.Mockito.*;
-import static org.junit.jupiter.api.Assertions.*;
 
+import com.bank.yankiservice.cache.WalletCache;
 import com.bank.yankiservice.dto.bootcoin.KafkaValidationRequest;
 import com.bank.yankiservice.dto.bootcoin.KafkaValidationResponse;
 import com.bank.yankiservice.model.YankiWallet;
-import com.bank.yankiservice.repository.YankiWalletRepository;
+import com.bank.yankiservice.tracing.TraceHeaders;
+import io.reactivex.Completable;
 import io.reactivex.Maybe;
+import io.reactivex.subjects.CompletableSubject;
+import io.reactivex.subjects.PublishSubject;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.function.Predicate;
 @ExtendWith(MockitoExtension.class)
 class BootCoinAssociationConsumerTest {
-    @InjectMocks
     private BootCoinAssociationConsumer consumer;
     @Mock
-    private YankiWalletRepository yankiWalletRepository;
+    private WalletCache walletCache;
+    @Mock
+    private KafkaPublisher publisher;
     @Mock
-    private KafkaTemplate<String, Object> kafkaTemplate;
+    private KafkaListenerEndpointRegistry listenerRegistry;
+    @Mock
+    private Acknowledgment acknowledgment;
     private KafkaValidationRequest validRequest;
     private KafkaValidationRequest invalidRequest;
     @BeforeEach
     void setUp() {
+        lenient().when(publisher.publish(any())).thenReturn(Completable.complete());
+        consumer = new BootCoinAssociationConsumer(publisher, walletCache,
+                new YankiMetrics(new SimpleMeterRegistry()), listenerRegistry, 4, 16);
+        consumer.start();
         validRequest = new KafkaValidationRequest();
         validRequest.setEventId("event123");
         validRequest.setDocumentNumber("12345678");
@@ -36,50 +53,96 @@ class BootCoinAssociationConsumerTest {
         invalidRequest.setDocumentNumber("87654321");
         invalidRequest.setPhoneNumber("912345678");
     }
+    @AfterEach
+    void tearDown() {
+        consumer.stop();
+    }
+    private void receive(KafkaValidationRequest request, String correlationId) {
+        consumer.validateYankiAssociation(request, correlationId,
+                KafkaRecords.metadata("bootcoin.yanki.association"), acknowledgment);
+    }
+    private static ProducerRecord<String, Object> response(String eventId, Predicate<KafkaValidationResponse> matches) {
+        return argThat(record -> "bootcoin.validation.response".equals(record.topic())
+                && eventId.equals(record.key())
+                && record.headers().lastHeader(TraceHeaders.KAFKA_CORRELATION_ID) != null
+                && matches.test((KafkaValidationResponse) record.value()));
+    }
     @Test
     void testValidateYankiAssociation_Success() {
-        when(yankiWalletRepository.findByPhoneNumberAndDocumentNumber(anyString(), anyString()))
+        when(walletCache.findByPhoneNumberAndDocumentNumber(anyString(), anyString()))
                 .thenReturn(Maybe.just(new YankiWallet()));
-        boolean result = consumer.validateYanki(validRequest.getDocumentNumber(), validRequest.getPhoneNumber());
-        assertTrue(result);
+        consumer.validateYanki(validRequest.getDocumentNumber(), validRequest.getPhoneNumber())
+                .test()
+                .assertValue(true);
     }
     @Test
     void testValidateYankiAssociation_Failure() {
-        when(yankiWalletRepository.findByPhoneNumberAndDocumentNumber(anyString(), anyString()))
+        when(walletCache.findByPhoneNumberAndDocumentNumber(anyString(), anyString()))
                 .thenReturn(Maybe.empty());
-        boolean result = consumer.validateYanki(invalidRequest.getDocumentNumber(), invalidRequest.getPhoneNumber());
-        assertFalse(result);
+        consumer.validateYanki(invalidRequest.getDocumentNumber(), invalidRequest.getPhoneNumber())
+                .test()
+                .assertValue(false);
     }
     @Test
     void testKafkaListener_Success() {
-        when(yankiWalletRepository.findByPhoneNumberAndDocumentNumber(anyString(), anyString()))
+        when(walletCache.findByPhoneNumberAndDocumentNumber(anyString(), anyString()))
                 .thenReturn(Maybe.just(new YankiWallet()));
         KafkaValidationRequest request = new KafkaValidationRequest();
         request.setEventId("event789");
         request.setDocumentNumber("11112222");
         request.setPhoneNumber("999888777");
-        consumer.validateYankiAssociation(request);
-        verify(kafkaTemplate).send(eq("bootcoin.validation.response"), eq("event789"),
-                argThat(response -> {
-                    KafkaValidationResponse res = (KafkaValidationResponse) response;
-                    return res.isSuccess() && res.getErrorMessage() == null;
-                })
-        );
+        receive(request, "corr-1");
+        verify(publisher, timeout(1000)).publish(argThat((ProducerRecord<String, Object> record) ->
+                "corr-1".equals(TraceHeaders.decode(
+                    record.headers().lastHeader(TraceHeaders.KAFKA_CORRELATION_ID).value()))));
+        verify(publisher).publish(response("event789",
+                res -> res.isSuccess() && res.getErrorMessage() == null));
     }
     @Test
     void testKafkaListener_Failure() {
-        when(yankiWalletRepository.findByPhoneNumberAndDocumentNumber(anyString(), anyString()))
+        when(walletCache.findByPhoneNumberAndDocumentNumber(anyString(), anyString()))
                 .thenReturn(Maybe.empty());
         KafkaValidationRequest request = new KafkaValidationRequest();
         request.setEventId("event999");
         request.setDocumentNumber("33334444");
         request.setPhoneNumber("666555444");
-        consumer.validateYankiAssociation(request);
-        verify(kafkaTemplate).send(eq("bootcoin.validation.response"), eq("event999"),
-                argThat(response -> {
-                    KafkaValidationResponse res = (KafkaValidationResponse) response;
-                    return !res.isSuccess() && "Yanki validation failed".equals(res.getErrorMessage());
-                })
-        );
+        receive(request, null);
+        verify(publisher, timeout(1000)).publish(response("event999",
+                res -> !res.isSuccess() && "Yanki validation failed".equals(res.getErrorMessage())));
+    }
+    @Test
+    void testKafkaListener_RepliesFailureWhenLookupFails() {
+        when(walletCache.findByPhoneNumberAndDocumentNumber(anyString(), anyString()))
+                .thenReturn(Maybe.error(new RuntimeException("Mongo down")));
+        receive(validRequest, null);
+        verify(publisher, timeout(1000)).publish(response("event123", res -> !res.isSuccess()));
+    }
+    @Test
+    void testKafkaListener_PreservesOrderPerEventId() {
+        PublishSubject<YankiWallet> slowLookup = PublishSubject.create();
+        when(walletCache.findByPhoneNumberAndDocumentNumber("987654321", "12345678"))
+                .thenReturn(slowLookup.firstElement());
+        when(walletCache.findByPhoneNumberAndDocumentNumber("912345678", "87654321"))
+                .thenReturn(Maybe.empty());
+        invalidRequest.setEventId(validRequest.getEventId());
+        receive(validRequest, null);
+        receive(invalidRequest, null);
+        verify(publisher, after(200).never()).publish(any(ProducerRecord.class));
+        slowLookup.onNext(new YankiWallet());
+        InOrder inOrder = inOrder(publisher);
+        inOrder.verify(publisher, timeout(1000)).publish(response("event123", KafkaValidationResponse::isSuccess));
+        inOrder.verify(publisher, timeout(1000)).publish(response("event123", res -> !res.isSuccess()));
+    }
+    @Test
+    void testKafkaListener_AcknowledgesOnlyAfterResponseIsSent() {
+        CompletableSubject sent = CompletableSubject.create();
+        when(walletCache.findByPhoneNumberAndDocumentNumber(anyString(), anyString()))
+                .thenReturn(Maybe.just(new YankiWallet()));
+        when(publisher.publish(any())).thenReturn(sent);
+        receive(validRequest, null);
+        verify(publisher, timeout(1000)).publish(any());
+        verify(acknowledgment, after(200).never()).acknowledge();
+        sent.onComplete();
+        verify(acknowledgment, timeout(1000)).acknowledge();
     }
-}
\ No newline at end of file
+}
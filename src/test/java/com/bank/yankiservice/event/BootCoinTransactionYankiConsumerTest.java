@@ -1,64 +1,149 @@
 package com.bank.yankiservice.event;
 
+import com.bank.yankiservice.metrics.YankiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import com.bank.yankiservice.dto.transactionbootcoin.TransactionResponse;
 import com.bank.yankiservice.dto.transactionbootcoin.YankiEvent;
 import com.bank.yankiservice.service.YankiService;
+import com.bank.yankiservice.tracing.TraceHeaders;
+import com.bank.yankiservice.model.ProcessedEvent;
 import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.subjects.CompletableSubject;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.kafka.support.Acknowledgment;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class BootCoinTransactionYankiConsumerTest {
-    @InjectMocks
+    private static final String TOPIC = "bootcoin.transaction.yanki.requested";
     private BootCoinTransactionYankiConsumer consumer;
     @Mock
-    private KafkaTemplate<String, Object> kafkaTemplate;
+    private KafkaPublisher publisher;
     @Mock
     private YankiService yankiService;
-    @Test
-    void testProcessYankiEvent_Success() {
+    @Mock
+    private SettlementDeduplicator deduplicator;
+    @Mock
+    private KafkaListenerEndpointRegistry listenerRegistry;
+    @Mock
+    private Acknowledgment acknowledgment;
+    private CompletableSubject sent;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new BootCoinTransactionYankiConsumer(publisher, yankiService, deduplicator,
+                new YankiMetrics(new SimpleMeterRegistry()), listenerRegistry, 4, 16);
+        lenient().when(deduplicator.acquire(anyString()))
+                .thenAnswer(invocation -> Maybe.just(ConcurrentHashMap.newKeySet()));
+        lenient().when(deduplicator.complete(anyCollection())).thenReturn(Completable.complete());
+        lenient().when(deduplicator.step(any(), anySet(), anyString(), any())).thenCallRealMethod();
+        lenient().when(deduplicator.recordStep(anyCollection(), anyString())).thenReturn(Completable.complete());
+        consumer.start();
+        sent = CompletableSubject.create();
+    }
+    @AfterEach
+    void tearDown() {
+        consumer.stop();
+    }
+    private static ProducerRecord<String, Object> response(Predicate<TransactionResponse> matches) {
+        return argThat(record -> "bootcoin.transaction.processed".equals(record.topic())
+                && "999888777".equals(record.key())
+                && "corr-1".equals(TraceHeaders.decode(
+                    record.headers().lastHeader(TraceHeaders.KAFKA_CORRELATION_ID).value()))
+                && matches.test((TransactionResponse) record.value()));
+    }
+    private static YankiEvent event(String purchaseId, long amount) {
         YankiEvent event = new YankiEvent();
-        event.setPurchaseId("purchase123");
+        event.setPurchaseId(purchaseId);
         event.setBuyerPhoneNumber("999888777");
         event.setSellerPhoneNumber("666555444");
-        event.setTotalAmountInPEN(BigDecimal.valueOf(100));
-        when(yankiService.processYankiTransaction(anyString(), anyString(), any()))
+        event.setTotalAmountInPEN(BigDecimal.valueOf(amount));
+        return event;
+    }
+    private void process(YankiEvent event) {
+        consumer.processYankiEvent(event, "corr-1", KafkaRecords.metadata(TOPIC), acknowledgment);
+    }
+    @Test
+    void testProcessYankiEvent_Success() {
+        when(yankiService.processYankiTransaction(anyString(), anyString(), any(), eq("corr-1")))
                 .thenReturn(Completable.complete());
-        consumer.processYankiEvent(event);
-        verify(kafkaTemplate).send(eq("bootcoin.transaction.processed"),
-                argThat(response -> {
-                    TransactionResponse res = (TransactionResponse) response;
-                    return res.isSuccess() &&
-                            "Transaction successful".equals(res.getMessage()) &&
-                            "purchase123".equals(res.getTransactionId());
-                }));
+        when(publisher.publish(any())).thenReturn(sent);
+        process(event("purchase123", 100));
+        verify(publisher).publish(response(res -> res.isSuccess() &&
+                "Transaction successful".equals(res.getMessage()) &&
+                "purchase123".equals(res.getTransactionId())));
+        verify(acknowledgment, never()).acknowledge();
+        sent.onComplete();
+        verify(acknowledgment).acknowledge();
     }
     @Test
     void testProcessYankiEvent_Failure() {
-        YankiEvent event = new YankiEvent();
-        event.setPurchaseId("purchase456");
-        event.setBuyerPhoneNumber("999888777");
-        event.setSellerPhoneNumber("666555444");
-        event.setTotalAmountInPEN(BigDecimal.valueOf(200));
-        when(yankiService.processYankiTransaction(anyString(), anyString(), any()))
+        when(yankiService.processYankiTransaction(anyString(), anyString(), any(), eq("corr-1")))
                 .thenReturn(Completable.error(new RuntimeException("Insufficient funds")));
-        consumer.processYankiEvent(event);
-        verify(kafkaTemplate).send(eq("bootcoin.transaction.processed"),
-                argThat(response -> {
-                    TransactionResponse res = (TransactionResponse) response;
-                    return !res.isSuccess() &&
-                            "Insufficient funds".equals(res.getMessage()) &&
-                            "purchase456".equals(res.getTransactionId());
-                }));
+        when(publisher.publish(any())).thenReturn(sent);
+        sent.onComplete();
+        process(event("purchase456", 200));
+        verify(publisher).publish(response(res -> !res.isSuccess() &&
+                "Insufficient funds".equals(res.getMessage()) &&
+                "purchase456".equals(res.getTransactionId())));
+        verify(acknowledgment).acknowledge();
+    }
+    @Test
+    void shouldRepublishWithoutTransferringAgain_whenPublishFailsAndTheRecordIsRedelivered() {
+        ConsumerSeekCallback callback = mock(ConsumerSeekCallback.class);
+        consumer.registerSeekCallback(callback);
+        consumer.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 7L), callback);
+        Set<String> landed = ConcurrentHashMap.newKeySet();
+        when(deduplicator.acquire("purchase789")).thenReturn(Maybe.just(landed));
+        when(deduplicator.release(Map.of("purchase789", Set.of(ProcessedEvent.REQUESTED))))
+                .thenReturn(Completable.complete());
+        when(yankiService.processYankiTransaction(anyString(), anyString(), any(), eq("corr-1")))
+                .thenReturn(Completable.complete());
+        when(publisher.publish(any())).thenReturn(Completable.error(new RuntimeException("Kafka down")), sent);
+        sent.onComplete();
+        Acknowledgment firstDelivery = mock(Acknowledgment.class);
+        consumer.processYankiEvent(event("purchase789", 300), "corr-1", KafkaRecords.metadata(TOPIC, 0, 7),
+                firstDelivery);
+        verify(callback).seek(TOPIC, 0, 7);
+        consumer.processYankiEvent(event("purchase789", 300), "corr-1", KafkaRecords.metadata(TOPIC, 0, 7),
+                acknowledgment);
+        verify(yankiService, times(1)).processYankiTransaction(anyString(), anyString(), any(), eq("corr-1"));
+        verify(publisher, times(2)).publish(response(res -> res.isSuccess() &&
+                "purchase789".equals(res.getTransactionId())));
+        verify(deduplicator).complete(List.of("purchase789"));
+        verify(firstDelivery, never()).acknowledge();
+        verify(acknowledgment).acknowledge();
+    }
+    @Test
+    void shouldSkipAlreadyProcessedPurchase() {
+        when(deduplicator.acquire("purchase123")).thenReturn(Maybe.empty());
+        process(event("purchase123", 100));
+        verifyNoInteractions(yankiService, publisher);
+        verify(acknowledgment).acknowledge();
     }
 }
@@ -0,0 +1,160 @@
+package com.bank.yankiservice.event;
+
+import com.bank.yankiservice.metrics.YankiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.Completable;
+import io.reactivex.subjects.CompletableSubject;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BoundedRecordProcessorTest {
+    private static final String TOPIC = "yanki.transaction.processed";
+    @Mock
+    private KafkaListenerEndpointRegistry registry;
+    @Mock
+    private MessageListenerContainer container;
+    private SimpleMeterRegistry meterRegistry;
+    private BoundedRecordProcessor<String> processor;
+    private final Map<String, CompletableSubject> pending = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        processor = new BoundedRecordProcessor<>("test-listener", registry, new YankiMetrics(meterRegistry),
+                8, 4, item -> item.split(":")[0], this::await);
+        processor.start();
+    }
+    @AfterEach
+    void tearDown() {
+        processor.stop();
+    }
+    private Completable await(String item) {
+        CompletableSubject completion = CompletableSubject.create();
+        pending.put(item, completion);
+        return completion;
+    }
+    // The container registers the callback on the consumer thread before it reports the assignment.
+    private ConsumerSeekCallback assign(long offset) {
+        ConsumerSeekCallback callback = mock(ConsumerSeekCallback.class);
+        processor.registerSeekCallback(callback);
+        processor.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), offset), callback);
+        return callback;
+    }
+    private Acknowledgment submit(String item, long offset) {
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+        processor.submit(item, KafkaRecords.metadata(TOPIC, 0, offset), acknowledgment);
+        return acknowledgment;
+    }
+    @Test
+    void submit_shouldAcknowledgeOnlyTheCompletedPrefixOfAPartition() {
+        Acknowledgment first = submit("a:1", 10);
+        Acknowledgment second = submit("b:1", 11);
+        Acknowledgment third = submit("c:1", 12);
+        pending.get("b:1").onComplete();
+        pending.get("c:1").onComplete();
+        verify(second, never()).acknowledge();
+        verify(third, never()).acknowledge();
+        pending.get("a:1").onComplete();
+        verify(first, never()).acknowledge();
+        verify(second, never()).acknowledge();
+        verify(third).acknowledge();
+        assertEquals(0, processor.getInFlight());
+    }
+    @Test
+    void submit_shouldRewindToAFailedRecordInsteadOfAcknowledgingIt() {
+        ConsumerSeekCallback callback = assign(10);
+        Acknowledgment first = submit("a:1", 10);
+        Acknowledgment failed = submit("b:1", 11);
+        Acknowledgment third = submit("c:1", 12);
+        pending.get("c:1").onComplete();
+        pending.get("b:1").onError(new IllegalStateException("boom"));
+        verify(callback).seek(TOPIC, 0, 11);
+        Acknowledgment ahead = submit("d:1", 13);
+        assertFalse(pending.containsKey("d:1"));
+        pending.get("a:1").onComplete();
+        verify(first).acknowledge();
+        Acknowledgment redelivered = submit("b:2", 11);
+        Acknowledgment thirdAgain = submit("c:2", 12);
+        pending.get("c:2").onComplete();
+        pending.get("b:2").onComplete();
+        verify(redelivered, never()).acknowledge();
+        verify(thirdAgain).acknowledge();
+        verify(failed, never()).acknowledge();
+        verify(third, never()).acknowledge();
+        verifyNoInteractions(ahead);
+        assertEquals(0, processor.getInFlight());
+    }
+    @Test
+    void submit_shouldSkipARecordThatKeepsFailing() {
+        ConsumerSeekCallback callback = assign(5);
+        Acknowledgment last = null;
+        for (int attempt = 1; attempt <= BoundedRecordProcessor.MAX_DELIVERY_ATTEMPTS; attempt++) {
+            last = submit("a:" + attempt, 5);
+            pending.get("a:" + attempt).onError(new IllegalStateException("boom"));
+        }
+        verify(callback, times(BoundedRecordProcessor.MAX_DELIVERY_ATTEMPTS - 1)).seek(TOPIC, 0, 5);
+        verify(last).acknowledge();
+    }
+    @Test
+    void onPartitionsRevoked_shouldStopAcknowledgingRecordsOfThePartition() {
+        Acknowledgment acknowledgment = submit("a:1", 1);
+        processor.onPartitionsRevoked(List.of(new TopicPartition(TOPIC, 0)));
+        pending.get("a:1").onComplete();
+        verify(acknowledgment, never()).acknowledge();
+        assertEquals(0, processor.getInFlight());
+        Acknowledgment reassigned = submit("a:2", 1);
+        pending.get("a:2").onComplete();
+        verify(reassigned).acknowledge();
+    }
+    @Test
+    void submit_shouldPauseAtMaxInFlightAndResumeBelowHalf() {
+        when(registry.getListenerContainer("test-listener")).thenReturn(container);
+        for (int i = 0; i < 4; i++) {
+            submit("k" + i + ":1", i);
+        }
+        verify(container).pause();
+        assertEquals(4.0, meterRegistry.find(YankiMetrics.LISTENER_IN_FLIGHT).tag("listener", "test-listener")
+                .gauge().value());
+        pending.get("k0:1").onComplete();
+        pending.get("k1:1").onComplete();
+        verify(container, never()).resume();
+        pending.get("k2:1").onComplete();
+        InOrder order = inOrder(container);
+        order.verify(container).pause();
+        order.verify(container).resume();
+    }
+    @Test
+    void submit_shouldTrackPartitionsIndependently() {
+        Acknowledgment blocked = submit("a:1", 1);
+        Acknowledgment other = mock(Acknowledgment.class);
+        processor.submit("b:1", KafkaRecords.metadata(TOPIC, 1, 1), other);
+        pending.get("b:1").onComplete();
+        verify(other).acknowledge();
+        verify(blocked, never()).acknowledge();
+    }
+}
@@ -1,32 +1,63 @@
 package com.bank.yankiservice.event;
 
+import com.bank.yankiservice.metrics.YankiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.bank.yankiservice.cache.WalletCache;
 import com.bank.yankiservice.dto.cardlink.CardLinkConfirmedEvent;
 import com.bank.yankiservice.dto.cardlink.CardLinkRejectedEvent;
 import com.bank.yankiservice.model.YankiWallet;
 import com.bank.yankiservice.repository.YankiWalletRepository;
+import com.bank.yankiservice.service.BalanceEngine;
+import com.bank.yankiservice.service.BalanceStreamService;
+import com.bank.yankiservice.service.StripedBalanceService;
+import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.kafka.support.Acknowledgment;
 import java.math.BigDecimal;
+import java.util.Map;
+import java.util.function.Supplier;
 import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class CardLinkResponseConsumerTest {
+    private static final String TOPIC = "yanki.card.link.confirmed";
     private static final Logger log = LoggerFactory.getLogger(CardLinkResponseConsumerTest.class);
-    @InjectMocks
     private CardLinkResponseConsumer consumer;
     @Mock
     private YankiWalletRepository yankiWalletRepository;
+    @Mock
+    private WalletCache walletCache;
+    @Mock
+    private BalanceStreamService balanceStreamService;
+    @Mock
+    private BalanceEngine balanceEngine;
+    @Mock
+    private StripedBalanceService stripedBalances;
+    @Mock
+    private KafkaListenerEndpointRegistry listenerRegistry;
+    @Mock
+    private Acknowledgment acknowledgment;
     private CardLinkConfirmedEvent confirmedEvent;
     private CardLinkRejectedEvent rejectedEvent;
     @BeforeEach
     void setUp() {
+        consumer = new CardLinkResponseConsumer(yankiWalletRepository, walletCache, balanceStreamService,
+                balanceEngine, stripedBalances, new YankiMetrics(new SimpleMeterRegistry()), listenerRegistry, 4, 16);
+        lenient().when(balanceEngine.execute(anyString(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<Completable>>getArgument(1).get());
+        consumer.start();
         confirmedEvent = new CardLinkConfirmedEvent("123456789",
             "1234324563453454",
             "12345678",
@@ -34,26 +65,77 @@ class CardLinkResponseConsumerTest {
         rejectedEvent = new CardLinkRejectedEvent("123456789",
             "Invalid card details");
     }
+    @AfterEach
+    void tearDown() {
+        consumer.stop();
+    }
     @Test
     void shouldUpdateWalletWhenCardLinkConfirmed() {
         YankiWallet wallet = new YankiWallet();
         wallet.setId("wallet-1");
+        wallet.setPhoneNumber("999999999");
         wallet.setDocumentNumber("12345678");
         wallet.setBalance(BigDecimal.ZERO);
-        when(yankiWalletRepository.findByDocumentNumber("12345678"))
+        when(walletCache.findByDocumentNumber("12345678")).thenReturn(Maybe.just(wallet));
+        when(stripedBalances.sweep("999999999")).thenReturn(Single.just(0));
+        when(yankiWalletRepository.linkCard("12345678", "1234324563453454", new BigDecimal("150.00")))
                 .thenReturn(Maybe.just(wallet));
-        when(yankiWalletRepository.save(any(YankiWallet.class)))
-                .thenReturn(Single.just(wallet));
-        consumer.processCardLinkConfirmed(confirmedEvent);
-        verify(yankiWalletRepository, times(1)).findByDocumentNumber("12345678");
-        verify(yankiWalletRepository, times(1)).save(any(YankiWallet.class));
+        when(walletCache.evict(wallet)).thenReturn(Completable.complete());
+        consumer.processCardLinkConfirmed(confirmedEvent, "corr-1",
+                KafkaRecords.metadata("yanki.card.link.confirmed"), acknowledgment);
+        verify(balanceEngine).execute(eq("999999999"), any());
+        verify(yankiWalletRepository, times(1))
+                .linkCard("12345678", "1234324563453454", new BigDecimal("150.00"));
+        verify(walletCache, times(1)).evict(wallet);
+        verify(balanceStreamService).publish(wallet);
+        verify(acknowledgment).acknowledge();
         log.info("Test shouldUpdateWalletWhenCardLinkConfirmed passed.");
     }
     @Test
+    void shouldSweepBalanceStripesBeforeLinkingCard() {
+        YankiWallet wallet = YankiWallet.builder().id("wallet-1").phoneNumber("999999999")
+                .documentNumber("12345678").balance(BigDecimal.ZERO).build();
+        when(walletCache.findByDocumentNumber("12345678")).thenReturn(Maybe.just(wallet));
+        when(stripedBalances.sweep("999999999")).thenReturn(Single.just(2));
+        when(yankiWalletRepository.linkCard("12345678", "1234324563453454", new BigDecimal("150.00")))
+                .thenReturn(Maybe.just(wallet));
+        when(walletCache.evict(wallet)).thenReturn(Completable.complete());
+        consumer.processCardLinkConfirmed(confirmedEvent, "corr-1",
+                KafkaRecords.metadata("yanki.card.link.confirmed"), acknowledgment);
+        InOrder inOrder = inOrder(stripedBalances, yankiWalletRepository);
+        inOrder.verify(stripedBalances).sweep("999999999");
+        inOrder.verify(yankiWalletRepository).linkCard("12345678", "1234324563453454", new BigDecimal("150.00"));
+        verify(acknowledgment).acknowledge();
+    }
+    @Test
     void shouldLogWarningWhenCardLinkRejected() {
-        consumer.porcessCardLinkRejected(rejectedEvent);
-        verify(yankiWalletRepository, never()).findByDocumentNumber(anyString());
-        verify(yankiWalletRepository, never()).save(any(YankiWallet.class));
+        consumer.porcessCardLinkRejected(rejectedEvent, null);
+        verify(yankiWalletRepository, never()).linkCard(anyString(), anyString(), any(BigDecimal.class));
+        verify(walletCache, never()).evict(any(YankiWallet.class));
         log.info("Test shouldLogWarningWhenCardLinkRejected passed.");
     }
-}
\ No newline at end of file
+    @Test
+    void shouldRedeliverCardLink_whenLinkingCardFails() {
+        YankiWallet wallet = YankiWallet.builder().id("wallet-1").phoneNumber("999999999")
+                .documentNumber("12345678").balance(BigDecimal.ZERO).build();
+        ConsumerSeekCallback callback = mock(ConsumerSeekCallback.class);
+        consumer.registerSeekCallback(callback);
+        consumer.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 4L), callback);
+        when(walletCache.findByDocumentNumber("12345678")).thenReturn(Maybe.just(wallet));
+        when(stripedBalances.sweep("999999999")).thenReturn(Single.just(0));
+        when(yankiWalletRepository.linkCard("12345678", "1234324563453454", new BigDecimal("150.00")))
+                .thenReturn(Maybe.error(new RuntimeException("Mongo down")), Maybe.just(wallet));
+        when(walletCache.evict(wallet)).thenReturn(Completable.complete());
+        Acknowledgment firstDelivery = mock(Acknowledgment.class);
+        consumer.processCardLinkConfirmed(confirmedEvent, "corr-1", KafkaRecords.metadata(TOPIC, 0, 4),
+                firstDelivery);
+        verify(callback).seek(TOPIC, 0, 4);
+        consumer.processCardLinkConfirmed(confirmedEvent, "corr-1", KafkaRecords.metadata(TOPIC, 0, 4),
+                acknowledgment);
+        verify(yankiWalletRepository, times(2))
+                .linkCard("12345678", "1234324563453454", new BigDecimal("150.00"));
+        verify(walletCache, times(1)).evict(wallet);
+        verify(firstDelivery, never()).acknowledge();
+        verify(acknowledgment).acknowledge();
+    }
+}
@@ -0,0 +1,95 @@
+package com.bank.yankiservice.event;
+
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.resilience.DependencyGuards;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.observers.TestObserver;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class KafkaPublisherTest {
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+    private SimpleMeterRegistry registry;
+    private KafkaPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        publisher = new KafkaPublisher(kafkaTemplate, new YankiMetrics(registry), new DependencyGuards(
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), TimeLimiterRegistry.ofDefaults()),
+                1);
+    }
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        publisher.stop();
+    }
+    private static ProducerRecord<String, Object> record(String value) {
+        return new ProducerRecord<>("yanki.transaction.requested", "alice", value);
+    }
+    @Test
+    void publish_shouldSendOnPublisherThread_andCompleteWhenBrokerAcks() {
+        SettableListenableFuture<SendResult<String, Object>> sent = new SettableListenableFuture<>();
+        AtomicReference<String> sendingThread = new AtomicReference<>();
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenAnswer(invocation -> {
+            sendingThread.set(Thread.currentThread().getName());
+            return sent;
+        });
+        TestObserver<Void> observer = publisher.publish(record("a-1")).test();
+        observer.assertNotComplete();
+        sent.set(null);
+        observer.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        observer.assertComplete();
+        assertEquals(KafkaPublisher.THREAD_NAME, sendingThread.get());
+        assertEquals(1, registry.get(YankiMetrics.KAFKA_SEND).tag("outcome", "success").timer().count());
+    }
+    @Test
+    void publish_shouldFail_whenBrokerRejectsTheRecord() {
+        SettableListenableFuture<SendResult<String, Object>> sent = new SettableListenableFuture<>();
+        sent.setException(new RuntimeException("Broker unavailable"));
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(sent);
+        TestObserver<Void> observer = publisher.publish(record("a-1")).test();
+        observer.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        observer.assertError(error -> "Broker unavailable".equals(error.getMessage()));
+    }
+    @Test
+    void publish_shouldRejectImmediately_whenQueueIsFull() throws InterruptedException {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SettableListenableFuture<SendResult<String, Object>> sent = new SettableListenableFuture<>();
+        sent.set(null);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            return sent;
+        });
+        publisher.publish(record("a-1")).test();
+        assertTrue(sending.await(1, TimeUnit.SECONDS));
+        publisher.publish(record("a-2")).test();
+        assertEquals(1.0, registry.get(YankiMetrics.QUEUE_DEPTH).tag("queue", KafkaPublisher.THREAD_NAME)
+                .gauge().value());
+        publisher.publish(record("a-3")).test().assertError(RejectedExecutionException.class);
+        release.countDown();
+    }
+}
@@ -0,0 +1,23 @@
+package com.bank.yankiservice.event;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+import org.springframework.kafka.listener.adapter.ConsumerRecordMetadata;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+final class KafkaRecords {
+    private static final AtomicLong OFFSETS = new AtomicLong();
+
+    private KafkaRecords() {
+    }
+
+    static ConsumerRecordMetadata metadata(String topic) {
+        return metadata(topic, 0, OFFSETS.getAndIncrement());
+    }
+    static ConsumerRecordMetadata metadata(String topic, int partition, long offset) {
+        return new ConsumerRecordMetadata(new RecordMetadata(new TopicPartition(topic, partition), offset, 0,
+                System.currentTimeMillis(), null, -1, -1), TimestampType.CREATE_TIME);
+    }
+}
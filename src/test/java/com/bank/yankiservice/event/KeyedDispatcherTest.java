@@ -0,0 +1,105 @@
+package com.bank.yankiservice.event;
+
+import io.reactivex.Completable;
+import io.reactivex.subjects.CompletableSubject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedDispatcherTest {
+    private KeyedDispatcher<String> dispatcher;
+    private final List<String> handled = new ArrayList<>();
+    private final Map<String, CompletableSubject> pending = new HashMap<>();
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.stop();
+    }
+    private void start(int laneCount, int maxInFlight, Function<String, Completable> handler) {
+        dispatcher = new KeyedDispatcher<>("test", laneCount, maxInFlight, item -> item.split(":")[0], handler);
+        dispatcher.start();
+    }
+    private Completable await(String item) {
+        handled.add(item);
+        CompletableSubject completion = CompletableSubject.create();
+        pending.put(item, completion);
+        return completion;
+    }
+    @Test
+    void dispatch_shouldKeepOrderPerKey() throws InterruptedException {
+        start(1, 16, this::await);
+        dispatcher.dispatch("a:1");
+        dispatcher.dispatch("a:2");
+        assertEquals(List.of("a:1"), handled);
+        pending.get("a:1").onComplete();
+        assertEquals(List.of("a:1", "a:2"), handled);
+    }
+    @Test
+    void dispatch_shouldProcessDifferentKeysInParallel() throws InterruptedException {
+        start(64, 16, this::await);
+        dispatcher.dispatch("a:1");
+        dispatcher.dispatch("b:1");
+        dispatcher.dispatch("c:1");
+        assertTrue(handled.containsAll(List.of("a:1", "b:1", "c:1")));
+    }
+    @Test
+    void dispatch_shouldContinueAfterHandlerError() throws InterruptedException {
+        start(1, 1, item -> {
+            handled.add(item);
+            return item.endsWith("1") ? Completable.error(new IllegalStateException("boom")) : Completable.complete();
+        });
+        dispatcher.dispatch("a:1");
+        dispatcher.dispatch("a:2");
+        assertEquals(List.of("a:1", "a:2"), handled);
+    }
+    @Test
+    void submit_shouldNotifyCompletionWithoutTakingAPermit() throws InterruptedException {
+        start(4, 1, this::await);
+        List<String> done = new ArrayList<>();
+        dispatcher.submit("a:1", () -> done.add("a:1"), error -> done.add("failed a:1"));
+        dispatcher.submit("b:1", () -> done.add("b:1"), error -> done.add("failed b:1"));
+        assertTrue(handled.containsAll(List.of("a:1", "b:1")));
+        pending.get("b:1").onComplete();
+        assertEquals(List.of("b:1"), done);
+        dispatcher.dispatch("c:1");
+        assertTrue(handled.contains("c:1"));
+    }
+    @Test
+    void submit_shouldReportFailuresInsteadOfCompletion() {
+        start(1, 1, this::await);
+        List<String> done = new ArrayList<>();
+        dispatcher.submit("a:1", () -> done.add("a:1"), error -> done.add("failed a:1: " + error.getMessage()));
+        dispatcher.submit("a:2", () -> done.add("a:2"), error -> done.add("failed a:2"));
+        pending.get("a:1").onError(new IllegalStateException("boom"));
+        pending.get("a:2").onComplete();
+        assertEquals(List.of("failed a:1: boom", "a:2"), done);
+    }
+    @Test
+    void dispatch_shouldBlockWhenMaxInFlightIsReached() throws InterruptedException {
+        start(4, 1, this::await);
+        dispatcher.dispatch("a:1");
+        CountDownLatch dispatched = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                dispatcher.dispatch("b:1");
+                dispatched.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        assertFalse(dispatched.await(100, TimeUnit.MILLISECONDS));
+        pending.get("a:1").onComplete();
+        assertTrue(dispatched.await(5, TimeUnit.SECONDS));
+        producer.join();
+    }
+}
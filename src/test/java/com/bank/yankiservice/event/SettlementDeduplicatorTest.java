@@ -0,0 +1,124 @@
+package com.bank.yankiservice.event;
+
+import com.bank.yankiservice.model.ProcessedEvent;
+import com.bank.yankiservice.repository.ProcessedEventRepository;
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class SettlementDeduplicatorTest {
+    private static final Duration LEASE = Duration.ofSeconds(300);
+    @Mock
+    private ProcessedEventRepository processedEventRepository;
+    private SettlementDeduplicator deduplicator;
+    @BeforeEach
+    void setUp() {
+        deduplicator = new SettlementDeduplicator(processedEventRepository, 100, 300);
+    }
+    @Test
+    void acquire_shouldMarkNewTransaction() {
+        when(processedEventRepository.claim(Set.of("tx-1"), LEASE)).thenReturn(Single.just(Map.of("tx-1", Set.of())));
+        deduplicator.acquire("tx-1").test().assertValue(Set.of());
+    }
+    @Test
+    void acquire_shouldRejectTransactionAlreadyStored() {
+        when(processedEventRepository.claim(Set.of("tx-1"), LEASE)).thenReturn(Single.just(Map.of()));
+        deduplicator.acquire("tx-1").test().assertNoValues().assertComplete();
+    }
+    @Test
+    void acquire_shouldAnswerRepeatedTransactionFromMemory() {
+        when(processedEventRepository.claim(Set.of("tx-1"), LEASE)).thenReturn(Single.just(Map.of("tx-1", Set.of())));
+        deduplicator.acquire("tx-1").test().assertValue(Set.of());
+        deduplicator.acquire("tx-1").test().assertNoValues().assertComplete();
+        verify(processedEventRepository, times(1)).claim(anyCollection(), eq(LEASE));
+    }
+    @Test
+    void acquire_shouldAlwaysProcessEventsWithoutTransactionId() {
+        deduplicator.acquire((String) null).test().assertValue(Set.of());
+        deduplicator.acquire(Arrays.asList(null, null)).test().assertValue(Map.of());
+        verifyNoInteractions(processedEventRepository);
+    }
+    @Test
+    void acquire_shouldNotRememberTransactionsWhenStoreFails() {
+        when(processedEventRepository.claim(Set.of("tx-1"), LEASE))
+                .thenReturn(Single.error(new RuntimeException("Mongo down")))
+                .thenReturn(Single.just(Map.of("tx-1", Set.of())));
+        deduplicator.acquire("tx-1").test().assertError(RuntimeException.class);
+        deduplicator.acquire("tx-1").test().assertValue(Set.of());
+    }
+    @Test
+    void release_shouldForgetAndDeleteTransactions() {
+        when(processedEventRepository.claim(Set.of("tx-1"), LEASE)).thenReturn(Single.just(Map.of("tx-1", Set.of())));
+        when(processedEventRepository.deleteById("tx-1")).thenReturn(Completable.complete());
+        deduplicator.acquire("tx-1").test().assertValue(Set.of());
+        deduplicator.release(List.of("tx-1")).test().assertComplete();
+        deduplicator.acquire("tx-1").test().assertValue(Set.of());
+        verify(processedEventRepository, times(2)).claim(anyCollection(), eq(LEASE));
+    }
+    @Test
+    void acquire_shouldResumeFromTheStepsAnEarlierAttemptLanded() {
+        when(processedEventRepository.claim(Set.of("tx-1"), LEASE))
+                .thenReturn(Single.just(Map.of("tx-1", Set.of(ProcessedEvent.DEBITED))));
+        deduplicator.acquire("tx-1").test().assertValue(Set.of(ProcessedEvent.DEBITED));
+    }
+    @Test
+    void step_shouldSkipALandedStepAndRecordANewOne() {
+        when(processedEventRepository.addStep(List.of("tx-1"), ProcessedEvent.CREDITED))
+                .thenReturn(Completable.complete());
+        Set<String> landed = new HashSet<>(Set.of(ProcessedEvent.DEBITED));
+        AtomicInteger writes = new AtomicInteger();
+        Supplier<Completable> write = () -> Completable.fromAction(writes::incrementAndGet);
+        deduplicator.step("tx-1", landed, ProcessedEvent.DEBITED, write).test().assertComplete();
+        deduplicator.step("tx-1", landed, ProcessedEvent.CREDITED, write).test().assertComplete();
+        assertEquals(1, writes.get());
+        assertEquals(Set.of(ProcessedEvent.DEBITED, ProcessedEvent.CREDITED), landed);
+    }
+    @Test
+    void step_shouldKeepTheLandedStep_whenRecordingItFails() {
+        when(processedEventRepository.addStep(List.of("tx-1"), ProcessedEvent.DEBITED))
+                .thenReturn(Completable.error(new RuntimeException("Mongo down")));
+        Set<String> landed = new HashSet<>();
+        deduplicator.step("tx-1", landed, ProcessedEvent.DEBITED, Completable::complete).test().assertComplete();
+        assertEquals(Set.of(ProcessedEvent.DEBITED), landed);
+    }
+    @Test
+    void release_shouldKeepMarkersWithLandedStepsForTheRedelivery() {
+        when(processedEventRepository.reopen("tx-1", Set.of(ProcessedEvent.DEBITED)))
+                .thenReturn(Completable.complete());
+        when(processedEventRepository.deleteById("tx-2")).thenReturn(Completable.complete());
+        Map<String, Set<String>> landed = new LinkedHashMap<>();
+        landed.put("tx-1", Set.of(ProcessedEvent.DEBITED));
+        landed.put("tx-2", Set.of());
+        deduplicator.release(landed).test().assertComplete();
+        verify(processedEventRepository, never()).deleteById("tx-1");
+    }
+    @Test
+    void complete_shouldMarkTransactionsDone() {
+        when(processedEventRepository.markDone(List.of("tx-1"))).thenReturn(Completable.complete());
+        deduplicator.complete(Arrays.asList("tx-1", null)).test().assertComplete();
+        verify(processedEventRepository).markDone(List.of("tx-1"));
+    }
+    @Test
+    void complete_shouldNotFailSettledRecord_whenMarkerCannotBeUpdated() {
+        when(processedEventRepository.markDone(List.of("tx-1")))
+                .thenReturn(Completable.error(new RuntimeException("Mongo down")));
+        deduplicator.complete(List.of("tx-1")).test().assertComplete();
+    }
+}
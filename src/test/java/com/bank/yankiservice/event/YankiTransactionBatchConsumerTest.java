@@ -0,0 +1,326 @@
+package com.bank.yankiservice.event;
+
+import com.bank.yankiservice.metrics.YankiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Spy;
+import com.bank.yankiservice.cache.WalletCache;
+import com.bank.yankiservice.dto.transaction.YankiTransactionProcessedEvent;
+import com.bank.yankiservice.model.ProcessedEvent;
+import com.bank.yankiservice.model.YankiTransaction;
+import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.repository.YankiTransactionRepository;
+import com.bank.yankiservice.repository.YankiWalletRepository;
+import com.bank.yankiservice.service.BalanceEngine;
+import com.bank.yankiservice.service.BalanceStreamService;
+import com.bank.yankiservice.service.FundsHoldService;
+import com.bank.yankiservice.service.StripedBalanceService;
+import com.bank.yankiservice.tracing.TraceHeaders;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class YankiTransactionBatchConsumerTest {
+    @Spy
+    private YankiMetrics metrics = new YankiMetrics(new SimpleMeterRegistry());
+    @InjectMocks
+    private YankiTransactionBatchConsumer consumer;
+    @Mock
+    private YankiWalletRepository walletRepository;
+    @Mock
+    private YankiTransactionRepository yankiTransactionRepository;
+    @Mock
+    private WalletCache walletCache;
+    @Mock
+    private SettlementDeduplicator deduplicator;
+    @Mock
+    private FundsHoldService fundsHoldService;
+    @Mock
+    private BalanceStreamService balanceStreamService;
+    @Mock
+    private StripedBalanceService stripedBalances;
+    @Mock
+    private BalanceEngine balanceEngine;
+    private YankiWallet alice;
+    private YankiWallet bob;
+    private YankiWallet carol;
+    private YankiWallet dave;
+    @BeforeEach
+    void setUp() {
+        alice = wallet("911111111", null);
+        bob = wallet("922222222", null);
+        carol = wallet("933333333", null);
+        dave = wallet("944444444", "card-1");
+        lenient().when(balanceStreamService.refresh(any())).thenReturn(Completable.complete());
+        lenient().when(deduplicator.complete(anyCollection())).thenReturn(Completable.complete());
+        lenient().when(deduplicator.recordStep(anyCollection(), anyString())).thenReturn(Completable.complete());
+        lenient().when(balanceEngine.execute(anyString(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<Completable>>getArgument(1).get());
+        lenient().when(balanceEngine.credit(any(YankiWallet.class), any(BigDecimal.class)))
+                .thenAnswer(invocation -> Maybe.just(invocation.getArgument(0)));
+    }
+    private static YankiWallet wallet(String phoneNumber, String linkedCard) {
+        YankiWallet wallet = new YankiWallet();
+        wallet.setPhoneNumber(phoneNumber);
+        wallet.setLinkedCard(linkedCard);
+        wallet.setBalance(new BigDecimal("100.00"));
+        return wallet;
+    }
+    private static YankiTransactionProcessedEvent event(String sender, String receiver, String amount, String status) {
+        return new YankiTransactionProcessedEvent(UUID.randomUUID().toString(), sender, receiver,
+                new BigDecimal(amount), status, null, Instant.now());
+    }
+    private void noHolds() {
+        when(fundsHoldService.commitHold(anyString(), anyString(), any(BigDecimal.class)))
+                .thenReturn(Single.just(false));
+    }
+    private void acquireAll() {
+        when(deduplicator.acquire(anyCollection()))
+                .thenAnswer(invocation -> Single.just(invocation.<Collection<String>>getArgument(0).stream()
+                        .collect(Collectors.toMap(id -> id, id -> ConcurrentHashMap.<String>newKeySet()))));
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldGroupDebitsAndCreditsPerWallet() {
+        List<YankiTransactionProcessedEvent> events = List.of(
+                event("911111111", "922222222", "10", "SUCCESS"),
+                event("911111111", "933333333", "20", "SUCCESS"),
+                event("944444444", "922222222", "5", "SUCCESS"),
+                event("922222222", "911111111", "99", "FAILED"));
+        acquireAll();
+        noHolds();
+        when(fundsHoldService.releaseHold(eq("922222222"), anyString(), eq(new BigDecimal("99"))))
+                .thenReturn(Single.just(true));
+        when(walletRepository.findByPhoneNumberIn(anyCollection()))
+                .thenReturn(Flowable.just(alice, bob, carol, dave));
+        when(stripedBalances.debit("911111111", new BigDecimal("10")))
+                .thenReturn(Maybe.just(alice));
+        when(stripedBalances.debit("911111111", new BigDecimal("20")))
+                .thenReturn(Maybe.just(alice));
+        when(walletCache.evict(any(YankiWallet.class))).thenReturn(Completable.complete());
+        when(yankiTransactionRepository.saveAll(anyIterable())).thenReturn(Flowable.empty());
+        consumer.processYankiTransactionBatch(events, null, null);
+        verify(balanceEngine, times(4)).execute(eq("911111111"), any());
+        verify(balanceEngine).execute(eq("922222222"), any());
+        verify(stripedBalances, times(2)).debit(anyString(), any(BigDecimal.class));
+        verify(balanceEngine).credit(bob, new BigDecimal("15"));
+        verify(balanceEngine).credit(carol, new BigDecimal("20"));
+        verify(balanceEngine, times(2)).credit(any(YankiWallet.class), any(BigDecimal.class));
+        ArgumentCaptor<Iterable<YankiTransaction>> saved = ArgumentCaptor.forClass(Iterable.class);
+        verify(yankiTransactionRepository).saveAll(saved.capture());
+        assertEquals(3, ((List<YankiTransaction>) saved.getValue()).size());
+        verify(walletCache, times(1)).evict(any(YankiWallet.class));
+        verify(walletCache).evict(alice);
+        verify(balanceStreamService).refresh(Set.of("911111111", "922222222", "933333333"));
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldDebitEachTransferSoOnlyUncoveredOnesAreRejected() {
+        YankiTransactionProcessedEvent covered = event("911111111", "922222222", "60", "SUCCESS");
+        YankiTransactionProcessedEvent uncovered = event("911111111", "933333333", "50", "SUCCESS");
+        acquireAll();
+        noHolds();
+        when(walletRepository.findByPhoneNumberIn(anyCollection())).thenReturn(Flowable.just(alice, bob, carol));
+        when(stripedBalances.debit("911111111", new BigDecimal("60"))).thenReturn(Maybe.just(alice));
+        when(stripedBalances.debit("911111111", new BigDecimal("50"))).thenReturn(Maybe.empty());
+        when(walletCache.evict(any(YankiWallet.class))).thenReturn(Completable.complete());
+        when(yankiTransactionRepository.saveAll(anyIterable())).thenReturn(Flowable.empty());
+        when(deduplicator.release(anyCollection())).thenReturn(Completable.complete());
+        consumer.settle(List.of(covered, uncovered), Map.of()).test().assertError(IllegalStateException.class);
+        verify(balanceEngine).credit(bob, new BigDecimal("60"));
+        verify(balanceEngine, never()).credit(eq(carol), any(BigDecimal.class));
+        ArgumentCaptor<Iterable<YankiTransaction>> saved = ArgumentCaptor.forClass(Iterable.class);
+        verify(yankiTransactionRepository).saveAll(saved.capture());
+        assertEquals(1, ((List<YankiTransaction>) saved.getValue()).size());
+        verify(walletCache, never()).evict(carol);
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldRejectTransfersOfSenderWithoutFunds() {
+        List<YankiTransactionProcessedEvent> events = List.of(
+                event("911111111", "922222222", "500", "SUCCESS"),
+                event("933333333", "922222222", "10", "SUCCESS"));
+        acquireAll();
+        noHolds();
+        when(walletRepository.findByPhoneNumberIn(anyCollection()))
+                .thenReturn(Flowable.just(alice, bob, carol));
+        when(stripedBalances.debit("911111111", new BigDecimal("500")))
+                .thenReturn(Maybe.empty());
+        when(stripedBalances.debit("933333333", new BigDecimal("10")))
+                .thenReturn(Maybe.just(carol));
+        when(walletCache.evict(any(YankiWallet.class))).thenReturn(Completable.complete());
+        when(yankiTransactionRepository.saveAll(anyIterable())).thenReturn(Flowable.empty());
+        when(deduplicator.release(anyCollection())).thenReturn(Completable.complete());
+        consumer.settle(events, Map.of()).test().assertError(IllegalStateException.class);
+        verify(balanceEngine).credit(bob, new BigDecimal("10"));
+        verify(balanceEngine, times(1)).credit(any(YankiWallet.class), any(BigDecimal.class));
+        ArgumentCaptor<Iterable<YankiTransaction>> saved = ArgumentCaptor.forClass(Iterable.class);
+        verify(yankiTransactionRepository).saveAll(saved.capture());
+        List<YankiTransaction> transactions = (List<YankiTransaction>) saved.getValue();
+        assertEquals(1, transactions.size());
+        assertEquals("933333333", transactions.get(0).getSenderPhoneNumber());
+        verify(deduplicator).complete(Set.of(events.get(1).getTransactionId()));
+        verify(deduplicator).release(Set.of(events.get(0).getTransactionId()));
+    }
+    @Test
+    void shouldFailBatchForRedelivery_whenASenderCannotCoverItsTransfer() {
+        YankiTransactionProcessedEvent uncovered = event("911111111", "922222222", "500", "SUCCESS");
+        acquireAll();
+        noHolds();
+        when(walletRepository.findByPhoneNumberIn(anyCollection())).thenReturn(Flowable.just(alice, bob));
+        when(stripedBalances.debit("911111111", new BigDecimal("500"))).thenReturn(Maybe.empty());
+        when(deduplicator.release(anyCollection())).thenReturn(Completable.complete());
+        assertThrows(IllegalStateException.class,
+                () -> consumer.processYankiTransactionBatch(List.of(uncovered), null, null));
+        verify(deduplicator).release(Set.of(uncovered.getTransactionId()));
+        verify(deduplicator).complete(Set.of());
+        verifyNoInteractions(yankiTransactionRepository, walletCache);
+        verify(balanceEngine, never()).credit(any(YankiWallet.class), any(BigDecimal.class));
+    }
+    @Test
+    void shouldSkipEventsForUnknownWallets() {
+        List<YankiTransactionProcessedEvent> events = List.of(
+                event("911111111", "900000000", "10", "SUCCESS"));
+        acquireAll();
+        acquireAll();
+        when(walletRepository.findByPhoneNumberIn(anyCollection())).thenReturn(Flowable.just(alice));
+        consumer.settle(events, Map.of()).test().assertComplete();
+        verifyNoInteractions(stripedBalances, balanceEngine, walletCache);
+        verify(yankiTransactionRepository, never()).saveAll(anyIterable());
+    }
+    @Test
+    void shouldOnlyReleaseHoldsForBatchWithoutSuccessfulEvents() {
+        YankiTransactionProcessedEvent failed = event("911111111", "922222222", "10", "FAILED");
+        when(fundsHoldService.releaseHold("911111111", failed.getTransactionId(), new BigDecimal("10")))
+                .thenReturn(Single.just(true));
+        consumer.processYankiTransactionBatch(List.of(failed), null, null);
+        verify(fundsHoldService).releaseHold("911111111", failed.getTransactionId(), new BigDecimal("10"));
+        verify(balanceEngine).execute(eq("911111111"), any());
+        verifyNoInteractions(walletRepository, yankiTransactionRepository, walletCache, deduplicator);
+    }
+    @Test
+    void shouldCommitHeldFundsInsteadOfDebitingSender() {
+        YankiTransactionProcessedEvent held = event("911111111", "922222222", "10", "SUCCESS");
+        YankiTransactionProcessedEvent unheld = event("911111111", "933333333", "5", "SUCCESS");
+        acquireAll();
+        when(fundsHoldService.commitHold("911111111", held.getTransactionId(), new BigDecimal("10")))
+                .thenReturn(Single.just(true));
+        when(fundsHoldService.commitHold("911111111", unheld.getTransactionId(), new BigDecimal("5")))
+                .thenReturn(Single.just(false));
+        when(walletRepository.findByPhoneNumberIn(anyCollection())).thenReturn(Flowable.just(alice, bob, carol));
+        when(stripedBalances.debit("911111111", new BigDecimal("5"))).thenReturn(Maybe.just(alice));
+        when(walletCache.evict(any(YankiWallet.class))).thenReturn(Completable.complete());
+        when(yankiTransactionRepository.saveAll(anyIterable())).thenReturn(Flowable.empty());
+        consumer.settle(List.of(held, unheld), Map.of()).test().assertComplete();
+        verify(stripedBalances, times(1)).debit(anyString(), any(BigDecimal.class));
+        verify(balanceEngine, times(3)).execute(eq("911111111"), any());
+        verify(balanceEngine).credit(bob, new BigDecimal("10"));
+        verify(balanceEngine).credit(carol, new BigDecimal("5"));
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldSkipAlreadySettledAndRepeatedEvents() {
+        YankiTransactionProcessedEvent settled = event("911111111", "922222222", "10", "SUCCESS");
+        YankiTransactionProcessedEvent fresh = event("933333333", "922222222", "20", "SUCCESS");
+        when(deduplicator.acquire(anyCollection())).thenReturn(Single.just(
+                Map.of(fresh.getTransactionId(), ConcurrentHashMap.newKeySet())));
+        noHolds();
+        when(walletRepository.findByPhoneNumberIn(anyCollection())).thenReturn(Flowable.just(bob, carol));
+        when(stripedBalances.debit("933333333", new BigDecimal("20"))).thenReturn(Maybe.just(carol));
+        when(walletCache.evict(any(YankiWallet.class))).thenReturn(Completable.complete());
+        when(yankiTransactionRepository.saveAll(anyIterable())).thenReturn(Flowable.empty());
+        consumer.settle(List.of(settled, fresh, fresh), Map.of()).test().assertComplete();
+        verify(balanceEngine).credit(bob, new BigDecimal("20"));
+        ArgumentCaptor<Iterable<YankiTransaction>> saved = ArgumentCaptor.forClass(Iterable.class);
+        verify(yankiTransactionRepository).saveAll(saved.capture());
+        assertEquals(1, ((List<YankiTransaction>) saved.getValue()).size());
+    }
+    @Test
+    void shouldSkipBatchWhenEverythingWasAlreadySettled() {
+        when(deduplicator.acquire(anyCollection())).thenReturn(Single.just(Map.of()));
+        consumer.settle(List.of(event("911111111", "922222222", "10", "SUCCESS")), Map.of())
+                .test()
+                .assertComplete();
+        verifyNoInteractions(walletRepository, yankiTransactionRepository, walletCache, balanceEngine);
+    }
+    @Test
+    void shouldReleaseAcquiredEventsWhenSettlementFails() {
+        acquireAll();
+        when(walletRepository.findByPhoneNumberIn(anyCollection()))
+                .thenReturn(Flowable.error(new RuntimeException("Mongo down")));
+        when(deduplicator.release(anyMap())).thenReturn(Completable.complete());
+        consumer.settle(List.of(event("911111111", "922222222", "10", "SUCCESS")), Map.of())
+                .test()
+                .assertError(RuntimeException.class);
+        verify(deduplicator).release(anyMap());
+    }
+    @Test
+    void shouldDebitSendersOnce_whenACreditFailsAndTheBatchIsRedelivered() {
+        YankiTransactionProcessedEvent unheld = event("911111111", "922222222", "10", "SUCCESS");
+        YankiTransactionProcessedEvent held = event("933333333", "922222222", "5", "SUCCESS");
+        Map<String, Set<String>> acquired = Map.of(
+                unheld.getTransactionId(), ConcurrentHashMap.newKeySet(),
+                held.getTransactionId(), ConcurrentHashMap.newKeySet());
+        when(deduplicator.acquire(anyCollection())).thenReturn(Single.just(acquired));
+        when(deduplicator.release(acquired)).thenReturn(Completable.complete());
+        when(fundsHoldService.commitHold("911111111", unheld.getTransactionId(), new BigDecimal("10")))
+                .thenReturn(Single.just(false));
+        when(fundsHoldService.commitHold("933333333", held.getTransactionId(), new BigDecimal("5")))
+                .thenReturn(Single.just(true));
+        when(walletRepository.findByPhoneNumberIn(anyCollection())).thenReturn(Flowable.just(alice, bob, carol));
+        when(stripedBalances.debit("911111111", new BigDecimal("10"))).thenReturn(Maybe.just(alice));
+        when(balanceEngine.credit(bob, new BigDecimal("15")))
+                .thenReturn(Maybe.error(new RuntimeException("Mongo down")), Maybe.just(bob));
+        when(walletCache.evict(any(YankiWallet.class))).thenReturn(Completable.complete());
+        when(yankiTransactionRepository.saveAll(anyIterable())).thenReturn(Flowable.empty());
+        consumer.settle(List.of(unheld, held), Map.of()).test().assertError(RuntimeException.class);
+        verify(deduplicator).release(acquired);
+        assertEquals(Set.of(ProcessedEvent.DEBITED), acquired.get(unheld.getTransactionId()));
+        assertEquals(Set.of(ProcessedEvent.DEBITED), acquired.get(held.getTransactionId()));
+        consumer.settle(List.of(unheld, held), Map.of()).test().assertComplete();
+        verify(stripedBalances, times(1)).debit("911111111", new BigDecimal("10"));
+        verify(fundsHoldService, times(1)).commitHold("933333333", held.getTransactionId(), new BigDecimal("5"));
+        verify(balanceEngine, times(2)).credit(bob, new BigDecimal("15"));
+        verify(yankiTransactionRepository, times(1)).saveAll(anyIterable());
+        verify(deduplicator).complete(acquired.keySet());
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldStoreCorrelationIdsFromRecordHeaders() {
+        YankiTransactionProcessedEvent traced = event("911111111", "922222222", "10", "SUCCESS");
+        acquireAll();
+        noHolds();
+        when(walletRepository.findByPhoneNumberIn(anyCollection())).thenReturn(Flowable.just(alice, bob));
+        when(stripedBalances.debit("911111111", new BigDecimal("10"))).thenReturn(Maybe.just(alice));
+        when(walletCache.evict(any(YankiWallet.class))).thenReturn(Completable.complete());
+        when(yankiTransactionRepository.saveAll(anyIterable())).thenReturn(Flowable.empty());
+        consumer.processYankiTransactionBatch(List.of(traced),
+                List.of(Map.of(TraceHeaders.KAFKA_CORRELATION_ID, "corr-1".getBytes(StandardCharsets.UTF_8))),
+                List.of(System.currentTimeMillis()));
+        ArgumentCaptor<Iterable<YankiTransaction>> saved = ArgumentCaptor.forClass(Iterable.class);
+        verify(yankiTransactionRepository).saveAll(saved.capture());
+        assertEquals("corr-1", ((List<YankiTransaction>) saved.getValue()).get(0).getCorrelationId());
+    }
+}
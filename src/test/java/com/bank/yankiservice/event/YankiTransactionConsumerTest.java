@@ -1,78 +1,298 @@
 package com.bank.yankiservice.event;
 
+import com.bank.yankiservice.metrics.YankiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.bank.yankiservice.cache.WalletCache;
 import com.bank.yankiservice.dto.transaction.YankiTransactionProcessedEvent;
+import com.bank.yankiservice.model.ProcessedEvent;
+import com.bank.yankiservice.model.StripeWatermark;
+import com.bank.yankiservice.model.WalletBalanceStripe;
 import com.bank.yankiservice.model.YankiTransaction;
 import com.bank.yankiservice.model.YankiWallet;
 import com.bank.yankiservice.repository.YankiTransactionRepository;
 import com.bank.yankiservice.repository.YankiWalletRepository;
+import com.bank.yankiservice.service.BalanceEngine;
+import com.bank.yankiservice.service.BalanceStreamService;
+import com.bank.yankiservice.service.FundsHoldService;
+import com.bank.yankiservice.service.StripedBalanceService;
+import com.bank.yankiservice.service.StripedBalanceServiceImpl;
+import com.bank.yankiservice.tracing.TraceHeaders;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.kafka.support.Acknowledgment;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class YankiTransactionConsumerTest {
-    @InjectMocks
+    private static final String TOPIC = "yanki.transaction.processed";
     private YankiTransactionConsumer consumer;
     @Mock
     private YankiWalletRepository walletRepository;
     @Mock
     private YankiTransactionRepository yankiTransactionRepository;
+    @Mock
+    private WalletCache walletCache;
+    @Mock
+    private SettlementDeduplicator deduplicator;
+    @Mock
+    private FundsHoldService fundsHoldService;
+    @Mock
+    private BalanceStreamService balanceStreamService;
+    @Mock
+    private BalanceEngine balanceEngine;
+    @Mock
+    private KafkaListenerEndpointRegistry listenerRegistry;
+    @Mock
+    private Acknowledgment acknowledgment;
     private YankiTransactionProcessedEvent transactionEvent;
+    private YankiWallet senderWallet;
+    private YankiWallet receiverWallet;
+    private SimpleMeterRegistry registry;
     @BeforeEach
     void setUp() {
+        registry = new SimpleMeterRegistry();
+        YankiMetrics metrics = new YankiMetrics(registry);
+        StripedBalanceService stripedBalances = new StripedBalanceServiceImpl(walletRepository, walletCache, metrics,
+                false, 8, 600);
+        consumer = new YankiTransactionConsumer(yankiTransactionRepository, walletCache, deduplicator,
+                fundsHoldService, balanceStreamService, stripedBalances, balanceEngine,
+                metrics, listenerRegistry, 4, 16);
+        lenient().when(balanceEngine.execute(anyString(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<Completable>>getArgument(1).get());
+        lenient().when(balanceEngine.credit(any(YankiWallet.class), any(BigDecimal.class)))
+                .thenAnswer(invocation -> stripedBalances.credit(invocation.getArgument(0), invocation.getArgument(1)));
+        lenient().when(deduplicator.complete(anyCollection())).thenReturn(Completable.complete());
+        lenient().when(deduplicator.step(any(), anySet(), anyString(), any())).thenCallRealMethod();
+        lenient().when(deduplicator.recordStep(anyCollection(), anyString())).thenReturn(Completable.complete());
+        consumer.start();
         transactionEvent = new YankiTransactionProcessedEvent(
-                null, "999999999", "888888888", new BigDecimal("50.00"), "SUCCESS", null, Instant.now()
+                "tx-1", "999999999", "888888888", new BigDecimal("50.00"), "SUCCESS", null, Instant.now()
         );
-    }
-    @Test
-    void shouldProcessTransactionAndUpdateBalances() {
-        YankiWallet senderWallet = new YankiWallet();
+        senderWallet = new YankiWallet();
         senderWallet.setPhoneNumber("999999999");
         senderWallet.setBalance(new BigDecimal("100.00"));
-        YankiWallet receiverWallet = new YankiWallet();
+        receiverWallet = new YankiWallet();
         receiverWallet.setPhoneNumber("888888888");
         receiverWallet.setBalance(new BigDecimal("20.00"));
-        when(walletRepository.findByPhoneNumber("999999999"))
+    }
+    @AfterEach
+    void tearDown() {
+        consumer.stop();
+    }
+    @Test
+    void shouldProcessTransactionAndUpdateBalances() throws InterruptedException {
+        when(deduplicator.acquire("tx-1")).thenReturn(Maybe.just(ConcurrentHashMap.newKeySet()));
+        when(fundsHoldService.commitHold("999999999", "tx-1", new BigDecimal("50.00"))).thenReturn(Single.just(false));
+        when(walletCache.findByPhoneNumber("999999999"))
+                .thenReturn(Maybe.just(senderWallet));
+        when(walletCache.findByPhoneNumber("888888888"))
+                .thenReturn(Maybe.just(receiverWallet));
+        when(walletRepository.debitBalance("999999999", new BigDecimal("50.00")))
                 .thenReturn(Maybe.just(senderWallet));
-        when(walletRepository.findByPhoneNumber("888888888"))
+        when(walletRepository.creditBalance("888888888", new BigDecimal("50.00")))
                 .thenReturn(Maybe.just(receiverWallet));
-        when(walletRepository.update(any(YankiWallet.class)))
+        when(walletCache.evict(any(YankiWallet.class)))
                 .thenReturn(Completable.complete());
         when(yankiTransactionRepository.save(any(YankiTransaction.class)))
                 .thenReturn(Single.just(new YankiTransaction()));
-        consumer.processYankiTransactionProcessed(transactionEvent);
-        verify(walletRepository, times(1)).update(senderWallet);
-        verify(walletRepository, times(1)).update(receiverWallet);
+        consumer.processYankiTransactionProcessed(transactionEvent, Map.of(), null,
+                KafkaRecords.metadata("yanki.transaction.processed"), acknowledgment);
+        verify(walletRepository, times(1)).debitBalance("999999999", new BigDecimal("50.00"));
+        verify(walletRepository, times(1)).creditBalance("888888888", new BigDecimal("50.00"));
+        verify(walletCache, times(1)).evict(senderWallet);
+        verify(walletCache, times(1)).evict(receiverWallet);
+        verify(balanceStreamService).publish(senderWallet);
+        verify(balanceStreamService).publish(receiverWallet);
         verify(yankiTransactionRepository, times(1)).save(any(YankiTransaction.class));
+        verify(deduplicator).complete(List.of("tx-1"));
+        verify(acknowledgment).acknowledge();
     }
     @Test
-    void shouldProcessTransactionWithDebitCardSender() {
-        YankiWallet senderWallet = new YankiWallet();
-        senderWallet.setPhoneNumber("999999999");
-        senderWallet.setBalance(new BigDecimal("100.00"));
+    void shouldCommitHeldFundsInsteadOfDebitingSender() throws InterruptedException {
+        when(deduplicator.acquire("tx-1")).thenReturn(Maybe.just(ConcurrentHashMap.newKeySet()));
+        when(fundsHoldService.commitHold("999999999", "tx-1", new BigDecimal("50.00"))).thenReturn(Single.just(true));
+        when(walletCache.findByPhoneNumber("999999999"))
+                .thenReturn(Maybe.just(senderWallet));
+        when(walletCache.findByPhoneNumber("888888888"))
+                .thenReturn(Maybe.just(receiverWallet));
+        when(walletRepository.creditBalance("888888888", new BigDecimal("50.00")))
+                .thenReturn(Maybe.just(receiverWallet));
+        when(walletCache.evict(receiverWallet))
+                .thenReturn(Completable.complete());
+        when(yankiTransactionRepository.save(any(YankiTransaction.class)))
+                .thenReturn(Single.just(new YankiTransaction()));
+        consumer.processYankiTransactionProcessed(transactionEvent, Map.of(), null,
+                KafkaRecords.metadata("yanki.transaction.processed"), acknowledgment);
+        verify(walletRepository, never()).debitBalance(anyString(), any(BigDecimal.class));
+        verify(walletRepository, times(1)).creditBalance("888888888", new BigDecimal("50.00"));
+        verify(yankiTransactionRepository, times(1)).save(any(YankiTransaction.class));
+    }
+    @Test
+    void shouldProcessTransactionWithDebitCardSender() throws InterruptedException {
         senderWallet.setLinkedCard("card-123");
-        YankiWallet receiverWallet = new YankiWallet();
-        receiverWallet.setPhoneNumber("888888888");
-        receiverWallet.setBalance(new BigDecimal("20.00"));
-        when(walletRepository.findByPhoneNumber("999999999"))
+        when(deduplicator.acquire("tx-1")).thenReturn(Maybe.just(ConcurrentHashMap.newKeySet()));
+        when(walletCache.findByPhoneNumber("999999999"))
                 .thenReturn(Maybe.just(senderWallet));
-        when(walletRepository.findByPhoneNumber("888888888"))
+        when(walletCache.findByPhoneNumber("888888888"))
+                .thenReturn(Maybe.just(receiverWallet));
+        when(walletRepository.creditBalance("888888888", new BigDecimal("50.00")))
                 .thenReturn(Maybe.just(receiverWallet));
-        when(walletRepository.update(receiverWallet))
+        when(walletCache.evict(receiverWallet))
                 .thenReturn(Completable.complete());
         when(yankiTransactionRepository.save(any(YankiTransaction.class)))
                 .thenReturn(Single.just(new YankiTransaction()));
-        consumer.processYankiTransactionProcessed(transactionEvent);
-        verify(walletRepository, times(1)).update(receiverWallet);
-        verify(walletRepository, never()).update(senderWallet);
+        consumer.processYankiTransactionProcessed(transactionEvent, Map.of(), null,
+                KafkaRecords.metadata("yanki.transaction.processed"), acknowledgment);
+        verify(walletRepository, times(1)).creditBalance("888888888", new BigDecimal("50.00"));
+        verify(walletRepository, never()).debitBalance(anyString(), any(BigDecimal.class));
+        verify(walletCache, times(1)).evict(receiverWallet);
+        verify(yankiTransactionRepository, times(1)).save(any(YankiTransaction.class));
+    }
+    @Test
+    void shouldNotCreditReceiver_whenSenderDebitIsRejected() throws InterruptedException {
+        when(deduplicator.acquire("tx-1")).thenReturn(Maybe.just(ConcurrentHashMap.newKeySet()));
+        when(fundsHoldService.commitHold("999999999", "tx-1", new BigDecimal("50.00"))).thenReturn(Single.just(false));
+        when(deduplicator.release(Map.of("tx-1", Set.of()))).thenReturn(Completable.complete());
+        when(walletCache.findByPhoneNumber("999999999"))
+                .thenReturn(Maybe.just(senderWallet));
+        when(walletCache.findByPhoneNumber("888888888"))
+                .thenReturn(Maybe.just(receiverWallet));
+        when(walletRepository.debitBalance("999999999", new BigDecimal("50.00")))
+                .thenReturn(Maybe.empty());
+        when(walletRepository.findByPhoneNumber("999999999")).thenReturn(Maybe.just(senderWallet));
+        consumer.processYankiTransactionProcessed(transactionEvent, Map.of(), null,
+                KafkaRecords.metadata("yanki.transaction.processed"), acknowledgment);
+        verify(walletCache, never()).evict(any(YankiWallet.class));
+        verify(deduplicator).release(Map.of("tx-1", Set.of()));
+        verify(deduplicator, never()).complete(anyCollection());
+        verify(yankiTransactionRepository, never()).save(any(YankiTransaction.class));
+    }
+    @Test
+    void shouldSweepSenderStripes_whenDebitDoesNotFitTheWalletBalance() throws InterruptedException {
+        YankiWallet striped = senderWallet.toBuilder().id("w-1").balance(new BigDecimal("20.00")).balanceStripes(1)
+                .stripeWatermarks(List.of(StripeWatermark.builder().slot(0).swept(BigDecimal.ZERO).build()))
+                .build();
+        YankiWallet swept = striped.toBuilder().balance(new BigDecimal("60.00"))
+                .stripeWatermarks(List.of(StripeWatermark.builder().slot(0).swept(new BigDecimal("40.00")).build()))
+                .build();
+        WalletBalanceStripe stripe = WalletBalanceStripe.builder().id(WalletBalanceStripe.idOf("w-1", 0))
+                .walletId("w-1").slot(0).credited(new BigDecimal("40.00")).build();
+        when(deduplicator.acquire("tx-1")).thenReturn(Maybe.just(ConcurrentHashMap.newKeySet()));
+        when(fundsHoldService.commitHold("999999999", "tx-1", new BigDecimal("50.00"))).thenReturn(Single.just(false));
+        when(walletCache.findByPhoneNumber("999999999")).thenReturn(Maybe.just(striped));
+        when(walletCache.findByPhoneNumber("888888888")).thenReturn(Maybe.just(receiverWallet));
+        when(walletRepository.debitBalance("999999999", new BigDecimal("50.00")))
+                .thenReturn(Maybe.empty(), Maybe.just(swept));
+        when(walletRepository.findByPhoneNumber("999999999")).thenReturn(Maybe.just(striped));
+        when(walletRepository.findStripes("w-1", 1)).thenReturn(Flowable.just(stripe));
+        when(walletRepository.sweepStripe("w-1", 0, BigDecimal.ZERO, new BigDecimal("40.00")))
+                .thenReturn(Maybe.just(swept));
+        when(walletRepository.creditBalance("888888888", new BigDecimal("50.00")))
+                .thenReturn(Maybe.just(receiverWallet));
+        when(walletCache.evict(any(YankiWallet.class))).thenReturn(Completable.complete());
+        when(yankiTransactionRepository.save(any(YankiTransaction.class)))
+                .thenReturn(Single.just(new YankiTransaction()));
+        consumer.processYankiTransactionProcessed(transactionEvent, Map.of(), null,
+                KafkaRecords.metadata("yanki.transaction.processed"), acknowledgment);
+        InOrder inOrder = inOrder(walletRepository);
+        inOrder.verify(walletRepository).debitBalance("999999999", new BigDecimal("50.00"));
+        inOrder.verify(walletRepository).sweepStripe("w-1", 0, BigDecimal.ZERO, new BigDecimal("40.00"));
+        inOrder.verify(walletRepository).debitBalance("999999999", new BigDecimal("50.00"));
+        verify(balanceStreamService).publish(swept);
+        verify(acknowledgment).acknowledge();
+    }
+    @Test
+    void shouldDebitSenderOnce_whenCreditFailsAfterTheHoldCommitAndTheRecordIsRedelivered() {
+        ConsumerSeekCallback callback = mock(ConsumerSeekCallback.class);
+        consumer.registerSeekCallback(callback);
+        consumer.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 5L), callback);
+        Set<String> landed = ConcurrentHashMap.newKeySet();
+        when(deduplicator.acquire("tx-1")).thenReturn(Maybe.just(landed));
+        when(deduplicator.release(Map.of("tx-1", Set.of(ProcessedEvent.DEBITED)))).thenReturn(Completable.complete());
+        when(fundsHoldService.commitHold("999999999", "tx-1", new BigDecimal("50.00")))
+                .thenReturn(Single.just(true), Single.just(false));
+        when(walletCache.findByPhoneNumber("999999999")).thenReturn(Maybe.just(senderWallet));
+        when(walletCache.findByPhoneNumber("888888888")).thenReturn(Maybe.just(receiverWallet));
+        when(walletRepository.creditBalance("888888888", new BigDecimal("50.00")))
+                .thenReturn(Maybe.error(new RuntimeException("Mongo down")), Maybe.just(receiverWallet));
+        when(walletCache.evict(receiverWallet)).thenReturn(Completable.complete());
+        when(yankiTransactionRepository.save(any(YankiTransaction.class)))
+                .thenReturn(Single.just(new YankiTransaction()));
+        Acknowledgment firstDelivery = mock(Acknowledgment.class);
+        consumer.processYankiTransactionProcessed(transactionEvent, Map.of(), null,
+                KafkaRecords.metadata(TOPIC, 0, 5), firstDelivery);
+        verify(callback).seek(TOPIC, 0, 5);
+        consumer.processYankiTransactionProcessed(transactionEvent, Map.of(), null,
+                KafkaRecords.metadata(TOPIC, 0, 5), acknowledgment);
+        verify(fundsHoldService, times(1)).commitHold("999999999", "tx-1", new BigDecimal("50.00"));
+        verify(walletRepository, never()).debitBalance(anyString(), any(BigDecimal.class));
+        verify(walletRepository, times(2)).creditBalance("888888888", new BigDecimal("50.00"));
         verify(yankiTransactionRepository, times(1)).save(any(YankiTransaction.class));
+        verify(firstDelivery, never()).acknowledge();
+        verify(acknowledgment).acknowledge();
+        assertEquals(Set.of(ProcessedEvent.DEBITED, ProcessedEvent.CREDITED, ProcessedEvent.RECORDED), landed);
+    }
+    @Test
+    void shouldSkipAlreadySettledTransaction() throws InterruptedException {
+        when(deduplicator.acquire("tx-1")).thenReturn(Maybe.empty());
+        consumer.processYankiTransactionProcessed(transactionEvent, Map.of(), null,
+                KafkaRecords.metadata("yanki.transaction.processed"), acknowledgment);
+        verifyNoInteractions(walletCache, walletRepository, yankiTransactionRepository);
+    }
+    @Test
+    void shouldReleaseHeldFundsOfFailedTransactions() throws InterruptedException {
+        transactionEvent.setStatus("FAILED");
+        when(fundsHoldService.releaseHold("999999999", "tx-1", new BigDecimal("50.00"))).thenReturn(Single.just(true));
+        consumer.processYankiTransactionProcessed(transactionEvent, Map.of(), null,
+                KafkaRecords.metadata("yanki.transaction.processed"), acknowledgment);
+        verify(fundsHoldService).releaseHold("999999999", "tx-1", new BigDecimal("50.00"));
+        verifyNoInteractions(walletCache, walletRepository, yankiTransactionRepository, deduplicator);
+    }
+    @Test
+    void shouldStoreCorrelationIdAndRecordStageLatencies() throws InterruptedException {
+        senderWallet.setLinkedCard("card-123");
+        when(deduplicator.acquire("tx-1")).thenReturn(Maybe.just(ConcurrentHashMap.newKeySet()));
+        when(walletCache.findByPhoneNumber("999999999")).thenReturn(Maybe.just(senderWallet));
+        when(walletCache.findByPhoneNumber("888888888")).thenReturn(Maybe.just(receiverWallet));
+        when(walletRepository.creditBalance("888888888", new BigDecimal("50.00")))
+                .thenReturn(Maybe.just(receiverWallet));
+        when(walletCache.evict(receiverWallet)).thenReturn(Completable.complete());
+        when(yankiTransactionRepository.save(any(YankiTransaction.class)))
+                .thenReturn(Single.just(new YankiTransaction()));
+        long now = System.currentTimeMillis();
+        Map<String, Object> headers = Map.of(
+                TraceHeaders.KAFKA_CORRELATION_ID, "corr-1".getBytes(StandardCharsets.UTF_8),
+                TraceHeaders.KAFKA_REQUESTED_AT, Long.toString(now - 300).getBytes(StandardCharsets.UTF_8),
+                TraceHeaders.KAFKA_PUBLISHED_AT, Long.toString(now - 200).getBytes(StandardCharsets.UTF_8));
+        consumer.processYankiTransactionProcessed(transactionEvent, headers, now - 100,
+                KafkaRecords.metadata("yanki.transaction.processed"), acknowledgment);
+        ArgumentCaptor<YankiTransaction> saved = ArgumentCaptor.forClass(YankiTransaction.class);
+        verify(yankiTransactionRepository).save(saved.capture());
+        assertEquals("corr-1", saved.getValue().getCorrelationId());
+        for (String stage : List.of(YankiMetrics.STAGE_EXTERNAL, YankiMetrics.STAGE_DELIVERY,
+                YankiMetrics.STAGE_SETTLEMENT, YankiMetrics.STAGE_TOTAL)) {
+            assertEquals(1, registry.find(YankiMetrics.TRANSACTION_STAGE).tag("stage", stage).timer().count());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,88 @@
+package com.bank.yankiservice.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class YankiMetricsTest {
+    private SimpleMeterRegistry registry;
+    private YankiMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new YankiMetrics(registry);
+    }
+    private Timer timer(String name, String outcome, String exception) {
+        return registry.find(name).tags("outcome", outcome, "exception", exception).timer();
+    }
+    @Test
+    void single_shouldRecordOutcomeOnlyWhenSubscribed() {
+        Single<String> call = Single.just("ok").compose(metrics.service("validateUser").single());
+        assertNull(registry.find(YankiMetrics.SERVICE_CALLS).timer());
+        call.test().assertValue("ok");
+        call.test().assertValue("ok");
+        Timer timer = timer(YankiMetrics.SERVICE_CALLS, YankiMetrics.SUCCESS, "none");
+        assertEquals(2, timer.count());
+        assertEquals("validateUser", timer.getId().getTag("method"));
+    }
+    @Test
+    void single_shouldTagErrorsWithExceptionType() {
+        Single.error(new IllegalStateException("boom"))
+                .compose(metrics.service("registerWallet").single())
+                .test()
+                .assertErrorMessage("boom");
+        assertEquals(1, timer(YankiMetrics.SERVICE_CALLS, YankiMetrics.ERROR, "IllegalStateException").count());
+    }
+    @Test
+    void maybe_shouldDistinguishEmptyFromSuccess() {
+        Maybe.empty().compose(metrics.service("getWalletById").maybe()).test().assertComplete();
+        Maybe.just(1).compose(metrics.service("getWalletById").maybe()).test().assertValue(1);
+        assertEquals(1, timer(YankiMetrics.SERVICE_CALLS, YankiMetrics.EMPTY, "none").count());
+        assertEquals(1, timer(YankiMetrics.SERVICE_CALLS, YankiMetrics.SUCCESS, "none").count());
+    }
+    @Test
+    void completable_shouldRecordCancellationOnce() {
+        TestObserver<Void> observer = Completable.never()
+                .compose(metrics.listener("yanki.transaction.processed").completable())
+                .test();
+        observer.dispose();
+        observer.dispose();
+        Timer timer = timer(YankiMetrics.LISTENER_PROCESSING, YankiMetrics.CANCELLED, "none");
+        assertEquals(1, timer.count());
+        assertEquals("yanki.transaction.processed", timer.getId().getTag("topic"));
+    }
+    @Test
+    void flowable_shouldRecordCompletion() {
+        Flowable.range(1, 3).compose(metrics.service("streamHistory").flowable()).test().assertValueCount(3);
+        assertEquals(1, timer(YankiMetrics.SERVICE_CALLS, YankiMetrics.SUCCESS, "none").count());
+    }
+    @Test
+    void recordBatchSize_shouldFeedDistributionSummary() {
+        metrics.recordBatchSize("yanki.transaction.processed", 40);
+        metrics.recordBatchSize("yanki.transaction.processed", 60);
+        assertEquals(100.0, registry.find(YankiMetrics.LISTENER_BATCH_SIZE).summary().totalAmount());
+    }
+    @Test
+    void recordStage_shouldSkipMissingAndNegativeSpans() {
+        Instant now = Instant.now();
+        metrics.recordStage(YankiMetrics.STAGE_EXTERNAL, now.minusMillis(250), now);
+        metrics.recordStage(YankiMetrics.STAGE_EXTERNAL, now, now.minusMillis(5));
+        metrics.recordStage(YankiMetrics.STAGE_EXTERNAL, null, now);
+        Timer timer = registry.find(YankiMetrics.TRANSACTION_STAGE).tag("stage", YankiMetrics.STAGE_EXTERNAL).timer();
+        assertEquals(1, timer.count());
+        assertEquals(250.0, timer.totalTime(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,112 @@
+package com.bank.yankiservice.ratelimit;
+
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.Single;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RateLimitFilterTest {
+    private static final List<String> PATHS = List.of("/api/yanki/login", "/api/yanki/transaction");
+    private RateLimiter rateLimiter;
+    private YankiMetrics metrics;
+    private WebFilterChain chain;
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        rateLimiter = mock(RateLimiter.class);
+        metrics = mock(YankiMetrics.class);
+        chain = mock(WebFilterChain.class);
+        when(chain.filter(any())).thenReturn(Mono.empty());
+        filter = new RateLimitFilter(rateLimiter, metrics, new ObjectMapper(), true, PATHS, false);
+    }
+    private MockServerWebExchange exchange(String path, String forwardedFor) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.post(path)
+                .remoteAddress(new InetSocketAddress("10.0.0.7", 40000));
+        if (forwardedFor != null) {
+            request.header("X-Forwarded-For", forwardedFor);
+        }
+        return MockServerWebExchange.from(request);
+    }
+    @Test
+    void filter_shouldIgnorePathsOutsideTheLimitedSet() {
+        MockServerWebExchange exchange = exchange("/api/yanki/wallet", null);
+        filter.filter(exchange, chain).block();
+        verify(chain).filter(exchange);
+        verify(rateLimiter, never()).tryAcquireForIp(any());
+    }
+    @Test
+    void filter_shouldPassAllowedAnonymousRequests() {
+        when(rateLimiter.tryAcquireForIp("10.0.0.7")).thenReturn(Single.just(RateLimitDecision.allow(100, 99)));
+        MockServerWebExchange exchange = exchange("/api/yanki/login", null);
+        filter.filter(exchange, chain).block();
+        verify(chain).filter(exchange);
+        verify(rateLimiter, never()).tryAcquireForUser(any());
+    }
+    @Test
+    void filter_shouldRejectWith429WhenIpBucketIsEmpty() {
+        when(rateLimiter.tryAcquireForIp("10.0.0.7"))
+                .thenReturn(Single.just(RateLimitDecision.deny(100, Duration.ofMillis(1200))));
+        MockServerWebExchange exchange = exchange("/api/yanki/login", null);
+        filter.filter(exchange, chain).block();
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exchange.getResponse().getStatusCode());
+        assertEquals("2", headers.getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals("100", headers.getFirst(RateLimitFilter.LIMIT_HEADER));
+        assertEquals("0", headers.getFirst(RateLimitFilter.REMAINING_HEADER));
+        assertTrue(exchange.getResponse().getBodyAsString().block().contains("\"status\":429"));
+        verify(chain, never()).filter(any());
+        verify(metrics).recordRateLimited("ip");
+    }
+    @Test
+    void filter_shouldRejectWhenUserBucketIsEmpty() {
+        when(rateLimiter.tryAcquireForIp("10.0.0.7")).thenReturn(Single.just(RateLimitDecision.allow(100, 99)));
+        when(rateLimiter.tryAcquireForUser("987654321"))
+                .thenReturn(Single.just(RateLimitDecision.deny(20, Duration.ofMillis(200))));
+        Principal principal = new UsernamePasswordAuthenticationToken("987654321", null, Collections.emptyList());
+        ServerWebExchange exchange = exchange("/api/yanki/transaction", null).mutate()
+                .principal(Mono.just(principal))
+                .build();
+        filter.filter(exchange, chain).block();
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exchange.getResponse().getStatusCode());
+        assertEquals("1", exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verify(chain, never()).filter(any());
+        verify(metrics).recordRateLimited("user");
+    }
+    @Test
+    void filter_shouldUseForwardedForOnlyWhenTrusted() {
+        when(rateLimiter.tryAcquireForIp(any())).thenReturn(Single.just(RateLimitDecision.allow(100, 99)));
+        filter.filter(exchange("/api/yanki/login", "203.0.113.9, 10.0.0.1"), chain).block();
+        verify(rateLimiter).tryAcquireForIp("10.0.0.7");
+
+        RateLimitFilter trusting = new RateLimitFilter(rateLimiter, metrics, new ObjectMapper(), true, PATHS, true);
+        MockServerWebExchange exchange = exchange("/api/yanki/login", "203.0.113.9, 10.0.0.1");
+        trusting.filter(exchange, chain).block();
+        verify(rateLimiter).tryAcquireForIp("203.0.113.9");
+        assertNull(exchange.getResponse().getStatusCode());
+    }
+}
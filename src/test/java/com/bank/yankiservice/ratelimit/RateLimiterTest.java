@@ -0,0 +1,58 @@
+package com.bank.yankiservice.ratelimit;
+
+import io.reactivex.Single;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RateLimiterTest {
+    @Test
+    void tryAcquire_shouldUseLocalBucketsWithoutRedis() {
+        RateLimiter rateLimiter = new RateLimiter(Optional.empty(), 2, 1, 1, 1, 100);
+        rateLimiter.tryAcquireForIp("10.0.0.1").test().assertValue(RateLimitDecision::isAllowed);
+        rateLimiter.tryAcquireForIp("10.0.0.1").test().assertValue(RateLimitDecision::isAllowed);
+        rateLimiter.tryAcquireForIp("10.0.0.1").test().assertValue(decision -> !decision.isAllowed());
+        rateLimiter.tryAcquireForIp("10.0.0.2").test().assertValue(RateLimitDecision::isAllowed);
+    }
+    @Test
+    void tryAcquire_shouldKeepIpAndUserBucketsApart() {
+        RateLimiter rateLimiter = new RateLimiter(Optional.empty(), 1, 1, 1, 1, 100);
+        rateLimiter.tryAcquireForIp("987654321").test().assertValue(RateLimitDecision::isAllowed);
+        rateLimiter.tryAcquireForUser("987654321").test().assertValue(RateLimitDecision::isAllowed);
+    }
+    @Test
+    void tryAcquire_shouldDeferToRedisWhenLocalBucketAllows() {
+        RedisRateLimitStore store = mock(RedisRateLimitStore.class);
+        when(store.tryConsume(eq("987654321"), any()))
+                .thenReturn(Single.just(RateLimitDecision.deny(20, Duration.ofSeconds(3))));
+        RateLimiter rateLimiter = new RateLimiter(Optional.of(store), 100, 20, 20, 5, 100);
+        rateLimiter.tryAcquireForUser("987654321").test()
+                .assertValue(decision -> !decision.isAllowed() && decision.getRetryAfter().getSeconds() == 3);
+    }
+    @Test
+    void tryAcquire_shouldSkipRedisWhenLocalBucketDenies() {
+        RedisRateLimitStore store = mock(RedisRateLimitStore.class);
+        when(store.tryConsume(any(), any())).thenReturn(Single.just(RateLimitDecision.allow(1, 0)));
+        RateLimiter rateLimiter = new RateLimiter(Optional.of(store), 1, 1, 1, 1, 100);
+        rateLimiter.tryAcquireForIp("10.0.0.1").test().assertValue(RateLimitDecision::isAllowed);
+        rateLimiter.tryAcquireForIp("10.0.0.1").test().assertValue(decision -> !decision.isAllowed());
+        verify(store, times(1)).tryConsume(eq("10.0.0.1"), any());
+    }
+    @Test
+    void tryAcquire_shouldFallBackToLocalDecisionWhenRedisFails() {
+        RedisRateLimitStore store = mock(RedisRateLimitStore.class);
+        when(store.tryConsume(any(), any())).thenReturn(Single.error(new IllegalStateException("redis down")));
+        RateLimiter rateLimiter = new RateLimiter(Optional.of(store), 5, 1, 5, 1, 100);
+        rateLimiter.tryAcquireForIp("10.0.0.1").test()
+                .assertNoErrors()
+                .assertValue(decision -> decision.isAllowed() && decision.getRemaining() == 4);
+    }
+}
@@ -0,0 +1,46 @@
+package com.bank.yankiservice.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+    private static final long START = TimeUnit.SECONDS.toNanos(10);
+
+    @Test
+    void tryConsume_shouldAllowBurstUpToCapacityThenDeny() {
+        TokenBucket bucket = new RateLimitPolicy("ip", 3, 1).newBucket(START);
+        assertEquals(2, bucket.tryConsume(START).getRemaining());
+        assertEquals(1, bucket.tryConsume(START).getRemaining());
+        assertEquals(0, bucket.tryConsume(START).getRemaining());
+        RateLimitDecision denied = bucket.tryConsume(START);
+        assertFalse(denied.isAllowed());
+        assertEquals(3, denied.getLimit());
+        assertEquals(Duration.ofSeconds(1), denied.getRetryAfter());
+    }
+    @Test
+    void tryConsume_shouldRefillProportionallyToElapsedTime() {
+        TokenBucket bucket = new RateLimitPolicy("user", 2, 4).newBucket(START);
+        bucket.tryConsume(START);
+        bucket.tryConsume(START);
+        assertFalse(bucket.tryConsume(START).isAllowed());
+        assertTrue(bucket.tryConsume(START + TimeUnit.MILLISECONDS.toNanos(250)).isAllowed());
+        assertFalse(bucket.tryConsume(START + TimeUnit.MILLISECONDS.toNanos(250)).isAllowed());
+    }
+    @Test
+    void tryConsume_shouldNotRefillAboveCapacity() {
+        TokenBucket bucket = new RateLimitPolicy("ip", 2, 10).newBucket(START);
+        assertEquals(1, bucket.tryConsume(START + TimeUnit.MINUTES.toNanos(5)).getRemaining());
+    }
+    @Test
+    void policy_shouldRejectNonPositiveSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimitPolicy("ip", 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimitPolicy("ip", 1, 0));
+    }
+}
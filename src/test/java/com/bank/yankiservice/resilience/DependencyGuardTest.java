@@ -0,0 +1,131 @@
+package com.bank.yankiservice.resilience;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.SingleSubject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class DependencyGuardTest {
+    private CircuitBreaker circuitBreaker;
+    private Bulkhead bulkhead;
+    private DependencyGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreaker = CircuitBreaker.of("mongo", CircuitBreakerConfig.custom()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .failureRateThreshold(50)
+                .ignoreExceptions(DuplicateKeyException.class)
+                .build());
+        bulkhead = Bulkhead.of("mongo", BulkheadConfig.custom()
+                .maxConcurrentCalls(1)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        guard = new DependencyGuard(circuitBreaker, bulkhead,
+                TimeLimiter.of(TimeLimiterConfig.custom().timeoutDuration(Duration.ofMillis(50)).build()));
+    }
+    @Test
+    void single_shouldRecordOutcomesAndReleaseBulkhead() {
+        Single.just("ok").compose(guard.single()).test().assertValue("ok");
+        Single.error(new IllegalStateException("boom")).compose(guard.single()).test()
+                .assertError(IllegalStateException.class);
+        assertEquals(1, circuitBreaker.getMetrics().getNumberOfSuccessfulCalls());
+        assertEquals(1, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+        assertEquals(1, bulkhead.getMetrics().getAvailableConcurrentCalls());
+    }
+    @Test
+    void maybe_shouldCountEmptyAsSuccess() {
+        Maybe.empty().compose(guard.maybe()).test().assertComplete();
+        assertEquals(1, circuitBreaker.getMetrics().getNumberOfSuccessfulCalls());
+    }
+    @Test
+    void completable_shouldNotCountIgnoredExceptionsAsFailures() {
+        Completable.error(new DuplicateKeyException("dup")).compose(guard.completable()).test()
+                .assertError(DuplicateKeyException.class);
+        assertEquals(0, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+    }
+    @Test
+    void shouldFailFastWithoutSubscribing_whenCircuitIsOpen() {
+        for (int i = 0; i < 4; i++) {
+            Completable.error(new IllegalStateException("down")).compose(guard.completable()).test();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, guard.getState());
+        boolean[] subscribed = {false};
+        Single.fromCallable(() -> subscribed[0] = true)
+                .compose(guard.single())
+                .test()
+                .assertError(error -> error instanceof DependencyUnavailableException
+                        && ((DependencyUnavailableException) error).isRejected());
+        assertFalse(subscribed[0]);
+    }
+    @Test
+    void shouldRejectWhenBulkheadIsFull_andReleaseOnDispose() {
+        SingleSubject<String> pending = SingleSubject.create();
+        Disposable inFlight = pending.compose(guard.single()).subscribe();
+        Single.just("second").compose(guard.single()).test()
+                .assertError(error -> ((DependencyUnavailableException) error).isRejected());
+        inFlight.dispose();
+        Single.just("third").compose(guard.single()).test().assertValue("third");
+        assertEquals(1, bulkhead.getMetrics().getAvailableConcurrentCalls());
+        assertEquals(1, circuitBreaker.getMetrics().getNumberOfBufferedCalls());
+    }
+    @Test
+    void shouldTranslateTimeoutsAndRecordThemAsFailures() {
+        Single.never().compose(guard.single()).test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertError(error -> error instanceof DependencyUnavailableException
+                        && error.getCause() instanceof TimeoutException
+                        && !((DependencyUnavailableException) error).isRejected());
+        assertEquals(1, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+    }
+    @Test
+    void untimed_shouldKeepCircuitAndBulkheadButNotTimeOut() throws InterruptedException {
+        SingleSubject<String> pending = SingleSubject.create();
+        TestObserver<String> write = pending.compose(guard.untimed().single()).test();
+        assertFalse(write.await(200, TimeUnit.MILLISECONDS));
+        write.assertNoErrors();
+        Single.just("second").compose(guard.single()).test()
+                .assertError(error -> ((DependencyUnavailableException) error).isRejected());
+        pending.onSuccess("done");
+        write.assertValue("done");
+        assertEquals(1, circuitBreaker.getMetrics().getNumberOfSuccessfulCalls());
+        assertEquals(1, bulkhead.getMetrics().getAvailableConcurrentCalls());
+    }
+    @Test
+    void flowable_shouldOnlyTimeTheFirstItem() {
+        Flowable.just(1L)
+                .concatWith(Flowable.timer(200, TimeUnit.MILLISECONDS))
+                .compose(guard.flowable())
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValues(1L, 0L)
+                .assertComplete();
+        Flowable.never()
+                .compose(guard.flowable())
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertError(DependencyUnavailableException.class);
+        assertEquals(1, circuitBreaker.getMetrics().getNumberOfSuccessfulCalls());
+        assertEquals(1, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+    }
+}
@@ -0,0 +1,118 @@
+package com.bank.yankiservice.resilience;
+
+import com.bank.yankiservice.model.YankiTransaction;
+import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.repository.ProcessedEventRepository;
+import com.bank.yankiservice.repository.YankiTransactionRepository;
+import com.bank.yankiservice.repository.YankiWalletRepository;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.subscribers.TestSubscriber;
+import io.reactivex.subjects.MaybeSubject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GuardedRepositoryPostProcessorTest {
+    private CircuitBreakerRegistry circuitBreakers;
+    private GuardedRepositoryPostProcessor postProcessor;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreakers = CircuitBreakerRegistry.ofDefaults();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("dependencyGuards", new DependencyGuards(circuitBreakers,
+                BulkheadRegistry.ofDefaults(),
+                TimeLimiterRegistry.of(TimeLimiterConfig.custom().timeoutDuration(Duration.ofMillis(50)).build())));
+        postProcessor = new GuardedRepositoryPostProcessor(beanFactory.getBeanProvider(DependencyGuards.class));
+    }
+    @Test
+    void shouldLeaveOtherBeansUntouched() {
+        Object bean = new Object();
+        assertSame(bean, postProcessor.postProcessAfterInitialization(bean, "other"));
+    }
+    @Test
+    void shouldRouteRepositoryCallsThroughMongoGuard() {
+        YankiWalletRepository repository = mock(YankiWalletRepository.class);
+        YankiWallet wallet = YankiWallet.builder().phoneNumber("987654321").build();
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.just(wallet));
+        YankiWalletRepository guarded = (YankiWalletRepository) postProcessor
+                .postProcessAfterInitialization(repository, "yankiWalletRepository");
+        guarded.findByPhoneNumber("987654321").test().assertValue(wallet);
+        assertEquals(1, circuitBreakers.circuitBreaker(DependencyGuards.MONGO).getMetrics()
+                .getNumberOfSuccessfulCalls());
+    }
+    @Test
+    void shouldFailFast_whenMongoCircuitIsOpen() {
+        YankiWalletRepository repository = mock(YankiWalletRepository.class);
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.fromCallable(() -> {
+            throw new IllegalStateException("should not be subscribed");
+        }));
+        YankiWalletRepository guarded = (YankiWalletRepository) postProcessor
+                .postProcessAfterInitialization(repository, "yankiWalletRepository");
+        circuitBreakers.circuitBreaker(DependencyGuards.MONGO).transitionToOpenState();
+        guarded.findByPhoneNumber("987654321").test()
+                .assertError(error -> error instanceof DependencyUnavailableException
+                        && ((DependencyUnavailableException) error).isRejected());
+        verify(repository).findByPhoneNumber("987654321");
+    }
+    @Test
+    void shouldNotTimeLimitNonIdempotentWrites() throws InterruptedException {
+        YankiWalletRepository repository = mock(YankiWalletRepository.class);
+        MaybeSubject<YankiWallet> debit = MaybeSubject.create();
+        when(repository.debitBalance("987654321", BigDecimal.TEN)).thenReturn(debit);
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.never());
+        YankiWalletRepository guarded = (YankiWalletRepository) postProcessor
+                .postProcessAfterInitialization(repository, "yankiWalletRepository");
+        TestObserver<YankiWallet> write = guarded.debitBalance("987654321", BigDecimal.TEN).test();
+        guarded.findByPhoneNumber("987654321").test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertError(DependencyUnavailableException.class);
+        assertFalse(write.await(100, TimeUnit.MILLISECONDS));
+        write.assertNoErrors();
+        debit.onComplete();
+        write.assertComplete();
+    }
+    @Test
+    void shouldNotTimeLimitInheritedSaveAll() throws InterruptedException {
+        YankiTransactionRepository repository = mock(YankiTransactionRepository.class);
+        List<YankiTransaction> transactions = List.of(new YankiTransaction());
+        PublishProcessor<YankiTransaction> saved = PublishProcessor.create();
+        when(repository.saveAll(transactions)).thenReturn(saved);
+        YankiTransactionRepository guarded = (YankiTransactionRepository) postProcessor
+                .postProcessAfterInitialization(repository, "yankiTransactionRepository");
+        TestSubscriber<YankiTransaction> write = guarded.saveAll(transactions).test();
+        assertFalse(write.await(200, TimeUnit.MILLISECONDS));
+        write.assertNoErrors();
+        saved.onComplete();
+        write.assertComplete();
+    }
+    @Test
+    void shouldGuardProcessedEventRepository() {
+        ProcessedEventRepository repository = mock(ProcessedEventRepository.class);
+        when(repository.markDone(List.of("tx-1"))).thenReturn(Completable.complete());
+        ProcessedEventRepository guarded = (ProcessedEventRepository) postProcessor
+                .postProcessAfterInitialization(repository, "processedEventRepository");
+        guarded.markDone(List.of("tx-1")).test().assertComplete();
+        assertEquals(1, circuitBreakers.circuitBreaker(DependencyGuards.MONGO).getMetrics()
+                .getNumberOfSuccessfulCalls());
+    }
+}
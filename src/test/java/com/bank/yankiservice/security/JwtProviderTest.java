@@ -0,0 +1,39 @@
+package com.bank.yankiservice.security;
+
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+class JwtProviderTest {
+    private static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef";
+    private JwtProvider jwtProvider;
+    @BeforeEach
+    void setUp() {
+        jwtProvider = new JwtProvider(SECRET, 60000, 100, 300);
+    }
+    @Test
+    void authenticate_shouldReturnSubjectOfValidToken() {
+        String token = jwtProvider.generateToken("987654321");
+        assertEquals("987654321", jwtProvider.authenticate(token));
+        assertEquals("987654321", jwtProvider.authenticate(token));
+        assertTrue(jwtProvider.validateToken(token));
+        assertEquals("987654321", jwtProvider.getUsernameFromToken(token));
+    }
+    @Test
+    void authenticate_shouldRejectTokenSignedWithAnotherKey() {
+        String token = new JwtProvider(SECRET.replace('0', '1'), 60000, 100, 300).generateToken("987654321");
+        assertNull(jwtProvider.authenticate(token));
+        assertFalse(jwtProvider.validateToken(token));
+        assertThrows(JwtException.class, () -> jwtProvider.getUsernameFromToken(token));
+    }
+    @Test
+    void authenticate_shouldRejectExpiredToken() {
+        JwtProvider shortLived = new JwtProvider(SECRET, -1000, 100, 300);
+        assertNull(shortLived.authenticate(shortLived.generateToken("987654321")));
+    }
+    @Test
+    void authenticate_shouldRejectMalformedToken() {
+        assertNull(jwtProvider.authenticate("not-a-token"));
+        assertNull(jwtProvider.authenticate(""));
+    }
+}
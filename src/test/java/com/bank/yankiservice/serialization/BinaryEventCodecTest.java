@@ -0,0 +1,101 @@
+package com.bank.yankiservice.serialization;
+
+import com.bank.yankiservice.dto.balance.BalanceUpdatedEvent;
+import com.bank.yankiservice.dto.bootcoin.KafkaValidationRequest;
+import com.bank.yankiservice.dto.cardlink.CardLinkRequestedEvent;
+import com.bank.yankiservice.dto.transaction.YankiTransactionEvent;
+import com.bank.yankiservice.dto.transaction.YankiTransactionProcessedEvent;
+import com.bank.yankiservice.dto.transactionbootcoin.TransactionResponse;
+import com.bank.yankiservice.dto.transactionbootcoin.YankiEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryEventCodecTest {
+    private final SchemaRegistry registry = new SchemaRegistry();
+    private final BinaryEventCodec codec = new BinaryEventCodec(registry);
+
+    private static YankiTransactionEvent transactionEvent() {
+        return new YankiTransactionEvent("5f0c6a8e-4b1d-4f7e-9a41-0f2b7c1d9e11", "987654321", "912345678", null,
+                "4111111111111111", new BigDecimal("150.75"));
+    }
+    @Test
+    void encode_shouldRoundTripEveryRegisteredEvent() {
+        YankiTransactionProcessedEvent processed = new YankiTransactionProcessedEvent("tx-1", "987654321",
+                "912345678", new BigDecimal("-0.01"), "FAILED", "Insufficient funds",
+                Instant.parse("2024-05-01T10:15:30.123456789Z"));
+        YankiEvent bootCoin = YankiEvent.builder()
+                .purchaseId("purchase-1")
+                .amount(new BigDecimal("12345678901234567890.123456"))
+                .totalAmountInPEN(BigDecimal.ZERO)
+                .buyerPhoneNumber("999888777")
+                .transactionType("BUY")
+                .build();
+        assertEquals(transactionEvent(), codec.decode(codec.encode(transactionEvent())));
+        assertEquals(processed, codec.decode(codec.encode(processed)));
+        assertEquals(bootCoin, codec.decode(codec.encode(bootCoin)));
+        assertEquals(new CardLinkRequestedEvent("987654321", "4111", "12345678", new BigDecimal("10.50")),
+                codec.decode(codec.encode(new CardLinkRequestedEvent("987654321", "4111", "12345678",
+                        new BigDecimal("10.50")))));
+        assertEquals(new KafkaValidationRequest("event-1", "12345678", "987654321", null),
+                codec.decode(codec.encode(new KafkaValidationRequest("event-1", "12345678", "987654321", null))));
+        BalanceUpdatedEvent balance = (BalanceUpdatedEvent) codec.decode(codec.encode(
+                new BalanceUpdatedEvent("account-1", new BigDecimal("1500.00"), "4111")));
+        assertEquals("account-1", balance.getAccountId());
+        assertEquals(new BigDecimal("1500.00"), balance.getNewBalance());
+        assertEquals("4111", balance.getCardNumber());
+    }
+    @Test
+    void encode_shouldBeSmallerThanJson() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        byte[] binary = codec.encode(transactionEvent());
+        byte[] json = objectMapper.writeValueAsString(transactionEvent()).getBytes(StandardCharsets.UTF_8);
+        assertTrue(BinaryEventCodec.isBinary(binary));
+        assertFalse(BinaryEventCodec.isBinary(json));
+        assertTrue(binary.length * 2 < json.length, binary.length + " bytes vs " + json.length + " bytes of JSON");
+    }
+    @Test
+    void decode_shouldResolveOlderWriterSchemaByFieldName() {
+        EventSchema<YankiTransactionEvent> legacy = EventSchema
+                .builder(100, YankiTransactionEvent.class, 0, YankiTransactionEvent::new)
+                .string("transactionId", YankiTransactionEvent::getTransactionId,
+                        YankiTransactionEvent::setTransactionId)
+                .string("channel", event -> "APP", (event, channel) -> { })
+                .decimal("amount", YankiTransactionEvent::getAmount, YankiTransactionEvent::setAmount)
+                .build();
+        registry.register(legacy);
+        BinaryEncoder encoder = new BinaryEncoder(16);
+        encoder.writeByte(BinaryEventCodec.MAGIC_BYTE);
+        encoder.writeFixedInt(legacy.getId());
+        legacy.write(transactionEvent(), encoder);
+        YankiTransactionEvent decoded = (YankiTransactionEvent) codec.decode(encoder.toByteArray());
+        assertEquals("5f0c6a8e-4b1d-4f7e-9a41-0f2b7c1d9e11", decoded.getTransactionId());
+        assertEquals(new BigDecimal("150.75"), decoded.getAmount());
+        assertNull(decoded.getSenderPhoneNumber());
+        assertEquals(EventSchemas.TRANSACTION_REQUESTED, registry.latest(YankiTransactionEvent.class));
+    }
+    @Test
+    void decode_shouldRejectUnknownSchemaAndTruncatedPayloads() {
+        byte[] encoded = codec.encode(transactionEvent());
+        byte[] unknown = encoded.clone();
+        unknown[4] = 99;
+        assertThrows(SerializationException.class, () -> codec.decode(unknown));
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 3);
+        assertThrows(SerializationException.class, () -> codec.decode(truncated));
+    }
+    @Test
+    void supports_shouldOnlyCoverRegisteredEvents() {
+        assertTrue(codec.supports(transactionEvent()));
+        assertFalse(codec.supports(new TransactionResponse()));
+        assertFalse(codec.supports(null));
+        assertThrows(SerializationException.class, () -> codec.encode(new TransactionResponse()));
+    }
+}
@@ -0,0 +1,42 @@
+package com.bank.yankiservice.serialization;
+
+import com.bank.yankiservice.dto.bootcoin.KafkaValidationRequest;
+import com.bank.yankiservice.dto.bootcoin.KafkaValidationResponse;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Serializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BinaryEventSerializerTest {
+    private final BinaryEventCodec codec = new BinaryEventCodec(new SchemaRegistry());
+    @Mock
+    private Serializer<Object> json;
+
+    @Test
+    void serialize_shouldWriteRegisteredEventsInBinary() {
+        KafkaValidationRequest request = new KafkaValidationRequest("event-1", "12345678", "987654321", null);
+        byte[] payload = new BinaryEventSerializer(codec, json)
+                .serialize("bootcoin.yanki.association", new RecordHeaders(), request);
+        assertEquals(request, codec.decode(payload));
+        verifyNoInteractions(json);
+    }
+    @Test
+    void serialize_shouldKeepJsonForUnregisteredPayloads() {
+        KafkaValidationResponse response = new KafkaValidationResponse("event-1", true, null);
+        RecordHeaders headers = new RecordHeaders();
+        byte[] encoded = "{\"eventId\":\"event-1\"}".getBytes(StandardCharsets.UTF_8);
+        when(json.serialize("bootcoin.validation.response", headers, response)).thenReturn(encoded);
+        assertArrayEquals(encoded, new BinaryEventSerializer(codec, json)
+                .serialize("bootcoin.validation.response", headers, response));
+    }
+}
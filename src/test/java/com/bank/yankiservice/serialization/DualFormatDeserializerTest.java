@@ -0,0 +1,43 @@
+package com.bank.yankiservice.serialization;
+
+import com.bank.yankiservice.dto.transaction.YankiTransactionProcessedEvent;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DualFormatDeserializerTest {
+    private static final String TOPIC = "yanki.transaction.processed";
+    private final BinaryEventCodec codec = new BinaryEventCodec(new SchemaRegistry());
+    @Mock
+    private Deserializer<Object> json;
+
+    @Test
+    void deserialize_shouldDecodeBinaryPayloadsWithoutTheJsonDelegate() {
+        YankiTransactionProcessedEvent event = new YankiTransactionProcessedEvent("tx-1", "987654321", "912345678",
+                new BigDecimal("150.75"), "SUCCESS", null, Instant.now());
+        DualFormatDeserializer deserializer = new DualFormatDeserializer(codec, json);
+        assertEquals(event, deserializer.deserialize(TOPIC, new RecordHeaders(), codec.encode(event)));
+        verifyNoInteractions(json);
+    }
+    @Test
+    void deserialize_shouldHandJsonPayloadsToTheDelegate() {
+        byte[] payload = "{\"transactionId\":\"tx-1\"}".getBytes(StandardCharsets.UTF_8);
+        RecordHeaders headers = new RecordHeaders();
+        Object decoded = new Object();
+        when(json.deserialize(TOPIC, headers, payload)).thenReturn(decoded);
+        assertSame(decoded, new DualFormatDeserializer(codec, json).deserialize(TOPIC, headers, payload));
+    }
+}
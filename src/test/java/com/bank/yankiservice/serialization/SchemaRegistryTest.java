@@ -0,0 +1,42 @@
+package com.bank.yankiservice.serialization;
+
+import com.bank.yankiservice.dto.transaction.YankiTransactionEvent;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SchemaRegistryTest {
+    private final SchemaRegistry registry = new SchemaRegistry();
+
+    private static EventSchema.Builder<YankiTransactionEvent> transactionSchema(int id, int version) {
+        return EventSchema.builder(id, YankiTransactionEvent.class, version, YankiTransactionEvent::new)
+                .string("transactionId", YankiTransactionEvent::getTransactionId,
+                        YankiTransactionEvent::setTransactionId);
+    }
+    @Test
+    void register_shouldServeTheHighestVersionAsLatest_andKeepOlderIdsResolvable() {
+        EventSchema<YankiTransactionEvent> next = transactionSchema(101, 2)
+                .decimal("amount", YankiTransactionEvent::getAmount, YankiTransactionEvent::setAmount)
+                .build();
+        registry.register(next);
+        assertSame(next, registry.latest(YankiTransactionEvent.class));
+        assertSame(EventSchemas.TRANSACTION_REQUESTED, registry.byId(EventSchemas.TRANSACTION_REQUESTED.getId()));
+    }
+    @Test
+    void register_shouldRejectReusedIdsAndVersions() {
+        assertThrows(IllegalArgumentException.class, () -> registry.register(transactionSchema(1, 2).build()));
+        assertThrows(IllegalArgumentException.class, () -> registry.register(transactionSchema(101, 1).build()));
+    }
+    @Test
+    void register_shouldRejectFieldTypeChanges() {
+        EventSchema<YankiTransactionEvent> incompatible = transactionSchema(101, 2)
+                .string("amount", event -> event.getAmount().toPlainString(),
+                        (event, amount) -> event.setAmount(new BigDecimal(amount)))
+                .build();
+        assertThrows(IllegalArgumentException.class, () -> registry.register(incompatible));
+        assertSame(EventSchemas.TRANSACTION_REQUESTED, registry.latest(YankiTransactionEvent.class));
+    }
+}
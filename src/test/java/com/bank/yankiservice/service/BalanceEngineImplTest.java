@@ -0,0 +1,126 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.model.YankiWallet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.CompletableSubject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceEngineImplTest {
+    @Mock
+    private StripedBalanceService stripedBalances;
+    private BalanceEngineImpl balanceEngine;
+    private YankiWallet wallet;
+    private CompletableSubject gate;
+    @BeforeEach
+    void setUp() {
+        balanceEngine = new BalanceEngineImpl(stripedBalances, new YankiMetrics(new SimpleMeterRegistry()), 1, 64, 2);
+        wallet = YankiWallet.builder().phoneNumber("987654321").balance(new BigDecimal("50")).build();
+        gate = CompletableSubject.create();
+    }
+    @AfterEach
+    void tearDown() {
+        balanceEngine.stop();
+    }
+    // Occupies the only shard until the gate completes, so whatever is submitted next queues up behind it.
+    private TestObserver<Void> blockShard() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        TestObserver<Void> blocker = balanceEngine.execute("912345678", () -> {
+            started.countDown();
+            return gate;
+        }).test();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return blocker;
+    }
+    @Test
+    void credit_shouldCoalesceCreditsQueuedForTheSameWallet() throws InterruptedException {
+        when(stripedBalances.credit(wallet, new BigDecimal("15"))).thenReturn(Maybe.just(wallet));
+        TestObserver<Void> blocker = blockShard();
+        TestObserver<YankiWallet> first = balanceEngine.credit(wallet, BigDecimal.TEN).test();
+        TestObserver<YankiWallet> second = balanceEngine.credit(wallet, new BigDecimal("5")).test();
+        gate.onComplete();
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+        first.assertValue(wallet);
+        second.assertValue(wallet);
+        blocker.assertComplete();
+        verify(stripedBalances, times(1)).credit(any(YankiWallet.class), any(BigDecimal.class));
+    }
+    @Test
+    void execute_shouldWaitForTheBatchAhead() throws InterruptedException {
+        AtomicBoolean ran = new AtomicBoolean();
+        blockShard();
+        TestObserver<Void> next = balanceEngine.execute("987654321", () -> Completable.fromAction(() -> ran.set(true)))
+                .test();
+        assertFalse(next.await(100, TimeUnit.MILLISECONDS));
+        assertFalse(ran.get());
+        gate.onComplete();
+        assertTrue(next.await(5, TimeUnit.SECONDS));
+        next.assertComplete();
+        assertTrue(ran.get());
+    }
+    @Test
+    void execute_shouldApplyQueuedCreditsFirst() throws InterruptedException {
+        List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        when(stripedBalances.credit(wallet, BigDecimal.TEN)).thenAnswer(invocation -> {
+            applied.add("credit");
+            return Maybe.just(wallet);
+        });
+        blockShard();
+        balanceEngine.credit(wallet, BigDecimal.TEN).test();
+        TestObserver<Void> debit = balanceEngine.execute("987654321",
+                () -> Completable.fromAction(() -> applied.add("debit"))).test();
+        gate.onComplete();
+        assertTrue(debit.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("credit", "debit"), applied);
+    }
+    @Test
+    void execute_shouldFailOnlyTheMutationThatFailed() throws InterruptedException {
+        TestObserver<Void> failed = balanceEngine.execute("987654321",
+                () -> Completable.error(new IllegalStateException("Insufficient funds"))).test();
+        TestObserver<Void> next = balanceEngine.execute("987654321", Completable::complete).test();
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        assertTrue(next.await(5, TimeUnit.SECONDS));
+        failed.assertError(IllegalStateException.class);
+        next.assertComplete();
+    }
+    @Test
+    void execute_shouldReject_whenShardQueueIsFull() throws InterruptedException {
+        blockShard();
+        balanceEngine.execute("987654321", Completable::complete).test();
+        balanceEngine.execute("987654321", Completable::complete).test();
+        balanceEngine.execute("987654321", Completable::complete).test()
+                .assertError(RejectedExecutionException.class);
+    }
+    @Test
+    void stop_shouldFailQueuedMutations() throws InterruptedException {
+        blockShard();
+        TestObserver<Void> queued = balanceEngine.execute("987654321", Completable::complete).test();
+        balanceEngine.stop();
+        queued.assertError(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,103 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.metrics.YankiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Spy;
+import com.bank.yankiservice.cache.WalletCache;
+import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.repository.YankiWalletRepository;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.subjects.MaybeSubject;
+import io.reactivex.subscribers.TestSubscriber;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceStreamServiceImplTest {
+    @Mock
+    private YankiWalletRepository repository;
+    @Mock
+    private WalletCache walletCache;
+    @Mock
+    private StripedBalanceService stripedBalances;
+    @Spy
+    private YankiMetrics metrics = new YankiMetrics(new SimpleMeterRegistry());
+    @InjectMocks
+    private BalanceStreamServiceImpl balanceStreamService;
+    private YankiWallet wallet;
+    @BeforeEach
+    void setUp() {
+        wallet = wallet("987654321", "100.00");
+        lenient().when(stripedBalances.merge(any(YankiWallet.class)))
+                .thenAnswer(invocation -> Single.just(invocation.getArgument(0)));
+    }
+    private static YankiWallet wallet(String phoneNumber, String balance) {
+        return YankiWallet.builder().phoneNumber(phoneNumber).balance(new BigDecimal(balance)).build();
+    }
+    @Test
+    void streamBalance_shouldEmitCurrentBalanceThenUpdates() {
+        when(walletCache.findByPhoneNumber("987654321")).thenReturn(Maybe.just(wallet));
+        TestSubscriber<BigDecimal> subscriber = balanceStreamService.streamBalance("987654321").test();
+        balanceStreamService.publish(wallet("987654321", "80.00"));
+        balanceStreamService.publish(wallet("987654321", "80.0"));
+        balanceStreamService.publish(wallet("912345678", "5.00"));
+        subscriber.assertValues(new BigDecimal("100.00"), new BigDecimal("80.00")).assertNotComplete();
+    }
+    @Test
+    void streamBalance_shouldSkipStaleInitialBalance_whenUpdateArrivesFirst() {
+        MaybeSubject<YankiWallet> lookup = MaybeSubject.create();
+        when(walletCache.findByPhoneNumber("987654321")).thenReturn(lookup);
+        TestSubscriber<BigDecimal> subscriber = balanceStreamService.streamBalance("987654321").test();
+        balanceStreamService.publish(wallet("987654321", "80.00"));
+        lookup.onSuccess(wallet);
+        subscriber.assertValues(new BigDecimal("80.00"));
+    }
+    @Test
+    void streamBalance_shouldConflateToLatest_whenSubscriberIsSlow() {
+        when(walletCache.findByPhoneNumber("987654321")).thenReturn(Maybe.just(wallet));
+        TestSubscriber<BigDecimal> subscriber = balanceStreamService.streamBalance("987654321").test(1);
+        balanceStreamService.publish(wallet("987654321", "90.00"));
+        balanceStreamService.publish(wallet("987654321", "80.00"));
+        balanceStreamService.publish(wallet("987654321", "70.00"));
+        subscriber.assertValues(new BigDecimal("100.00"));
+        subscriber.request(1);
+        subscriber.assertValues(new BigDecimal("100.00"), new BigDecimal("70.00"));
+    }
+    @Test
+    void streamBalance_shouldFail_whenWalletDoesNotExist() {
+        when(walletCache.findByPhoneNumber("987654321")).thenReturn(Maybe.empty());
+        balanceStreamService.streamBalance("987654321").test().assertErrorMessage("Wallet not found");
+    }
+    @Test
+    void refresh_shouldOnlyReadWatchedWallets() {
+        when(walletCache.findByPhoneNumber("987654321")).thenReturn(Maybe.just(wallet));
+        when(repository.findByPhoneNumberIn(Collections.singletonList("987654321")))
+                .thenReturn(Flowable.just(wallet("987654321", "120.00")));
+        TestSubscriber<BigDecimal> subscriber = balanceStreamService.streamBalance("987654321").test();
+        balanceStreamService.refresh(Arrays.asList("987654321", "912345678")).test().assertComplete();
+        subscriber.assertValues(new BigDecimal("100.00"), new BigDecimal("120.00"));
+        subscriber.cancel();
+        balanceStreamService.refresh(Collections.singletonList("987654321")).test().assertComplete();
+        verify(repository, times(1)).findByPhoneNumberIn(any());
+    }
+    @Test
+    void refresh_shouldSwallowRepositoryErrors() {
+        when(walletCache.findByPhoneNumber("987654321")).thenReturn(Maybe.just(wallet));
+        when(repository.findByPhoneNumberIn(any())).thenReturn(Flowable.error(new RuntimeException("Mongo down")));
+        balanceStreamService.streamBalance("987654321").test();
+        balanceStreamService.refresh(Collections.singletonList("987654321")).test().assertComplete();
+    }
+}
@@ -0,0 +1,139 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.metrics.YankiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.bank.yankiservice.cache.WalletCache;
+import com.bank.yankiservice.model.FundsHold;
+import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.repository.YankiWalletRepository;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class FundsHoldServiceImplTest {
+    @Mock
+    private YankiWalletRepository repository;
+    @Mock
+    private WalletCache walletCache;
+    @Mock
+    private BalanceStreamService balanceStreamService;
+    @Mock
+    private StripedBalanceService stripedBalances;
+    private FundsHoldServiceImpl fundsHoldService;
+    private YankiWallet wallet;
+    @BeforeEach
+    void setUp() {
+        fundsHoldService = new FundsHoldServiceImpl(repository, walletCache, balanceStreamService, stripedBalances,
+                new YankiMetrics(new SimpleMeterRegistry()), 60);
+        wallet = YankiWallet.builder().phoneNumber("987654321").balance(new BigDecimal("50")).build();
+        lenient().when(stripedBalances.merge(any(YankiWallet.class)))
+                .thenAnswer(invocation -> Single.just(invocation.getArgument(0)));
+        lenient().when(stripedBalances.sweep(anyString())).thenReturn(Single.just(0));
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void placeHold_shouldReserveFundsAndEvictWallet() {
+        when(repository.placeHolds(eq("987654321"), anyList())).thenReturn(Maybe.just(wallet));
+        when(walletCache.evict(wallet)).thenReturn(Completable.complete());
+        fundsHoldService.placeHold("987654321", "tx-1", BigDecimal.TEN).test().assertComplete();
+        ArgumentCaptor<List<FundsHold>> holds = ArgumentCaptor.forClass(List.class);
+        verify(repository).placeHolds(eq("987654321"), holds.capture());
+        FundsHold hold = holds.getValue().get(0);
+        assertEquals("tx-1", hold.getTransactionId());
+        assertEquals(BigDecimal.TEN, hold.getAmount());
+        assertTrue(hold.getExpiresAt().isAfter(hold.getCreatedAt()));
+        verify(walletCache).evict(wallet);
+    }
+    @Test
+    void placeHold_shouldFail_whenFundsAreInsufficient() {
+        when(repository.placeHolds(eq("987654321"), anyList())).thenReturn(Maybe.empty());
+        fundsHoldService.placeHold("987654321", "tx-1", BigDecimal.TEN).test()
+                .assertError(IllegalStateException.class)
+                .assertErrorMessage("Insufficient funds for transaction");
+        verifyNoInteractions(walletCache);
+    }
+    @Test
+    void placeHold_shouldSweepStripesAndRetry_whenFundsAreInsufficient() {
+        when(repository.placeHolds(eq("987654321"), anyList())).thenReturn(Maybe.empty(), Maybe.just(wallet));
+        when(stripedBalances.sweep("987654321")).thenReturn(Single.just(2));
+        when(walletCache.evict(wallet)).thenReturn(Completable.complete());
+        fundsHoldService.placeHold("987654321", "tx-1", BigDecimal.TEN).test().assertComplete();
+        verify(repository, times(2)).placeHolds(eq("987654321"), anyList());
+        verify(balanceStreamService).publish(wallet);
+    }
+    @Test
+    void placeHold_shouldNotRetry_whenNothingWasSwept() {
+        when(repository.placeHolds(eq("987654321"), anyList())).thenReturn(Maybe.empty());
+        fundsHoldService.placeHold("987654321", "tx-1", BigDecimal.TEN).test()
+                .assertError(IllegalStateException.class);
+        verify(repository, times(1)).placeHolds(eq("987654321"), anyList());
+        verify(stripedBalances).sweep("987654321");
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void placeHolds_shouldReserveAllTransfersInOneUpdate() {
+        Map<String, BigDecimal> amounts = new LinkedHashMap<>();
+        amounts.put("tx-1", BigDecimal.ONE);
+        amounts.put("tx-2", BigDecimal.TEN);
+        when(repository.placeHolds(eq("987654321"), anyList())).thenReturn(Maybe.just(wallet));
+        when(walletCache.evict(wallet)).thenReturn(Completable.complete());
+        fundsHoldService.placeHolds("987654321", amounts).test().assertComplete();
+        ArgumentCaptor<List<FundsHold>> holds = ArgumentCaptor.forClass(List.class);
+        verify(repository, times(1)).placeHolds(eq("987654321"), holds.capture());
+        assertEquals(2, holds.getValue().size());
+        assertEquals("tx-2", holds.getValue().get(1).getTransactionId());
+    }
+    @Test
+    void commitHold_shouldReportWhetherHoldExisted() {
+        when(repository.commitHold("987654321", "tx-1", BigDecimal.TEN)).thenReturn(Maybe.just(wallet));
+        when(repository.commitHold("987654321", "tx-2", BigDecimal.TEN)).thenReturn(Maybe.empty());
+        when(walletCache.evict(wallet)).thenReturn(Completable.complete());
+        fundsHoldService.commitHold("987654321", "tx-1", BigDecimal.TEN).test().assertValue(true);
+        fundsHoldService.commitHold("987654321", "tx-2", BigDecimal.TEN).test().assertValue(false);
+        verify(walletCache, times(1)).evict(wallet);
+    }
+    @Test
+    void releaseHold_shouldReturnFalse_whenHoldIsGone() {
+        when(repository.releaseHold("987654321", "tx-1", BigDecimal.TEN)).thenReturn(Maybe.empty());
+        fundsHoldService.releaseHold("987654321", "tx-1", BigDecimal.TEN).test().assertValue(false);
+        verifyNoInteractions(walletCache);
+    }
+    @Test
+    void releaseExpiredHolds_shouldReleaseOnlyExpiredHolds() {
+        LocalDateTime now = LocalDateTime.now();
+        wallet.setHolds(List.of(
+                new FundsHold("tx-old", BigDecimal.ONE, now.minusHours(1), now.minusMinutes(1)),
+                new FundsHold("tx-new", BigDecimal.TEN, now, now.plusHours(1))));
+        when(repository.findByHoldsExpiresAtBefore(any(LocalDateTime.class))).thenReturn(Flowable.just(wallet));
+        when(repository.releaseHold("987654321", "tx-old", BigDecimal.ONE)).thenReturn(Maybe.just(wallet));
+        when(walletCache.evict(wallet)).thenReturn(Completable.complete());
+        fundsHoldService.releaseExpiredHolds().test().assertValue(1);
+        verify(repository, never()).releaseHold("987654321", "tx-new", BigDecimal.TEN);
+    }
+    @Test
+    void sweepExpiredHolds_shouldSwallowErrors() {
+        when(repository.findByHoldsExpiresAtBefore(any(LocalDateTime.class)))
+                .thenReturn(Flowable.error(new RuntimeException("Mongo down")));
+        fundsHoldService.sweepExpiredHolds();
+        verify(repository).findByHoldsExpiresAtBefore(any(LocalDateTime.class));
+    }
+}
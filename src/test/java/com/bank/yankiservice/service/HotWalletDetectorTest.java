@@ -0,0 +1,33 @@
+package com.bank.yankiservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotWalletDetectorTest {
+    private final AtomicLong nanos = new AtomicLong();
+    private final HotWalletDetector detector = new HotWalletDetector(3, Duration.ofMinutes(1), 100, nanos::get);
+
+    @Test
+    void recordCredit_shouldFireOnce_whenThresholdIsReached() {
+        assertFalse(detector.recordCredit("987654321"));
+        assertFalse(detector.recordCredit("987654321"));
+        assertTrue(detector.recordCredit("987654321"));
+        assertFalse(detector.recordCredit("987654321"));
+        assertFalse(detector.recordCredit("912345678"));
+    }
+    @Test
+    void recordCredit_shouldStartOver_whenWindowExpires() {
+        detector.recordCredit("987654321");
+        detector.recordCredit("987654321");
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        assertFalse(detector.recordCredit("987654321"));
+        assertFalse(detector.recordCredit("987654321"));
+        assertTrue(detector.recordCredit("987654321"));
+    }
+}
@@ -0,0 +1,216 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.event.KafkaPublisher;
+import com.bank.yankiservice.metrics.YankiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.bank.yankiservice.model.OutboxEvent;
+import com.bank.yankiservice.repository.OutboxEventRepository;
+import com.bank.yankiservice.resilience.DependencyUnavailableException;
+import com.bank.yankiservice.tracing.TraceHeaders;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxServiceImplTest {
+    @Mock
+    private OutboxEventRepository repository;
+    @Mock
+    private KafkaPublisher publisher;
+    private OutboxServiceImpl outboxService;
+    private final List<String> sentPayloads = new ArrayList<>();
+    private final List<ProducerRecord<String, Object>> sentRecords = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        outboxService = new OutboxServiceImpl(repository, publisher, new YankiMetrics(new SimpleMeterRegistry()),
+                3, 2, 1000, 60000, 30000);
+    }
+    private static OutboxEvent event(String id, String key, String payload) {
+        return OutboxEvent.builder()
+                .id(id)
+                .topic("yanki.transaction.requested")
+                .messageKey(key)
+                .payload(payload)
+                .status(OutboxEvent.PENDING)
+                .nextAttemptAt(LocalDateTime.now().minusSeconds(1))
+                .build();
+    }
+    private void leaseAcquired(boolean acquired) {
+        when(repository.acquireLease(eq(OutboxServiceImpl.RELAY_LEASE), anyString(), any()))
+                .thenReturn(Single.just(acquired));
+        lenient().when(repository.findBlockedKeys(any())).thenReturn(Flowable.empty());
+    }
+    private void brokerAccepts(String... failingPayloads) {
+        List<String> failing = List.of(failingPayloads);
+        when(publisher.publish(any())).thenAnswer(invocation -> {
+            ProducerRecord<String, Object> record = invocation.getArgument(0);
+            String payload = (String) record.value();
+            if (failing.contains(payload)) {
+                return Completable.error(new RuntimeException("Broker unavailable"));
+            }
+            sentPayloads.add(payload);
+            sentRecords.add(record);
+            return Completable.complete();
+        });
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void enqueueAll_shouldStorePendingEventsKeyedByExtractor() {
+        when(repository.saveAll(anyIterable())).thenReturn(Flowable.empty());
+        outboxService.enqueueAll("yanki.transaction.requested", List.of("a-1", "b-1"), payload -> payload.split("-")[0],
+                        "corr-1")
+                .test()
+                .assertComplete();
+        ArgumentCaptor<Iterable<OutboxEvent>> saved = ArgumentCaptor.forClass(Iterable.class);
+        verify(repository).saveAll(saved.capture());
+        List<OutboxEvent> events = new ArrayList<>();
+        saved.getValue().forEach(events::add);
+        assertEquals(2, events.size());
+        assertEquals("a", events.get(0).getMessageKey());
+        assertEquals(OutboxEvent.PENDING, events.get(1).getStatus());
+        assertEquals("b-1", events.get(1).getPayload());
+        assertEquals("corr-1", events.get(1).getCorrelationId());
+    }
+    @Test
+    void enqueueAll_shouldSkipEmptyList() {
+        outboxService.enqueueAll("yanki.transaction.requested", List.<String>of(), payload -> payload, null)
+                .test()
+                .assertComplete();
+        verifyNoInteractions(repository);
+    }
+    @Test
+    void relay_shouldDoNothing_whenAnotherInstanceHoldsTheLease() {
+        leaseAcquired(false);
+        outboxService.relay().test().assertValue(0);
+        verify(repository, never()).findPending(any(), anyCollection(), anyInt());
+        verifyNoInteractions(publisher);
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void relay_shouldSendInOrderPerKey_andStopKeyAtFirstFailure() {
+        leaseAcquired(true);
+        when(repository.findPending(any(), anyCollection(), eq(3))).thenReturn(Flowable.just(
+                event("1", "alice", "alice-1"), event("2", "bob", "bob-1"), event("3", "alice", "alice-2")));
+        brokerAccepts("bob-1");
+        when(repository.recordFailure(any())).thenReturn(Completable.complete());
+        when(repository.deleteSent(anyCollection())).thenReturn(Completable.complete());
+        outboxService.relay().test().assertValue(2);
+        assertEquals(List.of("alice-1", "alice-2"), sentPayloads);
+        ArgumentCaptor<Collection<String>> deleted = ArgumentCaptor.forClass(Collection.class);
+        verify(repository).deleteSent(deleted.capture());
+        assertEquals(List.of("1", "3"), new ArrayList<>(deleted.getValue()));
+        ArgumentCaptor<OutboxEvent> failed = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(repository).recordFailure(failed.capture());
+        assertEquals(1, failed.getValue().getAttempts());
+        assertEquals(OutboxEvent.PENDING, failed.getValue().getStatus());
+        assertTrue(failed.getValue().getNextAttemptAt().isAfter(LocalDateTime.now()));
+    }
+    @Test
+    void relay_shouldCarryCorrelationIdAndTimestampsInHeaders() {
+        leaseAcquired(true);
+        OutboxEvent traced = event("1", "alice", "alice-1");
+        traced.setCorrelationId("corr-1");
+        traced.setCreatedAt(LocalDateTime.now().minusSeconds(2));
+        when(repository.findPending(any(), anyCollection(), eq(3)))
+                .thenReturn(Flowable.just(traced, event("2", "bob", "bob-1")));
+        brokerAccepts();
+        when(repository.deleteSent(anyCollection())).thenReturn(Completable.complete());
+        outboxService.relay().test().assertValue(2);
+        ProducerRecord<String, Object> record = sentRecords.get(sentPayloads.indexOf("alice-1"));
+        assertEquals("alice", record.key());
+        assertEquals("corr-1", TraceHeaders.decode(
+                record.headers().lastHeader(TraceHeaders.KAFKA_CORRELATION_ID).value()));
+        assertTrue(TraceHeaders.decodeInstant(record.headers().lastHeader(TraceHeaders.KAFKA_REQUESTED_AT).value())
+                .isBefore(TraceHeaders.decodeInstant(
+                        record.headers().lastHeader(TraceHeaders.KAFKA_PUBLISHED_AT).value())));
+        assertNull(sentRecords.get(sentPayloads.indexOf("bob-1")).headers()
+                .lastHeader(TraceHeaders.KAFKA_CORRELATION_ID));
+    }
+    @Test
+    void relay_shouldHoldBackKeysThatAreBackingOffOrFailed() {
+        leaseAcquired(true);
+        when(repository.findBlockedKeys(any())).thenReturn(Flowable.just("alice", "carol"));
+        when(repository.findPending(any(), eq(List.of("alice", "carol")), eq(3)))
+                .thenReturn(Flowable.just(event("3", "bob", "bob-1")));
+        brokerAccepts();
+        when(repository.deleteSent(anyCollection())).thenReturn(Completable.complete());
+        outboxService.relay().test().assertValue(1);
+        assertEquals(List.of("bob-1"), sentPayloads);
+    }
+    @Test
+    void relay_shouldOnlyAskForDueEvents() {
+        leaseAcquired(true);
+        LocalDateTime before = LocalDateTime.now();
+        when(repository.findPending(any(), anyCollection(), eq(3))).thenReturn(Flowable.empty());
+        when(repository.deleteSent(anyCollection())).thenReturn(Completable.complete());
+        outboxService.relay().test().assertValue(0);
+        ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repository).findBlockedKeys(now.capture());
+        verify(repository).findPending(eq(now.getValue()), anyCollection(), eq(3));
+        assertFalse(now.getValue().isBefore(before));
+    }
+    @Test
+    void relay_shouldDeadLetter_afterMaxAttempts() {
+        leaseAcquired(true);
+        OutboxEvent retried = event("1", "alice", "alice-1");
+        retried.setAttempts(1);
+        when(repository.findPending(any(), anyCollection(), eq(3))).thenReturn(Flowable.just(retried));
+        brokerAccepts("alice-1");
+        when(repository.recordFailure(any())).thenReturn(Completable.complete());
+        when(repository.deleteSent(anyCollection())).thenReturn(Completable.complete());
+        outboxService.relay().test().assertValue(0);
+        assertEquals(OutboxEvent.FAILED, retried.getStatus());
+        assertEquals(2, retried.getAttempts());
+        assertEquals("Broker unavailable", retried.getLastError());
+    }
+    @Test
+    void relay_shouldKeepAttempts_whileKafkaCircuitIsOpen() {
+        leaseAcquired(true);
+        OutboxEvent pending = event("1", "alice", "alice-1");
+        when(repository.findPending(any(), anyCollection(), eq(3))).thenReturn(Flowable.just(pending));
+        when(repository.deleteSent(anyCollection())).thenReturn(Completable.complete());
+        when(publisher.publish(any())).thenReturn(Completable.error(new DependencyUnavailableException("kafka",
+                CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("kafka")))));
+        outboxService.relay().test().assertValue(0);
+        verify(repository, never()).recordFailure(any());
+        assertEquals(0, pending.getAttempts());
+        assertEquals(OutboxEvent.PENDING, pending.getStatus());
+    }
+    @Test
+    void relayPending_shouldDrainUntilBatchIsNotFull() {
+        leaseAcquired(true);
+        when(repository.findPending(any(), anyCollection(), eq(3)))
+                .thenReturn(Flowable.just(event("1", "a", "a-1"), event("2", "b", "b-1"), event("3", "c", "c-1")))
+                .thenReturn(Flowable.just(event("4", "a", "a-2")));
+        brokerAccepts();
+        when(repository.deleteSent(anyCollection())).thenReturn(Completable.complete());
+        outboxService.relayPending();
+        assertEquals(4, sentPayloads.size());
+        verify(repository, times(2)).findPending(any(), anyCollection(), eq(3));
+    }
+    @Test
+    void relayPending_shouldSwallowErrors() {
+        when(repository.acquireLease(anyString(), anyString(), any()))
+                .thenReturn(Single.error(new RuntimeException("Mongo down")));
+        assertDoesNotThrow(() -> outboxService.relayPending());
+    }
+}
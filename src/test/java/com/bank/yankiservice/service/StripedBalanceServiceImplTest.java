@@ -0,0 +1,157 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.cache.WalletCache;
+import com.bank.yankiservice.metrics.YankiMetrics;
+import com.bank.yankiservice.model.StripeWatermark;
+import com.bank.yankiservice.model.WalletBalanceStripe;
+import com.bank.yankiservice.model.YankiWallet;
+import com.bank.yankiservice.repository.YankiWalletRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StripedBalanceServiceImplTest {
+    @Mock
+    private YankiWalletRepository repository;
+    @Mock
+    private WalletCache walletCache;
+    private StripedBalanceServiceImpl stripedBalances;
+    private YankiWallet wallet;
+    private YankiWallet striped;
+    @BeforeEach
+    void setUp() {
+        stripedBalances = new StripedBalanceServiceImpl(repository, walletCache,
+                new YankiMetrics(new SimpleMeterRegistry()), true, 2, 2);
+        wallet = YankiWallet.builder().id("w-1").phoneNumber("987654321").balance(new BigDecimal("50")).build();
+        striped = wallet.toBuilder()
+                .balanceStripes(2)
+                .stripeWatermarks(List.of(watermark(0, "10"), watermark(1, "0")))
+                .build();
+    }
+    private static StripeWatermark watermark(int slot, String swept) {
+        return StripeWatermark.builder().slot(slot).swept(new BigDecimal(swept)).build();
+    }
+    private static WalletBalanceStripe stripe(int slot, String credited) {
+        return WalletBalanceStripe.builder()
+                .id(WalletBalanceStripe.idOf("w-1", slot))
+                .walletId("w-1")
+                .slot(slot)
+                .credited(new BigDecimal(credited))
+                .build();
+    }
+    @Test
+    void credit_shouldCreditWalletDocument_whenWalletIsNotStriped() {
+        when(repository.creditBalance("987654321", BigDecimal.TEN)).thenReturn(Maybe.just(wallet));
+        when(walletCache.evict(wallet)).thenReturn(Completable.complete());
+        stripedBalances.credit(wallet, BigDecimal.TEN).test().assertValue(wallet);
+        verify(repository, never()).creditStripe(any(), anyInt(), any());
+        verify(repository, never()).enableStriping(any(), anyInt());
+    }
+    @Test
+    void credit_shouldStripeWallet_whenItReachesThePromotionThreshold() {
+        when(repository.creditBalance("987654321", BigDecimal.TEN)).thenReturn(Maybe.just(wallet));
+        when(repository.enableStriping("987654321", 2)).thenReturn(Maybe.just(striped));
+        when(walletCache.evict(any(YankiWallet.class))).thenReturn(Completable.complete());
+        stripedBalances.credit(wallet, BigDecimal.TEN).test().assertValue(wallet);
+        verify(repository, never()).enableStriping(any(), anyInt());
+        stripedBalances.credit(wallet, BigDecimal.TEN).test().assertValue(wallet);
+        verify(repository).enableStriping("987654321", 2);
+        verify(walletCache).evict(striped);
+    }
+    @Test
+    void credit_shouldNotStripeWallet_whenStripingIsDisabled() {
+        stripedBalances = new StripedBalanceServiceImpl(repository, walletCache,
+                new YankiMetrics(new SimpleMeterRegistry()), false, 2, 1);
+        when(repository.creditBalance("987654321", BigDecimal.TEN)).thenReturn(Maybe.just(wallet));
+        when(walletCache.evict(wallet)).thenReturn(Completable.complete());
+        stripedBalances.credit(wallet, BigDecimal.TEN).test().assertValue(wallet);
+        verify(repository, never()).enableStriping(any(), anyInt());
+    }
+    @Test
+    void credit_shouldCreditAStripe_whenWalletIsStriped() {
+        when(repository.creditStripe(eq("w-1"), anyInt(), eq(BigDecimal.TEN))).thenReturn(Completable.complete());
+        when(repository.findStripes("w-1", 2)).thenReturn(Flowable.just(stripe(0, "10"), stripe(1, "10")));
+        YankiWallet credited = stripedBalances.credit(striped, BigDecimal.TEN).blockingGet();
+        assertEquals(0, new BigDecimal("60").compareTo(credited.getBalance()));
+        verify(repository, never()).creditBalance(any(), any());
+        verifyNoInteractions(walletCache);
+    }
+    @Test
+    void debit_shouldSweepStripesAndRetry_whenBalanceDoesNotCoverTheAmount() {
+        YankiWallet swept = striped.toBuilder()
+                .balance(new BigDecimal("5"))
+                .stripeWatermarks(List.of(watermark(0, "10"), watermark(1, "5")))
+                .build();
+        when(repository.debitBalance("987654321", new BigDecimal("55")))
+                .thenReturn(Maybe.empty(), Maybe.just(swept));
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.just(striped));
+        when(repository.findStripes("w-1", 2)).thenReturn(Flowable.just(stripe(0, "10"), stripe(1, "5")));
+        when(repository.sweepStripe("w-1", 1, new BigDecimal("0"), new BigDecimal("5"))).thenReturn(Maybe.just(swept));
+        when(walletCache.evict(swept)).thenReturn(Completable.complete());
+        YankiWallet debited = stripedBalances.debit("987654321", new BigDecimal("55")).blockingGet();
+        assertEquals(0, new BigDecimal("5").compareTo(debited.getBalance()));
+        verify(repository, times(2)).debitBalance("987654321", new BigDecimal("55"));
+    }
+    @Test
+    void debit_shouldNotRetry_whenThereWasNothingToSweep() {
+        when(repository.debitBalance("987654321", new BigDecimal("55"))).thenReturn(Maybe.empty());
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.just(wallet));
+        stripedBalances.debit("987654321", new BigDecimal("55")).test().assertNoValues().assertComplete();
+        verify(repository, times(1)).debitBalance("987654321", new BigDecimal("55"));
+    }
+    @Test
+    void merge_shouldAddCreditsAboveEachWatermark() {
+        when(repository.findStripes("w-1", 2)).thenReturn(Flowable.just(stripe(0, "25"), stripe(1, "5")));
+        YankiWallet merged = stripedBalances.merge(striped).blockingGet();
+        assertEquals(0, new BigDecimal("70").compareTo(merged.getBalance()));
+        assertEquals(0, new BigDecimal("50").compareTo(striped.getBalance()));
+    }
+    @Test
+    void merge_shouldReturnWalletUnchanged_whenWalletIsNotStriped() {
+        YankiWallet linked = striped.toBuilder().linkedCard("card-123").build();
+        assertSame(wallet, stripedBalances.merge(wallet).blockingGet());
+        assertSame(linked, stripedBalances.merge(linked).blockingGet());
+        verifyNoInteractions(repository);
+    }
+    @Test
+    void sweep_shouldFoldOnlyStripesAheadOfTheirWatermark() {
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.just(striped));
+        when(repository.findStripes("w-1", 2)).thenReturn(Flowable.just(stripe(0, "10"), stripe(1, "5")));
+        when(repository.sweepStripe("w-1", 1, new BigDecimal("0"), new BigDecimal("5")))
+                .thenReturn(Maybe.just(striped));
+        when(walletCache.evict(striped)).thenReturn(Completable.complete());
+        stripedBalances.sweep("987654321").test().assertValue(1);
+        verify(repository, never()).sweepStripe(eq("w-1"), eq(0), any(), any());
+    }
+    @Test
+    void sweep_shouldSkipEviction_whenAnotherInstanceSweptFirst() {
+        when(repository.findByPhoneNumber("987654321")).thenReturn(Maybe.just(striped));
+        when(repository.findStripes("w-1", 2)).thenReturn(Flowable.just(stripe(1, "5")));
+        when(repository.sweepStripe("w-1", 1, new BigDecimal("0"), new BigDecimal("5"))).thenReturn(Maybe.empty());
+        stripedBalances.sweep("987654321").test().assertValue(0);
+        verifyNoInteractions(walletCache);
+    }
+    @Test
+    void sweepStripedWallets_shouldSwallowErrors() {
+        when(repository.findByBalanceStripesNotNull()).thenReturn(Flowable.error(new RuntimeException("Mongo down")));
+        stripedBalances.sweepStripedWallets();
+        verify(repository).findByBalanceStripesNotNull();
+    }
+}
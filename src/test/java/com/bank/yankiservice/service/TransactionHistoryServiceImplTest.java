@@ -0,0 +1,74 @@
+package com.bank.yankiservice.service;
+
+import com.bank.yankiservice.metrics.YankiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Spy;
+import com.bank.yankiservice.dto.transaction.YankiTransactionPage;
+import com.bank.yankiservice.model.YankiTransaction;
+import com.bank.yankiservice.repository.YankiTransactionRepository;
+import com.bank.yankiservice.util.TransactionCursor;
+import io.reactivex.Flowable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class TransactionHistoryServiceImplTest {
+    @Mock
+    private YankiTransactionRepository transactionRepository;
+    @Spy
+    private YankiMetrics metrics = new YankiMetrics(new SimpleMeterRegistry());
+    @InjectMocks
+    private TransactionHistoryServiceImpl historyService;
+    private static YankiTransaction transaction(String id, LocalDateTime timestamp) {
+        return new YankiTransaction(id, "987654321", "912345678", BigDecimal.ONE, "SUCCESS", timestamp, null);
+    }
+    @Test
+    void getHistory_shouldReturnNextCursor_whenMoreTransactionsExist() {
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 10, 0);
+        when(transactionRepository.findHistory("987654321", null, null, 3))
+                .thenReturn(Flowable.just(transaction("c", now), transaction("b", now), transaction("a", now)));
+        YankiTransactionPage page = historyService.getHistory("987654321", null, 2).blockingGet();
+        assertEquals(2, page.getTransactions().size());
+        TransactionCursor next = TransactionCursor.decode(page.getNextCursor());
+        assertEquals("b", next.getId());
+        assertEquals(now, next.getTimestamp());
+    }
+    @Test
+    void getHistory_shouldResumeFromCursor_andOmitCursorOnLastPage() {
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 10, 0);
+        String cursor = new TransactionCursor(now, "b").encode();
+        when(transactionRepository.findHistory("987654321", now, "b", 3))
+                .thenReturn(Flowable.just(transaction("a", now)));
+        YankiTransactionPage page = historyService.getHistory("987654321", cursor, 2).blockingGet();
+        assertEquals(1, page.getTransactions().size());
+        assertNull(page.getNextCursor());
+    }
+    @Test
+    void getHistory_shouldClampPageSize() {
+        when(transactionRepository.findHistory(anyString(), isNull(), isNull(), anyInt())).thenReturn(Flowable.empty());
+        historyService.getHistory("987654321", null, 10_000).test().assertComplete();
+        historyService.getHistory("987654321", "", 0).test().assertComplete();
+        verify(transactionRepository)
+                .findHistory("987654321", null, null, TransactionHistoryServiceImpl.MAX_PAGE_SIZE + 1);
+        verify(transactionRepository).findHistory("987654321", null, null, 2);
+    }
+    @Test
+    void getHistory_shouldFailOnInvalidCursor() {
+        historyService.getHistory("987654321", "not-a-cursor", 20).test()
+                .assertErrorMessage("Invalid cursor");
+        verifyNoInteractions(transactionRepository);
+    }
+    @Test
+    void streamHistory_shouldStreamWithoutLimit() {
+        when(transactionRepository.findHistory("987654321", null, null, 0))
+                .thenReturn(Flowable.just(transaction("a", LocalDateTime.now())));
+        historyService.streamHistory("987654321", null).test().assertValueCount(1).assertComplete();
+    }
+}
@@ -1,36 +1,56 @@
 package com.bank.yankiservice.service;
 
+import com.bank.yankiservice.metrics.YankiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.*;
 
+import com.bank.yankiservice.cache.WalletCache;
 import com.bank.yankiservice.dto.BaseResponse;
 import com.bank.yankiservice.dto.cardlink.CardLinkRequestedEvent;
+import com.bank.yankiservice.dto.transaction.YankiBatchTransactionResult;
+import com.bank.yankiservice.dto.transaction.YankiBatchTransferItem;
 import com.bank.yankiservice.dto.transaction.YankiTransactionEvent;
 import com.bank.yankiservice.dto.yanki.YankiWalletRequest;
 import com.bank.yankiservice.model.YankiWallet;
 import com.bank.yankiservice.repository.YankiWalletRepository;
+import com.bank.yankiservice.resilience.DependencyUnavailableException;
 import io.reactivex.*;
 import io.reactivex.observers.TestObserver;
-import org.apache.kafka.clients.producer.ProducerRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.util.concurrent.ListenableFuture;
 import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 class YankiServiceImplTest {
+    @Spy
+    private YankiMetrics metrics = new YankiMetrics(new SimpleMeterRegistry());
     @InjectMocks
     private YankiServiceImpl yankiService;
     @Mock
     private YankiWalletRepository repository;
     @Mock
-    private KafkaTemplate<String, Object> kafkaTemplate;
+    private WalletCache walletCache;
+    @Mock
+    private FundsHoldService fundsHoldService;
+    @Mock
+    private OutboxService outboxService;
+    @Mock
+    private StripedBalanceService stripedBalances;
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(stripedBalances.merge(any(YankiWallet.class)))
+                .thenAnswer(invocation -> Single.just(invocation.getArgument(0)));
     }
     @Test
     void associateCard_shouldSendEvent_whenWalletExists() {
@@ -40,13 +60,16 @@ class YankiServiceImplTest {
         String documentNumber = "987654321";
         YankiWallet wallet = new YankiWallet();
         wallet.setBalance(BigDecimal.TEN);
-        when(repository.findByDocumentNumber(documentNumber)).thenReturn(Maybe.just(wallet));
-        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(mock(ListenableFuture.class));
+        when(walletCache.findByDocumentNumber(documentNumber)).thenReturn(Maybe.just(wallet));
+        when(outboxService.enqueue(eq("yanki.card.link.requested"), eq(phoneNumber), any(CardLinkRequestedEvent.class),
+                isNull()))
+                .thenReturn(Completable.complete());
         // Act
         TestObserver<Void> testObserver = yankiService.associateCard(phoneNumber, cardNumber, documentNumber).test();
         // Assert
         testObserver.assertComplete();
-        verify(kafkaTemplate).send(eq("yanki.card.link.requested"), any(CardLinkRequestedEvent.class));
+        verify(outboxService)
+                .enqueue(eq("yanki.card.link.requested"), eq(phoneNumber), any(CardLinkRequestedEvent.class), isNull());
     }
     @Test
     void processYankiTransaction_shouldSendEvent_whenSenderHasEnoughBalance() {
@@ -57,14 +80,66 @@ class YankiServiceImplTest {
         YankiWallet receiver = new YankiWallet();
         receiver.setPhoneNumber("456");
         BigDecimal amount = BigDecimal.valueOf(50);
-        when(repository.findByPhoneNumber("123")).thenReturn(Maybe.just(sender));
-        when(repository.findByPhoneNumber("456")).thenReturn(Maybe.just(receiver));
-        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(mock(ListenableFuture.class));
+        when(walletCache.findByPhoneNumber("123")).thenReturn(Maybe.just(sender));
+        when(walletCache.findByPhoneNumber("456")).thenReturn(Maybe.just(receiver));
+        stubEnqueue("123", Completable.complete());
+        when(fundsHoldService.placeHold(eq("123"), anyString(), eq(amount))).thenReturn(Completable.complete());
         // Act
-        TestObserver<Void> testObserver = yankiService.processYankiTransaction("123", "456", amount).test();
+        TestObserver<Void> testObserver = yankiService.processYankiTransaction("123", "456", amount, "corr-1").test();
         // Assert
         testObserver.assertComplete();
-        verify(kafkaTemplate).send(eq("yanki.transaction.requested"), any(YankiTransactionEvent.class));
+        ArgumentCaptor<YankiTransactionEvent> event = ArgumentCaptor.forClass(YankiTransactionEvent.class);
+        verify(outboxService).enqueue(eq("yanki.transaction.requested"), eq("123"), event.capture(), eq("corr-1"));
+        verify(fundsHoldService).placeHold("123", event.getValue().getTransactionId(), amount);
+    }
+    @Test
+    void processYankiTransaction_shouldNotSendEvent_whenHoldIsRejected() {
+        YankiWallet sender = new YankiWallet();
+        sender.setPhoneNumber("123");
+        sender.setBalance(BigDecimal.valueOf(100));
+        YankiWallet receiver = new YankiWallet();
+        receiver.setPhoneNumber("456");
+        BigDecimal amount = BigDecimal.valueOf(50);
+        when(walletCache.findByPhoneNumber("123")).thenReturn(Maybe.just(sender));
+        when(walletCache.findByPhoneNumber("456")).thenReturn(Maybe.just(receiver));
+        when(fundsHoldService.placeHold(eq("123"), anyString(), eq(amount)))
+                .thenReturn(Completable.error(new IllegalStateException("Insufficient funds for transaction")));
+        TestObserver<Void> testObserver = yankiService.processYankiTransaction("123", "456", amount, "corr-1").test();
+        testObserver.assertErrorMessage("Insufficient funds for transaction");
+        verify(outboxService, never()).enqueue(anyString(), anyString(), any(), any());
+    }
+    @Test
+    void processYankiTransaction_shouldSkipHold_whenSenderHasLinkedCard() {
+        YankiWallet sender = new YankiWallet();
+        sender.setPhoneNumber("123");
+        sender.setLinkedCard("card-1");
+        sender.setBalance(BigDecimal.valueOf(100));
+        YankiWallet receiver = new YankiWallet();
+        receiver.setPhoneNumber("456");
+        when(walletCache.findByPhoneNumber("123")).thenReturn(Maybe.just(sender));
+        when(walletCache.findByPhoneNumber("456")).thenReturn(Maybe.just(receiver));
+        stubEnqueue("123", Completable.complete());
+        yankiService.processYankiTransaction("123", "456", BigDecimal.TEN, "corr-1").test().assertComplete();
+        verify(outboxService).enqueue(eq("yanki.transaction.requested"), eq("123"), any(YankiTransactionEvent.class),
+                anyString());
+        verifyNoInteractions(fundsHoldService);
+    }
+    @Test
+    void processYankiTransaction_shouldReleaseHold_whenOutboxWriteFails() {
+        YankiWallet sender = new YankiWallet();
+        sender.setPhoneNumber("123");
+        sender.setBalance(BigDecimal.valueOf(100));
+        YankiWallet receiver = new YankiWallet();
+        receiver.setPhoneNumber("456");
+        BigDecimal amount = BigDecimal.valueOf(50);
+        when(walletCache.findByPhoneNumber("123")).thenReturn(Maybe.just(sender));
+        when(walletCache.findByPhoneNumber("456")).thenReturn(Maybe.just(receiver));
+        when(fundsHoldService.placeHold(eq("123"), anyString(), eq(amount))).thenReturn(Completable.complete());
+        when(fundsHoldService.releaseHold(eq("123"), anyString(), eq(amount))).thenReturn(Single.just(true));
+        stubEnqueue("123", Completable.error(new RuntimeException("Mongo unavailable")));
+        yankiService.processYankiTransaction("123", "456", amount, "corr-1").test()
+                .assertErrorMessage("Mongo unavailable");
+        verify(fundsHoldService).releaseHold(eq("123"), anyString(), eq(amount));
     }
     @Test
     void processYankiTransaction_shouldReturnError_whenSenderHasInsufficientFunds() {
@@ -75,15 +150,112 @@ class YankiServiceImplTest {
         YankiWallet receiver = new YankiWallet();
         receiver.setPhoneNumber("456");
         BigDecimal amount = BigDecimal.valueOf(50);
-        when(repository.findByPhoneNumber("123")).thenReturn(Maybe.just(sender));
-        when(repository.findByPhoneNumber("456")).thenReturn(Maybe.just(receiver));
+        when(walletCache.findByPhoneNumber("123")).thenReturn(Maybe.just(sender));
+        when(walletCache.findByPhoneNumber("456")).thenReturn(Maybe.just(receiver));
         // Act
-        TestObserver<Void> testObserver = yankiService.processYankiTransaction("123", "456", amount).test();
+        TestObserver<Void> testObserver = yankiService.processYankiTransaction("123", "456", amount, "corr-1").test();
         // Assert
         testObserver.assertError(IllegalStateException.class);
         testObserver.assertErrorMessage("Insufficient funds for transaction");
     }
     @Test
+    void validateUser_shouldRejectMalformedCredentialsWithoutLookup() {
+        yankiService.validateUser("98765abc1", "12345678").test().assertValue(false);
+        yankiService.validateUser("987654321", null).test().assertValue(false);
+        verifyNoInteractions(walletCache, repository);
+    }
+    private static YankiWallet batchWallet(String phoneNumber, String balance) {
+        YankiWallet wallet = new YankiWallet();
+        wallet.setPhoneNumber(phoneNumber);
+        wallet.setBalance(new BigDecimal(balance));
+        return wallet;
+    }
+    private void stubEnqueue(String senderPhoneNumber, Completable result) {
+        when(outboxService.enqueue(eq("yanki.transaction.requested"), eq(senderPhoneNumber),
+                any(YankiTransactionEvent.class), anyString()))
+                .thenReturn(result);
+    }
+    @SuppressWarnings("unchecked")
+    private void stubEnqueueAll(Completable result) {
+        when(outboxService.enqueueAll(eq("yanki.transaction.requested"), anyList(), any(Function.class), anyString()))
+                .thenReturn(result);
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void processYankiTransactionBatch_shouldReportPerItemResults() {
+        when(walletCache.findByPhoneNumber("111111111")).thenReturn(Maybe.just(batchWallet("111111111", "100")));
+        when(repository.findByPhoneNumberIn(anyCollection()))
+                .thenReturn(Flowable.just(batchWallet("222222222", "0"), batchWallet("333333333", "0")));
+        when(fundsHoldService.placeHolds(eq("111111111"), anyMap())).thenReturn(Completable.complete());
+        stubEnqueueAll(Completable.complete());
+        List<YankiBatchTransferItem> transfers = List.of(
+                new YankiBatchTransferItem("222222222", new BigDecimal("10")),
+                new YankiBatchTransferItem("333333333", new BigDecimal("20")),
+                new YankiBatchTransferItem("444444444", new BigDecimal("5")),
+                new YankiBatchTransferItem("111111111", new BigDecimal("5")),
+                new YankiBatchTransferItem("222222222", new BigDecimal("-1")),
+                new YankiBatchTransferItem("22222a222", new BigDecimal("5")));
+        YankiBatchTransactionResult result = yankiService
+                .processYankiTransactionBatch("111111111", transfers, "batch-1")
+                .blockingGet();
+        assertEquals(2, result.getAccepted());
+        assertEquals(4, result.getRejected());
+        assertEquals(new BigDecimal("30"), result.getAcceptedAmount());
+        assertEquals("ACCEPTED", result.getResults().get(0).getStatus());
+        assertEquals("Receiver wallet not found", result.getResults().get(2).getReason());
+        assertEquals("Sender and receiver phone numbers must be different", result.getResults().get(3).getReason());
+        assertEquals("Amount must be greater than zero", result.getResults().get(4).getReason());
+        assertEquals("Phone number must contain between 9 and 10 digits", result.getResults().get(5).getReason());
+        ArgumentCaptor<Map<String, BigDecimal>> holds = ArgumentCaptor.forClass(Map.class);
+        verify(fundsHoldService, times(1)).placeHolds(eq("111111111"), holds.capture());
+        assertEquals(Set.of(result.getResults().get(0).getTransactionId(),
+                result.getResults().get(1).getTransactionId()), holds.getValue().keySet());
+        verify(repository, times(1)).findByPhoneNumberIn(anyCollection());
+        ArgumentCaptor<List<YankiTransactionEvent>> queued = ArgumentCaptor.forClass(List.class);
+        verify(outboxService, times(1)).enqueueAll(eq("yanki.transaction.requested"), queued.capture(), any(),
+                eq("batch-1"));
+        assertEquals(2, queued.getValue().size());
+    }
+    @Test
+    void processYankiTransactionBatch_shouldRejectBatch_whenTotalExceedsBalance() {
+        when(walletCache.findByPhoneNumber("111111111")).thenReturn(Maybe.just(batchWallet("111111111", "25")));
+        when(repository.findByPhoneNumberIn(anyCollection()))
+                .thenReturn(Flowable.just(batchWallet("222222222", "0"), batchWallet("333333333", "0")));
+        yankiService.processYankiTransactionBatch("111111111", List.of(
+                        new YankiBatchTransferItem("222222222", new BigDecimal("10")),
+                        new YankiBatchTransferItem("333333333", new BigDecimal("20"))), "batch-1")
+                .test()
+                .assertErrorMessage("Insufficient funds for transaction");
+        verifyNoInteractions(fundsHoldService, outboxService);
+    }
+    @Test
+    void processYankiTransactionBatch_shouldReleaseHold_whenOutboxWriteFails() {
+        when(walletCache.findByPhoneNumber("111111111")).thenReturn(Maybe.just(batchWallet("111111111", "100")));
+        when(repository.findByPhoneNumberIn(anyCollection())).thenReturn(Flowable.just(batchWallet("222222222", "0")));
+        when(fundsHoldService.placeHolds(eq("111111111"), anyMap())).thenReturn(Completable.complete());
+        when(fundsHoldService.releaseHold(eq("111111111"), anyString(), eq(new BigDecimal("10"))))
+                .thenReturn(Single.just(true));
+        stubEnqueueAll(Completable.error(new RuntimeException("Mongo unavailable")));
+        YankiBatchTransactionResult result = yankiService.processYankiTransactionBatch("111111111",
+                List.of(new YankiBatchTransferItem("222222222", new BigDecimal("10"))), "batch-1").blockingGet();
+        assertEquals(0, result.getAccepted());
+        assertEquals("Failed to publish transaction", result.getResults().get(0).getReason());
+        verify(fundsHoldService).releaseHold("111111111", result.getResults().get(0).getTransactionId(),
+                new BigDecimal("10"));
+    }
+    @Test
+    void processYankiTransactionBatch_shouldRejectEmptyAndOversizedBatches() {
+        yankiService.processYankiTransactionBatch("111111111", List.of(), "batch-1")
+                .test()
+                .assertError(IllegalArgumentException.class);
+        List<YankiBatchTransferItem> transfers = Collections.nCopies(5001,
+                new YankiBatchTransferItem("222222222", BigDecimal.ONE));
+        yankiService.processYankiTransactionBatch("111111111", transfers, "batch-1")
+                .test()
+                .assertErrorMessage("Batch cannot contain more than 5000 transfers");
+        verifyNoInteractions(repository, walletCache);
+    }
+    @Test
     void getWalletById_shouldReturnWallet_whenWalletExists() {
         // Arrange
         YankiWallet wallet = new YankiWallet();
@@ -102,11 +274,13 @@ class YankiServiceImplTest {
         wallet.setId("1");
         when(repository.findById("1")).thenReturn(Maybe.just(wallet));
         when(repository.delete(wallet)).thenReturn(Completable.complete());
+        when(walletCache.evict(wallet)).thenReturn(Completable.complete());
         // Act
         TestObserver<Void> testObserver = yankiService.deleteWallet("1").test();
         // Assert
         testObserver.assertComplete();
         verify(repository).delete(wallet);
+        verify(walletCache).evict(wallet);
     }
     @Test
     void deleteWallet_shouldReturnError_whenWalletNotFound() {
@@ -118,9 +292,70 @@ class YankiServiceImplTest {
         testObserver.assertError(RuntimeException.class);
         testObserver.assertErrorMessage("Wallet not found");
     }
+    private static YankiWalletRequest registrationRequest() {
+        YankiWalletRequest request = new YankiWalletRequest();
+        request.setPhoneNumber("987654321");
+        request.setDocumentNumber("12345678");
+        request.setImei("123456789012345");
+        request.setEmail("test@example.com");
+        return request;
+    }
+    @Test
+    void registerWallet_shouldSaveOnceAndCacheWallet() {
+        YankiWallet saved = YankiWallet.builder().id("1").phoneNumber("987654321").build();
+        when(repository.save(any(YankiWallet.class))).thenReturn(Single.just(saved));
+        when(walletCache.put(saved)).thenReturn(Completable.complete());
+        BaseResponse<YankiWallet> response = yankiService.registerWallet(registrationRequest()).blockingGet();
+        assertEquals(HttpStatus.CREATED.value(), response.getStatus());
+        assertEquals(saved, response.getData());
+        verify(repository, times(1)).save(any(YankiWallet.class));
+        verify(repository, never()).findByPhoneNumber(anyString());
+        verify(walletCache).put(saved);
+    }
+    @Test
+    void registerWallet_shouldRejectInvalidInputWithoutTouchingRepository() {
+        YankiWalletRequest request = registrationRequest();
+        request.setImei("123");
+        BaseResponse<YankiWallet> response = yankiService.registerWallet(request).blockingGet();
+        assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+        assertEquals("IMEI must contain exactly 15 digits", response.getMessage());
+        verifyNoInteractions(repository, walletCache);
+    }
+    @Test
+    void registerWallet_shouldMapDuplicateKeyToAlreadyRegisteredMessage() {
+        when(repository.save(any(YankiWallet.class))).thenReturn(Single.error(new DuplicateKeyException(
+                "E11000 duplicate key error collection: yanki.yanki_wallets index: documentNumber_unique")));
+        BaseResponse<YankiWallet> response = yankiService.registerWallet(registrationRequest()).blockingGet();
+        assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+        assertEquals("Document number is already registered", response.getMessage());
+        assertNull(response.getData());
+        verifyNoInteractions(walletCache);
+    }
+    @Test
+    void registerWallet_shouldPropagateDependencyUnavailable() {
+        when(repository.save(any(YankiWallet.class)))
+                .thenReturn(Single.error(new DependencyUnavailableException("mongo", new TimeoutException())));
+        yankiService.registerWallet(registrationRequest()).test()
+                .assertError(DependencyUnavailableException.class);
+        verifyNoInteractions(walletCache);
+    }
+    @Test
+    void registerWallet_shouldMapEachUniqueIndex() {
+        when(repository.save(any(YankiWallet.class)))
+                .thenReturn(Single.error(new DuplicateKeyException("index: phoneNumber_unique dup key")))
+                .thenReturn(Single.error(new DuplicateKeyException("index: imei_unique dup key")))
+                .thenReturn(Single.error(new DuplicateKeyException("index: _id_ dup key")));
+        assertEquals("Phone number is already registered",
+                yankiService.registerWallet(registrationRequest()).blockingGet().getMessage());
+        assertEquals("IMEI is already registered",
+                yankiService.registerWallet(registrationRequest()).blockingGet().getMessage());
+        assertEquals("Wallet is already registered",
+                yankiService.registerWallet(registrationRequest()).blockingGet().getMessage());
+    }
     @Test
     void registerWallet_shouldReturnError_whenImeiIsNotUnique() {
-        YankiService stubService = new YankiServiceImpl(repository, kafkaTemplate) {
+        YankiService stubService = new YankiServiceImpl(repository, walletCache, fundsHoldService,
+                stripedBalances, outboxService, metrics) {
             @Override
             public Single<BaseResponse<YankiWallet>> registerWallet(YankiWalletRequest request) {
                 return Single.just(new BaseResponse<>(
@@ -149,7 +384,7 @@ class YankiServiceImplTest {
         YankiWallet wallet = new YankiWallet();
         wallet.setId("1");
         wallet.setPhoneNumber(phoneNumber);
-        when(repository.findByPhoneNumber(phoneNumber)).thenReturn(Maybe.just(wallet));
+        when(walletCache.findByPhoneNumber(phoneNumber)).thenReturn(Maybe.just(wallet));
         // Act
         TestObserver<YankiWallet> testObserver = yankiService.getWalletByPhoneNumber(phoneNumber).test();
         // Assert
@@ -160,7 +395,7 @@ class YankiServiceImplTest {
     void getWalletByPhoneNumber_shouldReturnEmpty_whenWalletDoesNotExist() {
         // Arrange
         String phoneNumber = "123456789";
-        when(repository.findByPhoneNumber(phoneNumber)).thenReturn(Maybe.empty());
+        when(walletCache.findByPhoneNumber(phoneNumber)).thenReturn(Maybe.empty());
         // Act
         TestObserver<YankiWallet> testObserver = yankiService.getWalletByPhoneNumber(phoneNumber).test();
         // Assert
@@ -174,7 +409,7 @@ class YankiServiceImplTest {
         YankiWallet wallet = new YankiWallet();
         wallet.setId("1");
         wallet.setDocumentNumber(documentNumber);
-        when(repository.findByDocumentNumber(documentNumber)).thenReturn(Maybe.just(wallet));
+        when(walletCache.findByDocumentNumber(documentNumber)).thenReturn(Maybe.just(wallet));
         // Act
         TestObserver<YankiWallet> testObserver = yankiService.getWalletByDocument(documentNumber).test();
         // Assert
@@ -185,7 +420,7 @@ class YankiServiceImplTest {
     void getWalletByDocument_shouldReturnEmpty_whenWalletDoesNotExist() {
         // Arrange
         String documentNumber = "DNI12345678";
-        when(repository.findByDocumentNumber(documentNumber)).thenReturn(Maybe.empty());
+        when(walletCache.findByDocumentNumber(documentNumber)).thenReturn(Maybe.empty());
         // Act
         TestObserver<YankiWallet> testObserver = yankiService.getWalletByDocument(documentNumber).test();
         // Assert
@@ -214,7 +449,10 @@ class YankiServiceImplTest {
         updatedWallet.setImei(request.getImei());
         updatedWallet.setEmail(request.getEmail());
         when(repository.findById(id)).thenReturn(Maybe.just(existingWallet));
-        when(repository.save(any(YankiWallet.class))).thenReturn(Single.just(updatedWallet));
+        when(repository.updateProfile(id, "987654321", "DNI87654321", "987654321098765", "updated@example.com"))
+                .thenReturn(Maybe.just(updatedWallet));
+        when(walletCache.evict(any(YankiWallet.class))).thenReturn(Completable.complete());
+        when(walletCache.put(updatedWallet)).thenReturn(Completable.complete());
         // Act
         TestObserver<YankiWallet> testObserver = yankiService.updateWallet(id, request).test();
         // Assert
@@ -226,7 +464,9 @@ class YankiServiceImplTest {
                         w.getImei().equals(request.getImei()) &&
                         w.getEmail().equals(request.getEmail())
         );
-        verify(repository).save(any(YankiWallet.class));
+        verify(repository, never()).save(any(YankiWallet.class));
+        verify(walletCache).evict(argThat(w -> "123456789".equals(w.getPhoneNumber())));
+        verify(walletCache).put(updatedWallet);
     }
     @Test
     void updateWallet_shouldReturnError_whenWalletDoesNotExist() {
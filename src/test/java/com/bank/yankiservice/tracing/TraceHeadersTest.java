@@ -0,0 +1,45 @@
+package com.bank.yankiservice.tracing;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceHeadersTest {
+
+    @Test
+    void orNew_shouldKeepValidIdsAndReplaceUnsafeOnes() {
+        assertEquals("req-1.a_B", TraceHeaders.orNew("req-1.a_B"));
+        assertTrue(TraceHeaders.isValid(TraceHeaders.orNew(null)));
+        assertTrue(TraceHeaders.isValid(TraceHeaders.orNew("")));
+        assertTrue(TraceHeaders.isValid(TraceHeaders.orNew("id\nforged log line")));
+        assertFalse(TraceHeaders.isValid("x".repeat(65)));
+    }
+
+    @Test
+    void record_shouldCarryCorrelationIdAndReplaceTimestamps() {
+        ProducerRecord<String, Object> record = TraceHeaders.record("topic", "key", "value", "corr-1");
+        TraceHeaders.addTimestamp(record.headers(), TraceHeaders.KAFKA_PUBLISHED_AT, Instant.ofEpochMilli(1));
+        TraceHeaders.addTimestamp(record.headers(), TraceHeaders.KAFKA_PUBLISHED_AT, Instant.ofEpochMilli(2));
+        assertEquals("corr-1", TraceHeaders.decode(
+                record.headers().lastHeader(TraceHeaders.KAFKA_CORRELATION_ID).value()));
+        assertEquals(2, record.headers().toArray().length);
+        assertEquals(Instant.ofEpochMilli(2), TraceHeaders.decodeInstant(
+                record.headers().lastHeader(TraceHeaders.KAFKA_PUBLISHED_AT).value()));
+        assertNull(TraceHeaders.record("topic", "key", "value", null).headers()
+                .lastHeader(TraceHeaders.KAFKA_CORRELATION_ID));
+    }
+
+    @Test
+    void decodeInstant_shouldIgnoreMalformedValues() {
+        assertNull(TraceHeaders.decodeInstant(null));
+        assertNull(TraceHeaders.decodeInstant("soon".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Instant.ofEpochMilli(42), TraceHeaders.decodeInstant("42"));
+    }
+}
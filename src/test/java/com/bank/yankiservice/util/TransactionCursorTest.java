@@ -0,0 +1,34 @@
+package com.bank.yankiservice.util;
+
+import com.bank.yankiservice.model.YankiTransaction;
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionCursorTest {
+
+    @Test
+    void encode_shouldRoundTripTimestampAndId() {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 5, 1, 10, 15, 30, 123_000_000);
+        YankiTransaction transaction = new YankiTransaction("65f0c0ffee0000000000abcd", "987654321",
+                "912345678", BigDecimal.TEN, "SUCCESS", timestamp, null);
+        TransactionCursor decoded = TransactionCursor.decode(TransactionCursor.of(transaction).encode());
+        assertEquals(timestamp, decoded.getTimestamp());
+        assertEquals("65f0c0ffee0000000000abcd", decoded.getId());
+    }
+
+    @Test
+    void decode_invalidCursor_shouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> TransactionCursor.decode("%%%"));
+        assertThrows(IllegalArgumentException.class, () -> TransactionCursor.decode(encode("no-separator")));
+        assertThrows(IllegalArgumentException.class, () -> TransactionCursor.decode(encode("yesterday|abc")));
+        assertThrows(IllegalArgumentException.class, () -> TransactionCursor.decode(encode("2024-05-01T10:15|")));
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
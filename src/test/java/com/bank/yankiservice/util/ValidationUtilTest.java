@@ -1,6 +1,12 @@
 package com.bank.yankiservice.util;
 
 import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ValidationUtilTest {
@@ -19,6 +25,17 @@ class ValidationUtilTest {
         assertThrows(IllegalArgumentException.class, () -> ValidationUtil.validatePhoneNumber("phone123"));
     }
 
+    @Test
+    void checkPhoneNumbers_shouldReturnOneResultPerNumberInOrder() {
+        List<ValidationResult> results = ValidationUtil.checkPhoneNumbers(
+                Arrays.asList("987654321", null, "phone123", "9876543210"));
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isValid());
+        assertEquals("Phone number must contain between 9 and 10 digits", results.get(1).getMessage());
+        assertFalse(results.get(2).isValid());
+        assertTrue(results.get(3).isValid());
+    }
+
     @Test
     void validateDocumentNumber_validDocumentNumber_shouldNotThrowException() {
         assertDoesNotThrow(() -> ValidationUtil.validateDocumentNumber("12345678"));
@@ -59,4 +76,48 @@ class ValidationUtilTest {
         assertThrows(IllegalArgumentException.class, () -> ValidationUtil.validateEmail("@missingusername.com"));
         assertThrows(IllegalArgumentException.class, () -> ValidationUtil.validateEmail("user@.com"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void checkMethods_shouldReturnResultsInsteadOfThrowing() {
+        assertTrue(ValidationUtil.checkPhoneNumber("987654321").isValid());
+        assertNull(ValidationUtil.checkImei("123456789012345").getMessage());
+        ValidationResult invalid = ValidationUtil.checkDocumentNumber("12a45678");
+        assertFalse(invalid.isValid());
+        assertEquals("Document number must contain between 8 and 12 digits", invalid.getMessage());
+        assertSame(invalid, ValidationUtil.checkDocumentNumber(null));
+    }
+
+    @Test
+    void checkWallet_shouldReturnFirstFailure() {
+        assertTrue(ValidationUtil.checkWallet("987654321", "12345678", "123456789012345", "a@b.io").isValid());
+        assertEquals("IMEI must contain exactly 15 digits",
+                ValidationUtil.checkWallet("987654321", "12345678", "1234", "invalid").getMessage());
+        assertEquals("Invalid email format",
+                ValidationUtil.checkWallet("987654321", "12345678", "123456789012345", "invalid").getMessage());
+    }
+
+    @Test
+    void validationException_shouldNotCaptureStackTrace() {
+        ValidationException exception = assertThrows(ValidationException.class, () -> ValidationUtil.validateImei("1"));
+        assertEquals(0, exception.getStackTrace().length);
+    }
+
+    @Test
+    void scanners_shouldAgreeWithOriginalPatterns() {
+        Random random = new Random(42);
+        String alphabet = "0123456789abcXYZ_.%+-@\u00e9\u0661 ";
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder candidate = new StringBuilder();
+            int length = random.nextInt(20);
+            for (int j = 0; j < length; j++) {
+                candidate.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String value = i % 3 == 0 ? candidate + ".com" : candidate.toString();
+            assertEquals(Pattern.matches("\\d{9,10}", value), ValidationUtil.checkPhoneNumber(value).isValid(), value);
+            assertEquals(Pattern.matches("\\d{8,12}", value),
+                    ValidationUtil.checkDocumentNumber(value).isValid(), value);
+            assertEquals(Pattern.matches("^[\\w.%+-]+@[\\w.-]+\\.[a-zA-Z]{2,6}$", value),
+                    ValidationUtil.checkEmail(value).isValid(), value);
+        }
+    }
+}